@@ -0,0 +1,33 @@
+package com.github.fnpac.batch;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabase;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseBuilder;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseType;
+
+/**
+ * 基准测试使用的H2内存数据库，包含Spring Batch元数据表和person表
+ */
+final class BenchmarkDatabase {
+
+    private static final String CREATE_PERSON = "CREATE TABLE PERSON (" +
+            "ID BIGINT AUTO_INCREMENT PRIMARY KEY, " +
+            "NAME VARCHAR(20), AGE INT, NATION VARCHAR(20), ADDRESS VARCHAR(20))";
+
+    private BenchmarkDatabase() {
+    }
+
+    static EmbeddedDatabase create(String name) {
+        EmbeddedDatabase database = new EmbeddedDatabaseBuilder()
+                .setType(EmbeddedDatabaseType.H2)
+                .setName(name)
+                .addScript("classpath:org/springframework/batch/core/schema-h2.sql")
+                .build();
+        new JdbcTemplate(database).execute(CREATE_PERSON);
+        return database;
+    }
+
+    static void truncatePerson(JdbcTemplate jdbcTemplate) {
+        jdbcTemplate.execute("TRUNCATE TABLE PERSON");
+    }
+}
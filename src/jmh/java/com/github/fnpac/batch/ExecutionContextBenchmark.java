@@ -0,0 +1,132 @@
+package com.github.fnpac.batch;
+
+import com.github.fnpac.batch.repository.CompactExecutionContextSerializer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.batch.core.JobExecution;
+import org.springframework.batch.core.JobParametersBuilder;
+import org.springframework.batch.core.StepExecution;
+import org.springframework.batch.core.repository.ExecutionContextSerializer;
+import org.springframework.batch.core.repository.JobRepository;
+import org.springframework.batch.core.repository.dao.XStreamExecutionContextStringSerializer;
+import org.springframework.batch.core.repository.support.JobRepositoryFactoryBean;
+import org.springframework.batch.item.ExecutionContext;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabase;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.ByteArrayOutputStream;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * ExecutionContext的序列化与提交开销：上下文模拟按分片保存重启状态的reader（每个分片一个行号和一个完成标记）。
+ * <ul>
+ * <li>serialize：只序列化，结果为每次的微秒数</li>
+ * <li>commit：修改一个键后通过JobRepository写入BATCH_STEP_EXECUTION_CONTEXT（H2内存数据库，每次一个事务），
+ * 即每个chunk提交时的上下文开销</li>
+ * </ul>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ExecutionContextBenchmark {
+
+    /**
+     * xstream：默认序列化；compact：CompactExecutionContextSerializer；compressed：compact且超过2048字节时压缩
+     */
+    @Param({"xstream", "compact", "compressed"})
+    public String serializer;
+
+    @Param({"10", "500"})
+    public int shards;
+
+    private ExecutionContextSerializer contextSerializer;
+    private Map<String, Object> context;
+    private EmbeddedDatabase database;
+    private JobRepository jobRepository;
+    private TransactionTemplate transactionTemplate;
+    private StepExecution stepExecution;
+    private int line;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        contextSerializer = serializer(serializer);
+        ExecutionContext executionContext = new ExecutionContext();
+        for (int i = 0; i < shards; i++) {
+            executionContext.putInt("ShardedItemReader.shard." + i + ".line", i * 1000);
+            executionContext.putString("ShardedItemReader.shard." + i + ".done", "true");
+        }
+        executionContext.putString("batch.taskletType", "org.springframework.batch.core.step.item.ChunkOrientedTasklet");
+        executionContext.putString("batch.stepType", "org.springframework.batch.core.step.tasklet.TaskletStep");
+        context = new HashMap<>();
+        for (Map.Entry<String, Object> entry : executionContext.entrySet()) {
+            context.put(entry.getKey(), entry.getValue());
+        }
+
+        database = BenchmarkDatabase.create("context-benchmark");
+        DataSourceTransactionManager transactionManager = new DataSourceTransactionManager(database);
+        JobRepositoryFactoryBean factory = new JobRepositoryFactoryBean();
+        factory.setDataSource(database);
+        factory.setTransactionManager(transactionManager);
+        factory.setSerializer(contextSerializer);
+        factory.afterPropertiesSet();
+        jobRepository = factory.getObject();
+        transactionTemplate = new TransactionTemplate(transactionManager);
+
+        JobExecution jobExecution = jobRepository.createJobExecution("contextBenchmark",
+                new JobParametersBuilder().addLong("time", System.nanoTime()).toJobParameters());
+        stepExecution = jobExecution.createStepExecution("step");
+        stepExecution.setExecutionContext(executionContext);
+        jobRepository.add(stepExecution);
+    }
+
+    private static ExecutionContextSerializer serializer(String name) throws Exception {
+        if ("xstream".equals(name)) {
+            XStreamExecutionContextStringSerializer serializer = new XStreamExecutionContextStringSerializer();
+            serializer.afterPropertiesSet();
+            return serializer;
+        }
+        CompactExecutionContextSerializer serializer = new CompactExecutionContextSerializer();
+        if ("compressed".equals(name)) {
+            serializer.setCompressionThreshold(2048);
+        }
+        return serializer;
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        database.shutdown();
+    }
+
+    @Benchmark
+    public int serialize() throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        contextSerializer.serialize(context, out);
+        return out.size();
+    }
+
+    @Benchmark
+    public void commit() {
+        stepExecution.getExecutionContext().putInt("ShardedItemReader.shard.0.line", ++line);
+        transactionTemplate.execute(status -> {
+            jobRepository.updateExecutionContext(stepExecution);
+            return null;
+        });
+    }
+}
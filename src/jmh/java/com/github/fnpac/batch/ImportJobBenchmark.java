@@ -0,0 +1,127 @@
+package com.github.fnpac.batch;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.batch.core.BatchStatus;
+import org.springframework.batch.core.Job;
+import org.springframework.batch.core.JobExecution;
+import org.springframework.batch.core.JobParameters;
+import org.springframework.batch.core.JobParametersBuilder;
+import org.springframework.batch.core.launch.JobLauncher;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Import;
+import org.springframework.context.support.PropertySourcesPlaceholderConfigurer;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabase;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import javax.sql.DataSource;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 端到端执行 importJob：读取合成的CSV文件，经校验、处理后写入H2内存数据库，每次执行前清空person表。
+ * <p>
+ * 通过参数选择文件行数和导入使用的step（batch.import.step），其余配置与 batch.properties 相同，
+ * 也可以通过系统属性覆盖，例如 -jvmArgsAppend -Dbatch.reader.mapped=true。
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 1)
+@Measurement(iterations = 3)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g"})
+@State(Scope.Benchmark)
+public class ImportJobBenchmark {
+
+    @Param({"1000000", "10000000"})
+    public long rows;
+
+    @Param({"step", "partitionedStep", "pipelinedStep"})
+    public String importStep;
+
+    private Path file;
+    private AnnotationConfigApplicationContext context;
+    private JobLauncher jobLauncher;
+    private Job importJob;
+    private JdbcTemplate jdbcTemplate;
+    private long run;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        file = Files.createTempFile("import-benchmark-", ".csv");
+        SyntheticPeople.write(file, rows);
+
+        System.setProperty("batch.import.step", importStep);
+        context = new AnnotationConfigApplicationContext(BenchmarkConfig.class);
+        jobLauncher = context.getBean(JobLauncher.class);
+        importJob = context.getBean("importJob", Job.class);
+        jdbcTemplate = context.getBean(JdbcTemplate.class);
+    }
+
+    @TearDown(Level.Invocation)
+    public void truncate() {
+        BenchmarkDatabase.truncatePerson(jdbcTemplate);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        context.close();
+        Files.deleteIfExists(file);
+    }
+
+    @Benchmark
+    public JobExecution importJob() throws Exception {
+        JobParameters jobParameters = new JobParametersBuilder()
+                .addLong("run", ++run)
+                .addString("input.file.name", file.toUri().toString())
+                .toJobParameters();
+        JobExecution jobExecution = jobLauncher.run(importJob, jobParameters);
+        if (jobExecution.getStatus() != BatchStatus.COMPLETED) {
+            throw new IllegalStateException("importJob " + jobExecution.getStatus() + ": " + jobExecution.getAllFailureExceptions());
+        }
+        return jobExecution;
+    }
+
+    /**
+     * BatchConfig + H2内存数据库，替代 DataSourceConfig（MySQL）
+     */
+    @Configuration
+    @Import(BatchConfig.class)
+    static class BenchmarkConfig {
+
+        @Bean
+        public static PropertySourcesPlaceholderConfigurer propertyPlaceholderConfigurer() {
+            return new PropertySourcesPlaceholderConfigurer();
+        }
+
+        @Bean(destroyMethod = "shutdown")
+        public EmbeddedDatabase dataSource() {
+            return BenchmarkDatabase.create("import-benchmark");
+        }
+
+        @Bean
+        public PlatformTransactionManager transactionManager(DataSource dataSource) {
+            return new DataSourceTransactionManager(dataSource);
+        }
+
+        @Bean
+        public JdbcTemplate jdbcTemplate(DataSource dataSource) {
+            return new JdbcTemplate(dataSource);
+        }
+    }
+}
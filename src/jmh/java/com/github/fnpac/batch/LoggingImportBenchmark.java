@@ -0,0 +1,106 @@
+package com.github.fnpac.batch;
+
+import ch.qos.logback.classic.LoggerContext;
+import ch.qos.logback.classic.joran.JoranConfigurator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.slf4j.LoggerFactory;
+import org.springframework.batch.core.BatchStatus;
+import org.springframework.batch.core.Job;
+import org.springframework.batch.core.JobExecution;
+import org.springframework.batch.core.JobParameters;
+import org.springframework.batch.core.JobParametersBuilder;
+import org.springframework.batch.core.launch.JobLauncher;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 日志配置对 importJob 吞吐量的影响：logback.xml（同步写控制台和文件）与 logback-batch.xml（异步、队列满时丢弃DEBUG/INFO）。
+ * <p>
+ * level为Spring Batch（org.springframework.batch）和本项目（com.github.fnpac）的日志级别：INFO为正常运行时，
+ * DEBUG模拟排查问题时打开DEBUG（Spring Batch每个item输出数条DEBUG日志）。日志写入 ${user.home}/logs 和JMH的输出，
+ * DEBUG时建议减少行数，例如 -p rows=200000。
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 1)
+@Measurement(iterations = 3)
+@Fork(value = 1, jvmArgsAppend = {"-Xms2g", "-Xmx2g"})
+@State(Scope.Benchmark)
+public class LoggingImportBenchmark {
+
+    @Param({"1000000"})
+    public long rows;
+
+    @Param({"logback.xml", "logback-batch.xml"})
+    public String configuration;
+
+    @Param({"INFO", "DEBUG"})
+    public String level;
+
+    private Path file;
+    private AnnotationConfigApplicationContext context;
+    private JobLauncher jobLauncher;
+    private Job importJob;
+    private JdbcTemplate jdbcTemplate;
+    private long run;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        LoggerContext loggerContext = (LoggerContext) LoggerFactory.getILoggerFactory();
+        loggerContext.reset();
+        JoranConfigurator configurator = new JoranConfigurator();
+        configurator.setContext(loggerContext);
+        configurator.doConfigure(getClass().getClassLoader().getResource(configuration));
+        for (String logger : new String[]{"org.springframework.batch", "com.github.fnpac"}) {
+            loggerContext.getLogger(logger).setLevel(ch.qos.logback.classic.Level.toLevel(level));
+        }
+
+        file = Files.createTempFile("logging-benchmark-", ".csv");
+        SyntheticPeople.write(file, rows);
+        context = new AnnotationConfigApplicationContext(ImportJobBenchmark.BenchmarkConfig.class);
+        jobLauncher = context.getBean(JobLauncher.class);
+        importJob = context.getBean("importJob", Job.class);
+        jdbcTemplate = context.getBean(JdbcTemplate.class);
+    }
+
+    @TearDown(Level.Invocation)
+    public void truncate() {
+        BenchmarkDatabase.truncatePerson(jdbcTemplate);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        context.close();
+        Files.deleteIfExists(file);
+        ((LoggerContext) LoggerFactory.getILoggerFactory()).stop();
+    }
+
+    @Benchmark
+    public JobExecution importJob() throws Exception {
+        JobParameters jobParameters = new JobParametersBuilder()
+                .addLong("run", ++run)
+                .addString("input.file.name", file.toUri().toString())
+                .toJobParameters();
+        JobExecution jobExecution = jobLauncher.run(importJob, jobParameters);
+        if (jobExecution.getStatus() != BatchStatus.COMPLETED) {
+            throw new IllegalStateException("importJob " + jobExecution.getStatus() + ": " + jobExecution.getAllFailureExceptions());
+        }
+        return jobExecution;
+    }
+}
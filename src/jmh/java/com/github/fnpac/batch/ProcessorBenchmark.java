@@ -0,0 +1,73 @@
+package com.github.fnpac.batch;
+
+import com.github.fnpac.domain.Person;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 校验与处理：CsvBeanValidator、CompiledBeanValidator 以及 CsvItemProcessor.process（内置民族代码）
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ProcessorBenchmark {
+
+    private static final int ITEMS = 4096;
+
+    private final CsvBeanValidator<Person> beanValidator = new CsvBeanValidator<>();
+    private final CompiledBeanValidator<Person> compiledValidator = new CompiledBeanValidator<>(Person.class);
+    private final CsvItemProcessor processor = new CsvItemProcessor();
+
+    private Person[] people;
+    private String[] nations;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        beanValidator.afterPropertiesSet();
+        compiledValidator.afterPropertiesSet();
+        processor.setValidator(compiledValidator);
+        people = SyntheticPeople.people(ITEMS);
+        nations = new String[ITEMS];
+        for (int i = 0; i < ITEMS; i++) {
+            nations[i] = people[i].getNation();
+        }
+    }
+
+    @Benchmark
+    public Person beanValidator() {
+        Person person = people[next++ & (ITEMS - 1)];
+        beanValidator.validate(person);
+        return person;
+    }
+
+    @Benchmark
+    public Person compiledValidator() {
+        Person person = people[next++ & (ITEMS - 1)];
+        compiledValidator.validate(person);
+        return person;
+    }
+
+    @Benchmark
+    public Person processor() {
+        int i = next++ & (ITEMS - 1);
+        Person person = people[i];
+        // process会把民族替换为代码，还原后再处理
+        person.setNation(nations[i]);
+        return processor.process(person);
+    }
+}
@@ -0,0 +1,104 @@
+package com.github.fnpac.batch;
+
+import com.github.fnpac.batch.reader.MappedDelimitedItemReader;
+import com.github.fnpac.batch.reader.PersonBytesMapper;
+import com.github.fnpac.domain.Person;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.springframework.batch.item.ExecutionContext;
+import org.springframework.batch.item.ItemStreamReader;
+import org.springframework.batch.item.file.FlatFileItemReader;
+import org.springframework.batch.item.file.LineMapper;
+import org.springframework.core.io.FileSystemResource;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 行切分与Person映射：单行的 DefaultLineMapper，以及读取整个文件的 FlatFileItemReader 和 MappedDelimitedItemReader
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ReaderBenchmark {
+
+    private static final int LINES = 4096;
+
+    /**
+     * 读取整个文件的行数
+     */
+    @Param("100000")
+    public int rows;
+
+    private final LineMapper<Person> lineMapper = BatchConfig.personLineMapper();
+    private String[] lines;
+    private int next;
+    private Path file;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        lines = SyntheticPeople.lines(LINES);
+        file = Files.createTempFile("reader-benchmark-", ".csv");
+        SyntheticPeople.write(file, rows);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        Files.deleteIfExists(file);
+    }
+
+    /**
+     * DelimitedLineTokenizer → FieldSet → BeanWrapperFieldSetMapper，单行
+     */
+    @Benchmark
+    public Person lineMapper() throws Exception {
+        int i = next++ & (LINES - 1);
+        return lineMapper.mapLine(lines[i], i);
+    }
+
+    @Benchmark
+    public void flatFileReader(Blackhole blackhole) throws Exception {
+        FlatFileItemReader<Person> reader = new FlatFileItemReader<>();
+        reader.setResource(new FileSystemResource(file.toFile()));
+        reader.setEncoding(BatchConfig.INPUT_ENCODING);
+        reader.setLineMapper(BatchConfig.personLineMapper());
+        readAll(reader, blackhole);
+    }
+
+    @Benchmark
+    public void mappedReader(Blackhole blackhole) throws Exception {
+        MappedDelimitedItemReader<Person> reader = new MappedDelimitedItemReader<>();
+        reader.setResource(new FileSystemResource(file.toFile()));
+        reader.setMapper(new PersonBytesMapper());
+        reader.afterPropertiesSet();
+        readAll(reader, blackhole);
+    }
+
+    private static void readAll(ItemStreamReader<Person> reader, Blackhole blackhole) throws Exception {
+        reader.open(new ExecutionContext());
+        try {
+            Person person;
+            while ((person = reader.read()) != null) {
+                blackhole.consume(person);
+            }
+        } finally {
+            reader.close();
+        }
+    }
+}
@@ -0,0 +1,235 @@
+package com.github.fnpac.batch;
+
+import com.github.fnpac.batch.repository.CompactExecutionContextSerializer;
+import com.github.fnpac.batch.retention.JobMetadataRetention;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.batch.core.DefaultJobKeyGenerator;
+import org.springframework.batch.core.JobExecution;
+import org.springframework.batch.core.JobInstance;
+import org.springframework.batch.core.JobParameters;
+import org.springframework.batch.core.JobParametersBuilder;
+import org.springframework.batch.core.StepExecution;
+import org.springframework.batch.core.explore.JobExplorer;
+import org.springframework.batch.core.explore.support.JobExplorerFactoryBean;
+import org.springframework.batch.core.repository.JobRepository;
+import org.springframework.batch.core.repository.support.JobRepositoryFactoryBean;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabase;
+import org.springframework.util.StreamUtils;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 元数据表增长后JobRepository、JobExplorer的查询开销：H2内存数据库中预置 executions 个job instance（每个一次execution、
+ * 一个参数、一个step execution及上下文，importJob占9/10，exportJob占1/10），最新的两个execution运行中。
+ * indexed=true 时创建schema-retention-mysql.sql中的索引（外键索引H2与MySQL一样自动创建）。
+ * <ul>
+ * <li>jobInstances：getJobInstances(importJob, 0, 20)，FileFingerprints按此分页</li>
+ * <li>runningExecutions：findRunningJobExecutions(importJob)</li>
+ * <li>lastJobExecution：按参数查找instance及其最后一次execution，每次启动job时执行</li>
+ * <li>lastStepExecution、stepExecutionCount：重启时判断step是否需要执行</li>
+ * <li>purge：{@link JobMetadataRetention} 清理一批100个instance，结果为每个instance的微秒数</li>
+ * </ul>
+ * 预置数据约需1~2GB堆，可用 -p executions=100000 缩小。
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx3g")
+public class RepositoryQueryBenchmark {
+
+    private static final int SAMPLES = 1024;
+    private static final int PURGE_BATCH_SIZE = 100;
+
+    /**
+     * 预置了数据的数据库，查询和清理各用一个（清理会消耗数据）
+     */
+    @State(Scope.Benchmark)
+    public abstract static class SeededDatabase {
+
+        @Param({"1000000"})
+        public int executions;
+
+        @Param({"false", "true"})
+        public boolean indexed;
+
+        EmbeddedDatabase database;
+
+        void create(String name) throws IOException {
+            // 使用PageStore（MV_STORE=FALSE），预置数据快约3倍、占用内存更少
+            database = BenchmarkDatabase.create(name + ";MV_STORE=FALSE");
+            seed(database, executions, indexed);
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() {
+            database.shutdown();
+        }
+    }
+
+    @State(Scope.Benchmark)
+    public static class QueryState extends SeededDatabase {
+
+        JobRepository jobRepository;
+        JobExplorer jobExplorer;
+        JobInstance[] instances;
+        JobParameters[] parameters;
+        int next;
+
+        @Setup(Level.Trial)
+        public void setUp() throws Exception {
+            create("repository-benchmark");
+
+            DataSourceTransactionManager transactionManager = new DataSourceTransactionManager(database);
+            JobRepositoryFactoryBean repositoryFactory = new JobRepositoryFactoryBean();
+            repositoryFactory.setDataSource(database);
+            repositoryFactory.setTransactionManager(transactionManager);
+            repositoryFactory.setSerializer(new CompactExecutionContextSerializer());
+            repositoryFactory.afterPropertiesSet();
+            jobRepository = repositoryFactory.getObject();
+            JobExplorerFactoryBean explorerFactory = new JobExplorerFactoryBean();
+            explorerFactory.setDataSource(database);
+            explorerFactory.setSerializer(new CompactExecutionContextSerializer());
+            explorerFactory.afterPropertiesSet();
+            jobExplorer = explorerFactory.getObject();
+
+            // 抽样的instance（importJob）使用真实的JOB_KEY，可以按参数查找
+            JdbcTemplate jdbcTemplate = new JdbcTemplate(database);
+            DefaultJobKeyGenerator keyGenerator = new DefaultJobKeyGenerator();
+            instances = new JobInstance[SAMPLES];
+            parameters = new JobParameters[SAMPLES];
+            for (int i = 0; i < SAMPLES; i++) {
+                long id = (long) (executions - 2) * (i + 1) / (SAMPLES + 1) / 10 * 10 + 1;
+                parameters[i] = new JobParametersBuilder().addString("uid", "uid-" + id).toJobParameters();
+                jdbcTemplate.update("UPDATE BATCH_JOB_INSTANCE SET JOB_KEY = ? WHERE JOB_INSTANCE_ID = ?",
+                        keyGenerator.generateKey(parameters[i]), id);
+                instances[i] = jobExplorer.getJobInstance(id);
+            }
+        }
+
+        int sample() {
+            return next = (next + 1) & (SAMPLES - 1);
+        }
+    }
+
+    @State(Scope.Benchmark)
+    public static class PurgeState extends SeededDatabase {
+
+        JobMetadataRetention retention;
+
+        @Setup(Level.Trial)
+        public void setUp() throws IOException {
+            create("purge-benchmark");
+            retention = new JobMetadataRetention(database, new DataSourceTransactionManager(database));
+            retention.setKeepLast(0);
+            retention.setBatchSize(PURGE_BATCH_SIZE);
+            retention.setMaxBatches(1);
+            retention.setPauseMillis(0);
+        }
+    }
+
+    /**
+     * 预置数据：instance、execution、step execution的id均为1..count
+     */
+    static void seed(EmbeddedDatabase database, int count, boolean indexed) throws IOException {
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(database);
+        ByteArrayOutputStream context = new ByteArrayOutputStream();
+        new CompactExecutionContextSerializer().serialize(Collections.emptyMap(), context);
+        String emptyContext = context.toString("ISO-8859-1");
+        String time = "DATEADD('SECOND', X, TIMESTAMP '2017-01-01 00:00:00')";
+        String running = "X > " + (count - 2);
+
+        // 数据本身满足外键，跳过逐行检查（H2）
+        jdbcTemplate.execute("SET REFERENTIAL_INTEGRITY FALSE");
+        jdbcTemplate.update("INSERT INTO BATCH_JOB_INSTANCE (JOB_INSTANCE_ID, VERSION, JOB_NAME, JOB_KEY) " +
+                "SELECT X, 0, CASEWHEN(MOD(X, 10) = 0, 'exportJob', 'importJob'), 'key-' || X FROM SYSTEM_RANGE(1, ?)", count);
+        jdbcTemplate.update("INSERT INTO BATCH_JOB_EXECUTION (JOB_EXECUTION_ID, VERSION, JOB_INSTANCE_ID, CREATE_TIME, " +
+                "START_TIME, END_TIME, STATUS, EXIT_CODE, EXIT_MESSAGE, LAST_UPDATED) " +
+                "SELECT X, 2, X, " + time + ", " + time + ", CASEWHEN(" + running + ", NULL, " + time + "), " +
+                "CASEWHEN(" + running + ", 'STARTED', 'COMPLETED'), CASEWHEN(" + running + ", 'UNKNOWN', 'COMPLETED'), '', " +
+                time + " FROM SYSTEM_RANGE(1, ?)", count);
+        jdbcTemplate.update("INSERT INTO BATCH_JOB_EXECUTION_PARAMS (JOB_EXECUTION_ID, TYPE_CD, KEY_NAME, STRING_VAL, " +
+                "DATE_VAL, LONG_VAL, DOUBLE_VAL, IDENTIFYING) " +
+                "SELECT X, 'STRING', 'uid', 'uid-' || X, TIMESTAMP '1970-01-01 08:00:00', 0, 0, 'Y' FROM SYSTEM_RANGE(1, ?)", count);
+        jdbcTemplate.update("INSERT INTO BATCH_JOB_EXECUTION_CONTEXT (JOB_EXECUTION_ID, SHORT_CONTEXT) " +
+                "SELECT X, ? FROM SYSTEM_RANGE(1, ?)", emptyContext, count);
+        jdbcTemplate.update("INSERT INTO BATCH_STEP_EXECUTION (STEP_EXECUTION_ID, VERSION, STEP_NAME, JOB_EXECUTION_ID, " +
+                "START_TIME, END_TIME, STATUS, COMMIT_COUNT, READ_COUNT, FILTER_COUNT, WRITE_COUNT, READ_SKIP_COUNT, " +
+                "WRITE_SKIP_COUNT, PROCESS_SKIP_COUNT, ROLLBACK_COUNT, EXIT_CODE, EXIT_MESSAGE, LAST_UPDATED) " +
+                "SELECT X, 3, 'step', X, " + time + ", " + time + ", 'COMPLETED', 50, 50000, 0, 50000, 0, 0, 0, 0, " +
+                "'COMPLETED', '', " + time + " FROM SYSTEM_RANGE(1, ?)", count);
+        jdbcTemplate.update("INSERT INTO BATCH_STEP_EXECUTION_CONTEXT (STEP_EXECUTION_ID, SHORT_CONTEXT) " +
+                "SELECT X, ? FROM SYSTEM_RANGE(1, ?)", emptyContext, count);
+        jdbcTemplate.execute("SET REFERENTIAL_INTEGRITY TRUE");
+        for (String sequence : new String[]{"BATCH_JOB_SEQ", "BATCH_JOB_EXECUTION_SEQ", "BATCH_STEP_EXECUTION_SEQ"}) {
+            jdbcTemplate.execute("ALTER SEQUENCE " + sequence + " RESTART WITH " + (count + 1));
+        }
+
+        if (indexed) {
+            String schema = StreamUtils.copyToString(new ClassPathResource("schema-retention-mysql.sql").getInputStream(),
+                    StandardCharsets.UTF_8);
+            for (String line : schema.split("\n")) {
+                if (line.startsWith("CREATE INDEX")) {
+                    jdbcTemplate.execute(line.trim().replace(";", ""));
+                }
+            }
+        }
+    }
+
+    @Benchmark
+    public List<JobInstance> jobInstances(QueryState state) {
+        return state.jobExplorer.getJobInstances("importJob", 0, 20);
+    }
+
+    @Benchmark
+    public Set<JobExecution> runningExecutions(QueryState state) {
+        return state.jobExplorer.findRunningJobExecutions("importJob");
+    }
+
+    @Benchmark
+    public JobExecution lastJobExecution(QueryState state) {
+        return state.jobRepository.getLastJobExecution("importJob", state.parameters[state.sample()]);
+    }
+
+    @Benchmark
+    public StepExecution lastStepExecution(QueryState state) {
+        return state.jobRepository.getLastStepExecution(state.instances[state.sample()], "step");
+    }
+
+    @Benchmark
+    public int stepExecutionCount(QueryState state) {
+        return state.jobRepository.getStepExecutionCount(state.instances[state.sample()], "step");
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(PURGE_BATCH_SIZE)
+    public int purge(PurgeState state) throws InterruptedException {
+        int purged = state.retention.purge();
+        if (purged == 0) {
+            throw new IllegalStateException("All seeded job instances purged, increase executions");
+        }
+        return purged;
+    }
+}
@@ -0,0 +1,69 @@
+package com.github.fnpac.batch;
+
+import com.github.fnpac.domain.Person;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+
+/**
+ * 基准测试使用的合成数据，格式与 people.csv 相同（name,age,nation,address），固定种子保证每次生成的数据一致
+ */
+final class SyntheticPeople {
+
+    private static final String[] SURNAMES = {"汪", "张", "李", "王", "刘", "陈", "杨", "赵", "黄", "周"};
+    private static final String[] GIVEN_NAMES = {"某", "某某", "小明", "一", "建国", "伟"};
+    private static final String[] NATIONS = {"汉族", "汉族", "汉族", "非汉族"};
+    private static final String[] ADDRESSES = {"合肥", "上海", "武汉", "北京", "深圳", "杭州"};
+
+    private SyntheticPeople() {
+    }
+
+    static String[] lines(int count) {
+        Random random = new Random(count);
+        String[] lines = new String[count];
+        for (int i = 0; i < count; i++) {
+            lines[i] = line(random);
+        }
+        return lines;
+    }
+
+    static Person[] people(int count) {
+        Random random = new Random(count);
+        Person[] people = new Person[count];
+        for (int i = 0; i < count; i++) {
+            Person person = new Person();
+            person.setName(pick(random, SURNAMES) + pick(random, GIVEN_NAMES));
+            person.setAge(1 + random.nextInt(99));
+            person.setNation(pick(random, NATIONS));
+            person.setAddress(pick(random, ADDRESSES));
+            people[i] = person;
+        }
+        return people;
+    }
+
+    /**
+     * 生成包含 rows 行的CSV文件
+     */
+    static void write(Path file, long rows) throws IOException {
+        Random random = new Random(rows);
+        try (BufferedWriter writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            for (long i = 0; i < rows; i++) {
+                writer.write(line(random));
+                writer.newLine();
+            }
+        }
+    }
+
+    private static String line(Random random) {
+        return pick(random, SURNAMES) + pick(random, GIVEN_NAMES) + "," + (1 + random.nextInt(99)) + ","
+                + pick(random, NATIONS) + "," + pick(random, ADDRESSES);
+    }
+
+    private static String pick(Random random, String[] values) {
+        return values[random.nextInt(values.length)];
+    }
+}
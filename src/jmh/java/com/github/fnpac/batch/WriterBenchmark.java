@@ -0,0 +1,68 @@
+package com.github.fnpac.batch;
+
+import com.github.fnpac.domain.Person;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.batch.item.ItemWriter;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabase;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * BatchConfig中的JdbcBatchItemWriter写入一个chunk，使用H2内存数据库，结果为每秒写入的chunk数
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class WriterBenchmark {
+
+    @Param({"1000", "10000"})
+    public int chunkSize;
+
+    private EmbeddedDatabase database;
+    private JdbcTemplate jdbcTemplate;
+    private ItemWriter<Person> writer;
+    private List<Person> chunk;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        database = BenchmarkDatabase.create("writer-benchmark");
+        jdbcTemplate = new JdbcTemplate(database);
+        writer = new BatchConfig().writer(database, "jdbc");
+        ((InitializingBean) writer).afterPropertiesSet();
+        chunk = Arrays.asList(SyntheticPeople.people(chunkSize));
+    }
+
+    @TearDown(Level.Iteration)
+    public void truncate() {
+        BenchmarkDatabase.truncatePerson(jdbcTemplate);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        database.shutdown();
+    }
+
+    @Benchmark
+    public void jdbcBatchItemWriter() throws Exception {
+        writer.write(chunk);
+    }
+}
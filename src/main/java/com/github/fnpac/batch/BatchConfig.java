@@ -1,44 +1,190 @@
 package com.github.fnpac.batch;
 
+import com.github.fnpac.batch.chunk.AdaptiveCompletionPolicy;
+import com.github.fnpac.batch.columnar.ColumnarStepBuilder;
+import com.github.fnpac.batch.columnar.PersonChunk;
+import com.github.fnpac.batch.columnar.PersonChunkProcessor;
+import com.github.fnpac.batch.columnar.PersonChunkReader;
+import com.github.fnpac.batch.columnar.PersonChunkWriter;
+import com.github.fnpac.batch.dedupe.DuplicateFilterItemProcessor;
+import com.github.fnpac.batch.dedupe.ScalableBloomFilter;
+import com.github.fnpac.batch.delta.DeltaDeleteTasklet;
+import com.github.fnpac.batch.delta.DeltaItemProcessor;
+import com.github.fnpac.batch.delta.PersonRowHasher;
+import com.github.fnpac.batch.delta.RowHashIndex;
+import com.github.fnpac.batch.delta.UpsertItemWriter;
+import com.github.fnpac.batch.dictionary.CodeDictionaryService;
+import com.github.fnpac.batch.launch.JobLaunchService;
+import com.github.fnpac.batch.metrics.BatchMetrics;
+import com.github.fnpac.batch.metrics.MetricsListener;
+import com.github.fnpac.batch.partition.ByteRangeResource;
+import com.github.fnpac.batch.pipeline.PipelinedChunkTasklet;
+import com.github.fnpac.batch.repository.BlockIncrementerFactory;
+import com.github.fnpac.batch.repository.BufferedJobRepository;
+import com.github.fnpac.batch.repository.CompactExecutionContextSerializer;
+import com.github.fnpac.batch.retention.JobMetadataRetention;
+import com.github.fnpac.batch.skip.BisectingStepBuilder;
+import com.github.fnpac.batch.skip.RejectFileWriter;
+import com.github.fnpac.batch.staging.StagingSwapTasklet;
+import com.github.fnpac.batch.staging.StagingTable;
+import com.github.fnpac.batch.staging.StagingTableListener;
+import com.github.fnpac.batch.partition.LineRangePartitioner;
+import com.github.fnpac.batch.reader.CommittedRangeItemReader;
+import com.github.fnpac.batch.reader.InputShards;
+import com.github.fnpac.batch.reader.MappedDelimitedItemReader;
+import com.github.fnpac.batch.reader.PersonCursorItemReader;
+import com.github.fnpac.batch.reader.PersonBytesMapper;
+import com.github.fnpac.batch.reader.ShardedItemReader;
+import com.github.fnpac.batch.remote.DatabasePartitionHandler;
+import com.github.fnpac.batch.remote.PartitionWorkDao;
+import com.github.fnpac.batch.remote.PartitionWorker;
+import com.github.fnpac.batch.writer.CsvChannelItemWriter;
+import com.github.fnpac.batch.writer.LoadDataItemWriter;
+import com.github.fnpac.batch.writer.MultiRowInsertItemWriter;
+import com.github.fnpac.config.druid.TrustedWallFilter;
 import com.github.fnpac.domain.Person;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.batch.core.ItemWriteListener;
 import org.springframework.batch.core.Job;
 import org.springframework.batch.core.JobParameters;
 import org.springframework.batch.core.JobParametersBuilder;
 import org.springframework.batch.core.Step;
+import org.springframework.batch.core.StepExecutionListener;
 import org.springframework.batch.core.configuration.annotation.EnableBatchProcessing;
 import org.springframework.batch.core.configuration.annotation.JobBuilderFactory;
 import org.springframework.batch.core.configuration.annotation.StepBuilderFactory;
 import org.springframework.batch.core.configuration.annotation.StepScope;
+import org.springframework.batch.core.explore.JobExplorer;
+import org.springframework.batch.core.explore.support.JobExplorerFactoryBean;
+import org.springframework.batch.core.job.builder.FlowJobBuilder;
+import org.springframework.batch.core.job.builder.JobFlowBuilder;
 import org.springframework.batch.core.launch.support.RunIdIncrementer;
 import org.springframework.batch.core.launch.support.SimpleJobLauncher;
+import org.springframework.batch.core.repository.ExecutionContextSerializer;
 import org.springframework.batch.core.repository.JobRepository;
+import org.springframework.batch.core.repository.dao.XStreamExecutionContextStringSerializer;
 import org.springframework.batch.core.repository.support.JobRepositoryFactoryBean;
+import org.springframework.batch.core.step.builder.AbstractTaskletStepBuilder;
+import org.springframework.batch.core.step.builder.SimpleStepBuilder;
+import org.springframework.batch.core.step.builder.TaskletStepBuilder;
 import org.springframework.batch.item.ItemProcessor;
 import org.springframework.batch.item.ItemReader;
+import org.springframework.batch.item.ItemStreamReader;
 import org.springframework.batch.item.ItemWriter;
 import org.springframework.batch.item.database.BeanPropertyItemSqlParameterSourceProvider;
 import org.springframework.batch.item.database.JdbcBatchItemWriter;
 import org.springframework.batch.item.file.FlatFileItemReader;
+import org.springframework.batch.item.file.LineMapper;
 import org.springframework.batch.item.file.mapping.BeanWrapperFieldSetMapper;
 import org.springframework.batch.item.file.mapping.DefaultLineMapper;
+import org.springframework.batch.item.file.transform.BeanWrapperFieldExtractor;
+import org.springframework.batch.item.file.transform.DelimitedLineAggregator;
 import org.springframework.batch.item.file.transform.DelimitedLineTokenizer;
 import org.springframework.batch.item.validator.Validator;
 import org.springframework.batch.support.DatabaseType;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
-import org.springframework.core.io.ClassPathResource;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.context.annotation.PropertySource;
+import org.springframework.core.io.DefaultResourceLoader;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.support.MetaDataAccessException;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
 import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.util.Assert;
+import org.springframework.util.ResourceUtils;
 
 import javax.sql.DataSource;
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.HashMap;
+import java.util.Map;
 
 /**
  * Created by liuchunlong on 2018/3/28.
  */
 @Configuration
 @EnableBatchProcessing
+@PropertySource("classpath:batch.properties")
 public class BatchConfig {
 
+    private static final Logger logger = LoggerFactory.getLogger(BatchConfig.class);
+
+    static final String INPUT_ENCODING = "UTF-8";
+
+    @Value("${batch.chunkSize}")
+    int chunkSize;
+    @Value("${batch.reader.mapped}")
+    boolean mappedReader;
+    @Value("${batch.reader.shardThreads}")
+    int shardThreads;
+    @Value("${batch.reader.shardQueueCapacity}")
+    int shardQueueCapacity;
+    @Value("${batch.validator.compiled}")
+    boolean compiledValidator;
+    @Value("${batch.dictionary.enabled}")
+    boolean dictionaryEnabled;
+    @Value("${batch.repository.lowOverhead}")
+    boolean lowOverheadRepository;
+    @Value("${batch.repository.idBlockSize}")
+    int repositoryIdBlockSize;
+    @Value("${batch.repository.updateIntervalMillis}")
+    long repositoryUpdateIntervalMillis;
+    @Value("${batch.repository.contextUpdateIntervalMillis}")
+    long repositoryContextUpdateIntervalMillis;
+    @Value("${batch.repository.asyncWriteBehind}")
+    boolean repositoryAsyncWriteBehind;
+    @Value("${batch.repository.compactContext}")
+    boolean compactContext;
+    @Value("${batch.repository.contextCompressionThreshold}")
+    int contextCompressionThreshold;
+    @Value("${batch.chunk.adaptive}")
+    boolean adaptiveChunk;
+    @Value("${batch.chunk.minSize}")
+    int minChunkSize;
+    @Value("${batch.chunk.initialSize}")
+    int initialChunkSize;
+    @Value("${batch.chunk.targetCommitMillis}")
+    long targetCommitMillis;
+    @Value("${batch.chunk.heapUsageCeiling}")
+    double heapUsageCeiling;
+    @Value("${batch.delta.enabled}")
+    boolean deltaEnabled;
+    @Value("${batch.delta.keyProperties}")
+    String[] deltaKeyProperties;
+    @Value("${batch.delta.indexFile}")
+    String deltaIndexFile;
+    @Value("${batch.delta.expectedRows}")
+    long deltaExpectedRows;
+    @Value("${batch.dedupe.enabled}")
+    boolean dedupeEnabled;
+    @Value("${batch.dedupe.keyProperties}")
+    String[] dedupeKeyProperties;
+    @Value("${batch.dedupe.filterFile}")
+    String dedupeFilterFile;
+    @Value("${batch.dedupe.expectedRows}")
+    long dedupeExpectedRows;
+    @Value("${batch.dedupe.falsePositiveRate}")
+    double dedupeFalsePositiveRate;
+    @Value("${batch.faultTolerant.enabled}")
+    boolean faultTolerant;
+    @Value("${batch.faultTolerant.skipLimit}")
+    int skipLimit;
+    @Value("${batch.faultTolerant.chunkRetryLimit}")
+    int chunkRetryLimit;
+    @Value("${batch.faultTolerant.rejectFile}")
+    String rejectFile;
+    @Value("${batch.staging.enabled}")
+    boolean stagingEnabled;
+    @Value("${batch.staging.table}")
+    String stagingTableName;
+
     /**
      * 用于step作用域的beans的一个方便的注解，其指定了默认的代理模式（proxyMode），因此不必在每个bean定义中再明确指定。
      * <p>
@@ -63,16 +209,27 @@ public class BatchConfig {
      */
     @Bean
     // Since you put the reader in StepScope, the bean return type should be the implementing type FlatFileItemReader
+    // (or at least ItemStreamReader, so that the proxy is registered as a stream)
     // otherwise，will issues：“ReaderNotOpenException: Reader must be open before it can be read”
     @StepScope
-    public FlatFileItemReader<Person> reader(@Value("#{jobParameters['input.file.name']}") String pathToFile) {
+    public ItemStreamReader<Person> reader(@Value("#{jobParameters['input.file.name']}") String pathToFile) throws IOException {
+        if (InputShards.isSharded(pathToFile)) {
+            // 目录、通配符或.gz文件：各分片并行解压、解析，分别记录读取进度
+            return shardedPersonReader(pathToFile);
+        }
+        if (mappedReader) {
+            // 内存映射 + 手写映射，替代 DelimitedLineTokenizer → FieldSet → BeanWrapperFieldSetMapper
+            return mappedPersonReader(inputResource(pathToFile), 0, -1);
+        }
         /*
             可重用的ItemReader，用于从输入setResource(Resource)中读取行。
             行（Line）由setRecordSeparatorPolicy(RecordSeparatorPolicy)定义，并使用setLineMapper(LineMapper)映射到Item。
             如果在item映射期间抛出异常，则将其重新抛出为FlatFileParseException，添加有关有问题的行及其行号的信息。
          */
         FlatFileItemReader<Person> reader = new FlatFileItemReader<>();
-        reader.setResource(new ClassPathResource(pathToFile));
+        reader.setResource(inputResource(pathToFile));
+        // 输入文件为UTF-8（与MappedDelimitedItemReader一致），不依赖平台默认编码
+        reader.setEncoding(INPUT_ENCODING);
         /*
             设置决定是否为ExecutionContext保存内部数据的标志。
             仅当您不想保存此Stream中的任何状态，并且您不需要它可以重新启动，将其切换为false。
@@ -81,17 +238,7 @@ public class BatchConfig {
             等价于 SynchronizedItemStreamReader
          */
 //        reader.setSaveState(false);
-        reader.setLineMapper(new DefaultLineMapper<Person>() {
-            {
-                setLineTokenizer(new DelimitedLineTokenizer() {{
-//                    setDelimiter(",");
-                    setNames(new String[]{"name", "age", "nation", "address"});
-                }});
-                setFieldSetMapper(new BeanWrapperFieldSetMapper<Person>() {{
-                    setTargetType(Person.class);
-                }});
-            }
-        });
+        reader.setLineMapper(personLineMapper());
 
         /*
             这是一个带有同步的ItemReader.read()方法的简单ItemStreamReader装饰器 - 它使非线程安全的ItemReader成为线程安全的。
@@ -99,6 +246,8 @@ public class BatchConfig {
             这里有一些关于这个类背后动机的链接：
             -  http://projects.spring.io/spring-batch/faq.html#threading-reader
             -  http://stackoverflow.com/a/20002493/2910265}
+
+            多线程且需要重启时，使用 rangeReader（CommittedRangeItemReader）和 multiThreadedStep
          */
 //        SynchronizedItemStreamReader<Person> syncReader = new SynchronizedItemStreamReader<>();
 //        syncReader.setDelegate(reader);
@@ -106,27 +255,500 @@ public class BatchConfig {
         return reader;
     }
 
-    @SuppressWarnings("unchecked")
+    /**
+     * 分片reader，分片按文件名排序，每个分片的读取进度分别保存在ExecutionContext中
+     *
+     * @param location 目录、通配符或.gz文件
+     * @return
+     * @throws IOException 没有匹配的文件时
+     */
+    private ShardedItemReader<Person> shardedPersonReader(String location) throws IOException {
+        ShardedItemReader<Person> reader = new ShardedItemReader<>();
+        reader.setShards(InputShards.resolve(location));
+        reader.setEncoding(INPUT_ENCODING);
+        reader.setLineMapper(personLineMapper());
+        reader.setThreads(shardThreads);
+        reader.setQueueCapacity(shardQueueCapacity);
+        return reader;
+    }
+
+    /**
+     * 内存映射reader，读取位置（字节偏移和行数）保存在ExecutionContext中，重启时直接定位
+     *
+     * @param resource 需要能解析为文件系统中的文件
+     * @param start    起始字节（包含）
+     * @param end      结束字节（不包含），-1表示到文件末尾
+     * @return
+     */
+    private MappedDelimitedItemReader<Person> mappedPersonReader(Resource resource, long start, long end) {
+        MappedDelimitedItemReader<Person> reader = new MappedDelimitedItemReader<>();
+        reader.setResource(resource);
+        reader.setMapper(new PersonBytesMapper());
+        reader.setRange(start, end);
+        return reader;
+    }
+
+    /**
+     * 输入文件：不带前缀时为classpath中的资源（如 people.csv），也可以使用 file:、http: 等URL前缀
+     *
+     * @param location
+     * @return
+     */
+    private static Resource inputResource(String location) {
+        return new DefaultResourceLoader().getResource(location);
+    }
+
+    static LineMapper<Person> personLineMapper() {
+        return new DefaultLineMapper<Person>() {
+            {
+                setLineTokenizer(new DelimitedLineTokenizer() {{
+//                    setDelimiter(",");
+                    setNames(new String[]{"name", "age", "nation", "address"});
+                }});
+                setFieldSetMapper(new BeanWrapperFieldSetMapper<Person>() {{
+                    setTargetType(Person.class);
+                }});
+            }
+        };
+    }
+
+    /**
+     * 分区reader：只读取 {@link LineRangePartitioner} 分配给当前分区的字节区间。
+     * <p>
+     * 每个分区都有自己的StepExecution，FlatFileItemReader的读取位置保存在各自的ExecutionContext中，
+     * 因此分区之间互不影响，且可以各自重启。
+     * <p>
+     * 记录的行号（拒绝文件中的行号）为文件中的行号：分区内的序号加上区间第一行的行号。
+     *
+     * @param pathToFile
+     * @param start      区间起始字节（包含）
+     * @param end        区间结束字节（不包含）
+     * @param firstLine  区间第一行的行号，没有时（切分时未记录）为分区内的序号
+     * @return
+     */
+    @Bean
+    @StepScope
+    public ItemStreamReader<Person> partitionReader(@Value("#{jobParameters['input.file.name']}") String pathToFile,
+                                                    @Value("#{stepExecutionContext['partition.start']}") Long start,
+                                                    @Value("#{stepExecutionContext['partition.end']}") Long end,
+                                                    @Value("#{stepExecutionContext['partition.firstLine']}") Long firstLine) {
+        final long lineOffset = firstLine == null ? 0 : firstLine - 1;
+        if (mappedReader) {
+            MappedDelimitedItemReader<Person> reader = mappedPersonReader(inputResource(pathToFile), start, end);
+            reader.setFirstLine(lineOffset + 1);
+            return reader;
+        }
+        FlatFileItemReader<Person> reader = new FlatFileItemReader<Person>() {
+            @Override
+            public Person read() throws Exception {
+                Person person = super.read();
+                if (person != null) {
+                    // 分区内的序号（区间内没有跳过的行）
+                    person.setItemCount((int) (lineOffset + person.getLineNumber()));
+                }
+                return person;
+            }
+        };
+        reader.setResource(new ByteRangeResource(inputResource(pathToFile), start, end));
+        reader.setEncoding(INPUT_ENCODING);
+        reader.setLineMapper(personLineMapper());
+        return reader;
+    }
+
+    /**
+     * 多线程step的reader：工作线程各自领取文件中的块，已提交的字节区间保存在ExecutionContext中，重启时跳过
+     *
+     * @param pathToFile 需能解析为文件系统中的文件
+     * @param blockSize  块的字节数
+     * @return
+     */
+    @Bean
+    @StepScope
+    public CommittedRangeItemReader<Person> rangeReader(@Value("#{jobParameters['input.file.name']}") String pathToFile,
+                                                        @Value("${batch.multiThreaded.blockSize}") long blockSize) {
+        Assert.isTrue(!InputShards.isSharded(pathToFile), "multiThreadedStep requires a single uncompressed file: " + pathToFile);
+        CommittedRangeItemReader<Person> reader = new CommittedRangeItemReader<>();
+        reader.setResource(inputResource(pathToFile));
+        reader.setEncoding(INPUT_ENCODING);
+        reader.setLineMapper(personLineMapper());
+        reader.setBlockSize(blockSize);
+        return reader;
+    }
+
+    /**
+     * 将输入文件按换行符对齐的字节区间切分为多个分区
+     *
+     * @param pathToFile
+     * @return
+     */
+    @Bean
+    @StepScope
+    public LineRangePartitioner partitioner(@Value("#{jobParameters['input.file.name']}") String pathToFile) {
+        // 按字节区间分区只适用于单个未压缩的文件
+        Assert.isTrue(!InputShards.isSharded(pathToFile), "partitionedStep requires a single uncompressed file: " + pathToFile);
+        return new LineRangePartitioner(inputResource(pathToFile));
+    }
+
+    /**
+     * 执行分区的线程池，线程数即同时运行的分区数（同时占用的数据库连接数）
+     *
+     * @param poolSize
+     * @return
+     */
+    @Bean
+    public ThreadPoolTaskExecutor partitionTaskExecutor(@Value("${batch.partition.poolSize}") int poolSize) {
+        ThreadPoolTaskExecutor taskExecutor = new ThreadPoolTaskExecutor();
+        taskExecutor.setCorePoolSize(poolSize);
+        taskExecutor.setMaxPoolSize(poolSize);
+        taskExecutor.setThreadNamePrefix("partition-");
+        return taskExecutor;
+    }
+
+    /**
+     * 批处理运行指标：各阶段延迟直方图、step吞吐量、队列深度、Druid连接池等待，通过 /metrics/batch 输出
+     *
+     * @param dataSource
+     * @param partitionTaskExecutor
+     * @return
+     */
+    @Bean
+    public BatchMetrics batchMetrics(DataSource dataSource, ThreadPoolTaskExecutor partitionTaskExecutor) {
+        BatchMetrics metrics = new BatchMetrics();
+        metrics.setDataSource(dataSource);
+        metrics.registerGauge("partition.activeCount", partitionTaskExecutor::getActiveCount);
+        metrics.registerGauge("partition.queueDepth",
+                () -> partitionTaskExecutor.getThreadPoolExecutor().getQueue().size());
+        return metrics;
+    }
+
+    /**
+     * 记录chunk step各阶段耗时的listener，作为StepExecutionListener注册时会同时注册为item和chunk的listener
+     *
+     * @param batchMetrics
+     * @return
+     */
+    @Bean
+    public MetricsListener metricsListener(BatchMetrics batchMetrics) {
+        return new MetricsListener(batchMetrics);
+    }
+
+    /**
+     * 多线程step执行chunk的线程池
+     *
+     * @param threads
+     * @return
+     */
+    @Bean
+    public ThreadPoolTaskExecutor stepTaskExecutor(@Value("${batch.multiThreaded.threads}") int threads) {
+        ThreadPoolTaskExecutor taskExecutor = new ThreadPoolTaskExecutor();
+        taskExecutor.setCorePoolSize(threads);
+        taskExecutor.setMaxPoolSize(threads);
+        taskExecutor.setThreadNamePrefix("chunk-");
+        return taskExecutor;
+    }
+
     @Bean
-    public ItemProcessor<Person, Person> processor() {
+    public ItemProcessor<Person, Person> processor(CodeDictionaryService codeDictionaryService,
+                                                   BatchMetrics batchMetrics,
+                                                   DataSource dataSource,
+                                                   PlatformTransactionManager transactionManager) throws IOException {
+        CsvItemProcessor processor = csvItemProcessor(codeDictionaryService, batchMetrics);
+        if (deltaEnabled) {
+            // 增量导入：校验、翻译后与行hash索引比较，只有新增和变化的行交给writer
+            DeltaItemProcessor<Person> deltaProcessor = new DeltaItemProcessor<>();
+            deltaProcessor.setDelegate(processor);
+            deltaProcessor.setRowHasher(personRowHasher());
+            deltaProcessor.setIndex(rowHashIndex());
+            if (dedupeEnabled) {
+                logger.warn("batch.dedupe.enabled is ignored in delta import, rows are upserted by key");
+            }
+            return deltaProcessor;
+        }
+        if (dedupeEnabled) {
+            // 精确检查查询的是person表，查不到本次已写入暂存表的行
+            Assert.isTrue(!stagingEnabled, "batch.staging.enabled does not support dedupe");
+            // 去重：按自然键过滤文件内、跨文件重复的行，计入filterCount
+            DuplicateFilterItemProcessor dedupeProcessor = new DuplicateFilterItemProcessor();
+            dedupeProcessor.setDelegate(processor);
+            dedupeProcessor.setKeyHasher(new PersonRowHasher(dedupeKeyProperties));
+            dedupeProcessor.setFilter(duplicateFilter());
+            dedupeProcessor.setDataSource(dataSource);
+            dedupeProcessor.setTransactionManager(transactionManager);
+            batchMetrics.registerGauge("dedupe.suppressed", dedupeProcessor::getSuppressedCount);
+            batchMetrics.registerGauge("dedupe.exactChecks", dedupeProcessor::getExactCheckCount);
+            return dedupeProcessor;
+        }
+        return processor;
+    }
+
+    /**
+     * 校验、码表翻译，行式step（processor）与按列step（columnarStep）共用
+     *
+     * @param codeDictionaryService
+     * @param batchMetrics
+     * @return
+     */
+    @SuppressWarnings("unchecked")
+    private CsvItemProcessor csvItemProcessor(CodeDictionaryService codeDictionaryService, BatchMetrics batchMetrics) {
         CsvItemProcessor processor = new CsvItemProcessor();
         processor.setValidator(csvBeanValidator());
+        processor.setMetrics(batchMetrics);
+        if (dictionaryEnabled) {
+            processor.setDictionaryService(codeDictionaryService);
+        }
         return processor;
     }
 
+    /**
+     * 去重使用的布隆过滤器，内存映射文件（堆外），跨job重启保留。只在开启去重时创建。
+     *
+     * @return
+     * @throws IOException
+     */
+    @Bean(destroyMethod = "close")
+    @Lazy
+    public ScalableBloomFilter duplicateFilter() throws IOException {
+        return ScalableBloomFilter.open(Paths.get(dedupeFilterFile), dedupeExpectedRows, dedupeFalsePositiveRate);
+    }
+
+    //===============================================
+    // 增量导入（batch.delta.enabled=true）
+    //===============================================
+
+    /**
+     * 行键hash → 行内容hash 索引，内存映射文件（堆外）。只在增量导入时创建。
+     *
+     * @return
+     * @throws IOException
+     */
+    @Bean(destroyMethod = "close")
+    @Lazy
+    public RowHashIndex rowHashIndex() throws IOException {
+        return RowHashIndex.open(Paths.get(deltaIndexFile), deltaExpectedRows);
+    }
+
+    @Bean
+    public PersonRowHasher personRowHasher() {
+        return new PersonRowHasher(deltaKeyProperties);
+    }
+
+    /**
+     * 删除输入文件中已不存在的行，扫描位置保存在tasklet中，因此为step作用域
+     *
+     * @param dataSource
+     * @param deleteBatchSize 每个事务删除的行数
+     * @return
+     * @throws IOException
+     */
+    @Bean
+    @StepScope
+    public DeltaDeleteTasklet deltaDeleteTasklet(DataSource dataSource,
+                                                 @Value("${batch.delta.deleteBatchSize}") int deleteBatchSize) throws IOException {
+        DeltaDeleteTasklet tasklet = new DeltaDeleteTasklet();
+        tasklet.setDataSource(dataSource);
+        tasklet.setIndex(rowHashIndex());
+        tasklet.setBatchSize(deleteBatchSize);
+        return tasklet;
+    }
+
+    /**
+     * 增量导入时在导入step之后执行
+     *
+     * @param stepBuilderFactory
+     * @param deltaDeleteTasklet
+     * @return
+     */
+    @Bean
+    public Step deltaDeleteStep(StepBuilderFactory stepBuilderFactory,
+                                DeltaDeleteTasklet deltaDeleteTasklet) {
+        return stepBuilderFactory.get("deltaDeleteStep")
+                .tasklet(deltaDeleteTasklet)
+                .build();
+    }
+
+    //===============================================
+    // 暂存表导入（batch.staging.enabled=true）
+    //===============================================
+
+    /**
+     * 导入step写入的表
+     *
+     * @return
+     */
+    private String writeTable() {
+        return stagingEnabled ? stagingTableName : "person";
+    }
+
+    /**
+     * SQL防火墙跳过的导入语句写入的表与导入step一致（基准测试中没有防火墙）
+     *
+     * @param wallFilter
+     */
+    @Autowired(required = false)
+    public void setWallFilter(TrustedWallFilter wallFilter) {
+        wallFilter.setTable(writeTable());
+    }
+
+    /**
+     * person表与暂存表，只在开启暂存表导入时创建
+     *
+     * @param dataSource
+     * @return
+     * @throws MetaDataAccessException
+     */
+    @Bean
+    @Lazy
+    public StagingTable stagingTable(DataSource dataSource) throws MetaDataAccessException {
+        return new StagingTable(dataSource, "person", stagingTableName);
+    }
+
+    /**
+     * job instance第一次执行前清空暂存表、删除其二级索引
+     *
+     * @param dataSource
+     * @param jobRepository 清空后立即保存job的ExecutionContext
+     * @return
+     * @throws MetaDataAccessException
+     */
+    @Bean
+    @Lazy
+    public StagingTableListener stagingTableListener(DataSource dataSource, JobRepository jobRepository) throws MetaDataAccessException {
+        return new StagingTableListener(stagingTable(dataSource), jobRepository);
+    }
+
+    /**
+     * 导入step之后执行：建索引并与person交换表名（swap），或 INSERT ... SELECT 并入person（merge）
+     *
+     * @param stagingTable
+     * @param mode         swap或merge
+     * @return
+     */
+    @Bean
+    @StepScope
+    public StagingSwapTasklet stagingSwapTasklet(StagingTable stagingTable,
+                                                 @Value("${batch.staging.mode}") String mode) {
+        StagingSwapTasklet tasklet = new StagingSwapTasklet();
+        tasklet.setStagingTable(stagingTable);
+        tasklet.setMode(StagingSwapTasklet.Mode.valueOf(mode.toUpperCase()));
+        return tasklet;
+    }
+
+    @Bean
+    public Step stagingSwapStep(StepBuilderFactory stepBuilderFactory,
+                                StagingSwapTasklet stagingSwapTasklet) {
+        return stepBuilderFactory.get("stagingSwapStep")
+                .tasklet(stagingSwapTasklet)
+                .build();
+    }
+
+    //===============================================
+    // 容错（batch.faultTolerant.enabled=true）
+    //===============================================
+
+    /**
+     * 跳过的记录写入的拒绝文件（TSV），记录按输入文件的列顺序以逗号分隔。只在开启容错时创建。
+     *
+     * @return
+     */
+    @Bean(destroyMethod = "close")
+    @Lazy
+    public RejectFileWriter<Person> rejectFileWriter() {
+        RejectFileWriter<Person> writer = new RejectFileWriter<>(Paths.get(rejectFile));
+        writer.setLineNumber(Person::getLineNumber);
+        writer.setLineAggregator(new DelimitedLineAggregator<Person>() {{
+            setFieldExtractor(new BeanWrapperFieldExtractor<Person>() {{
+                setNames(new String[]{"name", "age", "nation", "address"});
+            }});
+        }});
+        return writer;
+    }
+
+    /**
+     * chunk step的builder：开启容错时为 {@link BisectingStepBuilder}，校验失败的记录跳过，
+     * 写入失败的chunk二分定位失败的记录并跳过，跳过的记录写入 {@link #rejectFileWriter()}；
+     * 死锁、锁等待超时的chunk在新的事务中整体重新处理
+     *
+     * @param stepBuilderFactory
+     * @param name
+     * @param dataSource         chunk事务使用的DataSource，写入前后在其连接上建立savepoint
+     * @return
+     */
+    private SimpleStepBuilder<Person, Person> chunkStep(StepBuilderFactory stepBuilderFactory, String name, DataSource dataSource) {
+        if (!faultTolerant) {
+            return new SimpleStepBuilder<>(stepBuilderFactory.get(name));
+        }
+        return new BisectingStepBuilder<Person>(stepBuilderFactory.get(name))
+                .dataSource(dataSource)
+                .rejectWriter(rejectFileWriter())
+                .skipLimit(skipLimit)
+                .chunkRetryLimit(chunkRetryLimit);
+    }
+
+    /**
+     * 码表服务，step开始时批量加载 CODE_DICTIONARY，之后按版本定时刷新
+     *
+     * @param jdbcTemplate
+     * @return
+     */
+    @Bean
+    public CodeDictionaryService codeDictionaryService(JdbcTemplate jdbcTemplate) {
+        return new CodeDictionaryService(jdbcTemplate);
+    }
+
     @Bean
     public Validator csvBeanValidator() {
+        if (compiledValidator) {
+            // 启动时将Person上的约束编译为检查，校验通过时不创建对象；不支持的约束仍由Hibernate Validator校验
+            return new CompiledBeanValidator<>(Person.class);
+        }
         return new CsvBeanValidator<Person>();
     }
 
     @Bean
-    public ItemWriter<Person> writer(DataSource dataSource) {
+    public ItemWriter<Person> writer(DataSource dataSource,
+                                     @Value("${batch.writer.mode}") String writerMode) throws MetaDataAccessException, IOException {
+        /*
+            batch.writer.mode：
+                jdbc           - JdbcBatchItemWriter，适用于任何数据库
+                multiRowInsert - MySQL多行INSERT，单条语句不超过max_allowed_packet
+                loadData       - MySQL LOAD DATA LOCAL INFILE，chunk在内存中编码为TSV后流式发送
+            非MySQL数据库时回退为jdbc
+            暂存表导入时写入暂存表
+            增量导入时固定为按KEY_HASH upsert
+         */
+        if (deltaEnabled) {
+            Assert.isTrue(!stagingEnabled, "batch.staging.enabled does not support delta import");
+            UpsertItemWriter writer = new UpsertItemWriter();
+            writer.setDataSource(dataSource);
+            writer.setRowHasher(personRowHasher());
+            writer.setIndex(rowHashIndex());
+            return writer;
+        }
+        if (!"jdbc".equals(writerMode)) {
+            DatabaseType databaseType = DatabaseType.fromMetaData(dataSource);
+            if (databaseType != DatabaseType.MYSQL) {
+                logger.warn("Writer mode [{}] requires MySQL, database is {}, falling back to jdbc", writerMode, databaseType);
+            } else if ("multiRowInsert".equals(writerMode)) {
+                MultiRowInsertItemWriter writer = new MultiRowInsertItemWriter();
+                writer.setDataSource(dataSource);
+                writer.setTable(writeTable());
+                return writer;
+            } else if ("loadData".equals(writerMode)) {
+                LoadDataItemWriter writer = new LoadDataItemWriter();
+                writer.setDataSource(dataSource);
+                writer.setTable(writeTable());
+                return writer;
+            } else {
+                throw new IllegalArgumentException("Unknown writer mode: " + writerMode);
+            }
+        }
+
         JdbcBatchItemWriter<Person> writer = new JdbcBatchItemWriter<>();
 
         // interface ItemSqlParameterSourceProvider<T>
         writer.setItemSqlParameterSourceProvider(new BeanPropertyItemSqlParameterSourceProvider<>());
 
-        String sql = "insert into person (name, age, nation, address) " +
+        String sql = "insert into " + writeTable() + " (name, age, nation, address) " +
                 "values (:name, :age, :nation, :address)";
         writer.setSql(sql);
         writer.setDataSource(dataSource);
@@ -135,6 +757,13 @@ public class BatchConfig {
 
     /**
      * JobRepository
+     * <p>
+     * batch.repository.lowOverhead=true时（适用于高频调度的任务）：
+     * <ul>
+     * <li>BATCH_*_SEQ 按块分配ID（{@link BlockIncrementerFactory}），每 blockSize 个ID才访问一次序列表</li>
+     * <li>运行中step execution的更新按间隔合并，可选后台异步写入（{@link BufferedJobRepository}，崩溃一致性见该类说明）</li>
+     * </ul>
+     * ExecutionContext的序列化见 {@link #executionContextSerializer()}
      *
      * @param dataSource
      * @param transactionManager
@@ -147,9 +776,90 @@ public class BatchConfig {
             PlatformTransactionManager transactionManager) throws Exception {
         JobRepositoryFactoryBean jobRepositoryFactoryBean = new JobRepositoryFactoryBean();
         jobRepositoryFactoryBean.setDataSource(dataSource);
-        jobRepositoryFactoryBean.setDatabaseType(DatabaseType.MYSQL.getProductName());
+        // 按实际数据库选择元数据表的方言（如基准测试中使用的内嵌数据库），生产环境为MySQL
+        jobRepositoryFactoryBean.setDatabaseType(DatabaseType.fromMetaData(dataSource).getProductName());
         jobRepositoryFactoryBean.setTransactionManager(transactionManager);
-        return jobRepositoryFactoryBean.getObject();
+        jobRepositoryFactoryBean.setSerializer(executionContextSerializer());
+        if (!lowOverheadRepository) {
+            return jobRepositoryFactoryBean.getObject();
+        }
+
+        jobRepositoryFactoryBean.setIncrementerFactory(new BlockIncrementerFactory(dataSource, repositoryIdBlockSize));
+        BufferedJobRepository jobRepository = new BufferedJobRepository(jobRepositoryFactoryBean.getObject());
+        jobRepository.setUpdateIntervalMillis(repositoryUpdateIntervalMillis);
+        jobRepository.setContextUpdateIntervalMillis(repositoryContextUpdateIntervalMillis);
+        jobRepository.setAsyncWriteBehind(repositoryAsyncWriteBehind);
+        return jobRepository;
+    }
+
+    /**
+     * BATCH_*_EXECUTION_CONTEXT的序列化：batch.repository.compactContext=true时为 {@link CompactExecutionContextSerializer}
+     * （按类型分组的JSON、键的增量编码、可选压缩），它同时可以读取原XStream格式；否则为Spring Batch默认的XStream。
+     *
+     * @return
+     * @throws Exception
+     */
+    @Bean
+    public ExecutionContextSerializer executionContextSerializer() throws Exception {
+        if (!compactContext) {
+            XStreamExecutionContextStringSerializer serializer = new XStreamExecutionContextStringSerializer();
+            serializer.afterPropertiesSet();
+            return serializer;
+        }
+        CompactExecutionContextSerializer serializer = new CompactExecutionContextSerializer();
+        serializer.setCompressionThreshold(contextCompressionThreshold);
+        return serializer;
+    }
+
+    /**
+     * JobExplorer，与JobRepository使用同一个序列化（替代@EnableBatchProcessing中使用默认序列化的JobExplorer）
+     *
+     * @param dataSource
+     * @return
+     * @throws Exception
+     */
+    @Bean
+    public JobExplorer jobExplorer(DataSource dataSource) throws Exception {
+        JobExplorerFactoryBean jobExplorerFactoryBean = new JobExplorerFactoryBean();
+        jobExplorerFactoryBean.setDataSource(dataSource);
+        jobExplorerFactoryBean.setSerializer(executionContextSerializer());
+        jobExplorerFactoryBean.afterPropertiesSet();
+        return jobExplorerFactoryBean.getObject();
+    }
+
+    /**
+     * 元数据保留策略，由BatchScheduler按batch.retention.cron执行（batch.retention.enabled=true时）
+     *
+     * @param dataSource
+     * @param transactionManager
+     * @param retentionDays       已完成的instance的保留天数
+     * @param failedRetentionDays 可重启（FAILED、STOPPED等）的instance的保留天数
+     * @param keepLast            每个job总是保留的最新instance个数
+     * @param batchSize           每个事务清理的instance个数
+     * @param pauseMillis         批之间的暂停
+     * @param maxBatches          每次最多执行的批数，0表示不限
+     * @param archive             删除前复制到 *_ARCHIVE 表
+     * @return
+     */
+    @Bean
+    public JobMetadataRetention jobMetadataRetention(DataSource dataSource,
+                                                     PlatformTransactionManager transactionManager,
+                                                     @Value("${batch.retention.days}") int retentionDays,
+                                                     @Value("${batch.retention.failedDays}") int failedRetentionDays,
+                                                     @Value("${batch.retention.keepLast}") int keepLast,
+                                                     @Value("${batch.retention.batchSize}") int batchSize,
+                                                     @Value("${batch.retention.pauseMillis}") long pauseMillis,
+                                                     @Value("${batch.retention.maxBatches}") int maxBatches,
+                                                     @Value("${batch.retention.archive}") boolean archive) {
+        JobMetadataRetention retention = new JobMetadataRetention(dataSource, transactionManager);
+        retention.setRetentionDays(retentionDays);
+        retention.setFailedRetentionDays(failedRetentionDays);
+        retention.setKeepLast(keepLast);
+        retention.setBatchSize(batchSize);
+        retention.setPauseMillis(pauseMillis);
+        retention.setMaxBatches(maxBatches);
+        retention.setArchive(archive);
+        return retention;
     }
 
     /**
@@ -169,18 +879,87 @@ public class BatchConfig {
         return jobLauncher;
     }
 
+    /**
+     * 在后台线程中启动job，应用启动不等待job结束
+     *
+     * @param jobLauncher
+     * @param batchMetrics
+     * @param threads               执行job的线程数
+     * @param virtualThreads        JDK 21及以上时使用虚拟线程
+     * @param queueCapacity         排队的提交数上限，超过时拒绝
+     * @param defaultJobLimit       每个job同时执行的数量上限
+     * @param jobLimits             各job的上限，如 importJob:1,exportJob:2
+     * @param shutdownTimeoutMillis 关闭时等待运行中job结束的时间
+     * @return
+     */
+    @Bean
+    public JobLaunchService jobLaunchService(SimpleJobLauncher jobLauncher,
+                                             BatchMetrics batchMetrics,
+                                             @Value("${batch.launch.threads}") int threads,
+                                             @Value("${batch.launch.virtualThreads}") boolean virtualThreads,
+                                             @Value("${batch.launch.queueCapacity}") int queueCapacity,
+                                             @Value("${batch.launch.defaultJobLimit}") int defaultJobLimit,
+                                             @Value("${batch.launch.jobLimits}") String[] jobLimits,
+                                             @Value("${batch.launch.shutdownTimeoutMillis}") long shutdownTimeoutMillis) {
+        JobLaunchService service = new JobLaunchService();
+        service.setJobLauncher(jobLauncher);
+        service.setThreads(threads);
+        service.setVirtualThreads(virtualThreads);
+        service.setQueueCapacity(queueCapacity);
+        service.setDefaultJobLimit(defaultJobLimit);
+        Map<String, Integer> limits = new HashMap<>();
+        for (String jobLimit : jobLimits) {
+            if (jobLimit.trim().isEmpty()) {
+                continue;
+            }
+            String[] nameAndLimit = jobLimit.split(":");
+            Assert.isTrue(nameAndLimit.length == 2, "Invalid job limit '" + jobLimit + "', expected <job name>:<limit>");
+            limits.put(nameAndLimit[0].trim(), Integer.valueOf(nameAndLimit[1].trim()));
+        }
+        service.setJobLimits(limits);
+        service.setShutdownTimeoutMillis(shutdownTimeoutMillis);
+        batchMetrics.registerGauge("launch.running", service::getRunningCount);
+        batchMetrics.registerGauge("launch.queued", service::getQueuedCount);
+        return service;
+    }
+
     /**
      * Job
      *
      * @param jobBuilderFactory
      * @param step
+     * @param dataSource        暂存表导入时用于暂存表
+     * @param jobRepository     暂存表导入时用于保存job的ExecutionContext
      * @return
+     * @throws MetaDataAccessException
      */
     @Bean
-    public Job importJob(JobBuilderFactory jobBuilderFactory, Step step) {
+    public Job importJob(JobBuilderFactory jobBuilderFactory,
+                         Map<String, Step> steps,
+                         @Value("${batch.import.step}") String importStep,
+                         DataSource dataSource,
+                         JobRepository jobRepository) throws MetaDataAccessException {
+        // 通过 batch.import.step 选择导入使用的step：
+        // step（单线程）、partitionedStep（分区并行）、pipelinedStep（流水线）、multiThreadedStep（多线程chunk）、remotePartitionedStep（多JVM分区）、
+        // columnarStep（按列chunk）
+        Step step = steps.get(importStep);
+        Assert.notNull(step, "No step named '" + importStep + "', available: " + steps.keySet());
+        if ("columnarStep".equals(importStep)) {
+            // 按列processor、writer不维护行hash索引和布隆过滤器，也不写KEY_HASH，增量导入时deltaDeleteStep会删除person中的所有行
+            Assert.isTrue(!deltaEnabled && !dedupeEnabled && !faultTolerant,
+                    "columnarStep does not support batch.delta.enabled, batch.dedupe.enabled or batch.faultTolerant.enabled");
+        }
+        if ("remotePartitionedStep".equals(importStep)) {
+            // 行hash索引、布隆过滤器是各JVM本地的文件，其它JVM中的worker导入的行不会标记在manager的索引中，
+            // 增量导入时deltaDeleteStep会把这些行当作已删除
+            Assert.isTrue(!deltaEnabled && !dedupeEnabled,
+                    "remotePartitionedStep does not support batch.delta.enabled or batch.dedupe.enabled");
+        }
+        // 增量导入时，导入完成后删除输入文件中已不存在的行；暂存表导入时，导入完成后将暂存表换入（或并入）person
+        Step lastStep = deltaEnabled ? steps.get("deltaDeleteStep") : stagingEnabled ? steps.get("stagingSwapStep") : null;
         // 创建JobBuilder并初始化它的jobRepository
         // 注意，如果构建器用于@Bean定义的创建，则job名称和bean名称可能会有所不同
-        return jobBuilderFactory.get("importJob")
+        JobFlowBuilder flow = jobBuilderFactory.get("importJob")
                 // The name of the run id in the job parameters.  Defaults to "run.id".
                 // Increment the run.id parameter (starting with 1).
                 .incrementer(new RunIdIncrementer())
@@ -199,9 +978,102 @@ public class BatchConfig {
                         FlowJobBuilder 通过 start() 方法构造 JobFlowBuilder（FlowJobBuilder 作为parent传入构造函数）
                         最后返回 JobFlowBuilder
                  */
-                .flow(step)
+                .flow(step);
+        if (lastStep != null) {
+            flow.next(lastStep);
+        }
+        FlowJobBuilder job = flow
                 .end() // return FlowJobBuilder
-                .listener(csvJobListener())
+                .listener(csvJobListener());
+        if (stagingEnabled) {
+            job.listener(stagingTableListener(dataSource, jobRepository));
+        }
+        return job.build();
+    }
+
+    //===============================================
+    // 导出（exportJob）：person → CSV，内存占用与表的大小无关
+    //===============================================
+
+    /**
+     * 按主键顺序流式读取person（MySQL上为流式结果集）
+     *
+     * @param dataSource
+     * @param fetchSize  非MySQL数据库每次获取的行数
+     * @return
+     */
+    @Bean
+    @StepScope
+    public PersonCursorItemReader exportReader(DataSource dataSource,
+                                               @Value("${batch.export.fetchSize}") int fetchSize) {
+        PersonCursorItemReader reader = new PersonCursorItemReader();
+        reader.setDataSource(dataSource);
+        reader.setFetchSize(fetchSize);
+        return reader;
+    }
+
+    /**
+     * CSV writer，output.file.name以.gz结尾时输出gzip
+     *
+     * @param pathToFile 输出文件，文件路径或file: URL
+     * @param bufferSize 写缓冲区大小（字节）
+     * @return
+     * @throws IOException
+     */
+    @Bean
+    @StepScope
+    public CsvChannelItemWriter exportWriter(@Value("#{jobParameters['output.file.name']}") String pathToFile,
+                                             @Value("${batch.export.bufferSize}") int bufferSize) throws IOException {
+        Assert.hasText(pathToFile, "Job parameter output.file.name is required");
+        CsvChannelItemWriter writer = new CsvChannelItemWriter();
+        writer.setResource(new FileSystemResource(ResourceUtils.getFile(pathToFile)));
+        writer.setBufferSize(bufferSize);
+        return writer;
+    }
+
+    /**
+     * 导出step：读取、反向翻译码表、写入CSV，提交间隔为 batch.chunkSize。
+     * reader、writer的进度（最后的主键、文件长度）在同一次提交中保存，失败后重启从上次提交处继续。
+     *
+     * @param stepBuilderFactory
+     * @param exportReader
+     * @param exportWriter
+     * @param codeDictionaryService
+     * @param metricsListener
+     * @return
+     */
+    @Bean
+    public Step exportStep(StepBuilderFactory stepBuilderFactory,
+                           PersonCursorItemReader exportReader,
+                           CsvChannelItemWriter exportWriter,
+                           CodeDictionaryService codeDictionaryService,
+                           MetricsListener metricsListener) {
+        CsvExportItemProcessor processor = new CsvExportItemProcessor();
+        if (dictionaryEnabled) {
+            processor.setDictionaryService(codeDictionaryService);
+        }
+        // processor、writer同时是step的listener，由SimpleStepBuilder自动注册
+        return stepBuilderFactory.get("exportStep")
+                .<Person, Person>chunk(chunkSize)
+                .reader(exportReader)
+                .processor(processor)
+                .writer(exportWriter)
+                .listener((StepExecutionListener) metricsListener)
+                .build();
+    }
+
+    /**
+     * 导出job，参数 output.file.name 为输出文件
+     *
+     * @param jobBuilderFactory
+     * @param exportStep
+     * @return
+     */
+    @Bean
+    public Job exportJob(JobBuilderFactory jobBuilderFactory, Step exportStep) {
+        return jobBuilderFactory.get("exportJob")
+                .incrementer(new RunIdIncrementer())
+                .start(exportStep)
                 .build();
     }
 
@@ -215,14 +1087,44 @@ public class BatchConfig {
         return new CsvJobListener();
     }
 
+    /**
+     * chunk的完成策略：batch.chunk.adaptive=true时根据写入耗时和堆使用率自适应调整chunk大小，
+     * 否则为固定大小 batch.chunkSize。
+     * <p>
+     * 策略会记录step级别的统计信息，因此为step作用域，每个step（包括每个分区）各自一个实例。
+     *
+     * @return
+     */
+    @Bean
+    @StepScope
+    public AdaptiveCompletionPolicy completionPolicy() {
+        AdaptiveCompletionPolicy policy = new AdaptiveCompletionPolicy();
+        if (adaptiveChunk) {
+            policy.setMinChunkSize(minChunkSize);
+            policy.setMaxChunkSize(chunkSize);
+            policy.setInitialChunkSize(initialChunkSize);
+            policy.setTargetCommitMillis(targetCommitMillis);
+            policy.setHeapUsageCeiling(heapUsageCeiling);
+        } else {
+            // 固定的提交间隔，不收集、不保存adaptive.chunk.*统计信息
+            policy.setAdaptive(false);
+            policy.setMinChunkSize(chunkSize);
+            policy.setMaxChunkSize(chunkSize);
+            policy.setInitialChunkSize(chunkSize);
+        }
+        return policy;
+    }
+
     @Bean
     public Step step(StepBuilderFactory stepBuilderFactory,
                      ItemReader<Person> reader,
                      ItemWriter<Person> writer,
-                     ItemProcessor<Person, Person> processor) {
+                     ItemProcessor<Person, Person> processor,
+                     MetricsListener metricsListener,
+                     DataSource dataSource) {
         // 创建StepBuilder并初始化它的jobRepository和transactionManager
         // 注意，如果构建器用于@Bean定义的创建，则step名称和bean名称可能会有所不同
-        return stepBuilderFactory.get("step")
+        return chunkStep(stepBuilderFactory, "step", dataSource)
                 /*
                     构建一个在指定大小的块(chunks)中处理Item的Step。要将该Step扩展为容错，请在builder上调用SimpleStepBuilder.faultTolerant()方法。在大多数情况下，您需要参数化您对此方法的调用，以保证类型安全性，例如，
 
@@ -239,10 +1141,317 @@ public class BatchConfig {
                     Returns:
                     SimpleStepBuilder
                  */
-                .<Person, Person>chunk(65000)
+                .<Person, Person>chunk(completionPolicy())
                 .reader(reader)
                 .processor(processor)
                 .writer(writer)
+                .listener((ItemWriteListener<Object>) completionPolicy())
+                .listener((StepExecutionListener) completionPolicy())
+                .listener((StepExecutionListener) metricsListener)
+                .build();
+    }
+
+    /**
+     * 流水线tasklet：reader线程、processor线程池与写入（step线程）之间通过有界队列连接，
+     * 写入第N个chunk的同时读取、处理后续chunk。reader由tasklet负责open/close，只保存已提交chunk对应的读取位置。
+     *
+     * @param reader
+     * @param processor
+     * @param writer
+     * @param batchMetrics
+     * @param processorThreads processor线程数
+     * @param queueCapacity    已读取未写入的chunk数上限（背压）
+     * @return
+     */
+    @SuppressWarnings("unchecked")
+    @Bean
+    @StepScope
+    public PipelinedChunkTasklet<Person, Person> pipelinedTasklet(ItemStreamReader<Person> reader,
+                                                                  ItemProcessor<Person, Person> processor,
+                                                                  ItemWriter<Person> writer,
+                                                                  BatchMetrics batchMetrics,
+                                                                  @Value("${batch.pipeline.processorThreads}") int processorThreads,
+                                                                  @Value("${batch.pipeline.queueCapacity}") int queueCapacity) {
+        PipelinedChunkTasklet<Person, Person> tasklet = new PipelinedChunkTasklet<>();
+        tasklet.setReader(reader);
+        tasklet.setProcessor(processor);
+        tasklet.setWriter(writer);
+        tasklet.setChunkSize(chunkSize);
+        tasklet.setProcessorThreads(processorThreads);
+        tasklet.setQueueCapacity(queueCapacity);
+        tasklet.setMetrics(batchMetrics);
+        if (processor instanceof ItemWriteListener) {
+            // 例如去重processor在写入所在的事务结束时释放in-flight的键
+            tasklet.setWriteListener((ItemWriteListener<Person>) processor);
+        }
+        return tasklet;
+    }
+
+    /**
+     * 流水线step：每次tasklet执行写入并提交一个chunk
+     *
+     * @param stepBuilderFactory
+     * @param pipelinedTasklet
+     * @param processor
+     * @param metricsListener    只用于统计吞吐量，各阶段耗时由tasklet记录
+     * @return
+     */
+    @Bean
+    public Step pipelinedStep(StepBuilderFactory stepBuilderFactory,
+                              PipelinedChunkTasklet<Person, Person> pipelinedTasklet,
+                              ItemProcessor<Person, Person> processor,
+                              MetricsListener metricsListener) {
+        AbstractTaskletStepBuilder<TaskletStepBuilder> builder = stepBuilderFactory.get("pipelinedStep")
+                .tasklet(pipelinedTasklet)
+                .stream(pipelinedTasklet)
+                .listener((StepExecutionListener) metricsListener);
+        if (processor instanceof StepExecutionListener) {
+            // tasklet step不会自动注册processor，码表加载等仍需要step的开始、结束事件
+            builder.listener((StepExecutionListener) processor);
+        }
+        return builder.build();
+    }
+
+    /**
+     * 分区step的工作step，每个分区各自执行一次，reader为step作用域的 {@link #partitionReader}
+     *
+     * @param stepBuilderFactory
+     * @param partitionReader
+     * @param writer
+     * @param processor
+     * @param metricsListener
+     * @param dataSource
+     * @return
+     */
+    @Bean
+    public Step partitionWorkerStep(StepBuilderFactory stepBuilderFactory,
+                                    ItemReader<Person> partitionReader,
+                                    ItemWriter<Person> writer,
+                                    ItemProcessor<Person, Person> processor,
+                                    MetricsListener metricsListener,
+                                    DataSource dataSource) {
+        return chunkStep(stepBuilderFactory, "partitionWorkerStep", dataSource)
+                .<Person, Person>chunk(completionPolicy())
+                .reader(partitionReader)
+                .processor(processor)
+                .writer(writer)
+                .listener((ItemWriteListener<Object>) completionPolicy())
+                .listener((StepExecutionListener) completionPolicy())
+                .listener((StepExecutionListener) metricsListener)
+                .build();
+    }
+
+    /**
+     * 多线程step：多个chunk在 stepTaskExecutor 上并发执行（读取、处理、写入、提交），reader为 {@link #rangeReader}，
+     * 按已提交的字节区间重启。
+     * <p>
+     * chunk大小固定为 batch.chunkSize（AdaptiveCompletionPolicy保存了step级别的统计，不能被多个线程共用）。
+     *
+     * @param stepBuilderFactory
+     * @param rangeReader
+     * @param writer
+     * @param processor
+     * @param metricsListener
+     * @param stepTaskExecutor
+     * @param threads            同时执行的chunk数
+     * @param dataSource
+     * @return
+     */
+    @Bean
+    public Step multiThreadedStep(StepBuilderFactory stepBuilderFactory,
+                                  ItemReader<Person> rangeReader,
+                                  ItemWriter<Person> writer,
+                                  ItemProcessor<Person, Person> processor,
+                                  MetricsListener metricsListener,
+                                  TaskExecutor stepTaskExecutor,
+                                  @Value("${batch.multiThreaded.threads}") int threads,
+                                  DataSource dataSource) {
+        return chunkStep(stepBuilderFactory, "multiThreadedStep", dataSource)
+                .<Person, Person>chunk(chunkSize)
+                .reader(rangeReader)
+                .processor(processor)
+                .writer(writer)
+                .taskExecutor(stepTaskExecutor)
+                .throttleLimit(threads)
+                .listener((StepExecutionListener) metricsListener)
+                .build();
+    }
+
+    /**
+     * 分区step：由 {@link LineRangePartitioner} 切分输入文件，在 partitionTaskExecutor 上并行执行 partitionWorkerStep。
+     * <p>
+     * 每个分区使用独立的reader和独立的chunk事务，分区的StepExecution均记录在JobRepository中，
+     * 重启时只会重新执行失败（或未完成）的分区。
+     *
+     * @param stepBuilderFactory
+     * @param partitioner
+     * @param partitionWorkerStep
+     * @param partitionTaskExecutor
+     * @param gridSize            分区数
+     * @return
+     */
+    @Bean
+    public Step partitionedStep(StepBuilderFactory stepBuilderFactory,
+                                LineRangePartitioner partitioner,
+                                Step partitionWorkerStep,
+                                TaskExecutor partitionTaskExecutor,
+                                @Value("${batch.partition.gridSize}") int gridSize) {
+        return stepBuilderFactory.get("partitionedStep")
+                .partitioner(partitionWorkerStep.getName(), partitioner)
+                .step(partitionWorkerStep)
+                .taskExecutor(partitionTaskExecutor)
+                .gridSize(gridSize)
                 .build();
     }
+
+    //===============================================
+    // 按列chunk（batch.import.step=columnarStep）
+    //===============================================
+
+    /**
+     * 按列reader：每次读取 batch.chunkSize 行到一个 {@link PersonChunk}，读取位置的保存与重启同 {@link #mappedPersonReader}
+     *
+     * @param pathToFile
+     * @param dictionarySize nation、address字典的值个数上限
+     * @return
+     */
+    @Bean
+    @StepScope
+    public PersonChunkReader personChunkReader(@Value("#{jobParameters['input.file.name']}") String pathToFile,
+                                               @Value("${batch.columnar.dictionarySize}") int dictionarySize) {
+        Assert.isTrue(!InputShards.isSharded(pathToFile), "columnarStep requires a single uncompressed file: " + pathToFile);
+        PersonChunkReader reader = new PersonChunkReader();
+        reader.setResource(inputResource(pathToFile));
+        reader.setChunkRows(chunkSize);
+        reader.setDictionarySize(dictionarySize);
+        return reader;
+    }
+
+    /**
+     * 按列step：item为一个chunk的全部行（{@link PersonChunk}），每个事务读取、处理、写入一个PersonChunk，
+     * 提交间隔为固定的 batch.chunkSize 行。readCount、writeCount按行计数（见 {@link ColumnarStepBuilder}）。
+     * <p>
+     * 只用于普通导入，不支持增量导入、去重和容错（这些processor、writer按行工作），开启时importJob启动失败。
+     *
+     * @param stepBuilderFactory
+     * @param personChunkReader
+     * @param codeDictionaryService
+     * @param batchMetrics
+     * @param metricsListener
+     * @param dataSource
+     * @return
+     */
+    @Bean
+    public Step columnarStep(StepBuilderFactory stepBuilderFactory,
+                             PersonChunkReader personChunkReader,
+                             CodeDictionaryService codeDictionaryService,
+                             BatchMetrics batchMetrics,
+                             MetricsListener metricsListener,
+                             DataSource dataSource) {
+        PersonChunkProcessor processor = new PersonChunkProcessor(csvItemProcessor(codeDictionaryService, batchMetrics));
+        PersonChunkWriter writer = new PersonChunkWriter();
+        writer.setDataSource(dataSource);
+        writer.setTable(writeTable());
+        return new ColumnarStepBuilder(stepBuilderFactory.get("columnarStep"))
+                .reader(personChunkReader)
+                .processor(processor)
+                .writer(writer)
+                .listener((StepExecutionListener) processor)
+                .listener((StepExecutionListener) metricsListener)
+                .build();
+    }
+
+    //===============================================
+    // 远程分区（batch.import.step=remotePartitionedStep）
+    //===============================================
+
+    /**
+     * 分区工作表，manager写入分区描述，worker按租约领取
+     *
+     * @param dataSource JobRepository所在的数据库
+     * @return
+     */
+    @Bean
+    public PartitionWorkDao partitionWorkDao(DataSource dataSource) {
+        return new PartitionWorkDao(dataSource, 16);
+    }
+
+    /**
+     * 远程分区step：与partitionedStep相同地切分输入文件，分区由各JVM中的 {@link PartitionWorker} 领取执行，
+     * 输入文件需位于所有worker都能访问的位置（共享存储或相同路径）。
+     * 不支持增量导入和去重（行hash索引、布隆过滤器为各JVM本地的文件）。
+     *
+     * @param stepBuilderFactory
+     * @param partitioner
+     * @param partitionWorkerStep
+     * @param partitionWorkDao
+     * @param jobExplorer
+     * @param gridSize            分区数
+     * @param pollIntervalMillis  检查分区状态的间隔
+     * @param timeoutMillis       等待全部分区结束的时间，0表示不限
+     * @return
+     * @throws Exception
+     */
+    @Bean
+    public Step remotePartitionedStep(StepBuilderFactory stepBuilderFactory,
+                                      LineRangePartitioner partitioner,
+                                      Step partitionWorkerStep,
+                                      PartitionWorkDao partitionWorkDao,
+                                      JobExplorer jobExplorer,
+                                      @Value("${batch.partition.gridSize}") int gridSize,
+                                      @Value("${batch.remote.pollIntervalMillis}") long pollIntervalMillis,
+                                      @Value("${batch.remote.timeoutMillis}") long timeoutMillis) throws Exception {
+        DatabasePartitionHandler partitionHandler = new DatabasePartitionHandler();
+        partitionHandler.setWorkDao(partitionWorkDao);
+        partitionHandler.setJobExplorer(jobExplorer);
+        partitionHandler.setWorkerStep("partitionWorkerStep");
+        partitionHandler.setGridSize(gridSize);
+        partitionHandler.setPollIntervalMillis(pollIntervalMillis);
+        partitionHandler.setTimeoutMillis(timeoutMillis);
+        partitionHandler.afterPropertiesSet();
+        return stepBuilderFactory.get("remotePartitionedStep")
+                .partitioner(partitionWorkerStep.getName(), partitioner)
+                .partitionHandler(partitionHandler)
+                .build();
+    }
+
+    /**
+     * 远程分区的worker，batch.remote.worker.enabled=true时随应用上下文启动
+     *
+     * @param partitionWorkDao
+     * @param jobExplorer
+     * @param jobRepository
+     * @param steps
+     * @param workerEnabled
+     * @param threads            同时执行的分区数
+     * @param leaseMillis        租约时长
+     * @param pollIntervalMillis 没有可领取的分区时的等待时间
+     * @param maxAttempts        同一分区最多领取的次数
+     * @return
+     */
+    @Bean
+    public PartitionWorker partitionWorker(PartitionWorkDao partitionWorkDao,
+                                           JobExplorer jobExplorer,
+                                           JobRepository jobRepository,
+                                           Map<String, Step> steps,
+                                           @Value("${batch.remote.worker.enabled}") boolean workerEnabled,
+                                           @Value("${batch.remote.worker.threads}") int threads,
+                                           @Value("${batch.remote.leaseMillis}") long leaseMillis,
+                                           @Value("${batch.remote.pollIntervalMillis}") long pollIntervalMillis,
+                                           @Value("${batch.remote.maxAttempts}") int maxAttempts) {
+        // worker在本地的行hash索引、布隆过滤器上执行分区，见importJob
+        Assert.isTrue(!workerEnabled || (!deltaEnabled && !dedupeEnabled),
+                "batch.remote.worker.enabled does not support batch.delta.enabled or batch.dedupe.enabled");
+        PartitionWorker worker = new PartitionWorker();
+        worker.setWorkDao(partitionWorkDao);
+        worker.setJobExplorer(jobExplorer);
+        worker.setJobRepository(jobRepository);
+        worker.setSteps(steps);
+        worker.setAutoStartup(workerEnabled);
+        worker.setThreads(threads);
+        worker.setLeaseMillis(leaseMillis);
+        worker.setPollIntervalMillis(pollIntervalMillis);
+        worker.setMaxAttempts(maxAttempts);
+        return worker;
+    }
 }
@@ -1,20 +1,24 @@
 package com.github.fnpac.batch;
 
+import com.github.fnpac.batch.delta.FileFingerprints;
+import com.github.fnpac.batch.launch.JobLaunchService;
+import com.github.fnpac.batch.reader.InputShards;
+import com.github.fnpac.batch.retention.JobMetadataRetention;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.batch.core.Job;
 import org.springframework.batch.core.JobParameters;
 import org.springframework.batch.core.JobParametersBuilder;
-import org.springframework.batch.core.JobParametersInvalidException;
-import org.springframework.batch.core.launch.JobLauncher;
+import org.springframework.batch.core.explore.JobExplorer;
 import org.springframework.batch.core.launch.support.RunIdIncrementer;
-import org.springframework.batch.core.repository.JobExecutionAlreadyRunningException;
-import org.springframework.batch.core.repository.JobInstanceAlreadyCompleteException;
-import org.springframework.batch.core.repository.JobRestartException;
 import org.springframework.beans.factory.InitializingBean;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.scheduling.annotation.EnableScheduling;
 import org.springframework.scheduling.annotation.Scheduled;
 
+import java.io.IOException;
 import java.util.UUID;
 
 /**
@@ -24,23 +28,69 @@ import java.util.UUID;
 @EnableScheduling
 public class BatchScheduler implements InitializingBean {
 
+    private static final Logger logger = LoggerFactory.getLogger(BatchScheduler.class);
+
     private final RunIdIncrementer runIdIncrementer = new RunIdIncrementer();
 
-    private final JobLauncher jobLauncher;
+    private final JobLaunchService jobLaunchService;
     private final Job importJob;
+    private final JobExplorer jobExplorer;
+    private final JobMetadataRetention jobMetadataRetention;
+
+    @Value("${batch.delta.enabled}")
+    boolean deltaEnabled;
+    @Value("${batch.retention.enabled}")
+    boolean retentionEnabled;
 
     @Autowired
-    public BatchScheduler(JobLauncher jobLauncher, Job importJob) {
-        this.jobLauncher = jobLauncher;
+    public BatchScheduler(JobLaunchService jobLaunchService, Job importJob, JobExplorer jobExplorer,
+                          JobMetadataRetention jobMetadataRetention) {
+        this.jobLaunchService = jobLaunchService;
         this.importJob = importJob;
+        this.jobExplorer = jobExplorer;
+        this.jobMetadataRetention = jobMetadataRetention;
     }
 
 //    @Scheduled(fixedDelay = 1000)
-    public void batchRun() throws JobParametersInvalidException, JobExecutionAlreadyRunningException, JobRestartException, JobInstanceAlreadyCompleteException {
+    public void batchRun() {
 
         String path = "people.csv";
 
-        JobParameters jobParameters = new JobParametersBuilder()
+        // 在后台线程中计算job参数（增量导入时需要读取整个输入文件）并执行job，不阻塞应用启动
+        jobLaunchService.submit(importJob, () -> importParameters(path))
+                .whenComplete((jobExecution, e) -> {
+                    if (e != null) {
+                        logger.error("Import of {} failed to launch", path, e);
+                    } else if (jobExecution != null) {
+                        logger.info("Import of {} finished: {}", path, jobExecution.getStatus());
+                    }
+                });
+    }
+
+    /**
+     * 清理超过保留期的Spring Batch元数据，见 {@link JobMetadataRetention}
+     */
+    @Scheduled(cron = "${batch.retention.cron}")
+    public void retentionRun() {
+        if (!retentionEnabled) {
+            return;
+        }
+        try {
+            jobMetadataRetention.purge();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (RuntimeException e) {
+            // 已提交的批不回滚，下一次从头扫描
+            logger.error("Purging batch metadata failed", e);
+        }
+    }
+
+    /**
+     * @return null表示跳过（输入文件与最近一次完成的导入相同）
+     */
+    private JobParameters importParameters(String path) throws IOException {
+
+        JobParametersBuilder builder = new JobParametersBuilder()
                 /*
                     确保每次任务执行jobParameters不一样，否则重复执行任务时，会报任务已存在错误。
 
@@ -53,13 +103,20 @@ public class BatchScheduler implements InitializingBean {
                 .addString("uid", UUID.randomUUID().toString() + "@" + System.currentTimeMillis())
                 // 2. 通过runIdIncrementer，但是当项目重启时，该方法则还是会不可避免的出现“任务已存在错误”，因为jobParameters会重置，"run.id"又从1开始计数
 //                .addLong("run.id", 0L) // 可以省略，runIdIncrementer 默认从0开始
-                .addString("input.file.name", path)
-                .toJobParameters();
-//        for (int i = 0; i < 3; i++) {// 多次执行job
-            // 2. 通过runIdIncrementer
-//            jobParameters = runIdIncrementer.getNext(jobParameters);
-            jobLauncher.run(importJob, jobParameters);
-//        }
+                .addString(FileFingerprints.FILE_PARAMETER, path);
+        if (deltaEnabled) {
+            // 增量导入：文件内容与最近一次完成的导入相同时不启动job
+            String fingerprint = FileFingerprints.sha256(InputShards.resolve(path));
+            if (FileFingerprints.isUnchanged(jobExplorer, importJob.getName(), path, fingerprint)) {
+                logger.info("Skipping {}, content unchanged since the last completed import (sha256 {})", path, fingerprint);
+                return null;
+            }
+            builder.addString(FileFingerprints.FINGERPRINT_PARAMETER, fingerprint);
+        }
+        JobParameters jobParameters = builder.toJobParameters();
+        // 2. 通过runIdIncrementer
+//        jobParameters = runIdIncrementer.getNext(jobParameters);
+        return jobParameters;
     }
 
     @Override
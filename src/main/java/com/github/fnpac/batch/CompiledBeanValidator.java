@@ -0,0 +1,359 @@
+package com.github.fnpac.batch;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.batch.item.validator.ValidationException;
+
+import javax.validation.Constraint;
+import javax.validation.ConstraintViolation;
+import javax.validation.Valid;
+import javax.validation.constraints.AssertFalse;
+import javax.validation.constraints.AssertTrue;
+import javax.validation.constraints.Max;
+import javax.validation.constraints.Min;
+import javax.validation.constraints.NotNull;
+import javax.validation.constraints.Size;
+import java.lang.annotation.Annotation;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Array;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * {@link CsvBeanValidator} 的预编译版本，可直接替换 csvBeanValidator bean。
+ * <p>
+ * 启动时读取目标类字段上的Bean Validation注解，将支持的约束（{@link NotNull}、{@link Size}、{@link Min}、{@link Max}、
+ * {@link AssertTrue}、{@link AssertFalse}）编译为基于MethodHandle的检查，校验通过时不创建任何对象：
+ * 基本类型字段通过 (Object)long 形式的MethodHandle读取，不会装箱。
+ * <p>
+ * 其余情况交给Hibernate Validator：
+ * <ul>
+ * <li>校验不通过时，调用 validator.validate(t) 生成与 CsvBeanValidator 完全相同的错误信息</li>
+ * <li>不支持的约束（或指定了groups）所在的属性，使用 validator.validateProperty 单独校验</li>
+ * <li>存在类级别约束、@Valid级联校验或getter上的约束时，整个类退化为 validator.validate(t)</li>
+ * </ul>
+ * 注意：只识别注解，不识别 META-INF/validation.xml 中的约束映射。
+ */
+public class CompiledBeanValidator<T> extends CsvBeanValidator<T> {
+
+    private static final Logger logger = LoggerFactory.getLogger(CompiledBeanValidator.class);
+
+    private final Class<T> targetType;
+
+    private Check[] checks;
+    private String[] fallbackProperties;
+    private boolean fallbackAll;
+
+    public CompiledBeanValidator(Class<T> targetType) {
+        this.targetType = targetType;
+    }
+
+    @Override
+    public void afterPropertiesSet() throws Exception {
+        super.afterPropertiesSet();
+        compile();
+    }
+
+    @Override
+    public void validate(T t) throws ValidationException {
+        if (fallbackAll) {
+            super.validate(t);
+            return;
+        }
+        for (Check check : checks) {
+            if (!check.test(t)) {
+                // 失败路径交给Hibernate Validator，生成完整的错误信息
+                super.validate(t);
+                return;
+            }
+        }
+        for (String property : fallbackProperties) {
+            Set<ConstraintViolation<T>> constraintViolations = validator.validateProperty(t, property);
+            if (!constraintViolations.isEmpty()) {
+                super.validate(t);
+                return;
+            }
+        }
+    }
+
+    //===============================================
+    // 编译
+    //===============================================
+    private void compile() throws IllegalAccessException {
+        List<Check> checks = new ArrayList<>();
+        Set<String> fallbackProperties = new LinkedHashSet<>();
+        MethodHandles.Lookup lookup = MethodHandles.lookup();
+
+        for (Class<?> type = targetType; type != null && type != Object.class; type = type.getSuperclass()) {
+            if (hasConstraint(type.getAnnotations())) {
+                fallbackAll("class-level constraint on " + type.getName());
+                return;
+            }
+            for (Method method : type.getDeclaredMethods()) {
+                if (hasConstraint(method.getAnnotations()) || method.isAnnotationPresent(Valid.class)) {
+                    fallbackAll("constraint on method " + method);
+                    return;
+                }
+            }
+            for (Field field : type.getDeclaredFields()) {
+                if (Modifier.isStatic(field.getModifiers())) {
+                    continue;
+                }
+                if (field.isAnnotationPresent(Valid.class)) {
+                    fallbackAll("cascaded validation on field " + field);
+                    return;
+                }
+                List<Check> fieldChecks = new ArrayList<>();
+                boolean supported = true;
+                for (Annotation annotation : field.getAnnotations()) {
+                    if (!isConstraint(annotation)) {
+                        continue;
+                    }
+                    Check check = compile(lookup, field, annotation);
+                    if (check == null) {
+                        supported = false;
+                    } else {
+                        fieldChecks.add(check);
+                    }
+                }
+                if (supported) {
+                    checks.addAll(fieldChecks);
+                } else {
+                    fallbackProperties.add(field.getName());
+                }
+            }
+        }
+
+        this.checks = checks.toArray(new Check[checks.size()]);
+        this.fallbackProperties = fallbackProperties.toArray(new String[fallbackProperties.size()]);
+        logger.info("Compiled {} constraint checks for {}, {} properties validated by Hibernate Validator: {}",
+                this.checks.length, targetType.getName(), this.fallbackProperties.length, fallbackProperties);
+    }
+
+    private void fallbackAll(String reason) {
+        logger.info("{} is validated by Hibernate Validator: {}", targetType.getName(), reason);
+        this.fallbackAll = true;
+        this.checks = new Check[0];
+        this.fallbackProperties = new String[0];
+    }
+
+    /**
+     * @return 编译后的检查，不支持的约束返回null
+     */
+    private static Check compile(MethodHandles.Lookup lookup, Field field, Annotation annotation) throws IllegalAccessException {
+        if (!hasDefaultGroups(annotation)) {
+            return null;
+        }
+        Class<?> type = field.getType();
+        field.setAccessible(true);
+        MethodHandle getter = lookup.unreflectGetter(field);
+
+        if (annotation instanceof NotNull) {
+            return type.isPrimitive() ? Check.ALWAYS : new NotNullCheck(getter);
+        }
+        if (annotation instanceof Size) {
+            Size size = (Size) annotation;
+            if (CharSequence.class.isAssignableFrom(type) || Collection.class.isAssignableFrom(type)
+                    || Map.class.isAssignableFrom(type) || type.isArray()) {
+                return new SizeCheck(getter, size.min(), size.max());
+            }
+            return null;
+        }
+        if (annotation instanceof Min || annotation instanceof Max) {
+            boolean min = annotation instanceof Min;
+            long bound = min ? ((Min) annotation).value() : ((Max) annotation).value();
+            if (isIntegral(type)) {
+                return new PrimitiveRangeCheck(getter.asType(MethodType.methodType(long.class, Object.class)), min, bound);
+            }
+            if (type == Integer.class || type == Long.class || type == Short.class || type == Byte.class) {
+                return new BoxedRangeCheck(getter, min, bound);
+            }
+            return null;
+        }
+        if ((annotation instanceof AssertTrue || annotation instanceof AssertFalse)
+                && (type == boolean.class || type == Boolean.class)) {
+            return new BooleanCheck(getter, annotation instanceof AssertTrue);
+        }
+        return null;
+    }
+
+    private static boolean isIntegral(Class<?> type) {
+        return type == int.class || type == long.class || type == short.class || type == byte.class;
+    }
+
+    private static boolean hasDefaultGroups(Annotation annotation) {
+        try {
+            Method groups = annotation.annotationType().getMethod("groups");
+            return ((Class<?>[]) groups.invoke(annotation)).length == 0;
+        } catch (ReflectiveOperationException e) {
+            return false;
+        }
+    }
+
+    private static boolean hasConstraint(Annotation[] annotations) {
+        for (Annotation annotation : annotations) {
+            if (isConstraint(annotation)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 约束注解本身标注了@Constraint；约束的List容器（如@Size.List）视为约束，由于不支持而交给Hibernate Validator
+     */
+    private static boolean isConstraint(Annotation annotation) {
+        Class<? extends Annotation> annotationType = annotation.annotationType();
+        if (annotationType.isAnnotationPresent(Constraint.class)) {
+            return true;
+        }
+        try {
+            Class<?> valueType = annotationType.getMethod("value").getReturnType();
+            return valueType.isArray() && valueType.getComponentType().isAnnotation()
+                    && valueType.getComponentType().isAnnotationPresent(Constraint.class);
+        } catch (NoSuchMethodException e) {
+            return false;
+        }
+    }
+
+    //===============================================
+    // 检查
+    //===============================================
+    private static abstract class Check {
+
+        static final Check ALWAYS = new Check() {
+            @Override
+            boolean test(Object bean) {
+                return true;
+            }
+        };
+
+        abstract boolean test(Object bean);
+
+        static Object get(MethodHandle getter, Object bean) {
+            try {
+                return getter.invoke(bean);
+            } catch (Throwable e) {
+                throw new IllegalStateException("Unable to read property of " + bean.getClass().getName(), e);
+            }
+        }
+    }
+
+    private static final class NotNullCheck extends Check {
+
+        private final MethodHandle getter;
+
+        NotNullCheck(MethodHandle getter) {
+            this.getter = getter;
+        }
+
+        @Override
+        boolean test(Object bean) {
+            return get(getter, bean) != null;
+        }
+    }
+
+    private static final class SizeCheck extends Check {
+
+        private final MethodHandle getter;
+        private final int min;
+        private final int max;
+
+        SizeCheck(MethodHandle getter, int min, int max) {
+            this.getter = getter;
+            this.min = min;
+            this.max = max;
+        }
+
+        @Override
+        boolean test(Object bean) {
+            Object value = get(getter, bean);
+            if (value == null) {
+                return true;
+            }
+            int size;
+            if (value instanceof CharSequence) {
+                size = ((CharSequence) value).length();
+            } else if (value instanceof Collection) {
+                size = ((Collection<?>) value).size();
+            } else if (value instanceof Map) {
+                size = ((Map<?, ?>) value).size();
+            } else {
+                size = Array.getLength(value);
+            }
+            return size >= min && size <= max;
+        }
+    }
+
+    private static final class PrimitiveRangeCheck extends Check {
+
+        private final MethodHandle getter;
+        private final boolean min;
+        private final long bound;
+
+        PrimitiveRangeCheck(MethodHandle getter, boolean min, long bound) {
+            this.getter = getter;
+            this.min = min;
+            this.bound = bound;
+        }
+
+        @Override
+        boolean test(Object bean) {
+            long value;
+            try {
+                value = (long) getter.invokeExact(bean);
+            } catch (Throwable e) {
+                throw new IllegalStateException("Unable to read property of " + bean.getClass().getName(), e);
+            }
+            return min ? value >= bound : value <= bound;
+        }
+    }
+
+    private static final class BoxedRangeCheck extends Check {
+
+        private final MethodHandle getter;
+        private final boolean min;
+        private final long bound;
+
+        BoxedRangeCheck(MethodHandle getter, boolean min, long bound) {
+            this.getter = getter;
+            this.min = min;
+            this.bound = bound;
+        }
+
+        @Override
+        boolean test(Object bean) {
+            Number value = (Number) get(getter, bean);
+            if (value == null) {
+                return true;
+            }
+            return min ? value.longValue() >= bound : value.longValue() <= bound;
+        }
+    }
+
+    private static final class BooleanCheck extends Check {
+
+        private final MethodHandle getter;
+        private final boolean expected;
+
+        BooleanCheck(MethodHandle getter, boolean expected) {
+            this.getter = getter;
+            this.expected = expected;
+        }
+
+        @Override
+        boolean test(Object bean) {
+            Boolean value = (Boolean) get(getter, bean);
+            return value == null || value == expected;
+        }
+    }
+}
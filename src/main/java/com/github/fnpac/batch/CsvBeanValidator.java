@@ -14,7 +14,7 @@ import java.util.Set;
  */
 public class CsvBeanValidator<T> implements Validator<T>, InitializingBean {
 
-    private javax.validation.Validator validator;
+    protected javax.validation.Validator validator;
 
     @Override
     public void afterPropertiesSet() throws Exception {
@@ -25,8 +25,10 @@ public class CsvBeanValidator<T> implements Validator<T>, InitializingBean {
 
     @Override
     public void validate(T t) throws ValidationException {
-        Set<ConstraintViolation<T>> constraintViolations = validator.validate(t);
+        assertValid(validator.validate(t));
+    }
 
+    protected void assertValid(Set<ConstraintViolation<T>> constraintViolations) throws ValidationException {
         if (constraintViolations != null && constraintViolations.size() > 0) {
 
             StringBuilder message = new StringBuilder();
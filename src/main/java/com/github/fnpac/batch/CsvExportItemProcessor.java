@@ -0,0 +1,77 @@
+package com.github.fnpac.batch;
+
+import com.github.fnpac.batch.dictionary.CodeDictionaryService;
+import com.github.fnpac.domain.Person;
+import org.springframework.batch.core.ExitStatus;
+import org.springframework.batch.core.StepExecution;
+import org.springframework.batch.core.StepExecutionListener;
+import org.springframework.batch.item.ItemProcessor;
+
+/**
+ * 导出时的码表翻译，{@link CsvItemProcessor} 的反向：代码 → 名称，导出的文件可以重新导入。
+ * <p>
+ * 导入时未在码表中找到的民族被翻译为默认代码，这部分行无法还原原值，导出为默认代码对应的名称（码表中不存在时为代码本身）。
+ */
+public class CsvExportItemProcessor implements ItemProcessor<Person, Person>, StepExecutionListener {
+
+    private CodeDictionaryService dictionaryService;
+
+    /**
+     * 设置后通过码表反向翻译 nation、address，未设置时沿用内置的民族代码
+     *
+     * @param dictionaryService
+     */
+    public void setDictionaryService(CodeDictionaryService dictionaryService) {
+        this.dictionaryService = dictionaryService;
+    }
+
+    @Override
+    public Person process(Person item) {
+        item.setNation(translateNation(item.getNation()));
+        item.setAddress(translateAddress(item.getAddress()));
+        return item;
+    }
+
+    /**
+     * @param code 民族代码
+     * @return 民族，码表中不存在时为代码本身
+     */
+    public String translateNation(String code) {
+        if (dictionaryService != null) {
+            String label = dictionaryService.label(CsvItemProcessor.NATION, code);
+            return label != null ? label : code;
+        }
+        return "01".equals(code) ? "汉族" : code;
+    }
+
+    /**
+     * @param code 地址代码
+     * @return 码表中的地址，码表中不存在或未启用码表时为原值
+     */
+    public String translateAddress(String code) {
+        if (dictionaryService != null) {
+            String label = dictionaryService.label(CsvItemProcessor.ADDRESS, code);
+            if (label != null) {
+                return label;
+            }
+        }
+        return code;
+    }
+
+    /**
+     * step开始时加载（或按版本刷新）码表
+     *
+     * @param stepExecution
+     */
+    @Override
+    public void beforeStep(StepExecution stepExecution) {
+        if (dictionaryService != null) {
+            dictionaryService.refresh();
+        }
+    }
+
+    @Override
+    public ExitStatus afterStep(StepExecution stepExecution) {
+        return null;
+    }
+}
@@ -1,25 +1,112 @@
 package com.github.fnpac.batch;
 
+import com.github.fnpac.batch.dictionary.CodeDictionaryService;
+import com.github.fnpac.batch.metrics.BatchMetrics;
 import com.github.fnpac.domain.Person;
+import org.springframework.batch.core.ExitStatus;
+import org.springframework.batch.core.StepExecution;
+import org.springframework.batch.core.StepExecutionListener;
 import org.springframework.batch.item.validator.ValidatingItemProcessor;
 import org.springframework.batch.item.validator.ValidationException;
 
 /**
  * Created by liuchunlong on 2018/3/29.
  */
-public class CsvItemProcessor extends ValidatingItemProcessor<Person> {
+public class CsvItemProcessor extends ValidatingItemProcessor<Person> implements StepExecutionListener {
+
+    static final String NATION = "nation";
+    static final String ADDRESS = "address";
+
+    /**
+     * 码表中没有对应民族时使用的代码，与原先“非汉族”的代码一致
+     */
+    private static final String DEFAULT_NATION_CODE = "02";
+
+    private CodeDictionaryService dictionaryService;
+    private BatchMetrics metrics;
+
+    /**
+     * 设置后通过码表翻译 nation、address，未设置时沿用内置的民族代码
+     *
+     * @param dictionaryService
+     */
+    public void setDictionaryService(CodeDictionaryService dictionaryService) {
+        this.dictionaryService = dictionaryService;
+    }
+
+    /**
+     * 设置后记录校验（validate阶段）的耗时
+     *
+     * @param metrics
+     */
+    public void setMetrics(BatchMetrics metrics) {
+        this.metrics = metrics;
+    }
 
     @Override
     public Person process(Person item) throws ValidationException {
+        validate(item);
+        item.setNation(translateNation(item.getNation()));
+        item.setAddress(translateAddress(item.getAddress()));
+        return item;
+    }
 
-        super.process(item);
-
-        if (item.getNation().equals("汉族")) {
-            item.setNation("01");
+    /**
+     * 校验item，设置了metrics时记录耗时
+     *
+     * @param item
+     * @throws ValidationException
+     */
+    public void validate(Person item) throws ValidationException {
+        if (metrics != null) {
+            long start = System.nanoTime();
+            super.process(item);
+            metrics.record(BatchMetrics.Phase.VALIDATE, System.nanoTime() - start);
         } else {
-            item.setNation("02");
+            super.process(item);
         }
+    }
 
-        return item;
+    /**
+     * @param nation 输入中的民族
+     * @return 民族代码
+     */
+    public String translateNation(String nation) {
+        if (dictionaryService != null) {
+            String code = dictionaryService.translate(NATION, nation);
+            return code != null ? code : DEFAULT_NATION_CODE;
+        }
+        return nation.equals("汉族") ? "01" : "02";
+    }
+
+    /**
+     * @param address 输入中的地址
+     * @return 码表中的地址代码，码表中不存在或未启用码表时为原值
+     */
+    public String translateAddress(String address) {
+        if (dictionaryService != null) {
+            String code = dictionaryService.translate(ADDRESS, address);
+            if (code != null) {
+                return code;
+            }
+        }
+        return address;
+    }
+
+    /**
+     * processor同时是step的listener（SimpleStepBuilder会自动注册），在step开始时加载（或按版本刷新）码表
+     *
+     * @param stepExecution
+     */
+    @Override
+    public void beforeStep(StepExecution stepExecution) {
+        if (dictionaryService != null) {
+            dictionaryService.refresh();
+        }
+    }
+
+    @Override
+    public ExitStatus afterStep(StepExecution stepExecution) {
+        return null;
     }
 }
@@ -18,7 +18,7 @@ public class CsvJobListener implements JobExecutionListener {
     public void beforeJob(JobExecution jobExecution) {
         String jobName = jobExecution.getJobInstance().getJobName();
         String jobConfigurationName = jobExecution.getJobConfigurationName();
-        logger.info("Job[" + jobName + "/" + jobConfigurationName + "] start!~");
+        logger.info("Job[{}/{}] start!~", jobName, jobConfigurationName);
     }
 
     @Override
@@ -27,6 +27,6 @@ public class CsvJobListener implements JobExecutionListener {
         String jobConfigurationName = jobExecution.getJobConfigurationName();
         Date startTime = jobExecution.getStartTime();
         Date endTime = jobExecution.getEndTime();
-        logger.info("Job[" + jobName + "/" + jobConfigurationName + "] end! Spend times: " + (endTime.getTime() - startTime.getTime()) + "ms");
+        logger.info("Job[{}/{}] end! Spend times: {}ms", jobName, jobConfigurationName, endTime.getTime() - startTime.getTime());
     }
 }
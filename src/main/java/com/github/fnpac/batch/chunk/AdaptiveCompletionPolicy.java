@@ -0,0 +1,270 @@
+package com.github.fnpac.batch.chunk;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.batch.core.ExitStatus;
+import org.springframework.batch.core.ItemWriteListener;
+import org.springframework.batch.core.StepExecution;
+import org.springframework.batch.core.StepExecutionListener;
+import org.springframework.batch.item.ExecutionContext;
+import org.springframework.batch.repeat.RepeatContext;
+import org.springframework.batch.repeat.RepeatStatus;
+import org.springframework.batch.repeat.context.RepeatContextSupport;
+import org.springframework.batch.repeat.policy.CompletionPolicySupport;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.management.MemoryUsage;
+import java.util.List;
+
+/**
+ * 自适应chunk大小的CompletionPolicy，替代固定的提交间隔 chunk(65000)。
+ * <p>
+ * 根据前面chunk实测的写入耗时，调整下一个chunk的大小，使单次提交的耗时接近 targetCommitMillis：
+ * <ul>
+ * <li>每条记录的写入耗时取指数加权平均，下一个chunk大小 = targetCommitMillis / 平均耗时</li>
+ * <li>每次最多扩大为原来的2倍，避免震荡；结果限制在 [minChunkSize, maxChunkSize] 之间</li>
+ * <li>读取过程中堆使用率超过 heapUsageCeiling 时提前结束当前chunk，并将后续chunk减半。
+ * 堆使用率取老年代最近一次GC后的占用（{@link MemoryPoolMXBean#getCollectionUsage()}），不计尚未回收的垃圾，
+ * 否则年轻代接近填满时（正常分配过程中）就会误判</li>
+ * </ul>
+ * 每个chunk结束后将当前chunk大小及统计信息写入StepExecution的ExecutionContext（{@link #CHUNK_SIZE_KEY} 等），
+ * 可以在 BATCH_STEP_EXECUTION_CONTEXT 中观察收敛过程，重启时也会从上次的chunk大小继续。
+ * <p>
+ * {@link #setAdaptive(boolean) adaptive} 为false时chunk大小固定为 initialChunkSize：不计时、不检查堆使用率，
+ * 也不写入上述统计信息（否则每个chunk都会使ExecutionContext变大，随step的状态一起序列化、保存）。
+ * <p>
+ * 需要同时注册为step的ItemWriteListener和StepExecutionListener；保存了step级别的状态，因此须为step作用域。
+ */
+public class AdaptiveCompletionPolicy extends CompletionPolicySupport implements ItemWriteListener<Object>, StepExecutionListener {
+
+    private static final Logger logger = LoggerFactory.getLogger(AdaptiveCompletionPolicy.class);
+
+    public static final String CHUNK_SIZE_KEY = "adaptive.chunk.size";
+    public static final String CHUNK_SIZE_MIN_KEY = "adaptive.chunk.size.min";
+    public static final String CHUNK_SIZE_MAX_KEY = "adaptive.chunk.size.max";
+    public static final String CHUNK_SIZE_HISTORY_KEY = "adaptive.chunk.size.history";
+    public static final String WRITE_MILLIS_PER_ITEM_KEY = "adaptive.write.millisPerItem";
+
+    private static final int HISTORY_SIZE = 32;
+    private static final int HEAP_CHECK_INTERVAL = 256;
+    private static final double SMOOTHING = 0.3;
+
+    /**
+     * 老年代：支持使用量阈值的堆内存池（eden、survivor不支持）；没有分代的收集器（如ZGC）为整个堆
+     */
+    private static final MemoryPoolMXBean TENURED_POOL = tenuredPool();
+
+    private int minChunkSize = 100;
+    private int maxChunkSize = 65000;
+    private int initialChunkSize = 1000;
+    private long targetCommitMillis = 1000;
+    private double heapUsageCeiling = 0.75;
+    private boolean adaptive = true;
+
+    private StepExecution stepExecution;
+    private volatile int chunkSize;
+    private double nanosPerItem = -1;
+    private long writeStart;
+    private int smallest = Integer.MAX_VALUE;
+    private int largest = 0;
+    private final int[] history = new int[HISTORY_SIZE];
+    private int historyCount = 0;
+
+    public void setMinChunkSize(int minChunkSize) {
+        this.minChunkSize = minChunkSize;
+    }
+
+    public void setMaxChunkSize(int maxChunkSize) {
+        this.maxChunkSize = maxChunkSize;
+    }
+
+    public void setInitialChunkSize(int initialChunkSize) {
+        this.initialChunkSize = initialChunkSize;
+    }
+
+    /**
+     * @param targetCommitMillis 期望的单个chunk写入耗时（毫秒）
+     */
+    public void setTargetCommitMillis(long targetCommitMillis) {
+        this.targetCommitMillis = targetCommitMillis;
+    }
+
+    /**
+     * @param heapUsageCeiling 堆使用率上限（0~1），超过时提前提交
+     */
+    public void setHeapUsageCeiling(double heapUsageCeiling) {
+        this.heapUsageCeiling = heapUsageCeiling;
+    }
+
+    /**
+     * @param adaptive false时chunk大小固定为 initialChunkSize，不收集、不保存统计信息
+     */
+    public void setAdaptive(boolean adaptive) {
+        this.adaptive = adaptive;
+    }
+
+    public int getChunkSize() {
+        return chunkSize;
+    }
+
+    //===============================================
+    // CompletionPolicy
+    //===============================================
+    @Override
+    public RepeatContext start(RepeatContext parent) {
+        if (chunkSize == 0) {
+            chunkSize = clamp(initialChunkSize);
+        }
+        return new AdaptiveContext(parent, chunkSize);
+    }
+
+    @Override
+    public void update(RepeatContext context) {
+        ((AdaptiveContext) context).increment();
+    }
+
+    @Override
+    public boolean isComplete(RepeatContext context, RepeatStatus result) {
+        return super.isComplete(context, result) || isComplete(context);
+    }
+
+    @Override
+    public boolean isComplete(RepeatContext context) {
+        AdaptiveContext adaptiveContext = (AdaptiveContext) context;
+        int count = adaptiveContext.getStartedCount();
+        if (count >= adaptiveContext.size) {
+            return true;
+        }
+        if (adaptive && count > 0 && count % HEAP_CHECK_INTERVAL == 0 && heapUsage() > heapUsageCeiling) {
+            // 堆内存紧张，提前提交当前chunk，后续chunk减半
+            chunkSize = clamp(Math.min(chunkSize, count) / 2);
+            logger.warn("Heap usage above {}, committing chunk early at {} items, next chunk size {}",
+                    heapUsageCeiling, count, chunkSize);
+            return true;
+        }
+        return false;
+    }
+
+    private static double heapUsage() {
+        if (TENURED_POOL == null) {
+            Runtime runtime = Runtime.getRuntime();
+            return (double) (runtime.totalMemory() - runtime.freeMemory()) / runtime.maxMemory();
+        }
+        MemoryUsage usage = TENURED_POOL.getCollectionUsage();
+        if (usage == null) {
+            return 0;
+        }
+        long max = usage.getMax() > 0 ? usage.getMax() : Runtime.getRuntime().maxMemory();
+        return (double) usage.getUsed() / max;
+    }
+
+    private static MemoryPoolMXBean tenuredPool() {
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP && pool.isUsageThresholdSupported()
+                    && pool.isCollectionUsageThresholdSupported()) {
+                return pool;
+            }
+        }
+        return null;
+    }
+
+    private int clamp(long size) {
+        return (int) Math.max(minChunkSize, Math.min(maxChunkSize, size));
+    }
+
+    //===============================================
+    // ItemWriteListener
+    //===============================================
+    @Override
+    public void beforeWrite(List<?> items) {
+        if (adaptive) {
+            writeStart = System.nanoTime();
+        }
+    }
+
+    @Override
+    public void afterWrite(List<?> items) {
+        if (!adaptive || items.isEmpty()) {
+            return;
+        }
+        double sample = (double) (System.nanoTime() - writeStart) / items.size();
+        nanosPerItem = nanosPerItem < 0 ? sample : SMOOTHING * sample + (1 - SMOOTHING) * nanosPerItem;
+
+        long target = (long) (targetCommitMillis * 1000000d / Math.max(nanosPerItem, 1d));
+        chunkSize = clamp(Math.min(target, 2L * chunkSize));
+
+        record(items.size());
+    }
+
+    @Override
+    public void onWriteError(Exception exception, List<?> items) {
+        // 失败的chunk会整体回滚，缩小后续chunk以减少重做的数据量
+        if (adaptive) {
+            chunkSize = clamp(chunkSize / 2);
+        }
+    }
+
+    private void record(int size) {
+        smallest = Math.min(smallest, size);
+        largest = Math.max(largest, size);
+        history[historyCount++ % HISTORY_SIZE] = size;
+
+        if (stepExecution != null) {
+            ExecutionContext executionContext = stepExecution.getExecutionContext();
+            executionContext.putInt(CHUNK_SIZE_KEY, chunkSize);
+            executionContext.putInt(CHUNK_SIZE_MIN_KEY, smallest);
+            executionContext.putInt(CHUNK_SIZE_MAX_KEY, largest);
+            executionContext.putString(CHUNK_SIZE_HISTORY_KEY, history());
+            executionContext.putDouble(WRITE_MILLIS_PER_ITEM_KEY, nanosPerItem / 1000000d);
+        }
+    }
+
+    /**
+     * @return 最近 {@link #HISTORY_SIZE} 个chunk的大小，按时间顺序以逗号分隔
+     */
+    private String history() {
+        StringBuilder builder = new StringBuilder();
+        int from = Math.max(0, historyCount - HISTORY_SIZE);
+        for (int i = from; i < historyCount; i++) {
+            if (i > from) {
+                builder.append(',');
+            }
+            builder.append(history[i % HISTORY_SIZE]);
+        }
+        return builder.toString();
+    }
+
+    //===============================================
+    // StepExecutionListener
+    //===============================================
+    @Override
+    public void beforeStep(StepExecution stepExecution) {
+        this.stepExecution = stepExecution;
+        ExecutionContext executionContext = stepExecution.getExecutionContext();
+        if (adaptive && executionContext.containsKey(CHUNK_SIZE_KEY)) {
+            // 重启时沿用上次收敛到的chunk大小
+            chunkSize = clamp(executionContext.getInt(CHUNK_SIZE_KEY));
+        }
+    }
+
+    @Override
+    public ExitStatus afterStep(StepExecution stepExecution) {
+        if (historyCount > 0) {
+            logger.info("Step[{}] adaptive chunk size: last={}, min={}, max={}, chunks={}",
+                    stepExecution.getStepName(), chunkSize, smallest, largest, historyCount);
+        }
+        return null;
+    }
+
+    private static class AdaptiveContext extends RepeatContextSupport {
+
+        private final int size;
+
+        AdaptiveContext(RepeatContext parent, int size) {
+            super(parent);
+            this.size = size;
+        }
+    }
+}
@@ -0,0 +1,53 @@
+package com.github.fnpac.batch.columnar;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * 一个chunk内自由文本列共享的字节区：各值的UTF-8字节依次追加到同一个数组中，按 (偏移, 长度) 引用。
+ * <p>
+ * chunk复用时 {@link #clear()} 只重置写入位置，数组保留，稳定后不再分配。
+ */
+public class ByteArena {
+
+    private byte[] bytes = new byte[64 * 1024];
+    private int size;
+
+    /**
+     * @return 追加的字节在字节区中的偏移
+     */
+    public int append(byte[] source, int start, int end) {
+        int length = end - start;
+        if (size + length > bytes.length) {
+            bytes = Arrays.copyOf(bytes, Math.max(size + length, bytes.length * 2));
+        }
+        System.arraycopy(source, start, bytes, size, length);
+        int offset = size;
+        size += length;
+        return offset;
+    }
+
+    public int append(String value) {
+        byte[] encoded = value.getBytes(StandardCharsets.UTF_8);
+        return append(encoded, 0, encoded.length);
+    }
+
+    public String string(int offset, int length) {
+        return new String(bytes, offset, length, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * @return 值的UTF-8字节的副本，不解码
+     */
+    public byte[] bytes(int offset, int length) {
+        return Arrays.copyOfRange(bytes, offset, offset + length);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public void clear() {
+        size = 0;
+    }
+}
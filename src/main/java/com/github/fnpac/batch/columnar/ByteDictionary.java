@@ -0,0 +1,144 @@
+package com.github.fnpac.batch.columnar;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.function.UnaryOperator;
+
+/**
+ * 低基数字符串列的字典：UTF-8字节 → 代码（从0开始连续分配），每个不同的值只保存一份字节和一个String。
+ * <p>
+ * 按字节直接查找（开放寻址），已有的值不会再解码为String；值的个数达到 maxSize 后不再加入，由调用方改为按原值保存。
+ * 字典属于一个step的reader，跨chunk复用，代码在step内保持不变。非线程安全。
+ */
+public class ByteDictionary {
+
+    private final int maxSize;
+
+    private byte[][] keys = new byte[16][];
+    private String[] values = new String[16];
+    /**
+     * 代码 → {@link #map} 映射后的代码 + 1，0表示尚未映射
+     */
+    private int[] mapped = new int[16];
+    /**
+     * 哈希表：槽位 → 代码 + 1，0表示空槽
+     */
+    private int[] table = new int[64];
+    private int size;
+
+    /**
+     * @param maxSize 值的个数上限
+     */
+    public ByteDictionary(int maxSize) {
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * @return [start, end) 对应的代码，字典已满且不存在该值时为-1
+     */
+    public int code(byte[] bytes, int start, int end) {
+        int hash = hash(bytes, start, end);
+        int mask = table.length - 1;
+        for (int slot = hash & mask; ; slot = (slot + 1) & mask) {
+            int entry = table[slot];
+            if (entry == 0) {
+                return size < maxSize ? add(Arrays.copyOfRange(bytes, start, end), slot) : -1;
+            }
+            byte[] key = keys[entry - 1];
+            if (key.length == end - start && equals(key, bytes, start)) {
+                return entry - 1;
+            }
+        }
+    }
+
+    /**
+     * @return 值对应的代码，字典已满且不存在该值时为-1
+     */
+    public int code(String value) {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        int code = code(bytes, 0, bytes.length);
+        if (code >= 0 && values[code] == null) {
+            values[code] = value;
+        }
+        return code;
+    }
+
+    public String value(int code) {
+        String value = values[code];
+        if (value == null) {
+            value = new String(keys[code], StandardCharsets.UTF_8);
+            values[code] = value;
+        }
+        return value;
+    }
+
+    /**
+     * 映射（如码表翻译）一个值，每个代码只调用一次 mapping，结果缓存在字典中。
+     * 同一个字典只能使用同一个映射。
+     *
+     * @return 映射后的值的代码，字典已满时为-1
+     */
+    public int map(int code, UnaryOperator<String> mapping) {
+        int target = mapped[code] - 1;
+        if (target < 0) {
+            target = code(mapping.apply(value(code)));
+            if (target < 0) {
+                return -1;
+            }
+            mapped[code] = target + 1;
+        }
+        return target;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    private int add(byte[] key, int slot) {
+        if (size == keys.length) {
+            int capacity = size * 2;
+            keys = Arrays.copyOf(keys, capacity);
+            values = Arrays.copyOf(values, capacity);
+            mapped = Arrays.copyOf(mapped, capacity);
+        }
+        int code = size++;
+        keys[code] = key;
+        table[slot] = code + 1;
+        if (size * 2 > table.length) {
+            rehash();
+        }
+        return code;
+    }
+
+    private void rehash() {
+        int[] rehashed = new int[table.length * 2];
+        int mask = rehashed.length - 1;
+        for (int code = 0; code < size; code++) {
+            byte[] key = keys[code];
+            int slot = hash(key, 0, key.length) & mask;
+            while (rehashed[slot] != 0) {
+                slot = (slot + 1) & mask;
+            }
+            rehashed[slot] = code + 1;
+        }
+        table = rehashed;
+    }
+
+    private static int hash(byte[] bytes, int start, int end) {
+        int hash = 1;
+        for (int i = start; i < end; i++) {
+            hash = 31 * hash + bytes[i];
+        }
+        // 打散低位，表长为2的幂
+        return hash ^ (hash >>> 16);
+    }
+
+    private static boolean equals(byte[] key, byte[] bytes, int start) {
+        for (int i = 0; i < key.length; i++) {
+            if (key[i] != bytes[start + i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,70 @@
+package com.github.fnpac.batch.columnar;
+
+import org.springframework.batch.core.StepContribution;
+import org.springframework.batch.core.step.builder.SimpleStepBuilder;
+import org.springframework.batch.core.step.builder.StepBuilderHelper;
+import org.springframework.batch.core.step.item.Chunk;
+import org.springframework.batch.core.step.item.ChunkOrientedTasklet;
+import org.springframework.batch.core.step.item.SimpleChunkProcessor;
+import org.springframework.batch.core.step.item.SimpleChunkProvider;
+import org.springframework.batch.core.step.tasklet.Tasklet;
+import org.springframework.util.Assert;
+
+import java.util.ArrayList;
+
+/**
+ * 按列step的builder：item为 {@link PersonChunk}，提交间隔固定为1个PersonChunk，其余与 {@link SimpleStepBuilder} 相同。
+ * <p>
+ * 框架按item计数，这里通过 {@link StepContribution} 补上每个PersonChunk中其余的行，使readCount、writeCount与行式step一致：
+ * <ul>
+ * <li>readCount：读取到PersonChunk时累加，与框架的读取计数一样，chunk回滚后重新处理缓冲中的item时不再累加</li>
+ * <li>writeCount：写入成功后累加，写入失败时不计</li>
+ * </ul>
+ * 计数由TaskletStep在chunk结束时合并到StepExecution，reader、writer不直接修改StepExecution。
+ */
+public class ColumnarStepBuilder extends SimpleStepBuilder<PersonChunk, PersonChunk> {
+
+    public ColumnarStepBuilder(StepBuilderHelper<?> parent) {
+        super(parent);
+        chunk(1);
+    }
+
+    @Override
+    protected Tasklet createTasklet() {
+        Assert.state(getReader() != null, "ItemReader must be provided");
+        Assert.state(getWriter() != null, "ItemWriter must be provided");
+        SimpleChunkProvider<PersonChunk> chunkProvider =
+                new SimpleChunkProvider<PersonChunk>(getReader(), createChunkOperations()) {
+                    @Override
+                    protected PersonChunk read(StepContribution contribution, Chunk<PersonChunk> chunk) throws Exception {
+                        PersonChunk item = super.read(contribution, chunk);
+                        if (item != null) {
+                            // 框架为这个item计1次
+                            for (int i = 1; i < item.size(); i++) {
+                                contribution.incrementReadCount();
+                            }
+                        }
+                        return item;
+                    }
+                };
+        SimpleChunkProcessor<PersonChunk, PersonChunk> chunkProcessor =
+                new SimpleChunkProcessor<PersonChunk, PersonChunk>(getProcessor(), getWriter()) {
+                    @Override
+                    protected void write(StepContribution contribution, Chunk<PersonChunk> inputs,
+                                         Chunk<PersonChunk> outputs) throws Exception {
+                        super.write(contribution, inputs, outputs);
+                        // 框架已按PersonChunk的个数计数
+                        int rows = 0;
+                        for (PersonChunk chunk : outputs) {
+                            rows += chunk.size();
+                        }
+                        contribution.incrementWriteCount(rows - outputs.size());
+                    }
+                };
+        chunkProvider.setListeners(new ArrayList<>(getItemListeners()));
+        chunkProcessor.setListeners(new ArrayList<>(getItemListeners()));
+        ChunkOrientedTasklet<PersonChunk> tasklet = new ChunkOrientedTasklet<>(chunkProvider, chunkProcessor);
+        tasklet.setBuffering(!isReaderTransactionalQueue());
+        return tasklet;
+    }
+}
@@ -0,0 +1,104 @@
+package com.github.fnpac.batch.columnar;
+
+import com.github.fnpac.batch.reader.PersonBytesMapper;
+import com.github.fnpac.domain.Person;
+
+import java.util.Arrays;
+
+/**
+ * 按列保存的一个chunk的Person，替代 {@code List<Person>}：
+ * <ul>
+ * <li>age：int[]</li>
+ * <li>nation、address：字典编码（{@link StringColumn} + {@link ByteDictionary}），低基数的值在整个step中只有一份</li>
+ * <li>name：自由文本，UTF-8字节保存在共享的 {@link ByteArena} 中</li>
+ * </ul>
+ * 每行只占若干个int和name的字节，不创建Person和String；chunk由reader复用，数组稳定后不再分配。
+ */
+public class PersonChunk {
+
+    private static final int FIELD_COUNT = 4;
+
+    private final ByteArena arena = new ByteArena();
+    private final StringColumn names;
+    private final StringColumn nations;
+    private final StringColumn addresses;
+    private int[] ages;
+    private int size;
+
+    PersonChunk(ByteDictionary nationDictionary, ByteDictionary addressDictionary, int capacity) {
+        this.names = new StringColumn(null, arena, capacity);
+        this.nations = new StringColumn(nationDictionary, arena, capacity);
+        this.addresses = new StringColumn(addressDictionary, arena, capacity);
+        this.ages = new int[capacity];
+    }
+
+    /**
+     * 追加一行，字段顺序为 name, age, nation, address（与 {@link PersonBytesMapper} 相同）
+     */
+    void add(byte[] line, int[] starts, int[] ends, int fieldCount) {
+        if (fieldCount != FIELD_COUNT) {
+            throw new IllegalArgumentException("Incorrect number of fields: expected " + FIELD_COUNT + ", actual " + fieldCount);
+        }
+        int age = PersonBytesMapper.parseInt(line, starts[1], ends[1]);
+        int row = size;
+        if (row == ages.length) {
+            int capacity = row * 2;
+            ages = Arrays.copyOf(ages, capacity);
+            names.ensureCapacity(capacity);
+            nations.ensureCapacity(capacity);
+            addresses.ensureCapacity(capacity);
+        }
+        ages[row] = age;
+        names.set(row, line, starts[0], ends[0]);
+        nations.set(row, line, starts[2], ends[2]);
+        addresses.set(row, line, starts[3], ends[3]);
+        size++;
+    }
+
+    void clear() {
+        size = 0;
+        arena.clear();
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public String getName(int row) {
+        return names.get(row);
+    }
+
+    public int getAge(int row) {
+        return ages[row];
+    }
+
+    public String getNation(int row) {
+        return nations.get(row);
+    }
+
+    public String getAddress(int row) {
+        return addresses.get(row);
+    }
+
+    public StringColumn names() {
+        return names;
+    }
+
+    public StringColumn nations() {
+        return nations;
+    }
+
+    public StringColumn addresses() {
+        return addresses;
+    }
+
+    /**
+     * 将一行的值填入person（复用同一个对象，例如用于校验），name需要解码
+     */
+    public void copyTo(int row, Person person) {
+        person.setName(names.get(row));
+        person.setAge(ages[row]);
+        person.setNation(nations.get(row));
+        person.setAddress(addresses.get(row));
+    }
+}
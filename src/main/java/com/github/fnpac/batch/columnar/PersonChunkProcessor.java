@@ -0,0 +1,65 @@
+package com.github.fnpac.batch.columnar;
+
+import com.github.fnpac.batch.CsvItemProcessor;
+import com.github.fnpac.domain.Person;
+import org.springframework.batch.core.ExitStatus;
+import org.springframework.batch.core.StepExecution;
+import org.springframework.batch.core.StepExecutionListener;
+import org.springframework.batch.item.ItemProcessor;
+
+import java.util.function.UnaryOperator;
+
+/**
+ * 按列处理：逐行校验，nation、address在列上原地翻译。
+ * <p>
+ * 校验、翻译规则与行式step相同，均委托给 {@link CsvItemProcessor}：
+ * <ul>
+ * <li>校验：每行的值填入同一个Person（只有name需要解码）后调用 {@link CsvItemProcessor#validate}，失败时整个chunk失败</li>
+ * <li>翻译：字典中的每个不同值只翻译一次（见 {@link StringColumn#map}），之后每行只替换一个int代码</li>
+ * </ul>
+ */
+public class PersonChunkProcessor implements ItemProcessor<PersonChunk, PersonChunk>, StepExecutionListener {
+
+    private final CsvItemProcessor delegate;
+    private final UnaryOperator<String> nationMapping;
+    private final UnaryOperator<String> addressMapping;
+
+    private final Person row = new Person();
+
+    public PersonChunkProcessor(CsvItemProcessor delegate) {
+        this.delegate = delegate;
+        this.nationMapping = delegate::translateNation;
+        this.addressMapping = delegate::translateAddress;
+    }
+
+    @Override
+    public PersonChunk process(PersonChunk chunk) throws Exception {
+        int size = chunk.size();
+        for (int i = 0; i < size; i++) {
+            chunk.copyTo(i, row);
+            delegate.validate(row);
+        }
+        StringColumn nations = chunk.nations();
+        StringColumn addresses = chunk.addresses();
+        for (int i = 0; i < size; i++) {
+            nations.map(i, nationMapping);
+            addresses.map(i, addressMapping);
+        }
+        return chunk;
+    }
+
+    /**
+     * 与行式step一样，在step开始时加载（或按版本刷新）码表
+     *
+     * @param stepExecution
+     */
+    @Override
+    public void beforeStep(StepExecution stepExecution) {
+        delegate.beforeStep(stepExecution);
+    }
+
+    @Override
+    public ExitStatus afterStep(StepExecution stepExecution) {
+        return delegate.afterStep(stepExecution);
+    }
+}
@@ -0,0 +1,111 @@
+package com.github.fnpac.batch.columnar;
+
+import com.github.fnpac.batch.reader.MappedDelimitedItemReader;
+import org.springframework.batch.item.ExecutionContext;
+import org.springframework.batch.item.ItemStreamException;
+import org.springframework.batch.item.ItemStreamReader;
+import org.springframework.batch.item.ItemStreamSupport;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.core.io.Resource;
+import org.springframework.util.Assert;
+
+/**
+ * 按列读取：每次 {@link #read()} 将至多 chunkRows 行读入同一个 {@link PersonChunk}，一个PersonChunk即一个chunk事务的全部数据。
+ * <p>
+ * 行的读取、切分由 {@link MappedDelimitedItemReader} 完成，字段字节直接追加到列中，不创建Person；
+ * 读取位置同样保存在ExecutionContext中，重启时从最后一次提交的位置继续。
+ * <p>
+ * 返回的PersonChunk在下一次read()时被清空复用。readCount按行数计数由 {@link ColumnarStepBuilder} 完成。
+ */
+public class PersonChunkReader extends ItemStreamSupport implements ItemStreamReader<PersonChunk>, InitializingBean {
+
+    private final MappedDelimitedItemReader<PersonChunk> delegate = new MappedDelimitedItemReader<>();
+
+    private Resource resource;
+    private long start = 0;
+    private long end = -1;
+    private int chunkRows = 1000;
+    private int dictionarySize = 4096;
+
+    private PersonChunk chunk;
+
+    public PersonChunkReader() {
+        setName(PersonChunkReader.class.getSimpleName());
+    }
+
+    public void setResource(Resource resource) {
+        this.resource = resource;
+    }
+
+    /**
+     * 见 {@link MappedDelimitedItemReader#setRange(long, long)}
+     */
+    public void setRange(long start, long end) {
+        this.start = start;
+        this.end = end;
+    }
+
+    /**
+     * @param chunkRows 每个PersonChunk的行数，即提交间隔
+     */
+    public void setChunkRows(int chunkRows) {
+        this.chunkRows = chunkRows;
+    }
+
+    /**
+     * @param dictionarySize nation、address字典各自的值个数上限，超过后新的值保存在字节区中
+     */
+    public void setDictionarySize(int dictionarySize) {
+        this.dictionarySize = dictionarySize;
+    }
+
+    @Override
+    public void setName(String name) {
+        super.setName(name);
+        // ExecutionContext中的键与行式的mapped reader相同
+        delegate.setName(name);
+    }
+
+    @Override
+    public void afterPropertiesSet() throws Exception {
+        Assert.notNull(resource, "Resource must be set");
+        Assert.isTrue(chunkRows > 0, "Chunk rows must be positive");
+        delegate.setResource(resource);
+        delegate.setRange(start, end);
+        delegate.setMapper((line, starts, ends, fieldCount) -> {
+            chunk.add(line, starts, ends, fieldCount);
+            return chunk;
+        });
+        delegate.afterPropertiesSet();
+    }
+
+    @Override
+    public void open(ExecutionContext executionContext) throws ItemStreamException {
+        // 字典在step内跨chunk复用
+        chunk = new PersonChunk(new ByteDictionary(dictionarySize), new ByteDictionary(dictionarySize), chunkRows);
+        delegate.open(executionContext);
+    }
+
+    @Override
+    public PersonChunk read() throws Exception {
+        chunk.clear();
+        while (chunk.size() < chunkRows && delegate.read() != null) {
+            // 行已由mapper追加到chunk
+        }
+        if (chunk.size() == 0) {
+            return null;
+        }
+        return chunk;
+    }
+
+    @Override
+    public void update(ExecutionContext executionContext) throws ItemStreamException {
+        delegate.update(executionContext);
+    }
+
+    @Override
+    public void close() throws ItemStreamException {
+        delegate.close();
+        chunk = null;
+    }
+}
@@ -0,0 +1,75 @@
+package com.github.fnpac.batch.columnar;
+
+import org.springframework.batch.item.ItemWriter;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.jdbc.JdbcUpdateAffectedIncorrectNumberOfRowsException;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.util.Assert;
+
+import javax.sql.DataSource;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+
+/**
+ * 按列写入：JDBC批量插入，参数直接从列中绑定（见 {@link StringColumn#bind}：age为int，nation、address为字典中共享的String，
+ * name为字节区中的UTF-8字节，不解码），不经过 JdbcBatchItemWriter 的 BeanPropertySqlParameterSource 反射取值和命名参数解析。
+ * 写入的表的name、nation、address列须为UTF-8字符集。
+ * <p>
+ * 通过JdbcTemplate获取连接，在chunk事务内执行。writeCount按行数计数由 {@link ColumnarStepBuilder} 完成。
+ */
+public class PersonChunkWriter implements ItemWriter<PersonChunk>, InitializingBean {
+
+    private static final String INSERT = "insert into %s (name, age, nation, address) values (?, ?, ?, ?)";
+
+    private JdbcTemplate jdbcTemplate;
+    private String insertSql = String.format(INSERT, "person");
+
+    public void setDataSource(DataSource dataSource) {
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+    }
+
+    /**
+     * @param table 写入的表，默认为person（暂存表导入时为暂存表）
+     */
+    public void setTable(String table) {
+        this.insertSql = String.format(INSERT, table);
+    }
+
+    @Override
+    public void afterPropertiesSet() throws Exception {
+        Assert.notNull(jdbcTemplate, "DataSource must be set");
+    }
+
+    @Override
+    public void write(List<? extends PersonChunk> items) throws Exception {
+        for (PersonChunk chunk : items) {
+            insert(chunk);
+        }
+    }
+
+    private void insert(final PersonChunk chunk) {
+        int[] updated = jdbcTemplate.batchUpdate(insertSql, new BatchPreparedStatementSetter() {
+            @Override
+            public void setValues(PreparedStatement ps, int row) throws SQLException {
+                chunk.names().bind(ps, 1, row);
+                ps.setInt(2, chunk.getAge(row));
+                chunk.nations().bind(ps, 3, row);
+                chunk.addresses().bind(ps, 4, row);
+            }
+
+            @Override
+            public int getBatchSize() {
+                return chunk.size();
+            }
+        });
+        for (int count : updated) {
+            // 驱动可能只返回 SUCCESS_NO_INFO
+            if (count != 1 && count != Statement.SUCCESS_NO_INFO) {
+                throw new JdbcUpdateAffectedIncorrectNumberOfRowsException(insertSql, 1, count);
+            }
+        }
+    }
+}
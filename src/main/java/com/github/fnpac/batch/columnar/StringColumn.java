@@ -0,0 +1,103 @@
+package com.github.fnpac.batch.columnar;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.function.UnaryOperator;
+
+/**
+ * chunk中的一个字符串列：每行一个int代码，指向字典（{@link ByteDictionary}）中的值；
+ * 没有字典、或字典已满时，值的字节保存在chunk共享的 {@link ByteArena} 中。
+ * <p>
+ * 字典中的值在列中只占4个字节，读取时返回字典中同一个String对象；字节区中的值在读取时才解码，
+ * 写入数据库时不解码（见 {@link #bind}）。
+ */
+public class StringColumn {
+
+    /**
+     * 值保存在字节区中
+     */
+    private static final int IN_ARENA = -1;
+
+    private final ByteDictionary dictionary;
+    private final ByteArena arena;
+
+    private int[] codes;
+    private int[] offsets;
+    private int[] lengths;
+
+    /**
+     * @param dictionary 为null时所有值保存在字节区中
+     */
+    StringColumn(ByteDictionary dictionary, ByteArena arena, int capacity) {
+        this.dictionary = dictionary;
+        this.arena = arena;
+        this.codes = new int[capacity];
+        this.offsets = new int[capacity];
+        this.lengths = new int[capacity];
+    }
+
+    void ensureCapacity(int capacity) {
+        if (capacity > codes.length) {
+            int grown = Math.max(capacity, codes.length * 2);
+            codes = Arrays.copyOf(codes, grown);
+            offsets = Arrays.copyOf(offsets, grown);
+            lengths = Arrays.copyOf(lengths, grown);
+        }
+    }
+
+    void set(int row, byte[] bytes, int start, int end) {
+        int code = dictionary != null ? dictionary.code(bytes, start, end) : IN_ARENA;
+        codes[row] = code;
+        if (code == IN_ARENA) {
+            offsets[row] = arena.append(bytes, start, end);
+            lengths[row] = end - start;
+        }
+    }
+
+    public void set(int row, String value) {
+        int code = dictionary != null ? dictionary.code(value) : IN_ARENA;
+        codes[row] = code;
+        if (code == IN_ARENA) {
+            offsets[row] = arena.append(value);
+            lengths[row] = arena.size() - offsets[row];
+        }
+    }
+
+    public String get(int row) {
+        int code = codes[row];
+        return code == IN_ARENA ? arena.string(offsets[row], lengths[row]) : dictionary.value(code);
+    }
+
+    /**
+     * 将一行的值绑定为语句的参数：字典中的值绑定字典中同一个String，字节区中的值直接绑定其UTF-8字节，不解码为String。
+     * <p>
+     * 字节按二进制串发送（MySQL驱动为 {@code _binary'...'}），写入utf8（utf8mb4）的列时不做字符集转换，
+     * 要求写入的列使用UTF-8字符集。
+     *
+     * @param index 参数位置，从1开始
+     */
+    public void bind(PreparedStatement ps, int index, int row) throws SQLException {
+        int code = codes[row];
+        if (code == IN_ARENA) {
+            ps.setBytes(index, arena.bytes(offsets[row], lengths[row]));
+        } else {
+            ps.setString(index, dictionary.value(code));
+        }
+    }
+
+    /**
+     * 替换为映射后的值：字典中的值每个只映射一次（见 {@link ByteDictionary#map}），字节区中的值逐行映射
+     */
+    public void map(int row, UnaryOperator<String> mapping) {
+        int code = codes[row];
+        if (code != IN_ARENA) {
+            int target = dictionary.map(code, mapping);
+            if (target >= 0) {
+                codes[row] = target;
+                return;
+            }
+        }
+        set(row, mapping.apply(get(row)));
+    }
+}
@@ -0,0 +1,212 @@
+package com.github.fnpac.batch.dedupe;
+
+import com.github.fnpac.batch.delta.PersonRowHasher;
+import com.github.fnpac.domain.Person;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.batch.core.ExitStatus;
+import org.springframework.batch.core.ItemWriteListener;
+import org.springframework.batch.core.StepExecution;
+import org.springframework.batch.core.StepExecutionListener;
+import org.springframework.batch.core.scope.context.StepContext;
+import org.springframework.batch.core.scope.context.StepSynchronizationManager;
+import org.springframework.batch.item.ItemProcessor;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.util.Assert;
+
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 去重processor：在delegate（校验、翻译）之后按自然键（如 name,address）过滤重复的行，重复的行返回null，计入step的filterCount。
+ * <p>
+ * 判断过程：
+ * <ol>
+ * <li>{@link ScalableBloomFilter} 未命中：一定是新的键，直接放行（绝大多数行只需要这一步）</li>
+ * <li>命中（重复或误判）时精确检查：本JVM中已放行、尚未提交的键（in-flight），以及person表中已提交的行（按自然键查询，
+ * 需要schema-dedupe-mysql.sql中的索引）</li>
+ * </ol>
+ * 放行的键在写入所在的chunk事务结束（提交或回滚）时从in-flight中移除：提交后已能在person表中查到，回滚后重新处理时
+ * 布隆过滤器命中、精确检查不存在，仍会放行。process与write之间失败的chunk，其键在step结束时移除。
+ * <p>
+ * 查询person表不在chunk事务中执行（挂起事务，单独的自动提交查询）：REPEATABLE READ下chunk事务内的查询读的是事务开始时的快照，
+ * 看不到其它线程在此之后提交、并已从in-flight中移除的键。单独的查询总能看到已提交的行，且不加锁
+ * （{@code LOCK IN SHARE MODE} 会在自然键索引上加间隙锁，与其它线程插入同一间隙的行互相等待而死锁）。
+ * <p>
+ * 布隆过滤器保存在文件中，跨文件、跨job重启去重；person表中的行被删除后只会产生误判，不会误删。
+ */
+public class DuplicateFilterItemProcessor implements ItemProcessor<Person, Person>, ItemWriteListener<Person>,
+        StepExecutionListener, InitializingBean {
+
+    private static final Logger logger = LoggerFactory.getLogger(DuplicateFilterItemProcessor.class);
+
+    private ItemProcessor<Person, Person> delegate;
+    private PersonRowHasher keyHasher;
+    private ScalableBloomFilter filter;
+    private JdbcTemplate jdbcTemplate;
+    private TransactionTemplate readTemplate;
+
+    private String existsSql;
+
+    /**
+     * 已放行、尚未提交的键 → 所在的step execution
+     */
+    private final Map<List<Object>, Long> inFlight = new ConcurrentHashMap<>();
+
+    private final LongAdder suppressed = new LongAdder();
+    private final LongAdder exactChecks = new LongAdder();
+
+    public void setDelegate(ItemProcessor<Person, Person> delegate) {
+        this.delegate = delegate;
+    }
+
+    /**
+     * @param keyHasher 行键为自然键的hasher
+     */
+    public void setKeyHasher(PersonRowHasher keyHasher) {
+        this.keyHasher = keyHasher;
+    }
+
+    public void setFilter(ScalableBloomFilter filter) {
+        this.filter = filter;
+    }
+
+    public void setDataSource(DataSource dataSource) {
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+    }
+
+    /**
+     * @param transactionManager 精确检查时挂起chunk事务
+     */
+    public void setTransactionManager(PlatformTransactionManager transactionManager) {
+        this.readTemplate = new TransactionTemplate(transactionManager);
+        this.readTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_NOT_SUPPORTED);
+    }
+
+    @Override
+    public void afterPropertiesSet() throws Exception {
+        Assert.notNull(keyHasher, "Key hasher must be set");
+        Assert.notNull(filter, "Bloom filter must be set");
+        Assert.notNull(jdbcTemplate, "DataSource must be set");
+        Assert.notNull(readTemplate, "TransactionManager must be set");
+        StringBuilder sql = new StringBuilder("select count(*) from person where ");
+        String[] columns = keyHasher.getKeyProperties();
+        for (int i = 0; i < columns.length; i++) {
+            if (i > 0) {
+                sql.append(" and ");
+            }
+            sql.append(columns[i]).append(" = ?");
+        }
+        existsSql = sql.toString();
+    }
+
+    @Override
+    public Person process(Person item) throws Exception {
+        Person result = delegate == null ? item : delegate.process(item);
+        if (result == null) {
+            return null;
+        }
+        List<Object> key = Arrays.asList(keyHasher.keyValues(result));
+        if (filter.put(keyHasher.keyHash(result))) {
+            // 重复或误判，精确检查
+            exactChecks.increment();
+            if (inFlight.containsKey(key) || existsInTable(key)) {
+                suppressed.increment();
+                return null;
+            }
+        }
+        if (inFlight.putIfAbsent(key, currentStepExecutionId()) != null) {
+            // 另一个线程刚放行了同一个键
+            suppressed.increment();
+            return null;
+        }
+        return result;
+    }
+
+    private boolean existsInTable(List<Object> key) {
+        if (key.contains(null)) {
+            // 自然键不完整的行不参与数据库中的去重
+            return false;
+        }
+        // 在chunk事务之外查询，读到最新提交的行
+        Long count = readTemplate.execute(status -> jdbcTemplate.queryForObject(existsSql, key.toArray(), Long.class));
+        return count != null && count > 0;
+    }
+
+    private static Long currentStepExecutionId() {
+        StepContext context = StepSynchronizationManager.getContext();
+        return context == null ? -1L : context.getStepExecution().getId();
+    }
+
+    public long getSuppressedCount() {
+        return suppressed.sum();
+    }
+
+    public long getExactCheckCount() {
+        return exactChecks.sum();
+    }
+
+    //===============================================
+    // 写入所在的事务结束后移除in-flight的键
+    //===============================================
+    @Override
+    public void beforeWrite(List<? extends Person> items) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            return;
+        }
+        final List<List<Object>> keys = new ArrayList<>(items.size());
+        for (Person item : items) {
+            keys.add(Arrays.asList(keyHasher.keyValues(item)));
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+            @Override
+            public void afterCompletion(int status) {
+                for (List<Object> key : keys) {
+                    inFlight.remove(key);
+                }
+            }
+        });
+    }
+
+    @Override
+    public void afterWrite(List<? extends Person> items) {
+    }
+
+    @Override
+    public void onWriteError(Exception exception, List<? extends Person> items) {
+    }
+
+    //===============================================
+    // step监听：转发delegate（CsvItemProcessor加载码表），结束时清理本step未写入的键
+    //===============================================
+    @Override
+    public void beforeStep(StepExecution stepExecution) {
+        if (delegate instanceof StepExecutionListener) {
+            ((StepExecutionListener) delegate).beforeStep(stepExecution);
+        }
+    }
+
+    @Override
+    public ExitStatus afterStep(StepExecution stepExecution) {
+        Long id = stepExecution.getId();
+        inFlight.values().removeIf(id::equals);
+        filter.force();
+        logger.info("Dedupe {}: {} duplicates suppressed, {} exact checks so far, filter {}",
+                stepExecution.getStepName(), suppressed.sum(), exactChecks.sum(), filter);
+        if (delegate instanceof StepExecutionListener) {
+            return ((StepExecutionListener) delegate).afterStep(stepExecution);
+        }
+        return null;
+    }
+}
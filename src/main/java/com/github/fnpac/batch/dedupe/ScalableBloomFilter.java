@@ -0,0 +1,233 @@
+package com.github.fnpac.batch.dedupe;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 可扩展的布隆过滤器（Scalable Bloom Filter），位数组保存在内存映射文件中，进程重启、job重启后继续使用，线程安全。
+ * <p>
+ * 由若干分片组成，每个分片一个文件（file.0、file.1…）：第一个分片按预计的元素数和误判率的一半确定位数和hash函数个数，
+ * 分片中的元素数达到容量时追加一个容量加倍、误判率减半的分片，总误判率不超过配置的误判率。
+ * 查询检查所有分片，插入只写入最后一个分片。
+ * <p>
+ * 输入为已经混合过的64位hash（如 {@link com.github.fnpac.batch.delta.PersonRowHasher#keyHash}），
+ * 按 Kirsch–Mitzenmacher 的双重hash派生k个位置。
+ */
+public class ScalableBloomFilter implements Closeable {
+
+    private static final long MAGIC = 0x424C4F4F4D31L;
+    private static final int HEADER_BYTES = 64;
+    private static final int BITS_OFFSET = 8;
+    private static final int HASHES_OFFSET = 16;
+    private static final int CAPACITY_OFFSET = 24;
+    private static final int COUNT_OFFSET = 32;
+    private static final int FPP_OFFSET = 40;
+
+    /**
+     * 单个分片最多 2^34 位（2GB），超过时不再加倍
+     */
+    private static final long MAX_BITS = (long) (Integer.MAX_VALUE - HEADER_BYTES) * 8;
+
+    private final Path file;
+    private final List<Slice> slices = new ArrayList<>();
+
+    private ScalableBloomFilter(Path file) {
+        this.file = file;
+    }
+
+    /**
+     * 打开过滤器，第一个分片不存在时按参数创建；已存在时沿用文件中的参数
+     *
+     * @param file              分片文件的前缀
+     * @param expectedElements  第一个分片的容量
+     * @param falsePositiveRate 总误判率
+     */
+    public static ScalableBloomFilter open(Path file, long expectedElements, double falsePositiveRate) throws IOException {
+        if (expectedElements <= 0 || falsePositiveRate <= 0 || falsePositiveRate >= 1) {
+            throw new IllegalArgumentException("Invalid bloom filter parameters: expectedElements=" + expectedElements
+                    + ", falsePositiveRate=" + falsePositiveRate);
+        }
+        if (file.toAbsolutePath().getParent() != null) {
+            Files.createDirectories(file.toAbsolutePath().getParent());
+        }
+        ScalableBloomFilter filter = new ScalableBloomFilter(file);
+        for (int i = 0; Files.exists(filter.slicePath(i)); i++) {
+            filter.slices.add(Slice.map(filter.slicePath(i)));
+        }
+        if (filter.slices.isEmpty()) {
+            filter.slices.add(Slice.create(filter.slicePath(0), expectedElements, falsePositiveRate / 2));
+        }
+        return filter;
+    }
+
+    private Path slicePath(int index) {
+        return file.resolveSibling(file.getFileName() + "." + index);
+    }
+
+    /**
+     * @return 是否可能已存在
+     */
+    public synchronized boolean mightContain(long hash) {
+        for (Slice slice : slices) {
+            if (slice.mightContain(hash)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 插入元素
+     *
+     * @return 插入前是否可能已存在（已存在时不再插入）
+     */
+    public synchronized boolean put(long hash) {
+        if (mightContain(hash)) {
+            return true;
+        }
+        Slice last = slices.get(slices.size() - 1);
+        if (last.count >= last.capacity) {
+            last = grow(last);
+        }
+        last.put(hash);
+        return false;
+    }
+
+    private Slice grow(Slice last) {
+        try {
+            Slice slice = Slice.create(slicePath(slices.size()), last.capacity * 2, last.falsePositiveRate / 2);
+            slices.add(slice);
+            return slice;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to add bloom filter slice for " + file, e);
+        }
+    }
+
+    public synchronized long count() {
+        long count = 0;
+        for (Slice slice : slices) {
+            count += slice.count;
+        }
+        return count;
+    }
+
+    public synchronized void force() {
+        for (Slice slice : slices) {
+            slice.buffer.force();
+        }
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        for (Slice slice : slices) {
+            slice.close();
+        }
+        slices.clear();
+    }
+
+    @Override
+    public synchronized String toString() {
+        long bits = 0;
+        for (Slice slice : slices) {
+            bits += slice.bits;
+        }
+        return "ScalableBloomFilter[" + file + ", slices=" + slices.size() + ", count=" + count() + ", bytes=" + bits / 8 + "]";
+    }
+
+    //===============================================
+    // 分片
+    //===============================================
+    private static final class Slice {
+
+        private final FileChannel channel;
+        private final MappedByteBuffer buffer;
+        private final long bits;
+        private final int hashes;
+        private final long capacity;
+        private final double falsePositiveRate;
+        private long count;
+
+        private Slice(FileChannel channel, MappedByteBuffer buffer) {
+            this.channel = channel;
+            this.buffer = buffer;
+            this.bits = buffer.getLong(BITS_OFFSET);
+            this.hashes = buffer.getInt(HASHES_OFFSET);
+            this.capacity = buffer.getLong(CAPACITY_OFFSET);
+            this.count = buffer.getLong(COUNT_OFFSET);
+            this.falsePositiveRate = buffer.getDouble(FPP_OFFSET);
+        }
+
+        static Slice create(Path path, long capacity, double falsePositiveRate) throws IOException {
+            // m = -n·ln(p) / (ln2)^2，k = m/n·ln2
+            long bits = (long) Math.ceil(-capacity * Math.log(falsePositiveRate) / (Math.log(2) * Math.log(2)));
+            bits = Math.max(64, Math.min(bits, MAX_BITS));
+            int hashes = Math.max(1, (int) Math.round((double) bits / capacity * Math.log(2)));
+
+            FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE_NEW, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_BYTES + (bits + 7) / 8);
+            buffer.putLong(BITS_OFFSET, bits);
+            buffer.putInt(HASHES_OFFSET, hashes);
+            buffer.putLong(CAPACITY_OFFSET, capacity);
+            buffer.putLong(COUNT_OFFSET, 0);
+            buffer.putDouble(FPP_OFFSET, falsePositiveRate);
+            // 最后写入魔数，未写完的分片在打开时报错
+            buffer.putLong(0, MAGIC);
+            return new Slice(channel, buffer);
+        }
+
+        static Slice map(Path path) throws IOException {
+            FileChannel channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, channel.size());
+            if (channel.size() < HEADER_BYTES || buffer.getLong(0) != MAGIC) {
+                channel.close();
+                throw new IOException("Not a bloom filter slice: " + path);
+            }
+            return new Slice(channel, buffer);
+        }
+
+        boolean mightContain(long hash) {
+            long h2 = secondHash(hash);
+            long combined = hash;
+            for (int i = 0; i < hashes; i++) {
+                long bit = Long.remainderUnsigned(combined, bits);
+                if ((buffer.get(HEADER_BYTES + (int) (bit >>> 3)) & (1 << (bit & 7))) == 0) {
+                    return false;
+                }
+                combined += h2;
+            }
+            return true;
+        }
+
+        void put(long hash) {
+            long h2 = secondHash(hash);
+            long combined = hash;
+            for (int i = 0; i < hashes; i++) {
+                long bit = Long.remainderUnsigned(combined, bits);
+                int index = HEADER_BYTES + (int) (bit >>> 3);
+                buffer.put(index, (byte) (buffer.get(index) | (1 << (bit & 7))));
+                combined += h2;
+            }
+            buffer.putLong(COUNT_OFFSET, ++count);
+        }
+
+        /**
+         * 第二个hash取自输入的高低位交换后再乘黄金分割常数，保证为奇数
+         */
+        private static long secondHash(long hash) {
+            return (Long.rotateLeft(hash, 32) * 0x9E3779B97F4A7C15L) | 1;
+        }
+
+        void close() throws IOException {
+            buffer.force();
+            channel.close();
+        }
+    }
+}
@@ -0,0 +1,103 @@
+package com.github.fnpac.batch.delta;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.batch.core.StepContribution;
+import org.springframework.batch.core.scope.context.ChunkContext;
+import org.springframework.batch.core.step.tasklet.Tasklet;
+import org.springframework.batch.repeat.RepeatStatus;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.util.Assert;
+
+import javax.sql.DataSource;
+import java.util.Arrays;
+
+/**
+ * 增量导入的删除step：导入step完成后，{@link RowHashIndex} 中未被当前job instance标记的行键即为输入文件中已删除的行，
+ * 按KEY_HASH从person表中删除。
+ * <p>
+ * 每次execute扫描索引直到凑满batchSize个行键，删除并提交（一个事务），提交后再从索引中移除；
+ * 已删除槽（tombstone）不会移动其它槽，扫描位置在删除过程中保持有效。
+ * 扫描位置保存在实例中，因此应为step作用域；失败重启时从头扫描，已删除的行键不再出现，删除是幂等的。
+ */
+public class DeltaDeleteTasklet implements Tasklet, InitializingBean {
+
+    private static final Logger logger = LoggerFactory.getLogger(DeltaDeleteTasklet.class);
+
+    private static final String DELETE = "delete from person where key_hash = ?";
+
+    private JdbcTemplate jdbcTemplate;
+    private RowHashIndex index;
+    private int batchSize = 1000;
+
+    private long cursor;
+    private long deleted;
+
+    public void setDataSource(DataSource dataSource) {
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+    }
+
+    public void setIndex(RowHashIndex index) {
+        this.index = index;
+    }
+
+    public void setBatchSize(int batchSize) {
+        this.batchSize = batchSize;
+    }
+
+    @Override
+    public void afterPropertiesSet() throws Exception {
+        Assert.notNull(jdbcTemplate, "DataSource must be set");
+        Assert.notNull(index, "RowHashIndex must be set");
+        Assert.isTrue(batchSize > 0, "Batch size must be positive");
+    }
+
+    @Override
+    public RepeatStatus execute(StepContribution contribution, ChunkContext chunkContext) throws Exception {
+        long jobInstanceId = chunkContext.getStepContext().getStepExecution().getJobExecution().getJobInstance().getId();
+        long[] batch = new long[batchSize];
+        int count = 0;
+        while (count < batchSize && cursor >= 0) {
+            long slot = index.nextStale(cursor, jobInstanceId);
+            if (slot < 0) {
+                cursor = -1;
+            } else {
+                batch[count++] = index.keyAt(slot);
+                cursor = slot + 1;
+            }
+        }
+
+        if (count > 0) {
+            final long[] keys = Arrays.copyOf(batch, count);
+            jdbcTemplate.batchUpdate(DELETE, Arrays.asList(toObjects(keys)));
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+                @Override
+                public void afterCommit() {
+                    for (long key : keys) {
+                        index.remove(key);
+                    }
+                }
+            });
+            contribution.incrementWriteCount(count);
+            deleted += count;
+        }
+
+        if (cursor >= 0) {
+            return RepeatStatus.CONTINUABLE;
+        }
+        index.force();
+        logger.info("Delta import deleted {} rows missing from the input", deleted);
+        return RepeatStatus.FINISHED;
+    }
+
+    private static Object[][] toObjects(long[] keys) {
+        Object[][] args = new Object[keys.length][];
+        for (int i = 0; i < keys.length; i++) {
+            args[i] = new Object[]{keys[i]};
+        }
+        return args;
+    }
+}
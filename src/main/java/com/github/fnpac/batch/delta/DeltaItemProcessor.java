@@ -0,0 +1,84 @@
+package com.github.fnpac.batch.delta;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.batch.core.ExitStatus;
+import org.springframework.batch.core.StepExecution;
+import org.springframework.batch.core.StepExecutionListener;
+import org.springframework.batch.core.scope.context.StepContext;
+import org.springframework.batch.core.scope.context.StepSynchronizationManager;
+import org.springframework.batch.item.ItemProcessor;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.util.Assert;
+
+/**
+ * 增量导入的processor：先由delegate处理（校验、翻译），再将结果与 {@link RowHashIndex} 比较，
+ * 未变化的行返回null（计入filterCount），新增和变化的行交给writer（{@link UpsertItemWriter}）。
+ * <p>
+ * 无论是否变化，出现的行键都立即标记为当前job instance的代数，导入完成后未被标记的行由 {@link DeltaDeleteTasklet} 删除。
+ * 标记不依赖chunk是否提交：回滚的chunk会被重新读取，崩溃后从已提交位置重启的行在此前已被标记。
+ * <p>
+ * job instance从step上下文中获取，因此也可用于 pipelinedStep 的processor线程。
+ */
+public class DeltaItemProcessor<T> implements ItemProcessor<T, T>, StepExecutionListener, InitializingBean {
+
+    private static final Logger logger = LoggerFactory.getLogger(DeltaItemProcessor.class);
+
+    private ItemProcessor<T, T> delegate;
+    private RowHasher<T> rowHasher;
+    private RowHashIndex index;
+
+    public void setDelegate(ItemProcessor<T, T> delegate) {
+        this.delegate = delegate;
+    }
+
+    public void setRowHasher(RowHasher<T> rowHasher) {
+        this.rowHasher = rowHasher;
+    }
+
+    public void setIndex(RowHashIndex index) {
+        this.index = index;
+    }
+
+    @Override
+    public void afterPropertiesSet() throws Exception {
+        Assert.notNull(rowHasher, "RowHasher must be set");
+        Assert.notNull(index, "RowHashIndex must be set");
+    }
+
+    @Override
+    public T process(T item) throws Exception {
+        T result = delegate == null ? item : delegate.process(item);
+        if (result == null) {
+            return null;
+        }
+        RowHashIndex.Change change = index.mark(rowHasher.keyHash(result), rowHasher.rowHash(result), currentJobInstanceId());
+        return change == RowHashIndex.Change.UNCHANGED ? null : result;
+    }
+
+    static long currentJobInstanceId() {
+        StepContext context = StepSynchronizationManager.getContext();
+        Assert.state(context != null, "Delta import must run inside a step");
+        return context.getStepExecution().getJobExecution().getJobInstance().getId();
+    }
+
+    //===============================================
+    // 转发delegate的step监听（例如CsvItemProcessor加载码表）
+    //===============================================
+    @Override
+    public void beforeStep(StepExecution stepExecution) {
+        if (delegate instanceof StepExecutionListener) {
+            ((StepExecutionListener) delegate).beforeStep(stepExecution);
+        }
+    }
+
+    @Override
+    public ExitStatus afterStep(StepExecution stepExecution) {
+        logger.info("Delta import {}: {} rows unchanged, {} inserted or changed, index {}",
+                stepExecution.getStepName(), stepExecution.getFilterCount(), stepExecution.getWriteCount(), index);
+        if (delegate instanceof StepExecutionListener) {
+            return ((StepExecutionListener) delegate).afterStep(stepExecution);
+        }
+        return null;
+    }
+}
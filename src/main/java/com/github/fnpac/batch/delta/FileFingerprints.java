@@ -0,0 +1,102 @@
+package com.github.fnpac.batch.delta;
+
+import org.springframework.batch.core.BatchStatus;
+import org.springframework.batch.core.JobExecution;
+import org.springframework.batch.core.JobInstance;
+import org.springframework.batch.core.JobParameters;
+import org.springframework.batch.core.explore.JobExplorer;
+import org.springframework.core.io.Resource;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 输入文件的内容指纹（SHA-256），作为job参数 {@value #FINGERPRINT_PARAMETER} 记录在JobRepository中。
+ * <p>
+ * 文件最近一次导入（同一 input.file.name 的最新job instance的最新execution）已完成且指纹相同时，整个文件跳过，不启动job。
+ * 只与最近一次比较：内容从A改为B再改回A时，第三次仍会导入。
+ * <p>
+ * 分片输入只有一个整体的指纹，任一分片变化时所有分片都重新读取。未变化分片中的行由 {@link DeltaItemProcessor} 逐行过滤，
+ * 不写数据库，代价是一次读取和解析。不按分片跳过：{@link RowHashIndex} 不记录行所属的分片，
+ * 跳过的分片中的行键不会被标记为当前job instance的代数，会被 {@link DeltaDeleteTasklet} 当作已删除。
+ */
+public final class FileFingerprints {
+
+    public static final String FILE_PARAMETER = "input.file.name";
+    public static final String FINGERPRINT_PARAMETER = "input.file.fingerprint";
+
+    private static final int PAGE_SIZE = 100;
+    /**
+     * 向前查找的job instance数上限，超过时视为没有导入过
+     */
+    private static final int MAX_INSTANCES = 10000;
+
+    private FileFingerprints() {
+    }
+
+    public static String sha256(Resource resource) throws IOException {
+        return sha256(Collections.singletonList(resource));
+    }
+
+    /**
+     * 多个分片（{@link com.github.fnpac.batch.reader.InputShards}）的指纹：依次摘要各分片的文件名和内容（压缩的分片不解压），
+     * 分片增减、改名或内容变化时指纹都会变化，整个输入重新导入
+     */
+    public static String sha256(List<Resource> shards) throws IOException {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+        byte[] buffer = new byte[1 << 20];
+        for (Resource shard : shards) {
+            if (shards.size() > 1) {
+                digest.update(String.valueOf(shard.getFilename()).getBytes(StandardCharsets.UTF_8));
+                digest.update((byte) 0);
+            }
+            try (InputStream in = shard.getInputStream()) {
+                int read;
+                while ((read = in.read(buffer)) > 0) {
+                    digest.update(buffer, 0, read);
+                }
+            }
+        }
+        StringBuilder hex = new StringBuilder(64);
+        for (byte b : digest.digest()) {
+            hex.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+        }
+        return hex.toString();
+    }
+
+    /**
+     * @return 该文件最近一次导入已完成且指纹相同
+     */
+    public static boolean isUnchanged(JobExplorer jobExplorer, String jobName, String fileName, String fingerprint) {
+        for (int start = 0; start < MAX_INSTANCES; start += PAGE_SIZE) {
+            List<JobInstance> instances = jobExplorer.getJobInstances(jobName, start, PAGE_SIZE);
+            for (JobInstance instance : instances) {
+                // 按id倒序，第一个即最新的execution
+                List<JobExecution> executions = jobExplorer.getJobExecutions(instance);
+                if (executions.isEmpty()) {
+                    continue;
+                }
+                JobExecution latest = executions.get(0);
+                JobParameters parameters = latest.getJobParameters();
+                if (fileName.equals(parameters.getString(FILE_PARAMETER))) {
+                    return latest.getStatus() == BatchStatus.COMPLETED
+                            && fingerprint.equals(parameters.getString(FINGERPRINT_PARAMETER));
+                }
+            }
+            if (instances.size() < PAGE_SIZE) {
+                break;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,117 @@
+package com.github.fnpac.batch.delta;
+
+import com.github.fnpac.domain.Person;
+import org.springframework.util.Assert;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * Person的行hash：行键由配置的属性组成（例如 name 或 name,address），行内容为全部属性。
+ * <p>
+ * 字符逐个进行FNV-1a后再经过murmur3的fmix64混合，属性之间插入分隔符，避免 ("ab","c") 与 ("a","bc") 相同。
+ * 64位行键hash在1亿个键时发生碰撞的概率约为万分之三，碰撞的两行会被视为同一行。
+ */
+public class PersonRowHasher implements RowHasher<Person> {
+
+    private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+    private static final char SEPARATOR = '\u0001';
+    private static final char NULL = '\u0002';
+
+    private final String[] keyPropertyNames;
+    private final List<Function<Person, Object>> keyProperties = new ArrayList<>();
+
+    /**
+     * @param keyProperties 组成行键的属性名，在输入文件中应唯一
+     */
+    public PersonRowHasher(String... keyProperties) {
+        Assert.notEmpty(keyProperties, "At least one key property is required");
+        this.keyPropertyNames = new String[keyProperties.length];
+        for (int i = 0; i < keyProperties.length; i++) {
+            keyPropertyNames[i] = keyProperties[i].trim();
+            this.keyProperties.add(accessor(keyPropertyNames[i]));
+        }
+    }
+
+    /**
+     * @return 组成行键的属性名，与person表的列名相同
+     */
+    public String[] getKeyProperties() {
+        return keyPropertyNames.clone();
+    }
+
+    /**
+     * @return 组成行键的属性值，顺序与 {@link #getKeyProperties()} 相同
+     */
+    public Object[] keyValues(Person person) {
+        Object[] values = new Object[keyProperties.size()];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = keyProperties.get(i).apply(person);
+        }
+        return values;
+    }
+
+    private static Function<Person, Object> accessor(String property) {
+        switch (property) {
+            case "name":
+                return Person::getName;
+            case "age":
+                return Person::getAge;
+            case "nation":
+                return Person::getNation;
+            case "address":
+                return Person::getAddress;
+            default:
+                throw new IllegalArgumentException("Unknown Person property: " + property);
+        }
+    }
+
+    @Override
+    public long keyHash(Person person) {
+        long hash = FNV_OFFSET;
+        for (Function<Person, Object> property : keyProperties) {
+            hash = append(hash, property.apply(person));
+        }
+        hash = fmix64(hash);
+        // 0、1为RowHashIndex保留的键
+        return hash == 0 || hash == 1 ? hash + 2 : hash;
+    }
+
+    @Override
+    public long rowHash(Person person) {
+        long hash = FNV_OFFSET;
+        hash = append(hash, person.getName());
+        hash = append(hash, person.getAge());
+        hash = append(hash, person.getNation());
+        hash = append(hash, person.getAddress());
+        return fmix64(hash);
+    }
+
+    private static long append(long hash, Object value) {
+        if (value == null) {
+            hash = (hash ^ NULL) * FNV_PRIME;
+        } else if (value instanceof Integer) {
+            int number = (Integer) value;
+            for (int shift = 0; shift < 32; shift += 8) {
+                hash = (hash ^ ((number >>> shift) & 0xFF)) * FNV_PRIME;
+            }
+        } else {
+            String text = value.toString();
+            for (int i = 0; i < text.length(); i++) {
+                hash = (hash ^ text.charAt(i)) * FNV_PRIME;
+            }
+        }
+        return (hash ^ SEPARATOR) * FNV_PRIME;
+    }
+
+    private static long fmix64(long hash) {
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+}
@@ -0,0 +1,341 @@
+package com.github.fnpac.batch.delta;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * 增量导入的 行键hash → 行内容hash 索引，保存在内存映射文件中（堆外），线程安全。
+ * <p>
+ * 结构为线性探测的开放寻址表，每个槽16字节：8字节键hash，8字节值（高48位为行内容hash，低16位为代数）。
+ * 1亿个键约占2GB文件（容量为2的幂，装载因子不超过0.75），只占用页缓存，不占用堆；
+ * 重新打开时直接映射已有文件，无需加载。
+ * <p>
+ * 代数（generation）用于检测删除：每个新的job instance开始使用索引时代数加1，本次运行中出现的键都标记为当前代数，
+ * 导入完成后代数不等于当前代数的键即为文件中已删除的行，见 {@link DeltaDeleteTasklet}。
+ * 同一job instance的重启沿用原来的代数，已提交部分的标记仍然有效。
+ * <p>
+ * 键hash 0、1保留为空槽、已删除槽的标记，由 {@link RowHasher} 保证不会产生。
+ * 扩容时写入同目录下的临时文件后原子替换（Linux下替换仍被映射的文件是安全的）。
+ */
+public class RowHashIndex implements Closeable {
+
+    public enum Change {
+        INSERTED, CHANGED, UNCHANGED
+    }
+
+    private static final long MAGIC = 0x5248495831L;
+    private static final int HEADER_BYTES = 64;
+    private static final int CAPACITY_OFFSET = 8;
+    private static final int SIZE_OFFSET = 16;
+    private static final int TOMBSTONES_OFFSET = 24;
+    private static final int GENERATION_OFFSET = 32;
+    private static final int JOB_INSTANCE_OFFSET = 40;
+
+    private static final int SLOT_BYTES = 16;
+    /**
+     * 每个映射段 2^26 个槽，即1GB
+     */
+    private static final int SEGMENT_SHIFT = 26;
+    private static final long SEGMENT_MASK = (1L << SEGMENT_SHIFT) - 1;
+
+    private static final long EMPTY = 0;
+    private static final long TOMBSTONE = 1;
+    private static final long GENERATION_MASK = 0xFFFFL;
+    private static final double MAX_LOAD = 0.75;
+    private static final long MIN_CAPACITY = 1024;
+
+    private final Path file;
+
+    private FileChannel channel;
+    private MappedByteBuffer header;
+    private MappedByteBuffer[] segments;
+
+    private long capacity;
+    private int shift;
+    private long size;
+    private long tombstones;
+    private int generation;
+    private long jobInstanceId;
+
+    private RowHashIndex(Path file) {
+        this.file = file;
+    }
+
+    /**
+     * 打开索引文件，不存在时按预计的键数创建
+     *
+     * @param file         索引文件
+     * @param expectedKeys 预计的键数，只影响新建文件的初始容量
+     */
+    public static RowHashIndex open(Path file, long expectedKeys) throws IOException {
+        RowHashIndex index = new RowHashIndex(file);
+        if (Files.exists(file) && Files.size(file) >= HEADER_BYTES) {
+            index.map();
+        } else {
+            if (file.toAbsolutePath().getParent() != null) {
+                Files.createDirectories(file.toAbsolutePath().getParent());
+            }
+            index.create(capacityFor(expectedKeys));
+        }
+        return index;
+    }
+
+    private static long capacityFor(long keys) {
+        long capacity = MIN_CAPACITY;
+        while (capacity * MAX_LOAD < keys) {
+            capacity <<= 1;
+        }
+        return capacity;
+    }
+
+    //===============================================
+    // 增量标记
+    //===============================================
+
+    /**
+     * 标记键在本次运行中出现，并与索引中的行内容hash比较。
+     * 新的键以占位的行内容hash插入，写入提交后由 {@link #put} 写入实际的hash。
+     *
+     * @param keyHash       行键hash
+     * @param rowHash       行内容hash
+     * @param jobInstanceId 当前的job instance
+     */
+    public synchronized Change mark(long keyHash, long rowHash, long jobInstanceId) {
+        advance(jobInstanceId);
+        ensureCapacity();
+        long slot = find(keyHash);
+        if (slot < 0) {
+            insert(-1 - slot, keyHash, generation);
+            return Change.INSERTED;
+        }
+        long value = valueAt(slot);
+        setValue(slot, (value & ~GENERATION_MASK) | generation);
+        return (value & ~GENERATION_MASK) == (rowHash & ~GENERATION_MASK) ? Change.UNCHANGED : Change.CHANGED;
+    }
+
+    /**
+     * 写入已提交行的行内容hash
+     */
+    public synchronized void put(long keyHash, long rowHash, long jobInstanceId) {
+        advance(jobInstanceId);
+        ensureCapacity();
+        long value = (rowHash & ~GENERATION_MASK) | generation;
+        long slot = find(keyHash);
+        if (slot < 0) {
+            insert(-1 - slot, keyHash, value);
+        } else {
+            setValue(slot, value);
+        }
+    }
+
+    public synchronized void remove(long keyHash) {
+        long slot = find(keyHash);
+        if (slot >= 0) {
+            setKey(slot, TOMBSTONE);
+            setValue(slot, 0);
+            size--;
+            tombstones++;
+            writeHeader();
+        }
+    }
+
+    /**
+     * @return 从fromSlot开始第一个未在当前job instance中出现的键所在的槽，没有时返回-1
+     */
+    public synchronized long nextStale(long fromSlot, long jobInstanceId) {
+        advance(jobInstanceId);
+        for (long slot = fromSlot; slot < capacity; slot++) {
+            long key = keyAt(slot);
+            if (key != EMPTY && key != TOMBSTONE && (valueAt(slot) & GENERATION_MASK) != generation) {
+                return slot;
+            }
+        }
+        return -1;
+    }
+
+    public synchronized long keyAt(long slot) {
+        return segments[(int) (slot >>> SEGMENT_SHIFT)].getLong((int) ((slot & SEGMENT_MASK) * SLOT_BYTES));
+    }
+
+    public synchronized long size() {
+        return size;
+    }
+
+    /**
+     * 新的job instance开始使用索引时代数加1；不允许较早的job instance在之后重启，否则其标记会与新的代数混淆
+     */
+    private void advance(long jobInstanceId) {
+        if (jobInstanceId == this.jobInstanceId) {
+            return;
+        }
+        if (jobInstanceId < this.jobInstanceId) {
+            throw new IllegalStateException("Row hash index " + file + " is already used by job instance "
+                    + this.jobInstanceId + ", cannot restart earlier instance " + jobInstanceId);
+        }
+        this.generation = (int) (generation % GENERATION_MASK) + 1;
+        this.jobInstanceId = jobInstanceId;
+        writeHeader();
+    }
+
+    //===============================================
+    // 开放寻址
+    //===============================================
+
+    /**
+     * @return 键所在的槽；不存在时返回 -(插入位置 + 1)，优先复用探测路径上的已删除槽
+     */
+    private long find(long keyHash) {
+        if (keyHash == EMPTY || keyHash == TOMBSTONE) {
+            throw new IllegalArgumentException("Reserved key hash: " + keyHash);
+        }
+        long mask = capacity - 1;
+        long slot = (keyHash * 0x9E3779B97F4A7C15L) >>> shift;
+        long firstTombstone = -1;
+        while (true) {
+            long key = keyAt(slot);
+            if (key == keyHash) {
+                return slot;
+            }
+            if (key == EMPTY) {
+                return -1 - (firstTombstone >= 0 ? firstTombstone : slot);
+            }
+            if (key == TOMBSTONE && firstTombstone < 0) {
+                firstTombstone = slot;
+            }
+            slot = (slot + 1) & mask;
+        }
+    }
+
+    private void insert(long slot, long keyHash, long value) {
+        if (keyAt(slot) == TOMBSTONE) {
+            tombstones--;
+        }
+        setKey(slot, keyHash);
+        setValue(slot, value);
+        size++;
+        writeHeader();
+    }
+
+    /**
+     * 已用槽（含已删除槽）超过装载因子时重建：已删除槽较多时按原容量重建，否则容量加倍
+     */
+    private void ensureCapacity() {
+        if (size + tombstones + 1 <= capacity * MAX_LOAD) {
+            return;
+        }
+        try {
+            rehash(size + 1 <= capacity * MAX_LOAD / 2 ? capacity : capacity << 1);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to resize row hash index " + file, e);
+        }
+    }
+
+    private void rehash(long newCapacity) throws IOException {
+        Path temp = file.resolveSibling(file.getFileName() + ".rehash");
+        Files.deleteIfExists(temp);
+        RowHashIndex target = new RowHashIndex(temp);
+        target.create(newCapacity);
+        for (long slot = 0; slot < capacity; slot++) {
+            long key = keyAt(slot);
+            if (key != EMPTY && key != TOMBSTONE) {
+                target.insert(-1 - target.find(key), key, valueAt(slot));
+            }
+        }
+        target.generation = generation;
+        target.jobInstanceId = jobInstanceId;
+        target.writeHeader();
+        target.close();
+
+        channel.close();
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        map();
+    }
+
+    private long valueAt(long slot) {
+        return segments[(int) (slot >>> SEGMENT_SHIFT)].getLong((int) ((slot & SEGMENT_MASK) * SLOT_BYTES) + 8);
+    }
+
+    private void setKey(long slot, long key) {
+        segments[(int) (slot >>> SEGMENT_SHIFT)].putLong((int) ((slot & SEGMENT_MASK) * SLOT_BYTES), key);
+    }
+
+    private void setValue(long slot, long value) {
+        segments[(int) (slot >>> SEGMENT_SHIFT)].putLong((int) ((slot & SEGMENT_MASK) * SLOT_BYTES) + 8, value);
+    }
+
+    //===============================================
+    // 文件
+    //===============================================
+    private void create(long capacity) throws IOException {
+        channel = FileChannel.open(file, StandardOpenOption.CREATE_NEW, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        header = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_BYTES);
+        header.putLong(0, MAGIC);
+        header.putLong(CAPACITY_OFFSET, capacity);
+        // 新文件为稀疏文件，映射段读出的槽全部为0（空槽）
+        mapSegments(capacity);
+        writeHeader();
+    }
+
+    private void map() throws IOException {
+        channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        header = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_BYTES);
+        if (header.getLong(0) != MAGIC) {
+            channel.close();
+            throw new IOException("Not a row hash index: " + file);
+        }
+        mapSegments(header.getLong(CAPACITY_OFFSET));
+        size = header.getLong(SIZE_OFFSET);
+        tombstones = header.getLong(TOMBSTONES_OFFSET);
+        generation = (int) header.getLong(GENERATION_OFFSET);
+        jobInstanceId = header.getLong(JOB_INSTANCE_OFFSET);
+    }
+
+    private void mapSegments(long capacity) throws IOException {
+        this.capacity = capacity;
+        this.shift = 64 - Long.numberOfTrailingZeros(capacity);
+        int count = (int) ((capacity + SEGMENT_MASK) >>> SEGMENT_SHIFT);
+        segments = new MappedByteBuffer[count];
+        for (int i = 0; i < count; i++) {
+            long first = (long) i << SEGMENT_SHIFT;
+            long slots = Math.min(capacity - first, 1L << SEGMENT_SHIFT);
+            segments[i] = channel.map(FileChannel.MapMode.READ_WRITE, HEADER_BYTES + first * SLOT_BYTES, slots * SLOT_BYTES);
+        }
+    }
+
+    private void writeHeader() {
+        header.putLong(SIZE_OFFSET, size);
+        header.putLong(TOMBSTONES_OFFSET, tombstones);
+        header.putLong(GENERATION_OFFSET, generation);
+        header.putLong(JOB_INSTANCE_OFFSET, jobInstanceId);
+    }
+
+    /**
+     * 将修改写入磁盘。进程崩溃时页缓存中的修改不会丢失，只有操作系统崩溃需要force
+     */
+    public synchronized void force() {
+        for (MappedByteBuffer segment : segments) {
+            segment.force();
+        }
+        header.force();
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (channel != null && channel.isOpen()) {
+            force();
+            channel.close();
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "RowHashIndex[" + file + ", size=" + size + ", capacity=" + capacity + ", generation=" + generation + "]";
+    }
+}
@@ -0,0 +1,13 @@
+package com.github.fnpac.batch.delta;
+
+/**
+ * 增量导入中一行记录的两个64位hash：行键hash标识一行（对应目标表的KEY_HASH列），行内容hash用于判断该行是否变化。
+ * <p>
+ * 行键hash不能为0或1（{@link RowHashIndex} 的保留值）。
+ */
+public interface RowHasher<T> {
+
+    long keyHash(T item);
+
+    long rowHash(T item);
+}
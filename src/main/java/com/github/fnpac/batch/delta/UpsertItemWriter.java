@@ -0,0 +1,135 @@
+package com.github.fnpac.batch.delta;
+
+import com.github.fnpac.domain.Person;
+import org.springframework.batch.item.ItemWriter;
+import org.springframework.batch.support.DatabaseType;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.util.Assert;
+
+import javax.sql.DataSource;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * 增量导入的writer：按行键hash（person.KEY_HASH，唯一索引，见schema-delta-mysql.sql）upsert新增和变化的行。
+ * <p>
+ * MySQL使用 {@code insert ... on duplicate key update}，其它数据库先按KEY_HASH批量update，再insert未更新到的行。
+ * chunk事务提交后将行内容hash写入 {@link RowHashIndex}，回滚时索引不变，重新处理时仍被视为变化。
+ */
+public class UpsertItemWriter implements ItemWriter<Person>, InitializingBean {
+
+    private static final String MYSQL_UPSERT = "insert into person (key_hash, name, age, nation, address) values (?, ?, ?, ?, ?) " +
+            "on duplicate key update name = values(name), age = values(age), nation = values(nation), address = values(address)";
+    private static final String INSERT = "insert into person (key_hash, name, age, nation, address) values (?, ?, ?, ?, ?)";
+    private static final String UPDATE = "update person set name = ?, age = ?, nation = ?, address = ? where key_hash = ?";
+
+    private JdbcTemplate jdbcTemplate;
+    private RowHasher<Person> rowHasher;
+    private RowHashIndex index;
+    private boolean mysql;
+
+    public void setDataSource(DataSource dataSource) {
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+    }
+
+    public void setRowHasher(RowHasher<Person> rowHasher) {
+        this.rowHasher = rowHasher;
+    }
+
+    public void setIndex(RowHashIndex index) {
+        this.index = index;
+    }
+
+    @Override
+    public void afterPropertiesSet() throws Exception {
+        Assert.notNull(jdbcTemplate, "DataSource must be set");
+        Assert.notNull(rowHasher, "RowHasher must be set");
+        Assert.notNull(index, "RowHashIndex must be set");
+        mysql = DatabaseType.fromMetaData(jdbcTemplate.getDataSource()) == DatabaseType.MYSQL;
+    }
+
+    @Override
+    public void write(final List<? extends Person> items) throws Exception {
+        final long[] keyHashes = new long[items.size()];
+        final long[] rowHashes = new long[items.size()];
+        for (int i = 0; i < items.size(); i++) {
+            keyHashes[i] = rowHasher.keyHash(items.get(i));
+            rowHashes[i] = rowHasher.rowHash(items.get(i));
+        }
+
+        if (mysql) {
+            insert(MYSQL_UPSERT, items, keyHashes, allRows(items.size()));
+        } else {
+            int[] updated = jdbcTemplate.batchUpdate(UPDATE, new BatchPreparedStatementSetter() {
+                @Override
+                public void setValues(PreparedStatement ps, int i) throws SQLException {
+                    int index = bind(ps, 1, items.get(i));
+                    ps.setLong(index, keyHashes[i]);
+                }
+
+                @Override
+                public int getBatchSize() {
+                    return items.size();
+                }
+            });
+            // 未更新到任何行的为新增的行
+            int missing = 0;
+            int[] rows = new int[updated.length];
+            for (int i = 0; i < updated.length; i++) {
+                if (updated[i] == 0) {
+                    rows[missing++] = i;
+                }
+            }
+            if (missing > 0) {
+                insert(INSERT, items, keyHashes, Arrays.copyOf(rows, missing));
+            }
+        }
+
+        final long jobInstanceId = DeltaItemProcessor.currentJobInstanceId();
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+            @Override
+            public void afterCommit() {
+                for (int i = 0; i < keyHashes.length; i++) {
+                    index.put(keyHashes[i], rowHashes[i], jobInstanceId);
+                }
+            }
+        });
+    }
+
+    private void insert(String sql, final List<? extends Person> items, final long[] keyHashes, final int[] rows) {
+        jdbcTemplate.batchUpdate(sql, new BatchPreparedStatementSetter() {
+            @Override
+            public void setValues(PreparedStatement ps, int i) throws SQLException {
+                ps.setLong(1, keyHashes[rows[i]]);
+                bind(ps, 2, items.get(rows[i]));
+            }
+
+            @Override
+            public int getBatchSize() {
+                return rows.length;
+            }
+        });
+    }
+
+    private static int[] allRows(int count) {
+        int[] rows = new int[count];
+        for (int i = 0; i < count; i++) {
+            rows[i] = i;
+        }
+        return rows;
+    }
+
+    private static int bind(PreparedStatement ps, int index, Person person) throws SQLException {
+        ps.setString(index++, person.getName());
+        ps.setInt(index++, person.getAge());
+        ps.setString(index++, person.getNation());
+        ps.setString(index++, person.getAddress());
+        return index;
+    }
+}
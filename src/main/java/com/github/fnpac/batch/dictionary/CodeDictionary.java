@@ -0,0 +1,104 @@
+package com.github.fnpac.batch.dictionary;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 码表的不可变快照：字典类型 → (名称 → 代码)，以及导出时使用的反向映射 字典类型 → (代码 → 名称)。
+ * <p>
+ * 多个名称对应同一个代码时（如别名），反向映射取加载顺序中的第一个名称。
+ * <p>
+ * 构建完成后不再修改，可以被任意多个线程无锁读取；刷新时整体替换为新的快照。
+ * 代码值经过intern，同一个代码在所有item中共享同一个String实例。
+ */
+public final class CodeDictionary {
+
+    static final CodeDictionary EMPTY = new Builder(-1).build();
+
+    private final long version;
+    private final Map<String, Map<String, String>> entries;
+    private final Map<String, Map<String, String>> labels;
+    private final int size;
+
+    private CodeDictionary(long version, Map<String, Map<String, String>> entries,
+                           Map<String, Map<String, String>> labels, int size) {
+        this.version = version;
+        this.entries = entries;
+        this.labels = labels;
+        this.size = size;
+    }
+
+    /**
+     * @param type  字典类型，如 nation
+     * @param label 名称，如 汉族
+     * @return 代码，不存在时返回null
+     */
+    public String lookup(String type, String label) {
+        Map<String, String> codes = entries.get(type);
+        return codes == null || label == null ? null : codes.get(label);
+    }
+
+    /**
+     * @param type 字典类型，如 nation
+     * @param code 代码，如 01
+     * @return 名称，不存在时返回null
+     */
+    public String label(String type, String code) {
+        Map<String, String> names = labels.get(type);
+        return names == null || code == null ? null : names.get(code);
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    static class Builder {
+
+        private final long version;
+        private final Map<String, Map<String, String>> entries = new HashMap<>();
+        private final Map<String, Map<String, String>> labels = new HashMap<>();
+        private int size;
+
+        Builder(long version) {
+            this.version = version;
+        }
+
+        Builder put(String type, String label, String code) {
+            Map<String, String> codes = entries.get(type);
+            if (codes == null) {
+                codes = new HashMap<>();
+                entries.put(type.intern(), codes);
+            }
+            if (codes.put(label, code.intern()) == null) {
+                size++;
+            }
+            Map<String, String> names = labels.get(type);
+            if (names == null) {
+                names = new HashMap<>();
+                labels.put(type.intern(), names);
+            }
+            names.putIfAbsent(code.intern(), label);
+            return this;
+        }
+
+        CodeDictionary build() {
+            return new CodeDictionary(version, freeze(entries), freeze(labels), size);
+        }
+
+        private static Map<String, Map<String, String>> freeze(Map<String, Map<String, String>> maps) {
+            Map<String, Map<String, String>> frozen = new HashMap<>(maps.size() * 2);
+            for (Map.Entry<String, Map<String, String>> entry : maps.entrySet()) {
+                // 按实际大小重新建表，降低负载因子，减少查找时的冲突
+                Map<String, String> values = new HashMap<>(entry.getValue().size() * 2);
+                values.putAll(entry.getValue());
+                frozen.put(entry.getKey(), Collections.unmodifiableMap(values));
+            }
+            return Collections.unmodifiableMap(frozen);
+        }
+    }
+}
@@ -0,0 +1,133 @@
+package com.github.fnpac.batch.dictionary;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.scheduling.annotation.Scheduled;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 码表服务：将数据库中的码表（CODE_DICTIONARY，见 schema-dictionary-mysql.sql）一次性加载为内存中的 {@link CodeDictionary}，
+ * 供 {@link com.github.fnpac.batch.CsvItemProcessor} 逐条翻译（导出时由 {@link com.github.fnpac.batch.CsvExportItemProcessor} 反向翻译），
+ * 避免每个item一次查询。
+ * <p>
+ * 刷新：
+ * <ul>
+ * <li>step开始时（CsvItemProcessor#beforeStep）调用 {@link #refresh()}，首次加载或版本变化时重新加载</li>
+ * <li>定时检查 max(VERSION)，间隔由 batch.dictionary.refreshMillis 指定，版本变化时在后台重新加载</li>
+ * </ul>
+ * 重新加载在新的快照上完成后再整体替换（volatile引用），读取方始终无锁，不会被刷新阻塞。
+ * <p>
+ * 按字典类型统计命中/未命中次数，见 {@link #getStatistics()}。
+ */
+public class CodeDictionaryService {
+
+    private static final Logger logger = LoggerFactory.getLogger(CodeDictionaryService.class);
+
+    private static final String VERSION_SQL = "SELECT MAX(VERSION) FROM CODE_DICTIONARY";
+    private static final String LOAD_SQL = "SELECT DICT_TYPE, DICT_LABEL, DICT_CODE FROM CODE_DICTIONARY ORDER BY DICT_TYPE, DICT_LABEL";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    private volatile CodeDictionary dictionary = CodeDictionary.EMPTY;
+    private volatile boolean loaded;
+
+    private final ConcurrentMap<String, Counter> counters = new ConcurrentHashMap<>();
+
+    public CodeDictionaryService(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    /**
+     * @param type  字典类型
+     * @param label 名称
+     * @return 代码，不存在时返回null
+     */
+    public String translate(String type, String label) {
+        String code = dictionary.lookup(type, label);
+        Counter counter = counters.get(type);
+        if (counter == null) {
+            counter = counters.computeIfAbsent(type, key -> new Counter());
+        }
+        if (code != null) {
+            counter.hits.increment();
+        } else {
+            counter.misses.increment();
+        }
+        return code;
+    }
+
+    /**
+     * 反向翻译，不计入命中统计
+     *
+     * @param type 字典类型
+     * @param code 代码
+     * @return 名称，不存在时返回null
+     */
+    public String label(String type, String code) {
+        return dictionary.label(type, code);
+    }
+
+    /**
+     * 版本变化（或尚未加载）时重新加载码表
+     */
+    public synchronized void refresh() {
+        Long version = jdbcTemplate.queryForObject(VERSION_SQL, Long.class);
+        long current = version == null ? 0 : version;
+        if (loaded && current == dictionary.getVersion()) {
+            return;
+        }
+        long start = System.currentTimeMillis();
+        CodeDictionary.Builder builder = new CodeDictionary.Builder(current);
+        jdbcTemplate.query(LOAD_SQL, (RowCallbackHandler) rs -> builder.put(rs.getString(1), rs.getString(2), rs.getString(3)));
+        dictionary = builder.build();
+        loaded = true;
+        logger.info("Code dictionary loaded: version={}, entries={}, spend {}ms",
+                current, dictionary.size(), System.currentTimeMillis() - start);
+    }
+
+    /**
+     * 定时检查版本，只在已经加载过（即已被某个step使用）时刷新
+     */
+    @Scheduled(fixedDelayString = "${batch.dictionary.refreshMillis}")
+    public void scheduledRefresh() {
+        if (!loaded) {
+            return;
+        }
+        try {
+            refresh();
+        } catch (RuntimeException e) {
+            // 刷新失败时继续使用旧的快照
+            logger.warn("Code dictionary refresh failed, keep version {}", dictionary.getVersion(), e);
+        }
+    }
+
+    public CodeDictionary getDictionary() {
+        return dictionary;
+    }
+
+    /**
+     * @return 字典类型 → {hits, misses}
+     */
+    public Map<String, Map<String, Long>> getStatistics() {
+        Map<String, Map<String, Long>> statistics = new LinkedHashMap<>();
+        for (Map.Entry<String, Counter> entry : counters.entrySet()) {
+            Map<String, Long> counter = new LinkedHashMap<>();
+            counter.put("hits", entry.getValue().hits.sum());
+            counter.put("misses", entry.getValue().misses.sum());
+            statistics.put(entry.getKey(), counter);
+        }
+        return statistics;
+    }
+
+    private static class Counter {
+        final LongAdder hits = new LongAdder();
+        final LongAdder misses = new LongAdder();
+    }
+}
@@ -0,0 +1,284 @@
+package com.github.fnpac.batch.launch;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.batch.core.Job;
+import org.springframework.batch.core.JobExecution;
+import org.springframework.batch.core.JobParameters;
+import org.springframework.batch.core.launch.JobLauncher;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.util.Assert;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 在后台线程中启动job，提交立即返回 {@link CompletableFuture}，job结束（任意状态）时完成，启动失败时异常完成。
+ * <p>
+ * 准入控制：
+ * <ul>
+ * <li>每个job（按名称）同时执行的数量不超过其上限（jobLimits，未配置的job为defaultJobLimit），
+ * 所有job同时执行的数量不超过线程数（threads），超出的提交按提交顺序排队</li>
+ * <li>排队的提交数达到 queueCapacity 时，新的提交抛出 {@link RejectedExecutionException}</li>
+ * </ul>
+ * 执行线程：固定大小的线程池（threads），或者JDK 21及以上的虚拟线程（virtualThreads=true，每个job一个线程，
+ * 总并发只受各job的上限限制）；更低版本的JDK上回退为线程池。
+ * <p>
+ * jobLauncher需为同步的（不设置TaskExecutor的SimpleJobLauncher），job在本服务的线程中执行到结束。
+ */
+public class JobLaunchService implements InitializingBean, DisposableBean {
+
+    private static final Logger logger = LoggerFactory.getLogger(JobLaunchService.class);
+
+    private JobLauncher jobLauncher;
+    private int threads = 2;
+    private boolean virtualThreads;
+    private int queueCapacity = 16;
+    private int defaultJobLimit = 1;
+    private Map<String, Integer> jobLimits = new HashMap<>();
+    private long shutdownTimeoutMillis = 30000;
+
+    private ExecutorService executor;
+    private int maxRunning;
+
+    /**
+     * 以下字段由this保护
+     */
+    private final Map<String, Slot> slots = new HashMap<>();
+    private final Deque<Launch> waiting = new ArrayDeque<>();
+    private int running;
+    private boolean shutdown;
+
+    public void setJobLauncher(JobLauncher jobLauncher) {
+        this.jobLauncher = jobLauncher;
+    }
+
+    /**
+     * @param threads 执行job的线程数，使用虚拟线程时忽略
+     */
+    public void setThreads(int threads) {
+        this.threads = threads;
+    }
+
+    public void setVirtualThreads(boolean virtualThreads) {
+        this.virtualThreads = virtualThreads;
+    }
+
+    /**
+     * @param queueCapacity 所有job排队（已提交、未开始执行）的数量上限
+     */
+    public void setQueueCapacity(int queueCapacity) {
+        this.queueCapacity = queueCapacity;
+    }
+
+    public void setDefaultJobLimit(int defaultJobLimit) {
+        this.defaultJobLimit = defaultJobLimit;
+    }
+
+    /**
+     * @param jobLimits job名称 → 同时执行的数量上限
+     */
+    public void setJobLimits(Map<String, Integer> jobLimits) {
+        this.jobLimits = new HashMap<>(jobLimits);
+    }
+
+    /**
+     * @param shutdownTimeoutMillis 关闭时等待运行中的job结束的时间
+     */
+    public void setShutdownTimeoutMillis(long shutdownTimeoutMillis) {
+        this.shutdownTimeoutMillis = shutdownTimeoutMillis;
+    }
+
+    @Override
+    public void afterPropertiesSet() throws Exception {
+        Assert.notNull(jobLauncher, "JobLauncher must be set");
+        Assert.isTrue(threads > 0, "Threads must be positive");
+        Assert.isTrue(queueCapacity >= 0, "Queue capacity must not be negative");
+        Assert.isTrue(defaultJobLimit > 0, "Default job limit must be positive");
+        for (Map.Entry<String, Integer> limit : jobLimits.entrySet()) {
+            Assert.isTrue(limit.getValue() > 0, "Job limit of " + limit.getKey() + " must be positive");
+        }
+        executor = virtualThreads ? newVirtualThreadExecutor() : null;
+        maxRunning = executor == null ? threads : Integer.MAX_VALUE;
+        if (executor == null) {
+            executor = Executors.newFixedThreadPool(threads, new LaunchThreadFactory());
+        }
+    }
+
+    /**
+     * JDK 21的 Executors.newVirtualThreadPerTaskExecutor()，编译目标为Java 8，通过反射调用
+     *
+     * @return 不支持虚拟线程时为null
+     */
+    private static ExecutorService newVirtualThreadExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            logger.warn("Virtual threads require JDK 21+, using a thread pool on JDK {}",
+                    System.getProperty("java.version"));
+            return null;
+        }
+    }
+
+    //===============================================
+    // 提交
+    //===============================================
+
+    /**
+     * @return job结束时完成
+     * @throws RejectedExecutionException 排队的提交数已达上限，或服务已关闭
+     */
+    public CompletableFuture<JobExecution> submit(Job job, JobParameters jobParameters) {
+        return submit(job, () -> jobParameters);
+    }
+
+    /**
+     * 提交job，job参数在执行线程中、开始执行前计算（如计算输入文件的指纹），不阻塞提交的线程
+     *
+     * @param jobParameters 返回null时不启动job，future以null完成
+     * @return job结束时完成
+     * @throws RejectedExecutionException 排队的提交数已达上限，或服务已关闭
+     */
+    public CompletableFuture<JobExecution> submit(Job job, Callable<JobParameters> jobParameters) {
+        Launch launch = new Launch(job, jobParameters);
+        synchronized (this) {
+            if (shutdown) {
+                throw new RejectedExecutionException("Job launch service is shut down, rejected " + job.getName());
+            }
+            launch.slot = slots.computeIfAbsent(job.getName(), name -> new Slot(jobLimits.getOrDefault(name, defaultJobLimit)));
+            // 排队中的提交都不能启动（见finished），新的提交可以启动时不会越过同一job排队的提交
+            if (canStart(launch.slot)) {
+                start(launch);
+            } else if (waiting.size() >= queueCapacity) {
+                throw new RejectedExecutionException("Launch queue is full (" + queueCapacity + " queued), rejected " + job.getName());
+            } else {
+                waiting.add(launch);
+                logger.info("Job {} queued: {} of {} allowed instances running, {} jobs running",
+                        job.getName(), launch.slot.running, launch.slot.limit, running);
+            }
+        }
+        return launch.future;
+    }
+
+    private boolean canStart(Slot slot) {
+        return slot.running < slot.limit && running < maxRunning;
+    }
+
+    private void start(Launch launch) {
+        launch.slot.running++;
+        running++;
+        executor.execute(launch);
+    }
+
+    /**
+     * job结束时释放名额，按提交顺序启动可以启动的排队提交
+     */
+    private synchronized void finished(Launch launch) {
+        launch.slot.running--;
+        running--;
+        if (shutdown) {
+            return;
+        }
+        for (Iterator<Launch> iterator = waiting.iterator(); iterator.hasNext() && running < maxRunning; ) {
+            Launch next = iterator.next();
+            if (canStart(next.slot)) {
+                iterator.remove();
+                start(next);
+            }
+        }
+    }
+
+    public synchronized int getRunningCount() {
+        return running;
+    }
+
+    public synchronized int getQueuedCount() {
+        return waiting.size();
+    }
+
+    //===============================================
+    // 关闭：取消排队的提交，等待运行中的job结束
+    //===============================================
+    @Override
+    public void destroy() throws Exception {
+        List<Launch> cancelled = new ArrayList<>();
+        synchronized (this) {
+            shutdown = true;
+            cancelled.addAll(waiting);
+            waiting.clear();
+        }
+        for (Launch launch : cancelled) {
+            launch.future.completeExceptionally(new CancellationException("Job launch service shut down"));
+        }
+        if (executor == null) {
+            return;
+        }
+        executor.shutdown();
+        if (!executor.awaitTermination(shutdownTimeoutMillis, TimeUnit.MILLISECONDS)) {
+            logger.warn("{} jobs still running after {} ms, leaving them to the JobRepository as unfinished",
+                    getRunningCount(), shutdownTimeoutMillis);
+            executor.shutdownNow();
+        }
+    }
+
+    private static class Slot {
+
+        final int limit;
+        int running;
+
+        Slot(int limit) {
+            this.limit = limit;
+        }
+    }
+
+    private class Launch implements Runnable {
+
+        final Job job;
+        final Callable<JobParameters> jobParameters;
+        final CompletableFuture<JobExecution> future = new CompletableFuture<>();
+        Slot slot;
+
+        Launch(Job job, Callable<JobParameters> jobParameters) {
+            this.job = job;
+            this.jobParameters = jobParameters;
+        }
+
+        @Override
+        public void run() {
+            try {
+                JobParameters parameters = jobParameters.call();
+                future.complete(parameters == null ? null : jobLauncher.run(job, parameters));
+            } catch (Throwable e) {
+                logger.error("Failed to launch job {}", job.getName(), e);
+                future.completeExceptionally(e);
+            } finally {
+                finished(this);
+            }
+        }
+    }
+
+    private static class LaunchThreadFactory implements ThreadFactory {
+
+        private final AtomicInteger counter = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable runnable) {
+            return new Thread(runnable, "job-launch-" + counter.incrementAndGet());
+        }
+    }
+}
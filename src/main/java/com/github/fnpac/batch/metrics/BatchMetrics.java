@@ -0,0 +1,150 @@
+package com.github.fnpac.batch.metrics;
+
+import com.alibaba.druid.pool.DruidDataSource;
+import org.springframework.batch.core.StepExecution;
+
+import javax.sql.DataSource;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Supplier;
+
+/**
+ * 批处理运行指标：各阶段的延迟直方图、step吞吐量、队列深度以及Druid连接池的等待情况。
+ * <p>
+ * 阶段（{@link Phase}）：
+ * <ul>
+ * <li>read - 单条item的读取</li>
+ * <li>process - 单条item的处理（包含validate）</li>
+ * <li>validate - 单条item的校验</li>
+ * <li>write - 一个chunk的写入</li>
+ * <li>commit - 写入完成到chunk提交完成（ExecutionContext、BATCH_STEP_EXECUTION更新及事务提交）</li>
+ * </ul>
+ * 通过 {@link #snapshot()} 输出，见 {@link com.github.fnpac.web.BatchMetricsController}。
+ * <p>
+ * step按step execution id区分（分区、重启、多次执行的同名step各占一项），只保留最近完成的 {@link #MAX_COMPLETED_STEPS} 个。
+ */
+public class BatchMetrics {
+
+    public enum Phase {
+        READ, PROCESS, VALIDATE, WRITE, COMMIT
+    }
+
+    public static final int MAX_COMPLETED_STEPS = 100;
+
+    private final LatencyHistogram[] histograms = new LatencyHistogram[Phase.values().length];
+    private final ConcurrentMap<Long, StepExecution> runningSteps = new ConcurrentHashMap<>();
+    /**
+     * 按完成顺序，由自身的锁保护
+     */
+    private final Map<Long, Map<String, Object>> completedSteps = new LinkedHashMap<Long, Map<String, Object>>() {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Long, Map<String, Object>> eldest) {
+            return size() > MAX_COMPLETED_STEPS;
+        }
+    };
+    private final ConcurrentMap<String, Supplier<? extends Number>> gauges = new ConcurrentHashMap<>();
+
+    private DataSource dataSource;
+
+    public BatchMetrics() {
+        for (Phase phase : Phase.values()) {
+            histograms[phase.ordinal()] = new LatencyHistogram();
+        }
+    }
+
+    public void setDataSource(DataSource dataSource) {
+        this.dataSource = dataSource;
+    }
+
+    public void record(Phase phase, long nanos) {
+        histograms[phase.ordinal()].record(nanos);
+    }
+
+    /**
+     * 注册一个即时值（如队列深度），同名覆盖
+     */
+    public void registerGauge(String name, Supplier<? extends Number> gauge) {
+        gauges.put(name, gauge);
+    }
+
+    public void unregisterGauge(String name) {
+        gauges.remove(name);
+    }
+
+    void stepStarted(StepExecution stepExecution) {
+        runningSteps.put(stepExecution.getId(), stepExecution);
+    }
+
+    void stepFinished(StepExecution stepExecution) {
+        Map<String, Object> step = step(stepExecution);
+        synchronized (completedSteps) {
+            completedSteps.put(stepExecution.getId(), step);
+        }
+        runningSteps.remove(stepExecution.getId());
+    }
+
+    public Map<String, Object> snapshot() {
+        Map<String, Object> snapshot = new LinkedHashMap<>();
+
+        Map<String, LatencyHistogram.Snapshot> phases = new LinkedHashMap<>();
+        for (Phase phase : Phase.values()) {
+            phases.put(phase.name().toLowerCase(), histograms[phase.ordinal()].snapshot());
+        }
+        snapshot.put("phases", phases);
+
+        Map<Long, Object> running = new LinkedHashMap<>();
+        for (StepExecution stepExecution : runningSteps.values()) {
+            running.put(stepExecution.getId(), step(stepExecution));
+        }
+        snapshot.put("runningSteps", running);
+        synchronized (completedSteps) {
+            snapshot.put("completedSteps", new LinkedHashMap<>(completedSteps));
+        }
+
+        Map<String, Number> values = new LinkedHashMap<>();
+        for (Map.Entry<String, Supplier<? extends Number>> entry : gauges.entrySet()) {
+            values.put(entry.getKey(), entry.getValue().get());
+        }
+        snapshot.put("gauges", values);
+
+        if (dataSource instanceof DruidDataSource) {
+            snapshot.put("dataSource", druid((DruidDataSource) dataSource));
+        }
+        return snapshot;
+    }
+
+    private static Map<String, Object> step(StepExecution stepExecution) {
+        Map<String, Object> step = new LinkedHashMap<>();
+        step.put("jobExecutionId", stepExecution.getJobExecutionId());
+        step.put("stepName", stepExecution.getStepName());
+        step.put("status", stepExecution.getStatus());
+        step.put("readCount", stepExecution.getReadCount());
+        step.put("writeCount", stepExecution.getWriteCount());
+        step.put("filterCount", stepExecution.getFilterCount());
+        step.put("commitCount", stepExecution.getCommitCount());
+        step.put("rollbackCount", stepExecution.getRollbackCount());
+        if (stepExecution.getStartTime() != null) {
+            long end = stepExecution.getEndTime() != null ? stepExecution.getEndTime().getTime() : System.currentTimeMillis();
+            long elapsed = Math.max(end - stepExecution.getStartTime().getTime(), 1);
+            step.put("elapsedMillis", elapsed);
+            step.put("rowsPerSecond", stepExecution.getWriteCount() * 1000d / elapsed);
+        }
+        return step;
+    }
+
+    private static Map<String, Object> druid(DruidDataSource dataSource) {
+        Map<String, Object> pool = new LinkedHashMap<>();
+        pool.put("activeCount", dataSource.getActiveCount());
+        pool.put("poolingCount", dataSource.getPoolingCount());
+        pool.put("maxActive", dataSource.getMaxActive());
+        pool.put("waitThreadCount", dataSource.getWaitThreadCount());
+        long waitCount = dataSource.getNotEmptyWaitCount();
+        long waitMillis = dataSource.getNotEmptyWaitMillis();
+        pool.put("notEmptyWaitCount", waitCount);
+        pool.put("notEmptyWaitMillis", waitMillis);
+        pool.put("meanWaitMillis", waitCount == 0 ? 0d : (double) waitMillis / waitCount);
+        return pool;
+    }
+}
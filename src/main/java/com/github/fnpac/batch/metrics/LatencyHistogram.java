@@ -0,0 +1,144 @@
+package com.github.fnpac.batch.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 无锁的对数分桶延迟直方图（纳秒）。
+ * <p>
+ * 每个2的幂区间再等分为 {@value #SUB_BUCKETS} 个子桶，相对误差不超过12.5%；记录一次只有几次位运算和一次原子自增，不创建对象。
+ * 百分位数在 {@link #snapshot()} 时计算。
+ */
+public class LatencyHistogram {
+
+    private static final int SUB_BUCKET_BITS = 3;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int BUCKETS = (64 - SUB_BUCKET_BITS + 1) * SUB_BUCKETS;
+
+    private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+    private final LongAdder count = new LongAdder();
+    private final LongAdder sum = new LongAdder();
+    private final AtomicLong max = new AtomicLong();
+
+    public void record(long nanos) {
+        if (nanos < 0) {
+            nanos = 0;
+        }
+        buckets.incrementAndGet(index(nanos));
+        count.increment();
+        sum.add(nanos);
+        long current;
+        while (nanos > (current = max.get()) && !max.compareAndSet(current, nanos)) {
+            // 重试
+        }
+    }
+
+    /**
+     * 小于 {@link #SUB_BUCKETS} 的值直接作为下标；其余按最高位所在的指数和其后 {@link #SUB_BUCKET_BITS} 位分桶
+     */
+    static int index(long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        int subBucket = (int) (value >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+        return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + subBucket;
+    }
+
+    /**
+     * @return 桶的上界（不包含）
+     */
+    static long upperBound(int index) {
+        if (index < SUB_BUCKETS) {
+            return index + 1;
+        }
+        int exponent = index / SUB_BUCKETS + SUB_BUCKET_BITS - 1;
+        long subBucket = index % SUB_BUCKETS;
+        long lower = (1L << exponent) + (subBucket << (exponent - SUB_BUCKET_BITS));
+        return lower + (1L << (exponent - SUB_BUCKET_BITS));
+    }
+
+    public Snapshot snapshot() {
+        long[] counts = new long[BUCKETS];
+        long total = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            counts[i] = buckets.get(i);
+            total += counts[i];
+        }
+        long max = this.max.get();
+        return new Snapshot(total, sum.sum(), max,
+                percentile(counts, total, max, 0.5), percentile(counts, total, max, 0.9),
+                percentile(counts, total, max, 0.99), percentile(counts, total, max, 0.999));
+    }
+
+    /**
+     * @return 百分位数所在桶的上界，不超过记录到的最大值
+     */
+    private static long percentile(long[] counts, long total, long max, double percentile) {
+        if (total == 0) {
+            return 0;
+        }
+        long rank = (long) Math.ceil(total * percentile);
+        long seen = 0;
+        for (int i = 0; i < counts.length; i++) {
+            seen += counts[i];
+            if (seen >= rank) {
+                return Math.min(upperBound(i), max);
+            }
+        }
+        return max;
+    }
+
+    /**
+     * 直方图快照，时间单位为微秒，供JSON序列化
+     */
+    public static class Snapshot {
+
+        private final long count;
+        private final double meanMicros;
+        private final double maxMicros;
+        private final double p50Micros;
+        private final double p90Micros;
+        private final double p99Micros;
+        private final double p999Micros;
+
+        Snapshot(long count, long sumNanos, long maxNanos, long p50, long p90, long p99, long p999) {
+            this.count = count;
+            this.meanMicros = count == 0 ? 0 : sumNanos / 1000d / count;
+            this.maxMicros = maxNanos / 1000d;
+            this.p50Micros = p50 / 1000d;
+            this.p90Micros = p90 / 1000d;
+            this.p99Micros = p99 / 1000d;
+            this.p999Micros = p999 / 1000d;
+        }
+
+        public long getCount() {
+            return count;
+        }
+
+        public double getMeanMicros() {
+            return meanMicros;
+        }
+
+        public double getMaxMicros() {
+            return maxMicros;
+        }
+
+        public double getP50Micros() {
+            return p50Micros;
+        }
+
+        public double getP90Micros() {
+            return p90Micros;
+        }
+
+        public double getP99Micros() {
+            return p99Micros;
+        }
+
+        public double getP999Micros() {
+            return p999Micros;
+        }
+    }
+}
@@ -0,0 +1,120 @@
+package com.github.fnpac.batch.metrics;
+
+import org.springframework.batch.core.ChunkListener;
+import org.springframework.batch.core.ExitStatus;
+import org.springframework.batch.core.ItemProcessListener;
+import org.springframework.batch.core.ItemReadListener;
+import org.springframework.batch.core.ItemWriteListener;
+import org.springframework.batch.core.StepExecution;
+import org.springframework.batch.core.StepExecutionListener;
+import org.springframework.batch.core.scope.context.ChunkContext;
+
+import java.util.List;
+
+/**
+ * 将chunk step的各阶段耗时记录到 {@link BatchMetrics}。
+ * <p>
+ * 同一个实例会被多个step（以及分区step的多个线程）共用，各阶段的开始时间保存在线程本地的数组中，记录时不创建对象。
+ */
+public class MetricsListener implements ItemReadListener<Object>, ItemProcessListener<Object, Object>,
+        ItemWriteListener<Object>, ChunkListener, StepExecutionListener {
+
+    private static final int READ = 0;
+    private static final int PROCESS = 1;
+    private static final int WRITE = 2;
+
+    private final BatchMetrics metrics;
+
+    private final ThreadLocal<long[]> startTimes = ThreadLocal.withInitial(() -> new long[3]);
+
+    public MetricsListener(BatchMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    //===============================================
+    // read
+    //===============================================
+    @Override
+    public void beforeRead() {
+        startTimes.get()[READ] = System.nanoTime();
+    }
+
+    @Override
+    public void afterRead(Object item) {
+        metrics.record(BatchMetrics.Phase.READ, System.nanoTime() - startTimes.get()[READ]);
+    }
+
+    @Override
+    public void onReadError(Exception ex) {
+    }
+
+    //===============================================
+    // process
+    //===============================================
+    @Override
+    public void beforeProcess(Object item) {
+        startTimes.get()[PROCESS] = System.nanoTime();
+    }
+
+    @Override
+    public void afterProcess(Object item, Object result) {
+        metrics.record(BatchMetrics.Phase.PROCESS, System.nanoTime() - startTimes.get()[PROCESS]);
+    }
+
+    @Override
+    public void onProcessError(Object item, Exception e) {
+    }
+
+    //===============================================
+    // write & commit
+    //===============================================
+    @Override
+    public void beforeWrite(List<?> items) {
+        startTimes.get()[WRITE] = System.nanoTime();
+    }
+
+    @Override
+    public void afterWrite(List<?> items) {
+        long[] times = startTimes.get();
+        long now = System.nanoTime();
+        metrics.record(BatchMetrics.Phase.WRITE, now - times[WRITE]);
+        // 从写入完成开始计算提交耗时
+        times[WRITE] = now;
+    }
+
+    @Override
+    public void onWriteError(Exception exception, List<?> items) {
+        startTimes.get()[WRITE] = 0;
+    }
+
+    @Override
+    public void beforeChunk(ChunkContext context) {
+        startTimes.get()[WRITE] = 0;
+    }
+
+    @Override
+    public void afterChunk(ChunkContext context) {
+        long start = startTimes.get()[WRITE];
+        if (start != 0) {
+            metrics.record(BatchMetrics.Phase.COMMIT, System.nanoTime() - start);
+        }
+    }
+
+    @Override
+    public void afterChunkError(ChunkContext context) {
+    }
+
+    //===============================================
+    // step
+    //===============================================
+    @Override
+    public void beforeStep(StepExecution stepExecution) {
+        metrics.stepStarted(stepExecution);
+    }
+
+    @Override
+    public ExitStatus afterStep(StepExecution stepExecution) {
+        metrics.stepFinished(stepExecution);
+        return null;
+    }
+}
@@ -0,0 +1,140 @@
+package com.github.fnpac.batch.partition;
+
+import org.springframework.batch.core.partition.support.Partitioner;
+import org.springframework.batch.item.ExecutionContext;
+import org.springframework.core.io.Resource;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 将输入文件按字节切分为 gridSize 个区间，每个区间的边界都对齐到换行符之后，保证不会把一行拆到两个分区。
+ * <p>
+ * 每个分区的ExecutionContext中保存：
+ * <ul>
+ * <li>{@link #START_KEY} - 区间起始字节（包含）</li>
+ * <li>{@link #END_KEY} - 区间结束字节（不包含）</li>
+ * <li>{@link #FIRST_LINE_KEY} - 区间第一行在文件中的行号，reader据此给出文件中的行号而不是分区内的序号</li>
+ * </ul>
+ * 为统计行号，切分时顺序读取最后一个区间起点之前的全部内容。
+ * 分区的step execution由JobRepository各自持久化，重启时只会重新执行未完成的分区，
+ * 分区内部再由reader自己保存的读取位置继续。
+ */
+public class LineRangePartitioner implements Partitioner {
+
+    public static final String START_KEY = "partition.start";
+    public static final String END_KEY = "partition.end";
+    public static final String FIRST_LINE_KEY = "partition.firstLine";
+
+    private static final String PARTITION_PREFIX = "partition";
+
+    private static final byte[] UTF8_BOM = {(byte) 0xEF, (byte) 0xBB, (byte) 0xBF};
+
+    private final Resource resource;
+
+    public LineRangePartitioner(Resource resource) {
+        this.resource = resource;
+    }
+
+    @Override
+    public Map<String, ExecutionContext> partition(int gridSize) {
+        try {
+            return doPartition(Math.max(gridSize, 1));
+        } catch (IOException e) {
+            throw new IllegalStateException("Unable to partition " + resource.getDescription(), e);
+        }
+    }
+
+    private Map<String, ExecutionContext> doPartition(int gridSize) throws IOException {
+        long length = resource.contentLength();
+        Map<String, ExecutionContext> partitions = new LinkedHashMap<>();
+
+        try (InputStream in = new BufferedInputStream(resource.getInputStream())) {
+            // 跳过UTF-8 BOM（people.csv 以BOM开头），避免第一行的第一个字段带上﻿
+            long position = skipBom(in);
+            long start = position;
+            // position、start之前的行数
+            long lines = 0;
+            long startLines = 0;
+            byte[] buffer = new byte[64 * 1024];
+
+            for (int i = 1; i <= gridSize && start < length; i++) {
+                long end;
+                if (i == gridSize) {
+                    end = length;
+                } else {
+                    long target = Math.max(length * i / gridSize, start);
+                    lines += countLines(in, target - position, buffer);
+                    position = target;
+                    long skipped = skipToNextLine(in);
+                    position += skipped;
+                    if (skipped > 0) {
+                        lines++;
+                    }
+                    end = position;
+                }
+                if (end > start) {
+                    ExecutionContext context = new ExecutionContext();
+                    context.putLong(START_KEY, start);
+                    context.putLong(END_KEY, end);
+                    context.putLong(FIRST_LINE_KEY, startLines + 1);
+                    partitions.put(PARTITION_PREFIX + partitions.size(), context);
+                }
+                start = end;
+                startLines = lines;
+            }
+        }
+        return partitions;
+    }
+
+    private static long skipBom(InputStream in) throws IOException {
+        in.mark(UTF8_BOM.length);
+        for (byte b : UTF8_BOM) {
+            if (in.read() != (b & 0xFF)) {
+                in.reset();
+                return 0;
+            }
+        }
+        return UTF8_BOM.length;
+    }
+
+    /**
+     * 读取n个字节
+     *
+     * @return 其中的换行符个数
+     */
+    private static long countLines(InputStream in, long n, byte[] buffer) throws IOException {
+        long lines = 0;
+        while (n > 0) {
+            int read = in.read(buffer, 0, (int) Math.min(buffer.length, n));
+            if (read < 0) {
+                throw new IOException("Unexpected end of stream, " + n + " bytes left to skip");
+            }
+            for (int i = 0; i < read; i++) {
+                if (buffer[i] == '\n') {
+                    lines++;
+                }
+            }
+            n -= read;
+        }
+        return lines;
+    }
+
+    /**
+     * @return 读取到（并包含）下一个换行符为止消费的字节数
+     */
+    private static long skipToNextLine(InputStream in) throws IOException {
+        long count = 0;
+        int b;
+        while ((b = in.read()) >= 0) {
+            count++;
+            if (b == '\n') {
+                break;
+            }
+        }
+        return count;
+    }
+}
@@ -0,0 +1,377 @@
+package com.github.fnpac.batch.pipeline;
+
+import com.github.fnpac.batch.metrics.BatchMetrics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.batch.core.ItemWriteListener;
+import org.springframework.batch.core.StepContribution;
+import org.springframework.batch.core.StepExecution;
+import org.springframework.batch.core.scope.context.ChunkContext;
+import org.springframework.batch.core.scope.context.StepContext;
+import org.springframework.batch.core.scope.context.StepSynchronizationManager;
+import org.springframework.batch.core.step.tasklet.Tasklet;
+import org.springframework.batch.item.ExecutionContext;
+import org.springframework.batch.item.ItemProcessor;
+import org.springframework.batch.item.ItemStream;
+import org.springframework.batch.item.ItemStreamException;
+import org.springframework.batch.item.ItemStreamReader;
+import org.springframework.batch.item.ItemWriter;
+import org.springframework.batch.repeat.RepeatStatus;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.util.Assert;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 流水线方式执行 读取 → 处理 → 写入 的Tasklet：
+ * <pre>
+ *   reader线程 --chunk--> processor线程池 --有序、有界队列--> step线程（写入并提交）
+ * </pre>
+ * step线程写入、提交第N个chunk的同时，reader线程在读取第N+1、N+2…个chunk，processor线程池在处理它们，
+ * 数据库等待期间CPU不再空闲，反之亦然。
+ * <p>
+ * 背压：已读取但尚未写入的chunk最多 queueCapacity 个，队列满时reader线程阻塞。
+ * <p>
+ * 容错与重启：
+ * <ul>
+ * <li>chunk按读取顺序写入；每个chunk读完时保存一份reader状态的快照，该chunk提交时才将快照写入step的ExecutionContext，
+ * 因此JobRepository中记录的始终是“已提交chunk”对应的读取位置，重启时从第一个未提交的chunk开始</li>
+ * <li>reader不能再注册为step的stream（否则会保存超前的读取位置），由本类负责open/close</li>
+ * <li>读取、处理或写入失败时，step线程抛出异常，当前chunk回滚；close时停止reader线程和processor线程池，
+ * 已读取未写入的chunk全部丢弃</li>
+ * </ul>
+ * 设置了 {@link BatchMetrics} 时记录read/process（每个item）、write（每个chunk）的耗时以及队列深度，
+ * 流水线不经过chunk step的listener，因此由本类直接记录。
+ * <p>
+ * 保存了step级别的状态，需为step作用域，并通过 stream() 注册到step。
+ *
+ * @param <I> 输入item类型
+ * @param <O> 输出item类型
+ */
+public class PipelinedChunkTasklet<I, O> implements Tasklet, ItemStream, InitializingBean {
+
+    private static final Logger logger = LoggerFactory.getLogger(PipelinedChunkTasklet.class);
+
+    /**
+     * 已读取未写入的chunk数
+     */
+    public static final String QUEUE_DEPTH_GAUGE = "pipeline.queueDepth";
+
+    private ItemStreamReader<? extends I> reader;
+    private ItemProcessor<? super I, ? extends O> processor;
+    private ItemWriter<? super O> writer;
+    private int chunkSize = 1000;
+    private int processorThreads = Runtime.getRuntime().availableProcessors();
+    private int queueCapacity = 4;
+    private BatchMetrics metrics;
+    private ItemWriteListener<? super O> writeListener;
+
+    private BlockingQueue<CompletableFuture<Chunk<O>>> queue;
+    private ExecutorService processorPool;
+    private Thread readerThread;
+    private volatile boolean stopped;
+    private ExecutionContext committedState;
+
+    public void setReader(ItemStreamReader<? extends I> reader) {
+        this.reader = reader;
+    }
+
+    public void setProcessor(ItemProcessor<? super I, ? extends O> processor) {
+        this.processor = processor;
+    }
+
+    public void setWriter(ItemWriter<? super O> writer) {
+        this.writer = writer;
+    }
+
+    public void setChunkSize(int chunkSize) {
+        this.chunkSize = chunkSize;
+    }
+
+    /**
+     * @param processorThreads 并行执行processor的线程数
+     */
+    public void setProcessorThreads(int processorThreads) {
+        this.processorThreads = processorThreads;
+    }
+
+    /**
+     * @param queueCapacity 已读取但尚未写入的chunk数上限
+     */
+    public void setQueueCapacity(int queueCapacity) {
+        this.queueCapacity = queueCapacity;
+    }
+
+    public void setMetrics(BatchMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    /**
+     * @param writeListener 在step线程的chunk事务中、写入前后调用（流水线不经过chunk step的item listener）
+     */
+    public void setWriteListener(ItemWriteListener<? super O> writeListener) {
+        this.writeListener = writeListener;
+    }
+
+    @Override
+    public void afterPropertiesSet() throws Exception {
+        Assert.notNull(reader, "Reader must be set");
+        Assert.notNull(processor, "Processor must be set");
+        Assert.notNull(writer, "Writer must be set");
+        Assert.isTrue(chunkSize > 0, "Chunk size must be positive");
+        Assert.isTrue(processorThreads > 0, "Processor threads must be positive");
+        Assert.isTrue(queueCapacity > 0, "Queue capacity must be positive");
+    }
+
+    //===============================================
+    // ItemStream
+    //===============================================
+    @Override
+    public void open(ExecutionContext executionContext) throws ItemStreamException {
+        reader.open(executionContext);
+        stopped = false;
+        committedState = null;
+        // 结束标记也要占用一个位置
+        queue = new ArrayBlockingQueue<>(queueCapacity + 1);
+        // reader、processor可能是step作用域的代理，工作线程上同样需要注册当前的step execution
+        StepContext stepContext = StepSynchronizationManager.getContext();
+        StepExecution stepExecution = stepContext != null ? stepContext.getStepExecution() : null;
+        processorPool = Executors.newFixedThreadPool(processorThreads,
+                new NamedThreadFactory("pipeline-processor-", stepExecution));
+        readerThread = new NamedThreadFactory("pipeline-reader-", stepExecution).newThread(this::readLoop);
+        readerThread.start();
+        if (metrics != null) {
+            BlockingQueue<CompletableFuture<Chunk<O>>> queue = this.queue;
+            metrics.registerGauge(QUEUE_DEPTH_GAUGE, queue::size);
+        }
+    }
+
+    @Override
+    public void update(ExecutionContext executionContext) throws ItemStreamException {
+        if (committedState != null) {
+            for (Map.Entry<String, Object> entry : committedState.entrySet()) {
+                executionContext.put(entry.getKey(), entry.getValue());
+            }
+        }
+    }
+
+    @Override
+    public void close() throws ItemStreamException {
+        stopped = true;
+        if (metrics != null) {
+            metrics.unregisterGauge(QUEUE_DEPTH_GAUGE);
+        }
+        if (readerThread != null) {
+            readerThread.interrupt();
+            try {
+                readerThread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            readerThread = null;
+        }
+        if (processorPool != null) {
+            processorPool.shutdownNow();
+            processorPool = null;
+        }
+        if (queue != null) {
+            queue.clear();
+        }
+        reader.close();
+    }
+
+    //===============================================
+    // Tasklet：每次执行写入并提交一个chunk
+    //===============================================
+    @Override
+    public RepeatStatus execute(StepContribution contribution, ChunkContext chunkContext) throws Exception {
+        Chunk<O> chunk;
+        try {
+            chunk = queue.take().get();
+        } catch (ExecutionException e) {
+            throw unwrap(e.getCause());
+        }
+        if (chunk.isEnd()) {
+            return RepeatStatus.FINISHED;
+        }
+
+        for (int i = 0; i < chunk.readCount; i++) {
+            contribution.incrementReadCount();
+        }
+        contribution.incrementFilterCount(chunk.readCount - chunk.items.size());
+        if (!chunk.items.isEmpty()) {
+            long start = System.nanoTime();
+            write(chunk.items);
+            if (metrics != null) {
+                metrics.record(BatchMetrics.Phase.WRITE, System.nanoTime() - start);
+            }
+        }
+        contribution.incrementWriteCount(chunk.items.size());
+
+        // 本chunk与reader快照在同一个事务中提交
+        committedState = chunk.readerState;
+        return RepeatStatus.CONTINUABLE;
+    }
+
+    private void write(List<O> items) throws Exception {
+        if (writeListener == null) {
+            writer.write(items);
+            return;
+        }
+        writeListener.beforeWrite(items);
+        try {
+            writer.write(items);
+        } catch (Exception e) {
+            writeListener.onWriteError(e, items);
+            throw e;
+        }
+        writeListener.afterWrite(items);
+    }
+
+    private static Exception unwrap(Throwable cause) {
+        while (cause instanceof CompletionException && cause.getCause() != null) {
+            cause = cause.getCause();
+        }
+        if (cause instanceof Exception) {
+            return (Exception) cause;
+        }
+        throw (Error) cause;
+    }
+
+    //===============================================
+    // reader线程
+    //===============================================
+    private void readLoop() {
+        try {
+            while (!stopped) {
+                List<I> items = new ArrayList<>(chunkSize);
+                I item;
+                while (items.size() < chunkSize && (item = read()) != null) {
+                    items.add(item);
+                }
+                ExecutionContext readerState = new ExecutionContext();
+                reader.update(readerState);
+
+                if (!items.isEmpty()) {
+                    queue.put(CompletableFuture.supplyAsync(() -> process(items, readerState), processorPool));
+                }
+                if (items.size() < chunkSize) {
+                    queue.put(CompletableFuture.completedFuture(Chunk.<O>end()));
+                    return;
+                }
+            }
+        } catch (InterruptedException e) {
+            // close()停止流水线
+            Thread.currentThread().interrupt();
+        } catch (Throwable e) {
+            if (!stopped) {
+                CompletableFuture<Chunk<O>> failed = new CompletableFuture<>();
+                failed.completeExceptionally(e);
+                try {
+                    queue.put(failed);
+                } catch (InterruptedException interrupted) {
+                    Thread.currentThread().interrupt();
+                }
+            } else {
+                logger.debug("Pipeline reader stopped", e);
+            }
+        }
+    }
+
+    private I read() throws Exception {
+        if (metrics == null) {
+            return reader.read();
+        }
+        long start = System.nanoTime();
+        I item = reader.read();
+        if (item != null) {
+            metrics.record(BatchMetrics.Phase.READ, System.nanoTime() - start);
+        }
+        return item;
+    }
+
+    private Chunk<O> process(List<I> items, ExecutionContext readerState) {
+        List<O> outputs = new ArrayList<>(items.size());
+        try {
+            for (I item : items) {
+                long start = System.nanoTime();
+                O output = processor.process(item);
+                if (metrics != null) {
+                    metrics.record(BatchMetrics.Phase.PROCESS, System.nanoTime() - start);
+                }
+                if (output != null) {
+                    outputs.add(output);
+                }
+            }
+        } catch (Exception e) {
+            throw new CompletionException(e);
+        }
+        return new Chunk<>(items.size(), outputs, readerState);
+    }
+
+    private static class Chunk<O> {
+
+        private static final Chunk<?> END = new Chunk<>(0, Collections.emptyList(), null);
+
+        final int readCount;
+        final List<O> items;
+        final ExecutionContext readerState;
+
+        Chunk(int readCount, List<O> items, ExecutionContext readerState) {
+            this.readCount = readCount;
+            this.items = items;
+            this.readerState = readerState;
+        }
+
+        @SuppressWarnings("unchecked")
+        static <O> Chunk<O> end() {
+            return (Chunk<O>) END;
+        }
+
+        boolean isEnd() {
+            return this == END;
+        }
+    }
+
+    /**
+     * 创建的线程在运行期间注册给定的step execution，使step作用域的bean在这些线程上可用
+     */
+    private static class NamedThreadFactory implements ThreadFactory {
+
+        private final String prefix;
+        private final StepExecution stepExecution;
+        private final AtomicInteger counter = new AtomicInteger();
+
+        NamedThreadFactory(String prefix, StepExecution stepExecution) {
+            this.prefix = prefix;
+            this.stepExecution = stepExecution;
+        }
+
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Runnable task = stepExecution == null ? runnable : () -> {
+                StepSynchronizationManager.register(stepExecution);
+                try {
+                    runnable.run();
+                } finally {
+                    StepSynchronizationManager.close();
+                }
+            };
+            Thread thread = new Thread(task, prefix + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
@@ -0,0 +1,123 @@
+package com.github.fnpac.batch.reader;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * 有序、合并相邻区间的 [start, end) 字节区间集合，非线程安全。
+ * <p>
+ * 以 start、end 交替排列的long[]形式保存在ExecutionContext中，完全连续的已提交区间只占两个long。
+ */
+public class ByteRangeSet {
+
+    /**
+     * start → end
+     */
+    private final TreeMap<Long, Long> ranges = new TreeMap<>();
+
+    public static ByteRangeSet fromArray(long[] array) {
+        ByteRangeSet set = new ByteRangeSet();
+        if (array != null) {
+            for (int i = 0; i + 1 < array.length; i += 2) {
+                set.add(array[i], array[i + 1]);
+            }
+        }
+        return set;
+    }
+
+    public void add(long start, long end) {
+        if (start >= end) {
+            return;
+        }
+        // 与前一个区间相交或相邻时合并
+        Map.Entry<Long, Long> floor = ranges.floorEntry(start);
+        if (floor != null && floor.getValue() >= start) {
+            start = floor.getKey();
+            end = Math.max(end, floor.getValue());
+        }
+        // 合并被覆盖或相邻的后续区间
+        Map.Entry<Long, Long> next;
+        while ((next = ranges.ceilingEntry(start)) != null && next.getKey() <= end) {
+            end = Math.max(end, next.getValue());
+            ranges.remove(next.getKey());
+        }
+        ranges.put(start, end);
+    }
+
+    public void addAll(ByteRangeSet other) {
+        for (Map.Entry<Long, Long> range : other.ranges.entrySet()) {
+            add(range.getKey(), range.getValue());
+        }
+    }
+
+    /**
+     * @return [start, end) 中不在本集合内的区间
+     */
+    public List<long[]> gaps(long start, long end) {
+        List<long[]> gaps = new ArrayList<>();
+        long position = start;
+        Map.Entry<Long, Long> floor = ranges.floorEntry(start);
+        if (floor != null && floor.getValue() > position) {
+            position = floor.getValue();
+        }
+        for (Map.Entry<Long, Long> range : ranges.subMap(start, false, end, false).entrySet()) {
+            if (range.getKey() > position) {
+                gaps.add(new long[]{position, range.getKey()});
+            }
+            position = Math.max(position, range.getValue());
+        }
+        if (position < end) {
+            gaps.add(new long[]{position, end});
+        }
+        return gaps;
+    }
+
+    /**
+     * @return 区间的总字节数
+     */
+    public long length() {
+        long length = 0;
+        for (Map.Entry<Long, Long> range : ranges.entrySet()) {
+            length += range.getValue() - range.getKey();
+        }
+        return length;
+    }
+
+    public boolean isEmpty() {
+        return ranges.isEmpty();
+    }
+
+    public void clear() {
+        ranges.clear();
+    }
+
+    public ByteRangeSet copy() {
+        ByteRangeSet copy = new ByteRangeSet();
+        copy.ranges.putAll(ranges);
+        return copy;
+    }
+
+    public long[] toArray() {
+        long[] array = new long[ranges.size() * 2];
+        int i = 0;
+        for (Map.Entry<Long, Long> range : ranges.entrySet()) {
+            array[i++] = range.getKey();
+            array[i++] = range.getValue();
+        }
+        return array;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder("[");
+        for (Map.Entry<Long, Long> range : ranges.entrySet()) {
+            if (builder.length() > 1) {
+                builder.append(", ");
+            }
+            builder.append(range.getKey()).append('-').append(range.getValue());
+        }
+        return builder.append(']').toString();
+    }
+}
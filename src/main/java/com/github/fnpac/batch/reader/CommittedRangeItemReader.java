@@ -0,0 +1,509 @@
+package com.github.fnpac.batch.reader;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.batch.item.ExecutionContext;
+import org.springframework.batch.item.ItemCountAware;
+import org.springframework.batch.item.ItemStreamException;
+import org.springframework.batch.item.ItemStreamReader;
+import org.springframework.batch.item.ItemStreamSupport;
+import org.springframework.batch.item.ReaderNotOpenException;
+import org.springframework.batch.item.file.FlatFileParseException;
+import org.springframework.batch.item.file.LineMapper;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.core.Ordered;
+import org.springframework.core.io.Resource;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.util.Assert;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+
+/**
+ * 线程安全、可重启的文件reader，用于多线程step（step.taskExecutor(...)）。
+ * <p>
+ * FlatFileItemReader在多线程下只能 setSaveState(false) 或包装为 SynchronizedItemStreamReader，都无法重启。本类：
+ * <ul>
+ * <li>将文件切分为约 blockSize 字节的块，工作线程各自领取一个块，在块内按行读取，读取时不加锁</li>
+ * <li>每个线程记录当前chunk读取过的字节区间（按行对齐），chunk事务提交时并入“已提交区间”（{@link ByteRangeSet}），
+ * 并以 {@link #COMMITTED_KEY} 保存在step的ExecutionContext中（与chunk在同一事务中写入）</li>
+ * <li>chunk结束（提交或回滚）时，线程把未读完的块归还给队列，其他线程可以继续读取，避免step结束时有读了一半的块被遗漏；
+ * 回滚的chunk读取过的区间同样归还</li>
+ * <li>重启时只读取文件中不在已提交区间内的部分，已提交的行不会重复导入</li>
+ * </ul>
+ * 块的边界按 LineRangePartitioner 的方式对齐：一行属于其起始字节所在的块。不支持跨行的记录（引号内的换行）。
+ * <p>
+ * 行号为文件中的行号（空行同样计入），与读取的线程和顺序无关：open时顺序扫描一遍文件，记录每 bufferSize 字节之前的换行符个数，
+ * 线程领取块时据此得到块起始的行号，之后在块内逐行累加。记录实现 {@link ItemCountAware} 时设置为该行号。
+ * <p>
+ * 要求：
+ * <ul>
+ * <li>step需为chunk step且在事务中执行（TaskletStep），已提交区间依赖事务同步（TransactionSynchronization）</li>
+ * <li>{@link LineMapper} 需是线程安全的（DefaultLineMapper + BeanWrapperFieldSetMapper 是线程安全的）</li>
+ * <li>resource需能解析为文件系统中的文件</li>
+ * </ul>
+ * 保存了step级别的状态，需为step作用域。
+ *
+ * @param <T> item类型
+ */
+public class CommittedRangeItemReader<T> extends ItemStreamSupport implements ItemStreamReader<T>, InitializingBean {
+
+    private static final Logger logger = LoggerFactory.getLogger(CommittedRangeItemReader.class);
+
+    /**
+     * 已提交的字节区间，start、end交替排列的long[]
+     */
+    public static final String COMMITTED_KEY = "committed.ranges";
+
+    private static final int DEFAULT_BLOCK_SIZE = 1024 * 1024;
+    private static final int DEFAULT_BUFFER_SIZE = 64 * 1024;
+
+    private Resource resource;
+    private LineMapper<T> lineMapper;
+    private Charset encoding = StandardCharsets.UTF_8;
+    private long blockSize = DEFAULT_BLOCK_SIZE;
+    private int bufferSize = DEFAULT_BUFFER_SIZE;
+    private boolean saveState = true;
+
+    private final Object lock = new Object();
+    private FileChannel channel;
+    private long length;
+    /**
+     * 第i个元素为前 i * lineIndexStride 个字节中的换行符个数，open后只读
+     */
+    private long[] lineIndex;
+    private int lineIndexStride;
+    /**
+     * 以下字段由 {@link #lock} 保护
+     */
+    private ByteRangeSet committed;
+    private Deque<Block> blocks;
+    private int activeReaders;
+    private List<Cursor> openCursors;
+
+    private ThreadLocal<Cursor> cursors;
+
+    public CommittedRangeItemReader() {
+        setName(CommittedRangeItemReader.class.getSimpleName());
+    }
+
+    /**
+     * @param resource 必须能解析为文件系统中的文件（{@link Resource#getFile()}）
+     */
+    public void setResource(Resource resource) {
+        this.resource = resource;
+    }
+
+    public void setLineMapper(LineMapper<T> lineMapper) {
+        this.lineMapper = lineMapper;
+    }
+
+    public void setEncoding(String encoding) {
+        this.encoding = Charset.forName(encoding);
+    }
+
+    /**
+     * @param blockSize 每个块的字节数，默认1MB；一个块的行数宜不少于chunk大小
+     */
+    public void setBlockSize(long blockSize) {
+        this.blockSize = blockSize;
+    }
+
+    public void setBufferSize(int bufferSize) {
+        this.bufferSize = bufferSize;
+    }
+
+    public void setSaveState(boolean saveState) {
+        this.saveState = saveState;
+    }
+
+    @Override
+    public void afterPropertiesSet() throws Exception {
+        Assert.notNull(resource, "Resource must be set");
+        Assert.notNull(lineMapper, "LineMapper must be set");
+        Assert.isTrue(blockSize > 0, "Block size must be positive");
+        Assert.isTrue(bufferSize > 0, "Buffer size must be positive");
+    }
+
+    //===============================================
+    // ItemStream
+    //===============================================
+    @Override
+    public void open(ExecutionContext executionContext) throws ItemStreamException {
+        long dataStart;
+        try {
+            channel = FileChannel.open(resource.getFile().toPath(), StandardOpenOption.READ);
+            length = channel.size();
+            dataStart = hasBom() ? 3 : 0;
+            indexLines();
+        } catch (IOException e) {
+            throw new ItemStreamException("Failed to open " + resource.getDescription(), e);
+        }
+
+        synchronized (lock) {
+            committed = ByteRangeSet.fromArray((long[]) executionContext.get(getExecutionContextKey(COMMITTED_KEY)));
+            blocks = new ArrayDeque<>();
+            for (long[] gap : committed.gaps(dataStart, length)) {
+                // 未提交区间的起点都是行首（已提交区间按行对齐），区间内部的切分点需对齐到下一行
+                for (long start = gap[0]; start < gap[1]; start += blockSize) {
+                    blocks.add(new Block(start, Math.min(start + blockSize, gap[1]), start == gap[0]));
+                }
+            }
+            activeReaders = 0;
+            openCursors = new ArrayList<>();
+        }
+        cursors = ThreadLocal.withInitial(this::newCursor);
+        if (!committed.isEmpty()) {
+            logger.info("Resuming {}: {} of {} bytes already committed, {} blocks remaining",
+                    resource.getDescription(), committed.length(), length - dataStart, blocks.size());
+        }
+    }
+
+    @Override
+    public void update(ExecutionContext executionContext) throws ItemStreamException {
+        if (!saveState || channel == null) {
+            return;
+        }
+        Cursor cursor = cursors.get();
+        ByteRangeSet snapshot;
+        synchronized (lock) {
+            if (!cursor.transactional) {
+                // 不在事务中（单线程、无事务同步）时，update即视为提交
+                committed.addAll(cursor.pending);
+                cursor.pending.clear();
+            }
+            snapshot = committed.copy();
+        }
+        // 当前线程的chunk即将与ExecutionContext一起提交，一并写入
+        snapshot.addAll(cursor.pending);
+        executionContext.put(getExecutionContextKey(COMMITTED_KEY), snapshot.toArray());
+    }
+
+    @Override
+    public void close() throws ItemStreamException {
+        synchronized (lock) {
+            if (openCursors != null) {
+                for (Cursor cursor : openCursors) {
+                    cursor.buffer = null;
+                }
+                openCursors = null;
+            }
+            blocks = null;
+        }
+        cursors = null;
+        if (channel != null) {
+            try {
+                channel.close();
+            } catch (IOException e) {
+                throw new ItemStreamException("Failed to close " + resource.getDescription(), e);
+            } finally {
+                channel = null;
+                lineIndex = null;
+            }
+        }
+    }
+
+    //===============================================
+    // 读取
+    //===============================================
+    @Override
+    public T read() throws Exception {
+        if (channel == null) {
+            throw new ReaderNotOpenException("Reader must be open before it can be read.");
+        }
+        Cursor cursor = cursors.get();
+        if (!cursor.transactional && TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new ChunkSynchronization(cursor));
+            cursor.transactional = true;
+        }
+
+        while (true) {
+            if (cursor.block == null && !claim(cursor)) {
+                return null;
+            }
+            long lineStart = cursor.position;
+            int lineLength = cursor.nextLine();
+            if (lineLength < 0) {
+                // 块已读完
+                synchronized (lock) {
+                    cursor.block = null;
+                    activeReaders--;
+                    lock.notifyAll();
+                }
+                continue;
+            }
+            cursor.pending.add(lineStart, cursor.position);
+            int lineNumber = (int) cursor.lineNumber++;
+            if (lineLength == 0) {
+                continue;
+            }
+            String line = new String(cursor.buffer, cursor.lineOffset, lineLength, encoding);
+            T item;
+            try {
+                item = lineMapper.mapLine(line, lineNumber);
+            } catch (Exception e) {
+                throw new FlatFileParseException("Parsing error at line: " + lineNumber + " (byte offset: " + lineStart
+                        + ") in resource=[" + resource.getDescription() + "], input=[" + line + "]", e, line, lineNumber);
+            }
+            if (item instanceof ItemCountAware) {
+                ((ItemCountAware) item).setItemCount(lineNumber);
+            }
+            return item;
+        }
+    }
+
+    /**
+     * 领取下一个块。队列为空但其他线程仍持有块时等待：这些块可能在其chunk结束时被归还
+     *
+     * @return false表示已全部读完
+     */
+    private boolean claim(Cursor cursor) throws InterruptedException, IOException {
+        Block block;
+        synchronized (lock) {
+            while (blocks.isEmpty()) {
+                if (activeReaders == 0) {
+                    return false;
+                }
+                lock.wait();
+            }
+            block = blocks.poll();
+            activeReaders++;
+        }
+        cursor.open(block);
+        return true;
+    }
+
+    private Cursor newCursor() {
+        Cursor cursor = new Cursor();
+        synchronized (lock) {
+            openCursors.add(cursor);
+        }
+        return cursor;
+    }
+
+    /**
+     * 顺序扫描整个文件，建立 {@link #lineIndex}
+     */
+    private void indexLines() throws IOException {
+        lineIndexStride = bufferSize;
+        lineIndex = new long[(int) (length / lineIndexStride) + 1];
+        ByteBuffer buffer = ByteBuffer.allocate(lineIndexStride);
+        long lines = 0;
+        for (int i = 0; i < lineIndex.length; i++) {
+            lineIndex[i] = lines;
+            long offset = (long) i * lineIndexStride;
+            buffer.clear();
+            while (buffer.hasRemaining() && channel.read(buffer, offset + buffer.position()) >= 0) {
+                // 读满一个步长或到文件末尾
+            }
+            byte[] bytes = buffer.array();
+            for (int j = 0; j < buffer.position(); j++) {
+                if (bytes[j] == '\n') {
+                    lines++;
+                }
+            }
+        }
+    }
+
+    private boolean hasBom() throws IOException {
+        if (length < 3) {
+            return false;
+        }
+        ByteBuffer bom = ByteBuffer.allocate(3);
+        while (bom.hasRemaining() && channel.read(bom, bom.position()) >= 0) {
+            // 读满3个字节
+        }
+        return bom.get(0) == (byte) 0xEF && bom.get(1) == (byte) 0xBB && bom.get(2) == (byte) 0xBF;
+    }
+
+    /**
+     * chunk事务结束时（优先于TaskletStep释放step execution的锁）并入已提交区间，并归还未读完的块
+     */
+    private class ChunkSynchronization extends TransactionSynchronizationAdapter {
+
+        private final Cursor cursor;
+
+        ChunkSynchronization(Cursor cursor) {
+            this.cursor = cursor;
+        }
+
+        @Override
+        public int getOrder() {
+            return Ordered.HIGHEST_PRECEDENCE;
+        }
+
+        @Override
+        public void afterCompletion(int status) {
+            synchronized (lock) {
+                if (blocks != null) {
+                    if (cursor.block != null) {
+                        if (cursor.position < cursor.block.end) {
+                            blocks.addFirst(new Block(cursor.position, cursor.block.end, true));
+                        }
+                        cursor.block = null;
+                        activeReaders--;
+                    }
+                    if (status == TransactionSynchronization.STATUS_COMMITTED) {
+                        committed.addAll(cursor.pending);
+                    } else {
+                        // 回滚的chunk读取过的行重新放回队列
+                        long[] ranges = cursor.pending.toArray();
+                        for (int i = ranges.length - 2; i >= 0; i -= 2) {
+                            blocks.addFirst(new Block(ranges[i], ranges[i + 1], true));
+                        }
+                    }
+                    lock.notifyAll();
+                }
+                cursor.pending.clear();
+                cursor.transactional = false;
+            }
+        }
+    }
+
+    private static class Block {
+
+        final long start;
+        final long end;
+        /**
+         * start是否已知为行首；否则需跳过属于上一个块的半行
+         */
+        final boolean aligned;
+
+        Block(long start, long end, boolean aligned) {
+            this.start = start;
+            this.end = end;
+            this.aligned = aligned;
+        }
+    }
+
+    /**
+     * 线程私有的读取状态
+     */
+    private class Cursor {
+
+        Block block;
+        /**
+         * 下一行的起始字节
+         */
+        long position;
+        /**
+         * 从position开始的行在文件中的行号
+         */
+        long lineNumber;
+        int lineOffset;
+
+        byte[] buffer = new byte[bufferSize];
+        long bufferStart;
+        int bufferLength;
+
+        /**
+         * 当前chunk读取过的区间
+         */
+        final ByteRangeSet pending = new ByteRangeSet();
+        boolean transactional;
+
+        void open(Block block) throws IOException {
+            this.block = block;
+            this.position = block.start;
+            if (!block.aligned && block.start > 0 && byteAt(block.start - 1) != '\n') {
+                // 跳过属于上一个块的半行
+                int newline = indexOfNewline(block.start);
+                position = newline < 0 ? length : bufferStart + newline + 1;
+            }
+            lineNumber = linesBefore(position) + 1;
+        }
+
+        /**
+         * @return offset之前的换行符个数：索引中最近的位置加上其后不足一个步长的部分
+         */
+        private long linesBefore(long offset) throws IOException {
+            int index = (int) (offset / lineIndexStride);
+            long lines = lineIndex[index];
+            long from = (long) index * lineIndexStride;
+            if (from < offset) {
+                // buffer不小于索引的步长
+                fill(from);
+                int count = (int) (offset - from);
+                for (int i = 0; i < count; i++) {
+                    if (buffer[i] == '\n') {
+                        lines++;
+                    }
+                }
+            }
+            return lines;
+        }
+
+        /**
+         * 将下一行定位到 buffer[lineOffset, lineOffset + 返回值)，并推进 position
+         *
+         * @return 行的字节数（不含换行符和行尾\r），-1表示块已读完
+         */
+        int nextLine() throws IOException {
+            if (position >= block.end || position >= length) {
+                return -1;
+            }
+            int newline = indexOfNewline(position);
+            int from = (int) (position - bufferStart);
+            int to = newline < 0 ? bufferLength : newline;
+            int lineLength = to - from;
+            if (lineLength > 0 && buffer[to - 1] == '\r') {
+                lineLength--;
+            }
+            lineOffset = from;
+            position = newline < 0 ? length : bufferStart + newline + 1;
+            return lineLength;
+        }
+
+        private byte byteAt(long offset) throws IOException {
+            fill(offset);
+            return buffer[(int) (offset - bufferStart)];
+        }
+
+        /**
+         * @return 从offset开始的第一个换行符在buffer中的下标，-1表示直到文件末尾都没有换行符（此时buffer包含offset到文件末尾）
+         */
+        private int indexOfNewline(long offset) throws IOException {
+            if (offset < bufferStart || offset >= bufferStart + bufferLength) {
+                fill(offset);
+            }
+            int from = (int) (offset - bufferStart);
+            while (true) {
+                for (int i = from; i < bufferLength; i++) {
+                    if (buffer[i] == '\n') {
+                        return i;
+                    }
+                }
+                if (bufferStart + bufferLength >= length) {
+                    return -1;
+                }
+                // 行跨越了buffer末尾：从offset重新读取，行长超过buffer时扩大buffer
+                if (offset == bufferStart) {
+                    buffer = new byte[buffer.length * 2];
+                }
+                from = bufferLength - (int) (offset - bufferStart);
+                fill(offset);
+            }
+        }
+
+        private void fill(long offset) throws IOException {
+            ByteBuffer target = ByteBuffer.wrap(buffer);
+            while (target.hasRemaining()) {
+                if (channel.read(target, offset + target.position()) < 0) {
+                    break;
+                }
+            }
+            bufferStart = offset;
+            bufferLength = target.position();
+        }
+    }
+}
@@ -0,0 +1,21 @@
+package com.github.fnpac.batch.reader;
+
+/**
+ * 将一行已按分隔符切分好的UTF-8字节直接映射为item，替代 LineTokenizer → FieldSet → FieldSetMapper 的链路。
+ * <p>
+ * 字段i的内容为 {@code line[starts[i], ends[i])}，line数组由reader复用，实现类不能持有它的引用。
+ *
+ * @param <T> 映射的item类型
+ */
+public interface DelimitedBytesMapper<T> {
+
+    /**
+     * @param line       当前行的字节（不含换行符）
+     * @param starts     每个字段的起始下标（包含）
+     * @param ends       每个字段的结束下标（不包含）
+     * @param fieldCount 字段数
+     * @return 映射后的item
+     * @throws Exception 字段数或字段格式不正确
+     */
+    T mapLine(byte[] line, int[] starts, int[] ends, int fieldCount) throws Exception;
+}
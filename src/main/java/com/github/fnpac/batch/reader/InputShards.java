@@ -0,0 +1,114 @@
+package com.github.fnpac.batch.reader;
+
+import org.springframework.core.io.DefaultResourceLoader;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.support.PathMatchingResourcePatternResolver;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * 输入位置（job参数 input.file.name）解析为分片：
+ * <ul>
+ * <li>通配符，如 file:/data/drop/2018-04-25/*.csv.gz、classpath*:people-*.csv</li>
+ * <li>文件系统中的目录，如 file:/data/drop/2018-04-25/，取目录下（不含子目录）的全部文件，忽略以“.”开头的文件</li>
+ * <li>单个文件</li>
+ * </ul>
+ * 分片按文件名排序，文件名即分片在ExecutionContext中的标识，需唯一。以 .gz 结尾的分片读取时流式解压，不产生临时文件。
+ */
+public final class InputShards {
+
+    private static final String GZIP_SUFFIX = ".gz";
+    private static final int GZIP_BUFFER_SIZE = 64 * 1024;
+
+    private InputShards() {
+    }
+
+    /**
+     * @return 是否需要按分片读取（通配符、目录或压缩文件），否则为单个未压缩的文件
+     */
+    public static boolean isSharded(String location) {
+        if (isPattern(location) || isCompressed(location)) {
+            return true;
+        }
+        File file = fileOf(new DefaultResourceLoader().getResource(location));
+        return file != null && file.isDirectory();
+    }
+
+    public static List<Resource> resolve(String location) throws IOException {
+        List<Resource> shards = new ArrayList<>();
+        if (isPattern(location)) {
+            for (Resource resource : new PathMatchingResourcePatternResolver().getResources(location)) {
+                File file = fileOf(resource);
+                if (file == null || file.isFile()) {
+                    shards.add(resource);
+                }
+            }
+        } else {
+            Resource resource = new DefaultResourceLoader().getResource(location);
+            File directory = fileOf(resource);
+            if (directory != null && directory.isDirectory()) {
+                File[] files = directory.listFiles(file -> file.isFile() && !file.getName().startsWith("."));
+                for (File file : files == null ? new File[0] : files) {
+                    shards.add(new FileSystemResource(file));
+                }
+            } else {
+                shards.add(resource);
+            }
+        }
+        if (shards.isEmpty()) {
+            throw new IOException("No input files found at " + location);
+        }
+        shards.sort(Comparator.comparing(Resource::getFilename));
+        Set<String> names = new HashSet<>();
+        for (Resource shard : shards) {
+            if (!names.add(shard.getFilename())) {
+                throw new IOException("Duplicate shard file name " + shard.getFilename() + " in " + location
+                        + ", shards are identified by file name");
+            }
+        }
+        return shards;
+    }
+
+    public static boolean isCompressed(String name) {
+        return name != null && name.endsWith(GZIP_SUFFIX);
+    }
+
+    /**
+     * @return 分片的内容，.gz 分片为解压后的流
+     */
+    public static InputStream open(Resource shard) throws IOException {
+        InputStream in = shard.getInputStream();
+        if (!isCompressed(shard.getFilename())) {
+            return in;
+        }
+        try {
+            return new GZIPInputStream(in, GZIP_BUFFER_SIZE);
+        } catch (IOException e) {
+            in.close();
+            throw e;
+        }
+    }
+
+    private static boolean isPattern(String location) {
+        // 包括 classpath*: 前缀
+        return location.indexOf('*') >= 0 || location.indexOf('?') >= 0;
+    }
+
+    private static File fileOf(Resource resource) {
+        try {
+            return resource.getFile();
+        } catch (IOException e) {
+            // 不在文件系统中（jar包内、http等）
+            return null;
+        }
+    }
+}
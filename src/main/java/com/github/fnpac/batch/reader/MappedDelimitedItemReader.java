@@ -0,0 +1,301 @@
+package com.github.fnpac.batch.reader;
+
+import org.springframework.batch.item.ExecutionContext;
+import org.springframework.batch.item.ItemCountAware;
+import org.springframework.batch.item.ItemStreamException;
+import org.springframework.batch.item.ItemStreamReader;
+import org.springframework.batch.item.ItemStreamSupport;
+import org.springframework.batch.item.ReaderNotOpenException;
+import org.springframework.batch.item.file.FlatFileParseException;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.core.io.Resource;
+import org.springframework.util.Assert;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * 通过 {@link FileChannel#map} 内存映射读取分隔符文件的ItemStreamReader。
+ * <p>
+ * 与 FlatFileItemReader + DefaultLineMapper + BeanWrapperFieldSetMapper 相比：
+ * <ul>
+ * <li>不经过Reader/String按行解码，直接在字节上查找换行符和分隔符（UTF-8中ASCII分隔符不会出现在多字节字符内部）</li>
+ * <li>不创建FieldSet，由 {@link DelimitedBytesMapper} 直接从字节填充item，没有反射</li>
+ * <li>文件按窗口分段映射，超过2GB的文件同样适用</li>
+ * </ul>
+ * 不支持引号包裹的字段。开头的UTF-8 BOM会被跳过，行尾的\r会被去掉，空行会被忽略。
+ * <p>
+ * 重启：ExecutionContext中保存下一行的字节位置（{@link #POSITION_KEY}）和已读取的行数（{@link #LINE_COUNT_KEY}），
+ * 重启时直接定位到该字节位置，不需要像FlatFileItemReader那样从头逐行跳过。
+ * <p>
+ * 记录实现 {@link ItemCountAware} 时设置为文件中的行号（分区从 {@link #setFirstLine(long)} 开始计数），空行同样计入行号。
+ * <p>
+ * 非线程安全，多线程使用时请参考分区step。
+ *
+ * @param <T> item类型
+ */
+public class MappedDelimitedItemReader<T> extends ItemStreamSupport implements ItemStreamReader<T>, InitializingBean {
+
+    public static final String POSITION_KEY = "position";
+    public static final String LINE_COUNT_KEY = "line.count";
+
+    private static final int DEFAULT_WINDOW_SIZE = 64 * 1024 * 1024;
+    private static final int MAX_FIELDS = 64;
+
+    private Resource resource;
+    private DelimitedBytesMapper<T> mapper;
+    private byte delimiter = ',';
+    private int windowSize = DEFAULT_WINDOW_SIZE;
+    private long start = 0;
+    private long end = -1;
+    private long firstLine = 1;
+    private boolean saveState = true;
+
+    private FileChannel channel;
+    private MappedByteBuffer window;
+    private long windowStart;
+    private long limit;
+    private long position;
+    private int lineCount;
+
+    private byte[] line = new byte[1024];
+    private final int[] starts = new int[MAX_FIELDS];
+    private final int[] ends = new int[MAX_FIELDS];
+
+    public MappedDelimitedItemReader() {
+        setName(MappedDelimitedItemReader.class.getSimpleName());
+    }
+
+    /**
+     * @param resource 必须能解析为文件系统中的文件（{@link Resource#getFile()}）
+     */
+    public void setResource(Resource resource) {
+        this.resource = resource;
+    }
+
+    public void setMapper(DelimitedBytesMapper<T> mapper) {
+        this.mapper = mapper;
+    }
+
+    /**
+     * @param delimiter ASCII分隔符，默认为逗号
+     */
+    public void setDelimiter(char delimiter) {
+        Assert.isTrue(delimiter < 0x80, "Delimiter must be an ASCII character");
+        this.delimiter = (byte) delimiter;
+    }
+
+    /**
+     * @param windowSize 每次映射的字节数，默认64MB
+     */
+    public void setWindowSize(int windowSize) {
+        this.windowSize = windowSize;
+    }
+
+    /**
+     * 只读取 [start, end) 字节区间，区间边界需对齐到行首，用于分区step
+     *
+     * @param start 起始字节（包含）
+     * @param end   结束字节（不包含），-1表示到文件末尾
+     */
+    public void setRange(long start, long end) {
+        this.start = start;
+        this.end = end;
+    }
+
+    /**
+     * @param firstLine 区间第一行在文件中的行号，见 LineRangePartitioner#FIRST_LINE_KEY，默认为1
+     */
+    public void setFirstLine(long firstLine) {
+        this.firstLine = firstLine;
+    }
+
+    /**
+     * @param saveState 是否在ExecutionContext中保存读取位置，见 FlatFileItemReader#setSaveState
+     */
+    public void setSaveState(boolean saveState) {
+        this.saveState = saveState;
+    }
+
+    @Override
+    public void afterPropertiesSet() throws Exception {
+        Assert.notNull(resource, "Resource must be set");
+        Assert.notNull(mapper, "Mapper must be set");
+        Assert.isTrue(windowSize > 0, "Window size must be positive");
+    }
+
+    @Override
+    public void open(ExecutionContext executionContext) throws ItemStreamException {
+        try {
+            channel = FileChannel.open(resource.getFile().toPath(), StandardOpenOption.READ);
+            limit = end < 0 ? channel.size() : Math.min(end, channel.size());
+        } catch (IOException e) {
+            throw new ItemStreamException("Failed to open " + resource.getDescription(), e);
+        }
+
+        if (executionContext.containsKey(getExecutionContextKey(POSITION_KEY))) {
+            position = executionContext.getLong(getExecutionContextKey(POSITION_KEY));
+            lineCount = executionContext.getInt(getExecutionContextKey(LINE_COUNT_KEY));
+        } else {
+            position = start;
+            lineCount = 0;
+            if (position == 0) {
+                skipBom();
+            }
+        }
+        window = null;
+    }
+
+    @Override
+    public T read() throws Exception {
+        if (channel == null) {
+            throw new ReaderNotOpenException("Reader must be open before it can be read.");
+        }
+        int length;
+        do {
+            length = nextLine();
+            if (length < 0) {
+                return null;
+            }
+        } while (length == 0);
+
+        int fieldCount = split(length);
+        T item;
+        try {
+            item = mapper.mapLine(line, starts, ends, fieldCount);
+        } catch (Exception e) {
+            throw new FlatFileParseException("Parsing error at line: " + lineNumber() + " in resource=["
+                    + resource.getDescription() + "], input=[" + new String(line, 0, length, StandardCharsets.UTF_8) + "]",
+                    e, new String(line, 0, length, StandardCharsets.UTF_8), lineNumber());
+        }
+        if (item instanceof ItemCountAware) {
+            ((ItemCountAware) item).setItemCount(lineNumber());
+        }
+        return item;
+    }
+
+    @Override
+    public void update(ExecutionContext executionContext) throws ItemStreamException {
+        if (saveState) {
+            executionContext.putLong(getExecutionContextKey(POSITION_KEY), position);
+            executionContext.putInt(getExecutionContextKey(LINE_COUNT_KEY), lineCount);
+        }
+    }
+
+    @Override
+    public void close() throws ItemStreamException {
+        window = null;
+        if (channel != null) {
+            try {
+                channel.close();
+            } catch (IOException e) {
+                throw new ItemStreamException("Failed to close " + resource.getDescription(), e);
+            } finally {
+                channel = null;
+            }
+        }
+    }
+
+    /**
+     * @return 当前行在文件中的行号
+     */
+    private int lineNumber() {
+        return (int) (firstLine - 1 + lineCount);
+    }
+
+    private void skipBom() {
+        if (limit >= 3) {
+            map(0, 3);
+            if (window.get(0) == (byte) 0xEF && window.get(1) == (byte) 0xBB && window.get(2) == (byte) 0xBF) {
+                position = 3;
+            }
+        }
+    }
+
+    /**
+     * 将下一行（不含换行符和行尾\r）复制到 {@link #line}，并推进 {@link #position}
+     *
+     * @return 行的字节数，-1表示已读完
+     */
+    private int nextLine() {
+        if (position >= limit) {
+            return -1;
+        }
+        int size = windowSize;
+        while (true) {
+            if (window == null || position < windowStart || position >= windowStart + window.limit()) {
+                map(position, size);
+            }
+            int from = (int) (position - windowStart);
+            int to = window.limit();
+            int newline = -1;
+            for (int i = from; i < to; i++) {
+                if (window.get(i) == '\n') {
+                    newline = i;
+                    break;
+                }
+            }
+            if (newline < 0 && windowStart + to < limit) {
+                // 当前行跨越了窗口边界，从行首重新映射（行长超过窗口时扩大窗口）
+                if (from == 0) {
+                    size = (int) Math.min((long) size * 2, Integer.MAX_VALUE);
+                }
+                map(position, size);
+                continue;
+            }
+            int lineEnd = newline < 0 ? to : newline;
+            int length = lineEnd - from;
+            if (length > 0 && window.get(lineEnd - 1) == '\r') {
+                length--;
+            }
+            if (length > line.length) {
+                line = new byte[Math.max(length, line.length * 2)];
+            }
+            window.position(from);
+            window.get(line, 0, length);
+
+            position = windowStart + (newline < 0 ? to : newline + 1);
+            lineCount++;
+            return length;
+        }
+    }
+
+    private void map(long offset, long size) {
+        try {
+            window = channel.map(FileChannel.MapMode.READ_ONLY, offset, Math.min(size, limit - offset));
+            windowStart = offset;
+        } catch (IOException e) {
+            throw new ItemStreamException("Failed to map " + resource.getDescription() + " at " + offset, e);
+        }
+    }
+
+    /**
+     * 在 {@link #line} 上按分隔符原地切分，只记录字段边界
+     *
+     * @return 字段数
+     */
+    private int split(int length) {
+        int fieldCount = 0;
+        int fieldStart = 0;
+        for (int i = 0; i < length; i++) {
+            if (line[i] == delimiter) {
+                fieldCount = addField(fieldCount, fieldStart, i);
+                fieldStart = i + 1;
+            }
+        }
+        return addField(fieldCount, fieldStart, length);
+    }
+
+    private int addField(int fieldCount, int start, int end) {
+        if (fieldCount == MAX_FIELDS) {
+            throw new FlatFileParseException("Too many fields at line: " + lineNumber() + " in resource=["
+                    + resource.getDescription() + "]", new String(line, 0, end, StandardCharsets.UTF_8), lineNumber());
+        }
+        starts[fieldCount] = start;
+        ends[fieldCount] = end;
+        return fieldCount + 1;
+    }
+}
@@ -0,0 +1,68 @@
+package com.github.fnpac.batch.reader;
+
+import com.github.fnpac.domain.Person;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * 手写的Person映射：字段顺序为 name, age, nation, address。
+ * <p>
+ * age直接从字节解析为int，不经过String；其余字段各解码一次UTF-8，没有反射和中间对象。
+ */
+public class PersonBytesMapper implements DelimitedBytesMapper<Person> {
+
+    private static final int FIELD_COUNT = 4;
+
+    @Override
+    public Person mapLine(byte[] line, int[] starts, int[] ends, int fieldCount) {
+        if (fieldCount != FIELD_COUNT) {
+            throw new IllegalArgumentException("Incorrect number of fields: expected " + FIELD_COUNT + ", actual " + fieldCount);
+        }
+        Person person = new Person();
+        person.setName(decode(line, starts[0], ends[0]));
+        person.setAge(parseInt(line, starts[1], ends[1]));
+        person.setNation(decode(line, starts[2], ends[2]));
+        person.setAddress(decode(line, starts[3], ends[3]));
+        return person;
+    }
+
+    private static String decode(byte[] line, int start, int end) {
+        return new String(line, start, end - start, StandardCharsets.UTF_8);
+    }
+
+    public static int parseInt(byte[] line, int start, int end) {
+        // 与BeanWrapperFieldSetMapper的数字转换一致，忽略首尾空白
+        while (start < end && line[start] == ' ') {
+            start++;
+        }
+        while (end > start && line[end - 1] == ' ') {
+            end--;
+        }
+        if (start == end) {
+            throw new NumberFormatException("Empty numeric field");
+        }
+        boolean negative = line[start] == '-';
+        int i = negative || line[start] == '+' ? start + 1 : start;
+        if (i == end) {
+            throw new NumberFormatException("Invalid numeric field: " + decode(line, start, end));
+        }
+        long value = 0;
+        for (; i < end; i++) {
+            int digit = line[i] - '0';
+            if (digit < 0 || digit > 9) {
+                throw new NumberFormatException("Invalid numeric field: " + decode(line, start, end));
+            }
+            value = value * 10 + digit;
+            if (value > (long) Integer.MAX_VALUE + 1) {
+                throw new NumberFormatException("Numeric field out of range: " + decode(line, start, end));
+            }
+        }
+        if (negative) {
+            value = -value;
+        }
+        if (value > Integer.MAX_VALUE) {
+            throw new NumberFormatException("Numeric field out of range: " + decode(line, start, end));
+        }
+        return (int) value;
+    }
+}
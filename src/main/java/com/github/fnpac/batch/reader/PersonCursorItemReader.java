@@ -0,0 +1,146 @@
+package com.github.fnpac.batch.reader;
+
+import com.github.fnpac.domain.Person;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.batch.item.ExecutionContext;
+import org.springframework.batch.item.ItemStreamException;
+import org.springframework.batch.item.support.AbstractItemStreamItemReader;
+import org.springframework.batch.support.DatabaseType;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.jdbc.support.JdbcUtils;
+import org.springframework.jdbc.support.MetaDataAccessException;
+import org.springframework.util.Assert;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * 按主键顺序流式读取person表，内存占用与表的大小无关。
+ * <p>
+ * 只执行一条 {@code select ... where id > ? order by id}（InnoDB按聚簇索引顺序返回，不需要排序），
+ * 结果集为只进、只读：MySQL上fetchSize为 {@link Integer#MIN_VALUE}，Connector/J逐行从socket读取（流式结果集），
+ * 而不是先把整个结果集读入内存；其它数据库使用 fetchSize（大于0）。
+ * <p>
+ * 使用单独的连接（不参与chunk事务），结果集在step结束前一直打开；MySQL流式读取期间该连接不能执行其它语句。
+ * 重启时从上次提交的最后一个主键之后继续，不需要像 JdbcCursorItemReader 那样重新读取并跳过已处理的行。
+ */
+public class PersonCursorItemReader extends AbstractItemStreamItemReader<Person> implements InitializingBean {
+
+    private static final Logger logger = LoggerFactory.getLogger(PersonCursorItemReader.class);
+
+    private static final String SELECT = "select id, name, age, nation, address from %s where id > ? order by id";
+    private static final String LAST_ID = "last.id";
+
+    private DataSource dataSource;
+    private String table = "person";
+    private int fetchSize = 1000;
+
+    private Connection connection;
+    private PreparedStatement statement;
+    private ResultSet resultSet;
+    private long lastId;
+    private long readCount;
+    private boolean exhausted;
+
+    public PersonCursorItemReader() {
+        setName(PersonCursorItemReader.class.getSimpleName());
+    }
+
+    public void setDataSource(DataSource dataSource) {
+        this.dataSource = dataSource;
+    }
+
+    /**
+     * @param table 读取的表，默认为person
+     */
+    public void setTable(String table) {
+        this.table = table;
+    }
+
+    /**
+     * @param fetchSize 非MySQL数据库每次从服务端获取的行数
+     */
+    public void setFetchSize(int fetchSize) {
+        this.fetchSize = fetchSize;
+    }
+
+    @Override
+    public void afterPropertiesSet() throws Exception {
+        Assert.notNull(dataSource, "DataSource must be set");
+        Assert.isTrue(fetchSize > 0, "fetchSize must be positive");
+    }
+
+    @Override
+    public void open(ExecutionContext executionContext) throws ItemStreamException {
+        lastId = executionContext.getLong(getExecutionContextKey(LAST_ID), 0L);
+        readCount = 0;
+        exhausted = false;
+        try {
+            boolean mysql = DatabaseType.fromMetaData(dataSource) == DatabaseType.MYSQL;
+            connection = dataSource.getConnection();
+            statement = connection.prepareStatement(String.format(SELECT, table),
+                    ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+            statement.setFetchSize(mysql ? Integer.MIN_VALUE : fetchSize);
+            statement.setLong(1, lastId);
+            resultSet = statement.executeQuery();
+        } catch (SQLException | MetaDataAccessException e) {
+            close();
+            throw new ItemStreamException("Failed to open cursor on " + table, e);
+        }
+        if (lastId > 0) {
+            logger.info("Resuming export of {} after id {}", table, lastId);
+        }
+    }
+
+    @Override
+    public Person read() throws SQLException {
+        if (exhausted) {
+            return null;
+        }
+        if (!resultSet.next()) {
+            exhausted = true;
+            return null;
+        }
+        lastId = resultSet.getLong(1);
+        readCount++;
+        Person person = new Person();
+        person.setName(resultSet.getString(2));
+        person.setAge(resultSet.getInt(3));
+        person.setNation(resultSet.getString(4));
+        person.setAddress(resultSet.getString(5));
+        return person;
+    }
+
+    /**
+     * 在chunk提交前调用，此时已读取的行都已写出
+     */
+    @Override
+    public void update(ExecutionContext executionContext) throws ItemStreamException {
+        executionContext.putLong(getExecutionContextKey(LAST_ID), lastId);
+    }
+
+    @Override
+    public void close() throws ItemStreamException {
+        if (statement != null && !exhausted) {
+            // 未读完（step失败）时，关闭流式结果集前Connector/J会读完剩余的行，先取消查询
+            try {
+                statement.cancel();
+            } catch (SQLException e) {
+                logger.debug("Failed to cancel export query", e);
+            }
+        }
+        JdbcUtils.closeResultSet(resultSet);
+        JdbcUtils.closeStatement(statement);
+        JdbcUtils.closeConnection(connection);
+        resultSet = null;
+        statement = null;
+        connection = null;
+        if (readCount > 0) {
+            logger.info("Read {} rows of {}, last id {}", readCount, table, lastId);
+        }
+    }
+}
@@ -0,0 +1,313 @@
+package com.github.fnpac.batch.reader;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.batch.item.ExecutionContext;
+import org.springframework.batch.item.ItemCountAware;
+import org.springframework.batch.item.ItemStreamException;
+import org.springframework.batch.item.ItemStreamReader;
+import org.springframework.batch.item.ItemStreamSupport;
+import org.springframework.batch.item.ReaderNotOpenException;
+import org.springframework.batch.item.file.FlatFileParseException;
+import org.springframework.batch.item.file.LineMapper;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.core.io.Resource;
+import org.springframework.util.Assert;
+
+import java.io.BufferedReader;
+import java.io.InputStreamReader;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 多分片（多个文件、.gz压缩文件）的可重启reader，分片见 {@link InputShards}。
+ * <p>
+ * open时每个分片提交一个解析任务到 threads 个线程的线程池：从（压缩的）源流式读取、解压、按行解析（{@link LineMapper}），
+ * 每 batchSize 条记录放入有界队列（最多 queueCapacity 批，队列满时解析线程阻塞）；read() 从队列中依次取出。
+ * 同一分片的记录保持文件中的顺序，不同分片的记录交错。
+ * <p>
+ * 每个分片的进度分别保存在ExecutionContext中：
+ * <ul>
+ * <li>{@code shard.<文件名>.line}：已读取的最后一条记录的行号</li>
+ * <li>{@code shard.<文件名>.done}：分片已读完</li>
+ * </ul>
+ * 重启时已读完的分片不再打开，其余分片跳过已提交的行（压缩的分片仍需解压这些行）。
+ * <p>
+ * read() 只能由一个线程调用（step线程或流水线的reader线程），不能用于多线程step。
+ * 记录实现 {@link ItemCountAware} 时设置为分片内的行号。跳过空行。
+ *
+ * @param <T> item类型
+ */
+public class ShardedItemReader<T> extends ItemStreamSupport implements ItemStreamReader<T>, InitializingBean {
+
+    private static final Logger logger = LoggerFactory.getLogger(ShardedItemReader.class);
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private List<Resource> shards;
+    private LineMapper<T> lineMapper;
+    private Charset encoding = StandardCharsets.UTF_8;
+    private int threads = 4;
+    private int queueCapacity = 16;
+    private int batchSize = 1000;
+    private boolean saveState = true;
+
+    private List<Shard> states;
+    private ExecutorService pool;
+    private BlockingQueue<Batch<T>> queue;
+    private int remaining;
+
+    private Batch<T> current;
+    private int index;
+
+    public ShardedItemReader() {
+        setName(ShardedItemReader.class.getSimpleName());
+    }
+
+    public void setShards(List<Resource> shards) {
+        this.shards = shards;
+    }
+
+    /**
+     * @param lineMapper 被多个解析线程同时使用，需是线程安全的（DefaultLineMapper + BeanWrapperFieldSetMapper 是线程安全的）
+     */
+    public void setLineMapper(LineMapper<T> lineMapper) {
+        this.lineMapper = lineMapper;
+    }
+
+    public void setEncoding(String encoding) {
+        this.encoding = Charset.forName(encoding);
+    }
+
+    /**
+     * @param threads 同时解压、解析的分片数
+     */
+    public void setThreads(int threads) {
+        this.threads = threads;
+    }
+
+    /**
+     * @param queueCapacity 已解析、尚未读取的批数上限
+     */
+    public void setQueueCapacity(int queueCapacity) {
+        this.queueCapacity = queueCapacity;
+    }
+
+    /**
+     * @param batchSize 解析线程每次放入队列的记录数
+     */
+    public void setBatchSize(int batchSize) {
+        this.batchSize = batchSize;
+    }
+
+    public void setSaveState(boolean saveState) {
+        this.saveState = saveState;
+    }
+
+    @Override
+    public void afterPropertiesSet() throws Exception {
+        Assert.notEmpty(shards, "Shards must be set");
+        Assert.notNull(lineMapper, "LineMapper must be set");
+        Assert.isTrue(threads > 0, "Threads must be positive");
+        Assert.isTrue(queueCapacity > 0, "Queue capacity must be positive");
+        Assert.isTrue(batchSize > 0, "Batch size must be positive");
+    }
+
+    //===============================================
+    // ItemStream
+    //===============================================
+    @Override
+    public void open(ExecutionContext executionContext) throws ItemStreamException {
+        states = new ArrayList<>(shards.size());
+        queue = new ArrayBlockingQueue<>(queueCapacity);
+        pool = Executors.newFixedThreadPool(Math.min(threads, shards.size()), new ShardThreadFactory());
+        remaining = 0;
+        int done = 0;
+        for (Resource resource : shards) {
+            Shard shard = new Shard(resource);
+            states.add(shard);
+            shard.done = executionContext.containsKey(shard.key("done"));
+            shard.lastLine = executionContext.getInt(shard.key("line"), 0);
+            if (shard.done) {
+                done++;
+                continue;
+            }
+            remaining++;
+            final int skipLines = shard.lastLine;
+            pool.execute(() -> parse(shard, skipLines));
+        }
+        if (done > 0) {
+            logger.info("Resuming {} shards: {} already read", states.size(), done);
+        }
+    }
+
+    @Override
+    public void update(ExecutionContext executionContext) throws ItemStreamException {
+        if (!saveState || states == null) {
+            return;
+        }
+        for (Shard shard : states) {
+            executionContext.putInt(shard.key("line"), shard.lastLine);
+            if (shard.done) {
+                executionContext.putString(shard.key("done"), "true");
+            }
+        }
+    }
+
+    @Override
+    public void close() throws ItemStreamException {
+        if (pool != null) {
+            // 中断阻塞在队列上的解析线程
+            pool.shutdownNow();
+            queue.clear();
+            try {
+                pool.awaitTermination(10, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            pool = null;
+        }
+        queue = null;
+        states = null;
+        current = null;
+    }
+
+    //===============================================
+    // 读取
+    //===============================================
+    @Override
+    public T read() throws Exception {
+        if (queue == null) {
+            throw new ReaderNotOpenException("Reader must be open before it can be read.");
+        }
+        while (true) {
+            if (current != null && index < current.items.size()) {
+                current.shard.lastLine = current.lines[index];
+                return current.items.get(index++);
+            }
+            current = null;
+            if (remaining == 0) {
+                return null;
+            }
+            Batch<T> batch = queue.take();
+            if (batch.error != null) {
+                throw batch.error;
+            }
+            if (batch.items == null) {
+                // 分片的记录均已读取
+                batch.shard.done = true;
+                remaining--;
+                continue;
+            }
+            current = batch;
+            index = 0;
+        }
+    }
+
+    /**
+     * 在解析线程中执行：解压、解析一个分片，按批放入队列，最后放入结束标记（或异常）
+     */
+    private void parse(Shard shard, int skipLines) {
+        String description = shard.resource.getDescription();
+        try (BufferedReader in = new BufferedReader(new InputStreamReader(InputShards.open(shard.resource), encoding), BUFFER_SIZE)) {
+            List<T> items = new ArrayList<>(batchSize);
+            int[] lines = new int[batchSize];
+            int lineNumber = 0;
+            String line;
+            while ((line = in.readLine()) != null) {
+                lineNumber++;
+                if (lineNumber <= skipLines || line.isEmpty()) {
+                    continue;
+                }
+                T item;
+                try {
+                    item = lineMapper.mapLine(line, lineNumber);
+                } catch (Exception e) {
+                    throw new FlatFileParseException("Parsing error at line: " + lineNumber + " in resource=["
+                            + description + "], input=[" + line + "]", e, line, lineNumber);
+                }
+                if (item instanceof ItemCountAware) {
+                    ((ItemCountAware) item).setItemCount(lineNumber);
+                }
+                lines[items.size()] = lineNumber;
+                items.add(item);
+                if (items.size() == batchSize) {
+                    queue.put(new Batch<>(shard, items, lines, null));
+                    items = new ArrayList<>(batchSize);
+                    lines = new int[batchSize];
+                }
+            }
+            if (!items.isEmpty()) {
+                queue.put(new Batch<>(shard, items, lines, null));
+            }
+            queue.put(new Batch<T>(shard, null, null, null));
+            logger.debug("Parsed shard {}: {} lines", description, lineNumber);
+        } catch (InterruptedException e) {
+            // reader已关闭
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            try {
+                queue.put(new Batch<T>(shard, null, null, e));
+            } catch (InterruptedException interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private class Shard {
+
+        final Resource resource;
+        /**
+         * 以下字段只由read()所在的线程访问
+         */
+        int lastLine;
+        boolean done;
+
+        Shard(Resource resource) {
+            this.resource = resource;
+        }
+
+        String key(String suffix) {
+            return getExecutionContextKey("shard." + resource.getFilename() + "." + suffix);
+        }
+    }
+
+    private static class Batch<T> {
+
+        final ShardedItemReader<T>.Shard shard;
+        /**
+         * null表示分片结束
+         */
+        final List<T> items;
+        final int[] lines;
+        final Exception error;
+
+        Batch(ShardedItemReader<T>.Shard shard, List<T> items, int[] lines, Exception error) {
+            this.shard = shard;
+            this.items = items;
+            this.lines = lines;
+            this.error = error;
+        }
+    }
+
+    private static class ShardThreadFactory implements ThreadFactory {
+
+        private final AtomicInteger counter = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, "shard-reader-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
@@ -0,0 +1,122 @@
+package com.github.fnpac.batch.remote;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.batch.core.StepExecution;
+import org.springframework.batch.core.explore.JobExplorer;
+import org.springframework.batch.core.partition.PartitionHandler;
+import org.springframework.batch.core.partition.StepExecutionSplitter;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.util.Assert;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * 跨JVM的分区执行（remote partitioning），通过JobRepository所在的数据库协调，不需要消息中间件：
+ * <ol>
+ * <li>manager按partitioner切分，分区的step execution保存在BATCH_STEP_EXECUTION中（与本地分区相同）</li>
+ * <li>分区描述写入工作表（{@link PartitionWorkDao}），各JVM中的 {@link PartitionWorker} 按租约领取并执行</li>
+ * <li>worker执行结束后，结果（状态、计数、ExecutionContext）已由worker的JobRepository写入BATCH_STEP_EXECUTION；
+ * manager轮询工作表，全部分区结束后从JobExplorer读取各分区的step execution，由partition step汇总</li>
+ * </ol>
+ * manager所在的JVM开启worker（batch.remote.worker.enabled=true）时也会参与执行。
+ * <p>
+ * 等待超时或被中断时同样删除工作表中的行，执行中的分区在worker下一次续约时停止。
+ * manager进程退出时工作表中的行保留，但worker只领取、续约job execution仍在运行的分区，
+ * 该job execution被标记为FAILED（或ABANDONED）后，剩余的分区不再执行。
+ */
+public class DatabasePartitionHandler implements PartitionHandler, InitializingBean {
+
+    private static final Logger logger = LoggerFactory.getLogger(DatabasePartitionHandler.class);
+
+    private PartitionWorkDao workDao;
+    private JobExplorer jobExplorer;
+    private String workerStep;
+    private int gridSize = 8;
+    private long pollIntervalMillis = 1000;
+    private long timeoutMillis;
+
+    public void setWorkDao(PartitionWorkDao workDao) {
+        this.workDao = workDao;
+    }
+
+    public void setJobExplorer(JobExplorer jobExplorer) {
+        this.jobExplorer = jobExplorer;
+    }
+
+    /**
+     * @param workerStep worker执行的step的bean名称
+     */
+    public void setWorkerStep(String workerStep) {
+        this.workerStep = workerStep;
+    }
+
+    public void setGridSize(int gridSize) {
+        this.gridSize = gridSize;
+    }
+
+    public void setPollIntervalMillis(long pollIntervalMillis) {
+        this.pollIntervalMillis = pollIntervalMillis;
+    }
+
+    /**
+     * @param timeoutMillis 等待全部分区结束的时间，0表示不限
+     */
+    public void setTimeoutMillis(long timeoutMillis) {
+        this.timeoutMillis = timeoutMillis;
+    }
+
+    @Override
+    public void afterPropertiesSet() throws Exception {
+        Assert.notNull(workDao, "PartitionWorkDao must be set");
+        Assert.notNull(jobExplorer, "JobExplorer must be set");
+        Assert.hasText(workerStep, "Worker step must be set");
+        Assert.isTrue(gridSize > 0, "Grid size must be positive");
+        Assert.isTrue(pollIntervalMillis > 0, "Poll interval must be positive");
+    }
+
+    @Override
+    public Collection<StepExecution> handle(StepExecutionSplitter stepSplitter, StepExecution managerStepExecution) throws Exception {
+        Set<StepExecution> partitions = stepSplitter.split(managerStepExecution, gridSize);
+        if (partitions.isEmpty()) {
+            return partitions;
+        }
+        workDao.publish(managerStepExecution, workerStep, partitions);
+        logger.info("Published {} partitions of {} for remote workers", partitions.size(), managerStepExecution.getStepName());
+
+        long deadline = timeoutMillis > 0 ? System.currentTimeMillis() + timeoutMillis : Long.MAX_VALUE;
+        int unfinished = partitions.size();
+        try {
+            while (unfinished > 0) {
+                if (System.currentTimeMillis() > deadline) {
+                    throw new TimeoutException(unfinished + " of " + partitions.size() + " partitions of "
+                            + managerStepExecution.getStepName() + " not finished after " + timeoutMillis + " ms");
+                }
+                Thread.sleep(pollIntervalMillis);
+                int remaining = workDao.countUnfinished(managerStepExecution);
+                if (remaining != unfinished) {
+                    logger.info("{}: {} of {} partitions finished", managerStepExecution.getStepName(),
+                            partitions.size() - remaining, partitions.size());
+                    unfinished = remaining;
+                }
+            }
+        } finally {
+            // 超时、中断时同样删除：未领取的分区不再被领取，执行中的worker续约失败后停止，
+            // 重启时由新的job execution重新发布，同一区间不会被新旧两个step execution同时导入
+            workDao.delete(managerStepExecution);
+            if (unfinished > 0) {
+                logger.warn("Withdrew {} unfinished partitions of {}", unfinished, managerStepExecution.getStepName());
+            }
+        }
+
+        List<StepExecution> results = new ArrayList<>(partitions.size());
+        for (StepExecution partition : partitions) {
+            results.add(jobExplorer.getStepExecution(partition.getJobExecutionId(), partition.getId()));
+        }
+        return results;
+    }
+}
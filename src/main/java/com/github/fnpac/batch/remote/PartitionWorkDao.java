@@ -0,0 +1,154 @@
+package com.github.fnpac.batch.remote;
+
+import com.github.fnpac.batch.delta.FileFingerprints;
+import com.github.fnpac.batch.partition.LineRangePartitioner;
+import org.springframework.batch.core.StepExecution;
+import org.springframework.batch.item.ExecutionContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * 分区工作表 BATCH_PARTITION_WORK（见schema-remote-partition-mysql.sql）：每行一个分区（即一个worker step execution），
+ * 由manager写入，worker按租约领取。
+ * <p>
+ * 领取不依赖 SELECT ... FOR UPDATE SKIP LOCKED（MySQL 8.0以前、H2不支持）：先查询若干候选行，再逐行执行带条件的UPDATE，
+ * 影响行数为1即领取成功；多个worker竞争同一行时只有一个成功，其余继续尝试下一行，不会互相阻塞。
+ * <p>
+ * 租约到期时间为worker所在JVM的时间（毫秒），各节点的时钟偏差应远小于租约时长。
+ * <p>
+ * 只领取、续约job execution仍在运行的分区：manager退出后，job execution被标记为FAILED后重启，
+ * 旧的分区不会再被领取，执行中的旧分区续约失败后停止，避免与重启后重新发布的分区重复导入同一区间。
+ */
+public class PartitionWorkDao {
+
+    public static final String READY = "READY";
+    public static final String CLAIMED = "CLAIMED";
+    public static final String DONE = "DONE";
+
+    private static final String INSERT = "insert into BATCH_PARTITION_WORK (STEP_EXECUTION_ID, JOB_EXECUTION_ID, " +
+            "MANAGER_STEP_EXECUTION_ID, WORKER_STEP, FILE_NAME, RANGE_START, RANGE_END, STATUS, ATTEMPTS) " +
+            "values (?, ?, ?, ?, ?, ?, ?, '" + READY + "', 0)";
+    /**
+     * 分区所属的job execution仍在运行（manager退出后，job execution被标记为FAILED、ABANDONED前仍视为运行中）
+     */
+    private static final String JOB_RUNNING = "exists (select 1 from BATCH_JOB_EXECUTION e " +
+            "where e.JOB_EXECUTION_ID = BATCH_PARTITION_WORK.JOB_EXECUTION_ID and e.STATUS in ('STARTING', 'STARTED'))";
+    private static final String CANDIDATES = "select STEP_EXECUTION_ID from BATCH_PARTITION_WORK " +
+            "where (STATUS = '" + READY + "' or (STATUS = '" + CLAIMED + "' and LEASE_EXPIRES < ?)) and " + JOB_RUNNING + " " +
+            "order by STEP_EXECUTION_ID";
+    private static final String CLAIM = "update BATCH_PARTITION_WORK " +
+            "set STATUS = '" + CLAIMED + "', WORKER_ID = ?, LEASE_EXPIRES = ?, ATTEMPTS = ATTEMPTS + 1 " +
+            "where STEP_EXECUTION_ID = ? and (STATUS = '" + READY + "' or (STATUS = '" + CLAIMED + "' and LEASE_EXPIRES < ?)) " +
+            "and " + JOB_RUNNING;
+    private static final String RENEW = "update BATCH_PARTITION_WORK set LEASE_EXPIRES = ? " +
+            "where STEP_EXECUTION_ID = ? and WORKER_ID = ? and STATUS = '" + CLAIMED + "' and " + JOB_RUNNING;
+    private static final String COMPLETE = "update BATCH_PARTITION_WORK set STATUS = '" + DONE + "', LEASE_EXPIRES = null " +
+            "where STEP_EXECUTION_ID = ? and WORKER_ID = ? and STATUS = '" + CLAIMED + "'";
+    private static final String FIND = "select STEP_EXECUTION_ID, JOB_EXECUTION_ID, WORKER_STEP, ATTEMPTS " +
+            "from BATCH_PARTITION_WORK where STEP_EXECUTION_ID = ?";
+    private static final String COUNT_UNFINISHED = "select count(*) from BATCH_PARTITION_WORK " +
+            "where MANAGER_STEP_EXECUTION_ID = ? and STATUS <> '" + DONE + "'";
+    private static final String DELETE = "delete from BATCH_PARTITION_WORK where MANAGER_STEP_EXECUTION_ID = ?";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final JdbcTemplate candidateTemplate;
+
+    /**
+     * @param dataSource   JobRepository所在的数据库
+     * @param maxCandidates 每次查询的候选行数
+     */
+    public PartitionWorkDao(DataSource dataSource, int maxCandidates) {
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+        this.candidateTemplate = new JdbcTemplate(dataSource);
+        this.candidateTemplate.setMaxRows(maxCandidates);
+    }
+
+    //===============================================
+    // manager
+    //===============================================
+
+    /**
+     * 发布分区：写入分区描述（输入文件、字节区间）
+     */
+    public void publish(StepExecution managerStepExecution, String workerStep, Collection<StepExecution> partitions) {
+        List<Object[]> rows = new ArrayList<>(partitions.size());
+        String fileName = managerStepExecution.getJobParameters().getString(FileFingerprints.FILE_PARAMETER);
+        for (StepExecution partition : partitions) {
+            ExecutionContext context = partition.getExecutionContext();
+            rows.add(new Object[]{partition.getId(), partition.getJobExecutionId(), managerStepExecution.getId(), workerStep,
+                    fileName,
+                    context.containsKey(LineRangePartitioner.START_KEY) ? context.getLong(LineRangePartitioner.START_KEY) : null,
+                    context.containsKey(LineRangePartitioner.END_KEY) ? context.getLong(LineRangePartitioner.END_KEY) : null});
+        }
+        jdbcTemplate.batchUpdate(INSERT, rows);
+    }
+
+    public int countUnfinished(StepExecution managerStepExecution) {
+        return jdbcTemplate.queryForObject(COUNT_UNFINISHED, Integer.class, managerStepExecution.getId());
+    }
+
+    public void delete(StepExecution managerStepExecution) {
+        jdbcTemplate.update(DELETE, managerStepExecution.getId());
+    }
+
+    //===============================================
+    // worker
+    //===============================================
+
+    /**
+     * 领取一个就绪或租约已过期的分区
+     *
+     * @return 领取的分区，没有可领取的分区时为null
+     */
+    public Work claim(String workerId, long leaseMillis) {
+        long now = System.currentTimeMillis();
+        for (Long stepExecutionId : candidateTemplate.queryForList(CANDIDATES, Long.class, now)) {
+            if (jdbcTemplate.update(CLAIM, workerId, now + leaseMillis, stepExecutionId, now) == 1) {
+                return jdbcTemplate.queryForObject(FIND, (rs, rowNum) -> new Work(rs.getLong("STEP_EXECUTION_ID"),
+                        rs.getLong("JOB_EXECUTION_ID"), rs.getString("WORKER_STEP"), rs.getInt("ATTEMPTS")), stepExecutionId);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @return 是否仍持有租约（manager已撤回分区或job execution已结束时为false）
+     */
+    public boolean renew(Work work, String workerId, long leaseMillis) {
+        return jdbcTemplate.update(RENEW, System.currentTimeMillis() + leaseMillis, work.stepExecutionId, workerId) == 1;
+    }
+
+    /**
+     * @return 是否仍持有租约（租约过期后已被其他worker领取时为false）
+     */
+    public boolean complete(Work work, String workerId) {
+        return jdbcTemplate.update(COMPLETE, work.stepExecutionId, workerId) == 1;
+    }
+
+    public static class Work {
+
+        final long stepExecutionId;
+        final long jobExecutionId;
+        final String workerStep;
+        /**
+         * 含本次领取的次数，大于1表示此前领取的worker租约过期
+         */
+        final int attempts;
+
+        Work(long stepExecutionId, long jobExecutionId, String workerStep, int attempts) {
+            this.stepExecutionId = stepExecutionId;
+            this.jobExecutionId = jobExecutionId;
+            this.workerStep = workerStep;
+            this.attempts = attempts;
+        }
+
+        @Override
+        public String toString() {
+            return workerStep + "[stepExecution=" + stepExecutionId + ", attempt=" + attempts + "]";
+        }
+    }
+}
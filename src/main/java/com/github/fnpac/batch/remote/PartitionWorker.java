@@ -0,0 +1,255 @@
+package com.github.fnpac.batch.remote;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.batch.core.BatchStatus;
+import org.springframework.batch.core.ExitStatus;
+import org.springframework.batch.core.Step;
+import org.springframework.batch.core.StepExecution;
+import org.springframework.batch.core.explore.JobExplorer;
+import org.springframework.batch.core.repository.JobRepository;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.util.Assert;
+
+import java.lang.management.ManagementFactory;
+import java.util.Date;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 远程分区的worker：threads 个线程各自循环领取（{@link PartitionWorkDao#claim}）并执行分区的step execution。
+ * <p>
+ * 执行期间每隔租约时长的1/3续约；续约失败（租约已过期并被其他worker领取、manager已撤回分区或job execution已结束）时停止该step（terminateOnly），
+ * 避免两个worker同时写入同一分区。
+ * <p>
+ * worker进程崩溃后租约过期，分区由其他worker重新领取：step execution仍为STARTED，ExecutionContext中保存了
+ * 最后一次提交的读取位置，重新执行时从该位置继续（与重启相同），已提交的chunk不会重复写入。
+ * 同一分区领取超过 maxAttempts 次时标记为FAILED，由job重启处理。
+ * <p>
+ * 在应用上下文启动完成后开始领取，关闭时停止领取，并等待正在执行的分区结束（最多shutdownTimeoutMillis）。
+ */
+public class PartitionWorker implements SmartLifecycle {
+
+    private static final Logger logger = LoggerFactory.getLogger(PartitionWorker.class);
+
+    private PartitionWorkDao workDao;
+    private JobExplorer jobExplorer;
+    private JobRepository jobRepository;
+    private Map<String, Step> steps;
+    private String workerId = ManagementFactory.getRuntimeMXBean().getName();
+    private int threads = 2;
+    private long leaseMillis = 60000;
+    private long pollIntervalMillis = 1000;
+    private int maxAttempts = 3;
+    private long shutdownTimeoutMillis = 30000;
+    private boolean autoStartup = true;
+
+    private volatile boolean running;
+    private ExecutorService pool;
+    private ScheduledExecutorService heartbeat;
+
+    public void setWorkDao(PartitionWorkDao workDao) {
+        this.workDao = workDao;
+    }
+
+    public void setJobExplorer(JobExplorer jobExplorer) {
+        this.jobExplorer = jobExplorer;
+    }
+
+    public void setJobRepository(JobRepository jobRepository) {
+        this.jobRepository = jobRepository;
+    }
+
+    /**
+     * @param steps step的bean名称 → step，按工作表中的WORKER_STEP查找
+     */
+    public void setSteps(Map<String, Step> steps) {
+        this.steps = steps;
+    }
+
+    /**
+     * @param workerId worker标识，默认为 pid@主机名
+     */
+    public void setWorkerId(String workerId) {
+        this.workerId = workerId;
+    }
+
+    /**
+     * @param threads 同时执行的分区数
+     */
+    public void setThreads(int threads) {
+        this.threads = threads;
+    }
+
+    public void setLeaseMillis(long leaseMillis) {
+        this.leaseMillis = leaseMillis;
+    }
+
+    public void setPollIntervalMillis(long pollIntervalMillis) {
+        this.pollIntervalMillis = pollIntervalMillis;
+    }
+
+    public void setMaxAttempts(int maxAttempts) {
+        this.maxAttempts = maxAttempts;
+    }
+
+    public void setShutdownTimeoutMillis(long shutdownTimeoutMillis) {
+        this.shutdownTimeoutMillis = shutdownTimeoutMillis;
+    }
+
+    /**
+     * @param autoStartup 是否随应用上下文启动，不启动时本JVM不领取分区
+     */
+    public void setAutoStartup(boolean autoStartup) {
+        this.autoStartup = autoStartup;
+    }
+
+    //===============================================
+    // SmartLifecycle
+    //===============================================
+    @Override
+    public synchronized void start() {
+        Assert.state(workDao != null && jobExplorer != null && jobRepository != null && steps != null,
+                "PartitionWorkDao, JobExplorer, JobRepository and steps must be set");
+        Assert.state(threads > 0 && leaseMillis > 0 && pollIntervalMillis > 0, "Invalid worker settings");
+        if (running) {
+            return;
+        }
+        running = true;
+        AtomicInteger counter = new AtomicInteger();
+        pool = Executors.newFixedThreadPool(threads, runnable -> new Thread(runnable, "partition-worker-" + counter.incrementAndGet()));
+        heartbeat = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "partition-lease");
+            thread.setDaemon(true);
+            return thread;
+        });
+        for (int i = 0; i < threads; i++) {
+            pool.execute(this::claimLoop);
+        }
+        logger.info("Partition worker {} started with {} threads, lease {} ms", workerId, threads, leaseMillis);
+    }
+
+    @Override
+    public synchronized void stop() {
+        if (!running) {
+            return;
+        }
+        running = false;
+        pool.shutdown();
+        try {
+            if (!pool.awaitTermination(shutdownTimeoutMillis, TimeUnit.MILLISECONDS)) {
+                // 未结束的分区租约过期后由其他worker继续执行
+                logger.warn("Partition worker {} stopped with partitions still running", workerId);
+                pool.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        heartbeat.shutdownNow();
+    }
+
+    @Override
+    public void stop(Runnable callback) {
+        stop();
+        callback.run();
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    @Override
+    public boolean isAutoStartup() {
+        return autoStartup;
+    }
+
+    /**
+     * 最后启动、最先停止
+     */
+    @Override
+    public int getPhase() {
+        return Integer.MAX_VALUE;
+    }
+
+    //===============================================
+    // 领取、执行
+    //===============================================
+    private void claimLoop() {
+        while (running) {
+            try {
+                PartitionWorkDao.Work work = workDao.claim(workerId, leaseMillis);
+                if (work == null) {
+                    Thread.sleep(pollIntervalMillis);
+                    continue;
+                }
+                execute(work);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (Exception e) {
+                // 数据库暂时不可用等，稍后重试；未完成的分区租约过期后重新领取
+                logger.error("Partition worker {} failed, retrying in {} ms", workerId, pollIntervalMillis, e);
+                try {
+                    Thread.sleep(pollIntervalMillis);
+                } catch (InterruptedException interrupted) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }
+    }
+
+    private void execute(PartitionWorkDao.Work work) throws Exception {
+        StepExecution stepExecution = jobExplorer.getStepExecution(work.jobExecutionId, work.stepExecutionId);
+        if (stepExecution == null) {
+            logger.warn("Step execution of {} not found, discarding", work);
+            workDao.complete(work, workerId);
+            return;
+        }
+        if (!stepExecution.getStatus().isRunning()) {
+            // 上一个worker已执行完，但在标记DONE之前退出
+            workDao.complete(work, workerId);
+            return;
+        }
+        if (work.attempts > maxAttempts) {
+            logger.error("Giving up {} after {} expired leases", work, work.attempts - 1);
+            stepExecution.setStatus(BatchStatus.FAILED);
+            stepExecution.setExitStatus(ExitStatus.FAILED.addExitDescription(
+                    "Partition lease expired " + (work.attempts - 1) + " times, workers presumed dead"));
+            stepExecution.setEndTime(new Date());
+            jobRepository.update(stepExecution);
+            workDao.complete(work, workerId);
+            return;
+        }
+        Step step = steps.get(work.workerStep);
+        Assert.state(step != null, "No step named " + work.workerStep + " in worker " + workerId);
+        if (work.attempts > 1) {
+            logger.info("Re-running {} after an expired lease, resuming from its last commit", work);
+        }
+
+        ScheduledFuture<?> renewal = heartbeat.scheduleAtFixedRate(() -> {
+            try {
+                if (!workDao.renew(work, workerId, leaseMillis)) {
+                    logger.warn("Lost lease of {}, stopping", work);
+                    stepExecution.setTerminateOnly();
+                }
+            } catch (Exception e) {
+                logger.warn("Failed to renew lease of {}", work, e);
+            }
+        }, leaseMillis / 3, leaseMillis / 3, TimeUnit.MILLISECONDS);
+        try {
+            step.execute(stepExecution);
+        } finally {
+            renewal.cancel(false);
+        }
+        if (workDao.complete(work, workerId)) {
+            logger.info("Finished {}: {}, {} written", work, stepExecution.getStatus(), stepExecution.getWriteCount());
+        }
+    }
+}
@@ -0,0 +1,37 @@
+package com.github.fnpac.batch.remote;
+
+import com.github.fnpac.batch.BatchConfig;
+import com.github.fnpac.config.DataSourceConfig;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Import;
+import org.springframework.context.support.PropertySourcesPlaceholderConfigurer;
+
+/**
+ * 独立的worker进程：只加载数据源与batch配置（不启动web、不调度导入），领取并执行remotePartitionedStep的分区。
+ * <p>
+ * 与manager连接同一数据库（druid.properties），可在同一台机器上启动多个进程：
+ * <pre>
+ * java -cp ... -Dbatch.remote.worker.threads=2 com.github.fnpac.batch.remote.PartitionWorkerApplication
+ * </pre>
+ * batch.properties中的配置可以通过同名的系统属性覆盖。收到SIGTERM时停止领取，等待正在执行的分区结束后退出；
+ * 进程被强制结束时，其分区在租约过期后由其他worker继续执行。
+ */
+@Configuration
+@Import({DataSourceConfig.class, BatchConfig.class})
+public class PartitionWorkerApplication {
+
+    @Bean
+    public static PropertySourcesPlaceholderConfigurer propertySourcesPlaceholderConfigurer() {
+        return new PropertySourcesPlaceholderConfigurer();
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+        System.setProperty("batch.remote.worker.enabled", "true");
+        AnnotationConfigApplicationContext context = new AnnotationConfigApplicationContext(PartitionWorkerApplication.class);
+        context.registerShutdownHook();
+        // worker线程不是守护线程，保持进程运行直到关闭
+        Thread.currentThread().join();
+    }
+}
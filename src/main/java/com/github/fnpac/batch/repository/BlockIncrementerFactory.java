@@ -0,0 +1,44 @@
+package com.github.fnpac.batch.repository;
+
+import org.springframework.batch.item.database.support.DataFieldMaxValueIncrementerFactory;
+import org.springframework.batch.item.database.support.DefaultDataFieldMaxValueIncrementerFactory;
+import org.springframework.batch.support.DatabaseType;
+import org.springframework.jdbc.support.incrementer.DataFieldMaxValueIncrementer;
+
+import javax.sql.DataSource;
+
+/**
+ * JobRepository的ID生成工厂：MySQL使用按块分配的 {@link BlockSequenceIncrementer}，其他数据库使用Spring Batch默认的实现。
+ */
+public class BlockIncrementerFactory implements DataFieldMaxValueIncrementerFactory {
+
+    private static final String COLUMN_NAME = "ID";
+
+    private final DataSource dataSource;
+    private final int blockSize;
+    private final DefaultDataFieldMaxValueIncrementerFactory delegate;
+
+    public BlockIncrementerFactory(DataSource dataSource, int blockSize) {
+        this.dataSource = dataSource;
+        this.blockSize = blockSize;
+        this.delegate = new DefaultDataFieldMaxValueIncrementerFactory(dataSource);
+    }
+
+    @Override
+    public DataFieldMaxValueIncrementer getIncrementer(String databaseType, String incrementerName) {
+        if (DatabaseType.MYSQL == DatabaseType.valueOf(databaseType.toUpperCase())) {
+            return new BlockSequenceIncrementer(dataSource, incrementerName, COLUMN_NAME, blockSize);
+        }
+        return delegate.getIncrementer(databaseType, incrementerName);
+    }
+
+    @Override
+    public boolean isSupportedIncrementerType(String databaseType) {
+        return delegate.isSupportedIncrementerType(databaseType);
+    }
+
+    @Override
+    public String[] getSupportedIncrementerTypes() {
+        return delegate.getSupportedIncrementerTypes();
+    }
+}
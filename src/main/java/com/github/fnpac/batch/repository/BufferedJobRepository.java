@@ -0,0 +1,313 @@
+package com.github.fnpac.batch.repository;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.batch.core.BatchStatus;
+import org.springframework.batch.core.JobExecution;
+import org.springframework.batch.core.JobInstance;
+import org.springframework.batch.core.JobParameters;
+import org.springframework.batch.core.StepExecution;
+import org.springframework.batch.core.repository.JobExecutionAlreadyRunningException;
+import org.springframework.batch.core.repository.JobInstanceAlreadyCompleteException;
+import org.springframework.batch.core.repository.JobRepository;
+import org.springframework.batch.core.repository.JobRestartException;
+import org.springframework.beans.factory.DisposableBean;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 合并（写后）BATCH_STEP_EXECUTION 更新的JobRepository装饰器，用于高频调度的小任务，减少每个chunk提交时对元数据表的写入。
+ * <p>
+ * 行为：
+ * <ul>
+ * <li>运行中（{@link BatchStatus#STARTED}）的step execution，{@link #update(StepExecution)}（读写计数等）
+ * 在 updateIntervalMillis 内最多写入一次，其余的更新先缓存；状态变化（完成、失败、停止）时立即写入最新状态（缓存的是同一个对象，不再单独写入）</li>
+ * <li>asyncWriteBehind=true时，缓存的更新由后台线程按间隔写入，step线程不再等待；否则在下一次到期的update中同步写入。
+ * 后台线程写入的是快照，不修改step execution的版本号（chunk回滚时TaskletStep会恢复chunk开始时的版本号），
+ * 写入后的版本号单独记录，step线程写入状态变化前再设置到step execution上</li>
+ * <li>{@link #updateExecutionContext(StepExecution)} 默认每次都写入（与chunk在同一事务中），
+ * contextUpdateIntervalMillis大于0时同样按间隔合并；ExecutionContext只在step线程中写入，不参与异步写入</li>
+ * <li>其余方法直接委托</li>
+ * </ul>
+ * <p>
+ * 崩溃一致性：
+ * <ul>
+ * <li>BATCH_STEP_EXECUTION中的计数可能落后于实际最多一个间隔；重启只依赖ExecutionContext，不受影响，
+ * 但在崩溃后的（FAILED/UNKNOWN）记录中看到的计数可能偏小</li>
+ * <li>ExecutionContext（reader的读取位置）在默认配置下仍与chunk同事务提交，重启精确地从最后提交的chunk继续。
+ * 开启 contextUpdateIntervalMillis 后，崩溃重启时会从最近一次写入的位置继续，已提交但位置未写入的chunk会被重新导入（至少一次），
+ * 只适合幂等的writer（例如upsert）</li>
+ * <li>JobOperator.stop() 的停止信号在SimpleJobRepository.update(StepExecution)中检测，合并更新后最多延迟一个间隔</li>
+ * </ul>
+ */
+public class BufferedJobRepository implements JobRepository, DisposableBean {
+
+    private static final Logger logger = LoggerFactory.getLogger(BufferedJobRepository.class);
+
+    private final JobRepository delegate;
+
+    private long updateIntervalMillis = 1000;
+    private long contextUpdateIntervalMillis = 0;
+
+    private final Object lock = new Object();
+    /**
+     * step execution id → 尚未写入的step execution
+     */
+    private final Map<Long, StepExecution> pendingUpdates = new LinkedHashMap<>();
+    private final Map<Long, StepExecution> pendingContexts = new LinkedHashMap<>();
+    private final Map<Long, Long> lastUpdated = new LinkedHashMap<>();
+    private final Map<Long, Long> lastContextUpdated = new LinkedHashMap<>();
+    /**
+     * step execution id → 后台线程写入后BATCH_STEP_EXECUTION中的版本号
+     */
+    private final Map<Long, Integer> writtenVersions = new LinkedHashMap<>();
+
+    private ScheduledExecutorService writeBehind;
+
+    public BufferedJobRepository(JobRepository delegate) {
+        this.delegate = delegate;
+    }
+
+    /**
+     * @param updateIntervalMillis 运行中step execution的最小写入间隔
+     */
+    public void setUpdateIntervalMillis(long updateIntervalMillis) {
+        this.updateIntervalMillis = updateIntervalMillis;
+    }
+
+    /**
+     * @param contextUpdateIntervalMillis ExecutionContext的最小写入间隔，0表示每次都写入（默认，精确重启）
+     */
+    public void setContextUpdateIntervalMillis(long contextUpdateIntervalMillis) {
+        this.contextUpdateIntervalMillis = contextUpdateIntervalMillis;
+    }
+
+    /**
+     * @param asyncWriteBehind 是否由后台线程写入缓存的更新
+     */
+    public void setAsyncWriteBehind(boolean asyncWriteBehind) {
+        if (asyncWriteBehind && writeBehind == null) {
+            writeBehind = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "job-repository-write-behind");
+                thread.setDaemon(true);
+                return thread;
+            });
+            writeBehind.scheduleWithFixedDelay(this::flushQuietly, updateIntervalMillis, updateIntervalMillis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    //===============================================
+    // 合并更新
+    //===============================================
+    @Override
+    public void update(StepExecution stepExecution) {
+        if (stepExecution.getId() == null || stepExecution.getStatus() != BatchStatus.STARTED) {
+            // 状态变化：缓存的计数更新就是同一个对象，直接同步写入最新状态
+            synchronized (lock) {
+                pendingUpdates.remove(stepExecution.getId());
+                flushContext(stepExecution.getId());
+                Integer version = writtenVersions.remove(stepExecution.getId());
+                if (version != null) {
+                    stepExecution.setVersion(version);
+                }
+                delegate.update(stepExecution);
+                lastUpdated.remove(stepExecution.getId());
+                lastContextUpdated.remove(stepExecution.getId());
+            }
+            return;
+        }
+        synchronized (lock) {
+            if (isDue(lastUpdated, stepExecution.getId(), updateIntervalMillis) && writeBehind == null) {
+                pendingUpdates.remove(stepExecution.getId());
+                delegate.update(stepExecution);
+                lastUpdated.put(stepExecution.getId(), System.currentTimeMillis());
+            } else {
+                pendingUpdates.put(stepExecution.getId(), stepExecution);
+            }
+        }
+    }
+
+    @Override
+    public void updateExecutionContext(StepExecution stepExecution) {
+        if (contextUpdateIntervalMillis <= 0 || stepExecution.getStatus() != BatchStatus.STARTED) {
+            synchronized (lock) {
+                pendingContexts.remove(stepExecution.getId());
+            }
+            delegate.updateExecutionContext(stepExecution);
+            return;
+        }
+        synchronized (lock) {
+            if (isDue(lastContextUpdated, stepExecution.getId(), contextUpdateIntervalMillis)) {
+                pendingContexts.remove(stepExecution.getId());
+                delegate.updateExecutionContext(stepExecution);
+                lastContextUpdated.put(stepExecution.getId(), System.currentTimeMillis());
+            } else {
+                pendingContexts.put(stepExecution.getId(), stepExecution);
+            }
+        }
+    }
+
+    private static boolean isDue(Map<Long, Long> lastUpdated, Long id, long interval) {
+        Long last = lastUpdated.get(id);
+        return last == null || System.currentTimeMillis() - last >= interval;
+    }
+
+    /**
+     * 写入指定step execution缓存的ExecutionContext，只能在step线程中调用（step线程会同时修改ExecutionContext），
+     * 调用方需持有 {@link #lock}
+     */
+    private void flushContext(Long id) {
+        if (id == null) {
+            return;
+        }
+        StepExecution context = pendingContexts.remove(id);
+        if (context != null) {
+            delegate.updateExecutionContext(context);
+            lastContextUpdated.put(id, System.currentTimeMillis());
+        }
+    }
+
+    /**
+     * 写入所有缓存的计数更新（BATCH_STEP_EXECUTION）
+     */
+    public void flush() {
+        synchronized (lock) {
+            List<StepExecution> pending = new ArrayList<>(pendingUpdates.values());
+            pendingUpdates.clear();
+            for (StepExecution stepExecution : pending) {
+                write(stepExecution);
+            }
+        }
+    }
+
+    private void flushQuietly() {
+        try {
+            flush();
+        } catch (RuntimeException e) {
+            logger.warn("Write-behind flush of step executions failed", e);
+        }
+    }
+
+    /**
+     * 写入一条缓存的step execution更新。异步写入时step线程仍在修改原对象，因此写入其快照，记录写入后的版本号，再同步停止信号。
+     * 版本号不设置到原对象上：step线程的chunk回滚时会把它恢复为chunk开始时的值，覆盖后台线程设置的版本号。
+     */
+    private void write(StepExecution stepExecution) {
+        if (writeBehind == null) {
+            delegate.update(stepExecution);
+            lastUpdated.put(stepExecution.getId(), System.currentTimeMillis());
+            return;
+        }
+        StepExecution snapshot = snapshot(stepExecution);
+        Integer version = writtenVersions.get(stepExecution.getId());
+        if (version != null) {
+            snapshot.setVersion(version);
+        }
+        delegate.update(snapshot);
+        writtenVersions.put(stepExecution.getId(), snapshot.getVersion());
+        if (snapshot.isTerminateOnly()) {
+            stepExecution.setTerminateOnly();
+        }
+        lastUpdated.put(stepExecution.getId(), System.currentTimeMillis());
+    }
+
+    private static StepExecution snapshot(StepExecution stepExecution) {
+        synchronized (stepExecution) {
+            StepExecution snapshot = new StepExecution(stepExecution.getStepName(), stepExecution.getJobExecution());
+            snapshot.setId(stepExecution.getId());
+            snapshot.setVersion(stepExecution.getVersion());
+            snapshot.setStatus(stepExecution.getStatus());
+            snapshot.setExitStatus(stepExecution.getExitStatus());
+            snapshot.setStartTime(stepExecution.getStartTime());
+            snapshot.setEndTime(stepExecution.getEndTime());
+            snapshot.setLastUpdated(stepExecution.getLastUpdated());
+            snapshot.setCommitCount(stepExecution.getCommitCount());
+            snapshot.setReadCount(stepExecution.getReadCount());
+            snapshot.setFilterCount(stepExecution.getFilterCount());
+            snapshot.setWriteCount(stepExecution.getWriteCount());
+            snapshot.setReadSkipCount(stepExecution.getReadSkipCount());
+            snapshot.setProcessSkipCount(stepExecution.getProcessSkipCount());
+            snapshot.setWriteSkipCount(stepExecution.getWriteSkipCount());
+            snapshot.setRollbackCount(stepExecution.getRollbackCount());
+            return snapshot;
+        }
+    }
+
+    @Override
+    public void destroy() throws Exception {
+        if (writeBehind != null) {
+            writeBehind.shutdown();
+            writeBehind.awaitTermination(updateIntervalMillis * 2, TimeUnit.MILLISECONDS);
+        }
+        flushQuietly();
+    }
+
+    //===============================================
+    // 委托
+    //===============================================
+    @Override
+    public boolean isJobInstanceExists(String jobName, JobParameters jobParameters) {
+        return delegate.isJobInstanceExists(jobName, jobParameters);
+    }
+
+    @Override
+    public JobInstance createJobInstance(String jobName, JobParameters jobParameters) {
+        return delegate.createJobInstance(jobName, jobParameters);
+    }
+
+    @Override
+    public JobExecution createJobExecution(JobInstance jobInstance, JobParameters jobParameters, String jobConfigurationLocation) {
+        return delegate.createJobExecution(jobInstance, jobParameters, jobConfigurationLocation);
+    }
+
+    @Override
+    public JobExecution createJobExecution(String jobName, JobParameters jobParameters)
+            throws JobExecutionAlreadyRunningException, JobRestartException, JobInstanceAlreadyCompleteException {
+        return delegate.createJobExecution(jobName, jobParameters);
+    }
+
+    @Override
+    public void update(JobExecution jobExecution) {
+        delegate.update(jobExecution);
+    }
+
+    @Override
+    public void add(StepExecution stepExecution) {
+        delegate.add(stepExecution);
+    }
+
+    @Override
+    public void addAll(Collection<StepExecution> stepExecutions) {
+        delegate.addAll(stepExecutions);
+    }
+
+    @Override
+    public void updateExecutionContext(JobExecution jobExecution) {
+        delegate.updateExecutionContext(jobExecution);
+    }
+
+    @Override
+    public StepExecution getLastStepExecution(JobInstance jobInstance, String stepName) {
+        // 读取前写入缓存的更新，保证读到的是最新状态
+        flush();
+        return delegate.getLastStepExecution(jobInstance, stepName);
+    }
+
+    @Override
+    public int getStepExecutionCount(JobInstance jobInstance, String stepName) {
+        return delegate.getStepExecutionCount(jobInstance, stepName);
+    }
+
+    @Override
+    public JobExecution getLastJobExecution(String jobName, JobParameters jobParameters) {
+        flush();
+        return delegate.getLastJobExecution(jobName, jobParameters);
+    }
+}
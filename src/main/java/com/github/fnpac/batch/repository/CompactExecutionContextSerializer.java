@@ -0,0 +1,360 @@
+package com.github.fnpac.batch.repository;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.github.fnpac.config.converter.JacksonObjectMapper;
+import org.springframework.batch.core.repository.ExecutionContextSerializer;
+import org.springframework.batch.core.repository.dao.XStreamExecutionContextStringSerializer;
+import org.springframework.core.ConfigurableObjectInputStream;
+import org.springframework.util.ClassUtils;
+import org.springframework.util.StreamUtils;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * 紧凑的ExecutionContext序列化，替代默认的 {@link XStreamExecutionContextStringSerializer}（反射 + 带类名的冗长JSON）。
+ * <p>
+ * 格式：通过Jackson流式读写（{@link JacksonObjectMapper} 的JsonFactory），按值类型分组，类型只在组名中出现一次：
+ * <pre>
+ * {"v":1,"p":1,"s":{"key":"value"},"i":{...},"l":{...},"d":{...},"b":{...},"t":{...},"a":{...},"o":{...}}
+ * </pre>
+ * s/i/l/d/b 为String/Integer/Long/Double/Boolean，t为Date（毫秒），a为long[]，o为其它可序列化对象（Java序列化后Base64）。
+ * JSON没有NaN、Infinity，这些Double写为字符串 {@code "NaN"}、{@code "Infinity"}、{@code "-Infinity"}。
+ * <p>
+ * 键的增量编码（p=1）：每组内的键排序后，只保存与前一个键不同的后缀，写作 {@code "<相同前缀长度>~<后缀>"}。
+ * 分片、分区、字节区间等重启状态的键有很长的公共前缀（如 {@code ShardedItemReader.shard.17.line}），大多只保存几个字符。
+ * <p>
+ * 压缩：序列化结果超过 compressionThreshold 字节时，以 {@code Z} 开头，后接deflate压缩后的Base64，
+ * 尽量使上下文保持在 SHORT_CONTEXT（VARCHAR(2500)）中，不写入 SERIALIZED_CONTEXT（TEXT）。
+ * <p>
+ * 读取时按内容识别格式，原XStream格式的上下文仍可读取（迁移后重启旧的job execution），下次写入时改为新格式。
+ * <p>
+ * JdbcExecutionContextDao按ISO-8859-1在字节与字符串之间转换，非ASCII的UTF-8字节同样可以原样往返。
+ */
+public class CompactExecutionContextSerializer implements ExecutionContextSerializer {
+
+    private static final int VERSION = 1;
+    private static final byte COMPRESSED = 'Z';
+    private static final byte[] HEADER = "{\"v\":".getBytes(StandardCharsets.US_ASCII);
+
+    private static final String STRING = "s";
+    private static final String INTEGER = "i";
+    private static final String LONG = "l";
+    private static final String DOUBLE = "d";
+    private static final String BOOLEAN = "b";
+    private static final String DATE = "t";
+    private static final String LONG_ARRAY = "a";
+    private static final String OBJECT = "o";
+
+    private final JsonFactory jsonFactory = new JacksonObjectMapper().getFactory();
+
+    private int compressionThreshold = -1;
+    private boolean prefixCompression = true;
+
+    private volatile XStreamExecutionContextStringSerializer legacy;
+
+    /**
+     * @param compressionThreshold 超过该字节数时压缩，-1表示不压缩（默认）
+     */
+    public void setCompressionThreshold(int compressionThreshold) {
+        this.compressionThreshold = compressionThreshold;
+    }
+
+    /**
+     * @param prefixCompression 是否对键做增量（公共前缀）编码，默认开启
+     */
+    public void setPrefixCompression(boolean prefixCompression) {
+        this.prefixCompression = prefixCompression;
+    }
+
+    //===============================================
+    // 写入
+    //===============================================
+    @Override
+    public void serialize(Map<String, Object> context, OutputStream out) throws IOException {
+        Map<String, TreeMap<String, Object>> groups = new TreeMap<>();
+        for (Map.Entry<String, Object> entry : context.entrySet()) {
+            groups.computeIfAbsent(type(entry.getValue()), group -> new TreeMap<>()).put(entry.getKey(), entry.getValue());
+        }
+
+        ByteArrayOutputStream json = new ByteArrayOutputStream(256);
+        try (JsonGenerator generator = jsonFactory.createGenerator(json, JsonEncoding.UTF8)) {
+            generator.writeStartObject();
+            generator.writeNumberField("v", VERSION);
+            if (prefixCompression) {
+                generator.writeNumberField("p", 1);
+            }
+            for (Map.Entry<String, TreeMap<String, Object>> group : groups.entrySet()) {
+                generator.writeObjectFieldStart(group.getKey());
+                String previous = "";
+                for (Map.Entry<String, Object> entry : group.getValue().entrySet()) {
+                    String key = entry.getKey();
+                    generator.writeFieldName(prefixCompression ? encodeKey(previous, key) : key);
+                    writeValue(generator, group.getKey(), entry.getValue());
+                    previous = key;
+                }
+                generator.writeEndObject();
+            }
+            generator.writeEndObject();
+        }
+
+        if (compressionThreshold >= 0 && json.size() > compressionThreshold) {
+            out.write(COMPRESSED);
+            out.write(Base64.getEncoder().encode(deflate(json.toByteArray())));
+        } else {
+            json.writeTo(out);
+        }
+    }
+
+    private static String type(Object value) {
+        Class<?> type = value.getClass();
+        if (type == String.class) {
+            return STRING;
+        } else if (type == Integer.class) {
+            return INTEGER;
+        } else if (type == Long.class) {
+            return LONG;
+        } else if (type == Double.class) {
+            return DOUBLE;
+        } else if (type == Boolean.class) {
+            return BOOLEAN;
+        } else if (type == Date.class) {
+            return DATE;
+        } else if (type == long[].class) {
+            return LONG_ARRAY;
+        }
+        return OBJECT;
+    }
+
+    private static String encodeKey(String previous, String key) {
+        int max = Math.min(previous.length(), key.length());
+        int common = 0;
+        while (common < max && previous.charAt(common) == key.charAt(common)) {
+            common++;
+        }
+        return common + "~" + key.substring(common);
+    }
+
+    private static void writeValue(JsonGenerator generator, String type, Object value) throws IOException {
+        switch (type) {
+            case STRING:
+                generator.writeString((String) value);
+                break;
+            case INTEGER:
+                generator.writeNumber((Integer) value);
+                break;
+            case LONG:
+                generator.writeNumber((Long) value);
+                break;
+            case DOUBLE:
+                double number = (Double) value;
+                if (Double.isNaN(number) || Double.isInfinite(number)) {
+                    generator.writeString(Double.toString(number));
+                } else {
+                    generator.writeNumber(number);
+                }
+                break;
+            case BOOLEAN:
+                generator.writeBoolean((Boolean) value);
+                break;
+            case DATE:
+                generator.writeNumber(((Date) value).getTime());
+                break;
+            case LONG_ARRAY:
+                long[] array = (long[]) value;
+                generator.writeArray(array, 0, array.length);
+                break;
+            default:
+                ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+                try (ObjectOutputStream objectOut = new ObjectOutputStream(bytes)) {
+                    objectOut.writeObject(value);
+                }
+                generator.writeBinary(bytes.toByteArray());
+        }
+    }
+
+    private static byte[] deflate(byte[] bytes) {
+        Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        try {
+            deflater.setInput(bytes);
+            deflater.finish();
+            ByteArrayOutputStream out = new ByteArrayOutputStream(bytes.length / 4 + 16);
+            byte[] buffer = new byte[4096];
+            while (!deflater.finished()) {
+                out.write(buffer, 0, deflater.deflate(buffer));
+            }
+            return out.toByteArray();
+        } finally {
+            deflater.end();
+        }
+    }
+
+    //===============================================
+    // 读取
+    //===============================================
+    @Override
+    public Map<String, Object> deserialize(InputStream in) throws IOException {
+        byte[] bytes = StreamUtils.copyToByteArray(in);
+        if (bytes.length > 0 && bytes[0] == COMPRESSED) {
+            bytes = inflate(Base64.getDecoder().decode(new String(bytes, 1, bytes.length - 1, StandardCharsets.US_ASCII)));
+        }
+        if (!startsWith(bytes, HEADER)) {
+            return legacy().deserialize(new ByteArrayInputStream(bytes));
+        }
+
+        Map<String, Object> context = new HashMap<>();
+        try (JsonParser parser = jsonFactory.createParser(bytes)) {
+            expect(parser.nextToken(), JsonToken.START_OBJECT);
+            boolean prefixCoded = false;
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.getCurrentName();
+                parser.nextToken();
+                if ("v".equals(field)) {
+                    if (parser.getIntValue() != VERSION) {
+                        throw new IOException("Unsupported execution context version: " + parser.getIntValue());
+                    }
+                } else if ("p".equals(field)) {
+                    prefixCoded = parser.getIntValue() == 1;
+                } else {
+                    expect(parser.currentToken(), JsonToken.START_OBJECT);
+                    String previous = "";
+                    while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                        String key = prefixCoded ? decodeKey(previous, parser.getCurrentName()) : parser.getCurrentName();
+                        parser.nextToken();
+                        context.put(key, readValue(parser, field));
+                        previous = key;
+                    }
+                }
+            }
+        }
+        return context;
+    }
+
+    private static String decodeKey(String previous, String encoded) throws IOException {
+        int separator = encoded.indexOf('~');
+        if (separator < 0) {
+            throw new IOException("Invalid prefix-coded key: " + encoded);
+        }
+        int common = Integer.parseInt(encoded.substring(0, separator));
+        return previous.substring(0, common) + encoded.substring(separator + 1);
+    }
+
+    private static Object readValue(JsonParser parser, String type) throws IOException {
+        switch (type) {
+            case STRING:
+                return parser.getText();
+            case INTEGER:
+                return parser.getIntValue();
+            case LONG:
+                return parser.getLongValue();
+            case DOUBLE:
+                if (parser.currentToken() == JsonToken.VALUE_STRING) {
+                    // NaN、Infinity、-Infinity
+                    return Double.valueOf(parser.getText());
+                }
+                return parser.getDoubleValue();
+            case BOOLEAN:
+                return parser.getBooleanValue();
+            case DATE:
+                return new Date(parser.getLongValue());
+            case LONG_ARRAY:
+                expect(parser.currentToken(), JsonToken.START_ARRAY);
+                List<Long> values = new ArrayList<>();
+                while (parser.nextToken() != JsonToken.END_ARRAY) {
+                    values.add(parser.getLongValue());
+                }
+                long[] array = new long[values.size()];
+                for (int i = 0; i < array.length; i++) {
+                    array[i] = values.get(i);
+                }
+                return array;
+            case OBJECT:
+                try (ConfigurableObjectInputStream objectIn = new ConfigurableObjectInputStream(
+                        new ByteArrayInputStream(parser.getBinaryValue()), ClassUtils.getDefaultClassLoader())) {
+                    return objectIn.readObject();
+                } catch (ClassNotFoundException e) {
+                    throw new IOException("Failed to deserialize execution context value", e);
+                }
+            default:
+                throw new IOException("Unknown execution context value type: " + type);
+        }
+    }
+
+    private static void expect(JsonToken actual, JsonToken expected) throws IOException {
+        if (actual != expected) {
+            throw new IOException("Invalid execution context: expected " + expected + ", actual " + actual);
+        }
+    }
+
+    private static boolean startsWith(byte[] bytes, byte[] prefix) {
+        if (bytes.length < prefix.length) {
+            return false;
+        }
+        for (int i = 0; i < prefix.length; i++) {
+            if (bytes[i] != prefix[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static byte[] inflate(byte[] bytes) throws IOException {
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(bytes);
+            ByteArrayOutputStream out = new ByteArrayOutputStream(bytes.length * 4);
+            byte[] buffer = new byte[4096];
+            while (!inflater.finished()) {
+                int length = inflater.inflate(buffer);
+                if (length == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    throw new IOException("Truncated compressed execution context");
+                }
+                out.write(buffer, 0, length);
+            }
+            return out.toByteArray();
+        } catch (DataFormatException e) {
+            throw new IOException("Invalid compressed execution context", e);
+        } finally {
+            inflater.end();
+        }
+    }
+
+    /**
+     * 原XStream格式，只用于读取，第一次遇到时创建
+     */
+    private XStreamExecutionContextStringSerializer legacy() throws IOException {
+        if (legacy == null) {
+            synchronized (this) {
+                if (legacy == null) {
+                    XStreamExecutionContextStringSerializer serializer = new XStreamExecutionContextStringSerializer();
+                    try {
+                        serializer.afterPropertiesSet();
+                    } catch (Exception e) {
+                        throw new IOException("Failed to initialize XStream serializer", e);
+                    }
+                    legacy = serializer;
+                }
+            }
+        }
+        return legacy;
+    }
+}
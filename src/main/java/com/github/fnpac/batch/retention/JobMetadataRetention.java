@@ -0,0 +1,332 @@
+package com.github.fnpac.batch.retention;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.batch.core.BatchStatus;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.sql.DatabaseMetaData;
+import java.sql.ResultSet;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Spring Batch元数据（BATCH_*表）的保留策略：删除（可选先归档）已结束且超过保留期的job instance及其全部execution、参数、
+ * step execution和上下文。
+ * <p>
+ * 以job instance为单位清理，一个instance可以清理的条件：
+ * <ul>
+ * <li>没有未结束的execution（END_TIME为空，包括运行中的）</li>
+ * <li>最后一次execution为COMPLETED、ABANDONED时结束于 retentionDays 天前；其它状态（FAILED、STOPPED等，仍可重启）
+ * 结束于 failedRetentionDays 天前</li>
+ * <li>不是该job最新的 keepLast 个instance之一（增量导入按最近的instance判断文件是否变化，见 FileFingerprints）</li>
+ * </ul>
+ * 按JOB_INSTANCE_ID从小到大扫描，每批 batchSize 个instance在一个短事务中按外键顺序、按主键删除，
+ * 只锁定被删除的行，不影响运行中的job写入新的行；批之间暂停 pauseMillis。
+ * 遇到第一次execution创建于两个截止时间中较晚者之后的instance时结束扫描（id按时间递增）。
+ * <p>
+ * archive=true 时删除前将各表的行复制到同结构的 *_ARCHIVE 表（见schema-retention-mysql.sql），与删除在同一事务中。
+ */
+public class JobMetadataRetention {
+
+    private static final Logger logger = LoggerFactory.getLogger(JobMetadataRetention.class);
+
+    static final String ARCHIVE_SUFFIX = "_ARCHIVE";
+
+    /**
+     * IN列表的最大长度
+     */
+    private static final int IN_LIMIT = 500;
+
+    private static final String JOB_NAMES = "SELECT DISTINCT JOB_NAME FROM BATCH_JOB_INSTANCE";
+    private static final String LATEST_INSTANCES = "SELECT JOB_INSTANCE_ID FROM BATCH_JOB_INSTANCE " +
+            "WHERE JOB_NAME = ? ORDER BY JOB_INSTANCE_ID DESC";
+    private static final String INSTANCES = "SELECT JOB_INSTANCE_ID FROM BATCH_JOB_INSTANCE " +
+            "WHERE JOB_INSTANCE_ID > ? ORDER BY JOB_INSTANCE_ID";
+    private static final String EXECUTIONS = "SELECT JOB_INSTANCE_ID, JOB_EXECUTION_ID, STATUS, CREATE_TIME, END_TIME " +
+            "FROM BATCH_JOB_EXECUTION WHERE JOB_INSTANCE_ID IN ";
+    private static final String STEP_EXECUTIONS = "SELECT STEP_EXECUTION_ID FROM BATCH_STEP_EXECUTION WHERE JOB_EXECUTION_ID IN ";
+    private static final String PARTITION_WORK = "BATCH_PARTITION_WORK";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+
+    private int retentionDays = 30;
+    private int failedRetentionDays = 90;
+    private int keepLast = 10;
+    private int batchSize = 100;
+    private long pauseMillis = 100;
+    private int maxBatches = 0;
+    private boolean archive = false;
+
+    /**
+     * BATCH_PARTITION_WORK（远程分区）是否存在，第一次清理时检查
+     */
+    private Boolean partitionWork;
+
+    /**
+     * @param dataSource
+     * @param transactionManager 每批一个事务
+     */
+    public JobMetadataRetention(DataSource dataSource, PlatformTransactionManager transactionManager) {
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    /**
+     * @param retentionDays 最后一次execution为COMPLETED、ABANDONED的instance的保留天数
+     */
+    public void setRetentionDays(int retentionDays) {
+        this.retentionDays = retentionDays;
+    }
+
+    /**
+     * @param failedRetentionDays 最后一次execution为FAILED、STOPPED等（可重启）的instance的保留天数，清理后不能再重启
+     */
+    public void setFailedRetentionDays(int failedRetentionDays) {
+        this.failedRetentionDays = failedRetentionDays;
+    }
+
+    /**
+     * @param keepLast 每个job总是保留的最新instance个数
+     */
+    public void setKeepLast(int keepLast) {
+        this.keepLast = keepLast;
+    }
+
+    /**
+     * @param batchSize 每个事务清理的instance个数
+     */
+    public void setBatchSize(int batchSize) {
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * @param pauseMillis 批之间的暂停，减少对运行中job的影响
+     */
+    public void setPauseMillis(long pauseMillis) {
+        this.pauseMillis = pauseMillis;
+    }
+
+    /**
+     * @param maxBatches 每次清理最多执行的批数，0表示不限，其余留到下一次
+     */
+    public void setMaxBatches(int maxBatches) {
+        this.maxBatches = maxBatches;
+    }
+
+    /**
+     * @param archive true：删除前复制到 *_ARCHIVE 表
+     */
+    public void setArchive(boolean archive) {
+        this.archive = archive;
+    }
+
+    /**
+     * 清理超过保留期的job instance
+     *
+     * @return 清理的instance个数
+     * @throws InterruptedException 批之间暂停时被中断，已提交的批不回滚
+     */
+    public int purge() throws InterruptedException {
+        long now = System.currentTimeMillis();
+        Timestamp cutoff = new Timestamp(now - TimeUnit.DAYS.toMillis(retentionDays));
+        Timestamp failedCutoff = new Timestamp(now - TimeUnit.DAYS.toMillis(failedRetentionDays));
+        Timestamp scanCutoff = cutoff.before(failedCutoff) ? failedCutoff : cutoff;
+        Set<Long> protectedInstances = latestInstances();
+
+        JdbcTemplate scanTemplate = new JdbcTemplate(jdbcTemplate.getDataSource());
+        scanTemplate.setMaxRows(batchSize);
+
+        long start = System.currentTimeMillis();
+        int purged = 0;
+        int batches = 0;
+        long lastId = -1;
+        boolean more = true;
+        while (more && (maxBatches <= 0 || batches < maxBatches)) {
+            List<Long> instanceIds = scanTemplate.queryForList(INSTANCES, Long.class, lastId);
+            if (instanceIds.isEmpty()) {
+                break;
+            }
+            lastId = instanceIds.get(instanceIds.size() - 1);
+            more = instanceIds.size() == batchSize;
+
+            Map<Long, List<Execution>> executions = executions(instanceIds);
+            List<Long> purgeable = new ArrayList<>();
+            for (Long instanceId : instanceIds) {
+                List<Execution> instanceExecutions = executions.getOrDefault(instanceId, Collections.emptyList());
+                if (!instanceExecutions.isEmpty() && !instanceExecutions.get(0).createTime.before(scanCutoff)) {
+                    // 之后的instance都比保留期新
+                    more = false;
+                    break;
+                }
+                if (!protectedInstances.contains(instanceId) && isExpired(instanceExecutions, cutoff, failedCutoff)) {
+                    purgeable.add(instanceId);
+                }
+            }
+            if (purgeable.isEmpty()) {
+                continue;
+            }
+            purged += transactionTemplate.execute(status -> delete(purgeable, executions));
+            batches++;
+            if (more && pauseMillis > 0) {
+                Thread.sleep(pauseMillis);
+            }
+        }
+        logger.info("Purged {} job instances older than {} ({} for restartable ones) in {} batches, {} ms{}",
+                purged, cutoff, failedCutoff, batches, System.currentTimeMillis() - start, archive ? ", archived" : "");
+        return purged;
+    }
+
+    /**
+     * @return 各job最新的 keepLast 个instance
+     */
+    private Set<Long> latestInstances() {
+        Set<Long> latest = new HashSet<>();
+        if (keepLast <= 0) {
+            return latest;
+        }
+        JdbcTemplate latestTemplate = new JdbcTemplate(jdbcTemplate.getDataSource());
+        latestTemplate.setMaxRows(keepLast);
+        for (String jobName : jdbcTemplate.queryForList(JOB_NAMES, String.class)) {
+            latest.addAll(latestTemplate.queryForList(LATEST_INSTANCES, Long.class, jobName));
+        }
+        return latest;
+    }
+
+    /**
+     * @param executions 按JOB_EXECUTION_ID升序
+     */
+    private static boolean isExpired(List<Execution> executions, Timestamp cutoff, Timestamp failedCutoff) {
+        if (executions.isEmpty()) {
+            // 没有execution的instance（创建execution失败时遗留）
+            return true;
+        }
+        for (Execution execution : executions) {
+            if (execution.endTime == null) {
+                return false;
+            }
+        }
+        Execution last = executions.get(executions.size() - 1);
+        BatchStatus status = BatchStatus.valueOf(last.status);
+        boolean restartable = status != BatchStatus.COMPLETED && status != BatchStatus.ABANDONED;
+        return last.endTime.before(restartable ? failedCutoff : cutoff);
+    }
+
+    /**
+     * @return instance id → 按JOB_EXECUTION_ID升序的execution
+     */
+    private Map<Long, List<Execution>> executions(List<Long> instanceIds) {
+        Map<Long, List<Execution>> executions = new LinkedHashMap<>();
+        jdbcTemplate.query(EXECUTIONS + placeholders(instanceIds.size()) + " ORDER BY JOB_EXECUTION_ID",
+                rs -> {
+                    executions.computeIfAbsent(rs.getLong(1), id -> new ArrayList<>())
+                            .add(new Execution(rs.getLong(2), rs.getString(3), rs.getTimestamp(4), rs.getTimestamp(5)));
+                }, instanceIds.toArray());
+        return executions;
+    }
+
+    //===============================================
+    // 删除（一个事务）
+    //===============================================
+
+    private int delete(List<Long> instanceIds, Map<Long, List<Execution>> executions) {
+        List<Long> jobExecutionIds = new ArrayList<>();
+        for (Long instanceId : instanceIds) {
+            for (Execution execution : executions.getOrDefault(instanceId, Collections.emptyList())) {
+                jobExecutionIds.add(execution.id);
+            }
+        }
+        List<Long> stepExecutionIds = new ArrayList<>();
+        for (List<Long> ids : partition(jobExecutionIds)) {
+            stepExecutionIds.addAll(jdbcTemplate.queryForList(STEP_EXECUTIONS + placeholders(ids.size()), Long.class, ids.toArray()));
+        }
+
+        // 按外键顺序：step execution的上下文、step execution、job execution的上下文和参数、job execution、instance
+        if (hasPartitionWork()) {
+            // 分区的协调记录，manager结束时已删除，只在manager异常退出时遗留，不归档
+            delete(PARTITION_WORK, "STEP_EXECUTION_ID", stepExecutionIds, false);
+        }
+        delete("BATCH_STEP_EXECUTION_CONTEXT", "STEP_EXECUTION_ID", stepExecutionIds);
+        delete("BATCH_STEP_EXECUTION", "STEP_EXECUTION_ID", stepExecutionIds);
+        delete("BATCH_JOB_EXECUTION_CONTEXT", "JOB_EXECUTION_ID", jobExecutionIds);
+        delete("BATCH_JOB_EXECUTION_PARAMS", "JOB_EXECUTION_ID", jobExecutionIds);
+        delete("BATCH_JOB_EXECUTION", "JOB_EXECUTION_ID", jobExecutionIds);
+        // 扫描后新建了execution（重启）的instance外键冲突，整批回滚，下一次清理时不再满足条件
+        delete("BATCH_JOB_INSTANCE", "JOB_INSTANCE_ID", instanceIds);
+        return instanceIds.size();
+    }
+
+    private void delete(String table, String idColumn, List<Long> ids) {
+        delete(table, idColumn, ids, archive);
+    }
+
+    private void delete(String table, String idColumn, List<Long> ids, boolean archive) {
+        for (List<Long> part : partition(ids)) {
+            String where = " WHERE " + idColumn + " IN " + placeholders(part.size());
+            if (archive) {
+                jdbcTemplate.update("INSERT INTO " + table + ARCHIVE_SUFFIX + " SELECT * FROM " + table + where, part.toArray());
+            }
+            jdbcTemplate.update("DELETE FROM " + table + where, part.toArray());
+        }
+    }
+
+    private boolean hasPartitionWork() {
+        if (partitionWork == null) {
+            partitionWork = jdbcTemplate.execute((ConnectionCallback<Boolean>) connection -> {
+                DatabaseMetaData metaData = connection.getMetaData();
+                for (String name : new String[]{PARTITION_WORK, PARTITION_WORK.toLowerCase()}) {
+                    try (ResultSet tables = metaData.getTables(null, null, name, null)) {
+                        if (tables.next()) {
+                            return true;
+                        }
+                    }
+                }
+                return false;
+            });
+        }
+        return partitionWork;
+    }
+
+    private static List<List<Long>> partition(List<Long> ids) {
+        List<List<Long>> parts = new ArrayList<>();
+        for (int i = 0; i < ids.size(); i += IN_LIMIT) {
+            parts.add(ids.subList(i, Math.min(i + IN_LIMIT, ids.size())));
+        }
+        return parts;
+    }
+
+    private static String placeholders(int count) {
+        StringBuilder placeholders = new StringBuilder(count * 3 + 2).append('(');
+        for (int i = 0; i < count; i++) {
+            placeholders.append(i == 0 ? "?" : ", ?");
+        }
+        return placeholders.append(')').toString();
+    }
+
+    private static class Execution {
+
+        final long id;
+        final String status;
+        final Timestamp createTime;
+        final Timestamp endTime;
+
+        Execution(long id, String status, Timestamp createTime, Timestamp endTime) {
+            this.id = id;
+            this.status = status;
+            this.createTime = createTime;
+            this.endTime = endTime;
+        }
+    }
+}
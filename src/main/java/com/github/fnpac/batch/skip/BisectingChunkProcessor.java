@@ -0,0 +1,265 @@
+package com.github.fnpac.batch.skip;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.batch.core.StepContribution;
+import org.springframework.batch.core.scope.context.StepContext;
+import org.springframework.batch.core.scope.context.StepSynchronizationManager;
+import org.springframework.batch.core.step.item.Chunk;
+import org.springframework.batch.core.step.item.SimpleChunkProcessor;
+import org.springframework.batch.core.step.skip.SkipLimitExceededException;
+import org.springframework.batch.item.ItemProcessor;
+import org.springframework.batch.item.ItemWriter;
+import org.springframework.batch.item.validator.ValidationException;
+import org.springframework.classify.BinaryExceptionClassifier;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.PessimisticLockingFailureException;
+import org.springframework.dao.TransientDataAccessException;
+import org.springframework.jdbc.datasource.DataSourceUtils;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.util.Assert;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.Savepoint;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 容错的chunk处理：
+ * <ul>
+ * <li>处理阶段：可跳过的异常（默认为 {@link ValidationException}，即CsvItemProcessor、CsvBeanValidator的校验失败）
+ * 只跳过当前记录，其余记录继续处理</li>
+ * <li>写入阶段：chunk写入失败时回滚到写入前的savepoint，将chunk对半拆分后分别写入，递归直到定位出失败的单条记录。
+ * k条坏记录只需要约 2k·log2(n) 次写入，而 FaultTolerantStepBuilder 的扫描模式需要对chunk中的n条记录逐条写入、逐条提交</li>
+ * <li>可重试的异常（默认为 {@link TransientDataAccessException}，如查询超时）回滚到savepoint后原样重新写入，
+ * 超过重试次数后按不可跳过的异常处理</li>
+ * <li>需要重新执行整个chunk的异常（默认为 {@link PessimisticLockingFailureException}，即死锁、锁等待超时）不回滚到savepoint：
+ * InnoDB在死锁时已回滚整个事务，savepoint随之失效，此时只能回滚chunk事务。chunk保留在 ChunkOrientedTasklet 的缓冲中，
+ * 由 {@link BisectingStepBuilder} 配置的step异常处理在新的事务中重新处理，次数超过上限后step失败</li>
+ * </ul>
+ * 跳过的记录计入step的processSkipCount、writeSkipCount，写入 {@link RejectFileWriter}，
+ * step中跳过的记录数超过skipLimit时抛出 {@link SkipLimitExceededException}，step失败。
+ * <p>
+ * savepoint建立在chunk事务所使用的连接上，因此writer需要通过 {@link DataSourceUtils} 使用同一个DataSource的事务连接
+ * （JdbcTemplate、JdbcBatchItemWriter及本项目中的writer均如此）。
+ */
+public class BisectingChunkProcessor<T> extends SimpleChunkProcessor<T, T> {
+
+    private static final Logger logger = LoggerFactory.getLogger(BisectingChunkProcessor.class);
+
+
+    private DataSource dataSource;
+    private RejectFileWriter<? super T> rejectWriter;
+    private int skipLimit = 1000;
+    private int retryLimit = 3;
+
+    private BinaryExceptionClassifier processSkippable =
+            new BinaryExceptionClassifier(Collections.<Class<? extends Throwable>>singleton(ValidationException.class));
+    private BinaryExceptionClassifier writeSkippable =
+            new BinaryExceptionClassifier(Collections.<Class<? extends Throwable>>singleton(DataIntegrityViolationException.class));
+    private BinaryExceptionClassifier retryable =
+            new BinaryExceptionClassifier(Collections.<Class<? extends Throwable>>singleton(TransientDataAccessException.class));
+    private BinaryExceptionClassifier chunkRetryable =
+            new BinaryExceptionClassifier(Collections.<Class<? extends Throwable>>singleton(PessimisticLockingFailureException.class));
+
+    public BisectingChunkProcessor(ItemProcessor<? super T, ? extends T> itemProcessor, ItemWriter<? super T> itemWriter) {
+        super(itemProcessor, itemWriter);
+    }
+
+    /**
+     * @param dataSource chunk事务及writer使用的DataSource
+     */
+    public void setDataSource(DataSource dataSource) {
+        this.dataSource = dataSource;
+    }
+
+    public void setRejectWriter(RejectFileWriter<? super T> rejectWriter) {
+        this.rejectWriter = rejectWriter;
+    }
+
+    /**
+     * @param skipLimit step中允许跳过的记录数
+     */
+    public void setSkipLimit(int skipLimit) {
+        this.skipLimit = skipLimit;
+    }
+
+    /**
+     * @param retryLimit 同一批记录遇到可重试的异常时重新写入的次数
+     */
+    public void setRetryLimit(int retryLimit) {
+        this.retryLimit = retryLimit;
+    }
+
+    public void setProcessSkippable(Collection<Class<? extends Throwable>> exceptions) {
+        this.processSkippable = new BinaryExceptionClassifier(exceptions);
+    }
+
+    public void setWriteSkippable(Collection<Class<? extends Throwable>> exceptions) {
+        this.writeSkippable = new BinaryExceptionClassifier(exceptions);
+    }
+
+    public void setRetryable(Collection<Class<? extends Throwable>> exceptions) {
+        this.retryable = new BinaryExceptionClassifier(exceptions);
+    }
+
+    /**
+     * @param exceptions 回滚整个事务的异常，优先于 {@link #setRetryable(Collection)}
+     */
+    public void setChunkRetryable(Collection<Class<? extends Throwable>> exceptions) {
+        this.chunkRetryable = new BinaryExceptionClassifier(exceptions);
+    }
+
+    @Override
+    public void afterPropertiesSet() throws Exception {
+        super.afterPropertiesSet();
+        Assert.notNull(dataSource, "DataSource must be set");
+    }
+
+    //===============================================
+    // 处理阶段：跳过校验失败的记录
+    //===============================================
+    @Override
+    protected Chunk<T> transform(StepContribution contribution, Chunk<T> inputs) throws Exception {
+        // 不从inputs中移除过滤、跳过的记录，chunk整体重试时原样重新处理
+        Chunk<T> outputs = new Chunk<>();
+        Counts counts = new Counts();
+        outputs.setUserData(counts);
+        for (T item : inputs.getItems()) {
+            T output;
+            try {
+                output = doProcess(item);
+            } catch (Exception e) {
+                if (!processSkippable.classify(e)) {
+                    inputs.clear();
+                    throw e;
+                }
+                counts.processSkips++;
+                checkSkipLimit(contribution, counts, e);
+                getListener().onSkipInProcess(item, e);
+                reject(item, RejectFileWriter.Phase.PROCESS, e);
+                continue;
+            }
+            if (output != null) {
+                outputs.add(output);
+            }
+        }
+        if (counts.processSkips > 0) {
+            // filterCount = userData - outputs.size()，跳过的记录不计为过滤
+            inputs.setUserData((Integer) inputs.getUserData() - counts.processSkips);
+        }
+        return outputs;
+    }
+
+    //===============================================
+    // 写入阶段：二分定位失败的记录
+    //===============================================
+    @Override
+    protected void write(StepContribution contribution, Chunk<T> inputs, Chunk<T> outputs) throws Exception {
+        Assert.state(TransactionSynchronizationManager.isActualTransactionActive(),
+                "Bisecting writes require an active chunk transaction");
+        Connection connection = DataSourceUtils.getConnection(dataSource);
+        Counts counts = (Counts) outputs.getUserData();
+        try {
+            write(contribution, counts, connection, outputs.getItems(), 0);
+        } catch (Exception e) {
+            if (chunkRetryable.classify(e)) {
+                // TaskletStep在回滚后同样会累加StepContribution，这次处理的计数不计入（读取计数保留，重新处理时不会再次读取）
+                logger.warn("Chunk of {} items rolled back, retrying in a new transaction: {}", inputs.size(), e.toString());
+                contribution.incrementFilterCount(outputs.size() - (Integer) inputs.getUserData());
+                throw e;
+            }
+            inputs.clear();
+            counts.applyTo(contribution);
+            throw e;
+        }
+        counts.applyTo(contribution);
+    }
+
+    private void write(StepContribution contribution, Counts counts, Connection connection, List<T> items, int retries)
+            throws Exception {
+        if (items.isEmpty()) {
+            return;
+        }
+        Savepoint savepoint = connection.setSavepoint();
+        try {
+            doWrite(items);
+        } catch (Exception e) {
+            if (chunkRetryable.classify(e)) {
+                // 数据库已回滚整个事务，savepoint已不存在
+                throw e;
+            }
+            connection.rollback(savepoint);
+            if (retryable.classify(e) && retries < retryLimit) {
+                if (logger.isDebugEnabled()) {
+                    logger.debug("Retrying write of {} items after {}", items.size(), e.toString());
+                }
+                write(contribution, counts, connection, items, retries + 1);
+                return;
+            }
+            if (!writeSkippable.classify(e)) {
+                throw e;
+            }
+            if (items.size() == 1) {
+                T item = items.get(0);
+                counts.writeSkips++;
+                checkSkipLimit(contribution, counts, e);
+                getListener().onSkipInWrite(item, e);
+                reject(item, RejectFileWriter.Phase.WRITE, e);
+                return;
+            }
+            if (logger.isDebugEnabled()) {
+                // 批量写入异常的消息可能包含整条SQL，只在需要时拼接
+                logger.debug("Write of {} items failed, bisecting: {}", items.size(), e.toString());
+            }
+            int middle = items.size() >>> 1;
+            write(contribution, counts, connection, new ArrayList<>(items.subList(0, middle)), 0);
+            write(contribution, counts, connection, new ArrayList<>(items.subList(middle, items.size())), 0);
+            return;
+        }
+        connection.releaseSavepoint(savepoint);
+        counts.writes += items.size();
+    }
+
+    //===============================================
+    // 跳过
+    //===============================================
+    private void checkSkipLimit(StepContribution contribution, Counts counts, Exception e) {
+        StepContext context = StepSynchronizationManager.getContext();
+        int committed = context == null ? 0 : context.getStepExecution().getSkipCount();
+        if (committed + contribution.getStepSkipCount() + counts.processSkips + counts.writeSkips > skipLimit) {
+            throw new SkipLimitExceededException(skipLimit, e);
+        }
+    }
+
+    private void reject(T item, RejectFileWriter.Phase phase, Exception e) {
+        if (rejectWriter != null) {
+            rejectWriter.reject(item, phase, e);
+        } else {
+            logger.warn("Skipped {} in {}: {}", item, phase, e.toString());
+        }
+    }
+
+    /**
+     * 一次处理的计数（outputs的userData），写入结束时才计入StepContribution
+     */
+    private static class Counts {
+
+        int processSkips;
+        int writeSkips;
+        int writes;
+
+        void applyTo(StepContribution contribution) {
+            for (int i = 0; i < processSkips; i++) {
+                contribution.incrementProcessSkipCount();
+            }
+            for (int i = 0; i < writeSkips; i++) {
+                contribution.incrementWriteSkipCount();
+            }
+            contribution.incrementWriteCount(writes);
+        }
+    }
+}
@@ -0,0 +1,105 @@
+package com.github.fnpac.batch.skip;
+
+import org.springframework.batch.core.step.builder.SimpleStepBuilder;
+import org.springframework.batch.core.step.builder.StepBuilderHelper;
+import org.springframework.batch.core.step.item.ChunkOrientedTasklet;
+import org.springframework.batch.core.step.item.SimpleChunkProvider;
+import org.springframework.batch.core.step.tasklet.Tasklet;
+import org.springframework.batch.core.step.tasklet.TaskletStep;
+import org.springframework.batch.repeat.exception.SimpleLimitExceptionHandler;
+import org.springframework.dao.PessimisticLockingFailureException;
+import org.springframework.util.Assert;
+
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+
+/**
+ * 使用 {@link BisectingChunkProcessor} 的chunk step builder，其余与 {@link SimpleStepBuilder} 相同（reader、listener、
+ * taskExecutor等），不使用 {@link SimpleStepBuilder#faultTolerant()}：
+ * <pre class="code">
+ * new BisectingStepBuilder&lt;Person&gt;(stepBuilderFactory.get("step"))
+ *         .dataSource(dataSource)
+ *         .rejectWriter(rejectFileWriter)
+ *         .skipLimit(1000)
+ *         .chunkRetryLimit(10)
+ *         .chunk(65000)
+ *         .reader(reader)
+ *         ...
+ * </pre>
+ * 读取阶段的异常不跳过，reader中的记录在chunk失败回滚后不会重新读取。
+ * <p>
+ * 死锁、锁等待超时（{@link PessimisticLockingFailureException}）回滚chunk事务后，step的异常处理
+ * （{@link SimpleLimitExceptionHandler}）不终止step，缓冲中的同一个chunk在新的事务中重新处理，
+ * step中累计超过 chunkRetryLimit 次后step失败。chunkRetryLimit大于0时替换step的 {@code exceptionHandler}。
+ */
+public class BisectingStepBuilder<T> extends SimpleStepBuilder<T, T> {
+
+    private DataSource dataSource;
+    private RejectFileWriter<? super T> rejectWriter;
+    private int skipLimit = 1000;
+    private int chunkRetryLimit = 10;
+    private Collection<Class<? extends Throwable>> chunkRetryable =
+            Collections.<Class<? extends Throwable>>singleton(PessimisticLockingFailureException.class);
+
+    public BisectingStepBuilder(StepBuilderHelper<?> parent) {
+        super(parent);
+    }
+
+    public BisectingStepBuilder<T> dataSource(DataSource dataSource) {
+        this.dataSource = dataSource;
+        return this;
+    }
+
+    public BisectingStepBuilder<T> rejectWriter(RejectFileWriter<? super T> rejectWriter) {
+        this.rejectWriter = rejectWriter;
+        return this;
+    }
+
+    public BisectingStepBuilder<T> skipLimit(int skipLimit) {
+        this.skipLimit = skipLimit;
+        return this;
+    }
+
+    /**
+     * @param chunkRetryLimit step中因死锁、锁等待超时重新处理chunk的次数上限，0表示不重试
+     */
+    public BisectingStepBuilder<T> chunkRetryLimit(int chunkRetryLimit) {
+        this.chunkRetryLimit = chunkRetryLimit;
+        return this;
+    }
+
+    @Override
+    public TaskletStep build() {
+        if (chunkRetryLimit > 0) {
+            SimpleLimitExceptionHandler exceptionHandler = new SimpleLimitExceptionHandler(chunkRetryLimit);
+            exceptionHandler.setExceptionClasses(chunkRetryable);
+            try {
+                exceptionHandler.afterPropertiesSet();
+            } catch (Exception e) {
+                throw new IllegalStateException(e);
+            }
+            exceptionHandler(exceptionHandler);
+        }
+        return super.build();
+    }
+
+    @Override
+    protected Tasklet createTasklet() {
+        Assert.state(getReader() != null, "ItemReader must be provided");
+        Assert.state(getWriter() != null, "ItemWriter must be provided");
+        Assert.state(dataSource != null, "DataSource must be provided");
+        SimpleChunkProvider<T> chunkProvider = new SimpleChunkProvider<>(getReader(), createChunkOperations());
+        BisectingChunkProcessor<T> chunkProcessor = new BisectingChunkProcessor<>(getProcessor(), getWriter());
+        chunkProcessor.setDataSource(dataSource);
+        chunkProcessor.setRejectWriter(rejectWriter);
+        chunkProcessor.setSkipLimit(skipLimit);
+        chunkProcessor.setChunkRetryable(chunkRetryable);
+        chunkProvider.setListeners(new ArrayList<>(getItemListeners()));
+        chunkProcessor.setListeners(new ArrayList<>(getItemListeners()));
+        ChunkOrientedTasklet<T> tasklet = new ChunkOrientedTasklet<>(chunkProvider, chunkProcessor);
+        tasklet.setBuffering(!isReaderTransactionalQueue());
+        return tasklet;
+    }
+}
@@ -0,0 +1,142 @@
+package com.github.fnpac.batch.skip;
+
+import org.springframework.batch.core.StepExecution;
+import org.springframework.batch.core.scope.context.StepContext;
+import org.springframework.batch.core.scope.context.StepSynchronizationManager;
+import org.springframework.batch.item.file.transform.LineAggregator;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.ToIntFunction;
+
+/**
+ * 被跳过的记录写入拒绝文件（TSV，追加写入），每行：
+ * <pre>
+ * job execution id  step名称  行号  阶段（PROCESS/WRITE）  原因  记录
+ * </pre>
+ * 在chunk事务中跳过的记录先缓存，事务提交后才写入文件，回滚后重新处理的记录不会重复出现。
+ * 原因为异常类名和最内层cause的消息（数据库的原始错误）。
+ * 行号为reader通过 {@link org.springframework.batch.item.ItemCountAware} 设置的输入文件中的行号（分区step同样为文件中的行号，
+ * 分片输入为分片文件中的行号），未知（为0）时写入“-”。
+ */
+public class RejectFileWriter<T> implements Closeable {
+
+    public enum Phase {
+        PROCESS, WRITE
+    }
+
+    private final Path file;
+    private LineAggregator<? super T> lineAggregator = String::valueOf;
+    private ToIntFunction<? super T> lineNumber = item -> 0;
+
+    private BufferedWriter writer;
+
+    public RejectFileWriter(Path file) {
+        this.file = file;
+    }
+
+    /**
+     * @param lineAggregator 记录的格式，默认为toString()
+     */
+    public void setLineAggregator(LineAggregator<? super T> lineAggregator) {
+        this.lineAggregator = lineAggregator;
+    }
+
+    public void setLineNumber(ToIntFunction<? super T> lineNumber) {
+        this.lineNumber = lineNumber;
+    }
+
+    public void reject(T item, Phase phase, Throwable error) {
+        String line = format(item, phase, error);
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            append(singletonList(line));
+            return;
+        }
+        @SuppressWarnings("unchecked")
+        List<String> pending = (List<String>) TransactionSynchronizationManager.getResource(this);
+        if (pending == null) {
+            final List<String> lines = new ArrayList<>();
+            TransactionSynchronizationManager.bindResource(this, lines);
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+                @Override
+                public void afterCompletion(int status) {
+                    TransactionSynchronizationManager.unbindResourceIfPossible(RejectFileWriter.this);
+                    if (status == STATUS_COMMITTED) {
+                        append(lines);
+                    }
+                }
+            });
+            pending = lines;
+        }
+        pending.add(line);
+    }
+
+    private String format(T item, Phase phase, Throwable error) {
+        StepContext context = StepSynchronizationManager.getContext();
+        StepExecution stepExecution = context == null ? null : context.getStepExecution();
+        int number = lineNumber.applyAsInt(item);
+        return (stepExecution == null ? "-" : String.valueOf(stepExecution.getJobExecutionId())) + '\t'
+                + (stepExecution == null ? "-" : stepExecution.getStepName()) + '\t'
+                + (number > 0 ? String.valueOf(number) : "-") + '\t'
+                + phase + '\t'
+                + clean(error.getClass().getSimpleName() + ": " + rootCause(error).getMessage()) + '\t'
+                + clean(lineAggregator.aggregate(item));
+    }
+
+    private static Throwable rootCause(Throwable error) {
+        Throwable cause = error;
+        while (cause.getCause() != null && cause.getCause() != cause) {
+            cause = cause.getCause();
+        }
+        return cause;
+    }
+
+    private static String clean(String value) {
+        if (value == null) {
+            return "";
+        }
+        return value.replace('\t', ' ').replace('\r', ' ').replace('\n', ' ');
+    }
+
+    private static List<String> singletonList(String line) {
+        List<String> lines = new ArrayList<>(1);
+        lines.add(line);
+        return lines;
+    }
+
+    private synchronized void append(List<String> lines) {
+        try {
+            if (writer == null) {
+                if (file.toAbsolutePath().getParent() != null) {
+                    Files.createDirectories(file.toAbsolutePath().getParent());
+                }
+                writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+            }
+            for (String line : lines) {
+                writer.write(line);
+                writer.newLine();
+            }
+            writer.flush();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to write reject file " + file, e);
+        }
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (writer != null) {
+            writer.close();
+            writer = null;
+        }
+    }
+}
@@ -0,0 +1,88 @@
+package com.github.fnpac.batch.staging;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.batch.core.StepContribution;
+import org.springframework.batch.core.scope.context.ChunkContext;
+import org.springframework.batch.core.step.tasklet.Tasklet;
+import org.springframework.batch.item.ExecutionContext;
+import org.springframework.batch.repeat.RepeatStatus;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.util.Assert;
+
+/**
+ * 暂存表导入的最后一个step，将暂存表中的数据并入目标表：
+ * <ul>
+ * <li>swap：在暂存表上建索引，再与目标表交换表名（{@link StagingTable#swap()}），目标表整体替换为本次导入的数据；
+ * 交换前读取方看到的一直是上一次的完整数据</li>
+ * <li>merge：{@code INSERT ... SELECT} 追加到目标表，在一个事务内完成，提交后才可见；暂存表在下次导入前清空</li>
+ * </ul>
+ * swap模式分为 建索引 → 交换 → 清理 三个阶段，每个阶段一次execute（一个事务），完成的阶段记录在step的ExecutionContext中，
+ * 重启时从未完成的阶段继续。DDL不在事务内：建索引跳过已存在的索引；交换前在暂存表的注释中写入job instance的标记，
+ * 交换后、提交前进程退出时，重启发现目标表已带有该标记，不再交换（{@link StagingTable#swap(String)}）。
+ */
+public class StagingSwapTasklet implements Tasklet, InitializingBean {
+
+    private static final Logger logger = LoggerFactory.getLogger(StagingSwapTasklet.class);
+
+    private static final String PHASE_KEY = "staging.phase";
+    private static final String MARKER_PREFIX = "staging.jobInstance=";
+
+    public enum Mode {
+        SWAP, MERGE
+    }
+
+    private enum Phase {
+        INDEX, SWAP, CLEAN
+    }
+
+    private StagingTable stagingTable;
+    private Mode mode = Mode.SWAP;
+
+    public void setStagingTable(StagingTable stagingTable) {
+        this.stagingTable = stagingTable;
+    }
+
+    public void setMode(Mode mode) {
+        this.mode = mode;
+    }
+
+    @Override
+    public void afterPropertiesSet() throws Exception {
+        Assert.notNull(stagingTable, "StagingTable must be set");
+        Assert.notNull(mode, "Mode must be set");
+    }
+
+    @Override
+    public RepeatStatus execute(StepContribution contribution, ChunkContext chunkContext) throws Exception {
+        if (mode == Mode.MERGE) {
+            int rows = stagingTable.merge();
+            contribution.incrementWriteCount(rows);
+            logger.info("Merged {} rows from {} into {}", rows, stagingTable.getStagingTable(), stagingTable.getTable());
+            return RepeatStatus.FINISHED;
+        }
+
+        ExecutionContext context = chunkContext.getStepContext().getStepExecution().getExecutionContext();
+        Phase phase = Phase.valueOf(context.getString(PHASE_KEY, Phase.INDEX.name()));
+        switch (phase) {
+            case INDEX:
+                int indexes = stagingTable.buildIndexes();
+                logger.info("Built {} indexes on {}", indexes, stagingTable.getStagingTable());
+                context.putString(PHASE_KEY, Phase.SWAP.name());
+                return RepeatStatus.CONTINUABLE;
+            case SWAP:
+                long rows = stagingTable.count();
+                Long jobInstanceId = chunkContext.getStepContext().getStepExecution().getJobExecution().getJobInstance().getId();
+                if (stagingTable.swap(MARKER_PREFIX + jobInstanceId)) {
+                    contribution.incrementWriteCount((int) rows);
+                    logger.info("Swapped {} rows from {} into {}", rows, stagingTable.getStagingTable(), stagingTable.getTable());
+                }
+                context.putString(PHASE_KEY, Phase.CLEAN.name());
+                return RepeatStatus.CONTINUABLE;
+            default:
+                // 暂存表中现在是上一次的数据，及早释放空间
+                stagingTable.prepare();
+                return RepeatStatus.FINISHED;
+        }
+    }
+}
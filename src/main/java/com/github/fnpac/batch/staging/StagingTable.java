@@ -0,0 +1,208 @@
+package com.github.fnpac.batch.staging;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.batch.support.DatabaseType;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.support.MetaDataAccessException;
+
+import javax.sql.DataSource;
+import java.sql.DatabaseMetaData;
+import java.sql.ResultSet;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * 暂存表导入的表操作：导入step写入没有二级索引的暂存表，完成后一次性建索引，再换入或并入目标表（person）。
+ * <p>
+ * 暂存表的结构与目标表相同（见schema-staging-mysql.sql）。二级索引的定义取自目标表的元数据（{@link DatabaseMetaData#getIndexInfo}），
+ * 只复制列和唯一性，不包括前缀长度、排序方向等。
+ */
+public class StagingTable {
+
+    private static final Logger logger = LoggerFactory.getLogger(StagingTable.class);
+
+    private static final String COLUMNS = "name, age, nation, address";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final DatabaseType databaseType;
+    private final String table;
+    private final String stagingTable;
+
+    /**
+     * @param dataSource
+     * @param table        目标表
+     * @param stagingTable 暂存表
+     * @throws MetaDataAccessException
+     */
+    public StagingTable(DataSource dataSource, String table, String stagingTable) throws MetaDataAccessException {
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+        this.databaseType = DatabaseType.fromMetaData(dataSource);
+        this.table = table;
+        this.stagingTable = stagingTable;
+    }
+
+    public String getTable() {
+        return table;
+    }
+
+    public String getStagingTable() {
+        return stagingTable;
+    }
+
+    /**
+     * 清空暂存表并删除它的二级索引，导入step开始前执行
+     */
+    public void prepare() {
+        jdbcTemplate.execute("TRUNCATE TABLE " + stagingTable);
+        for (String index : secondaryIndexes(stagingTable).keySet()) {
+            jdbcTemplate.execute(databaseType == DatabaseType.MYSQL
+                    ? "ALTER TABLE " + stagingTable + " DROP INDEX " + index
+                    : "DROP INDEX " + index);
+        }
+    }
+
+    /**
+     * 在暂存表上创建目标表的二级索引（已存在的跳过），数据已全部写入，每个索引只排序构建一次
+     *
+     * @return 创建的索引数
+     */
+    public int buildIndexes() {
+        Map<String, Index> existing = secondaryIndexes(stagingTable);
+        int created = 0;
+        for (Map.Entry<String, Index> entry : secondaryIndexes(table).entrySet()) {
+            if (existing.containsKey(entry.getKey())) {
+                continue;
+            }
+            Index index = entry.getValue();
+            String sql = "CREATE " + (index.unique ? "UNIQUE " : "") + "INDEX " + entry.getKey()
+                    + " ON " + stagingTable + " (" + String.join(", ", index.columns) + ")";
+            long start = System.currentTimeMillis();
+            jdbcTemplate.execute(sql);
+            logger.info("{} in {} ms", sql, System.currentTimeMillis() - start);
+            created++;
+        }
+        return created;
+    }
+
+    /**
+     * 在暂存表上写入标记后与目标表交换，目标表上已有该标记时（已经交换过）不再交换。
+     * <p>
+     * 表名交换是DDL，不在step的事务内：交换后、记录阶段的事务提交前进程退出时，重启会再次执行交换，
+     * 若不检查就会把上一次的数据换回目标表，随后清理阶段清空的是本次导入的数据。
+     * 标记写在表注释中，随表名一起交换，与交换本身同样持久。
+     *
+     * @param marker 本次导入的标记（同一job instance的多次执行相同）
+     * @return 是否执行了交换
+     */
+    public boolean swap(String marker) {
+        if (marker.equals(comment(table))) {
+            logger.warn("{} is already marked {}, it was swapped in before the last restart", table, marker);
+            return false;
+        }
+        comment(stagingTable, marker);
+        swap();
+        return true;
+    }
+
+    /**
+     * 交换目标表与暂存表的表名：暂存表成为目标表，原目标表的数据留在暂存表中，下次导入前清空。
+     * MySQL中为一条 RENAME TABLE，原子地完成；其它数据库依次重命名，中间短暂没有目标表。
+     */
+    void swap() {
+        String temporary = stagingTable + "_swap";
+        if (databaseType == DatabaseType.MYSQL) {
+            jdbcTemplate.execute("RENAME TABLE " + table + " TO " + temporary + ", "
+                    + stagingTable + " TO " + table + ", "
+                    + temporary + " TO " + stagingTable);
+            return;
+        }
+        logger.warn("{} does not support atomic RENAME TABLE, swapping {} and {} in three statements", databaseType, table, stagingTable);
+        jdbcTemplate.execute("ALTER TABLE " + table + " RENAME TO " + temporary);
+        jdbcTemplate.execute("ALTER TABLE " + stagingTable + " RENAME TO " + table);
+        jdbcTemplate.execute("ALTER TABLE " + temporary + " RENAME TO " + stagingTable);
+    }
+
+    /**
+     * 将暂存表的行插入目标表，在调用方的事务内执行
+     *
+     * @return 插入的行数
+     */
+    public int merge() {
+        return jdbcTemplate.update("INSERT INTO " + table + " (" + COLUMNS + ") SELECT " + COLUMNS + " FROM " + stagingTable);
+    }
+
+    public long count() {
+        Long count = jdbcTemplate.queryForObject("SELECT COUNT(*) FROM " + stagingTable, Long.class);
+        return count == null ? 0 : count;
+    }
+
+    /**
+     * @return 表注释，没有时为null
+     */
+    String comment(String tableName) {
+        return jdbcTemplate.execute((ConnectionCallback<String>) connection -> {
+            DatabaseMetaData metaData = connection.getMetaData();
+            String name = metaData.storesUpperCaseIdentifiers() ? tableName.toUpperCase() : tableName;
+            try (ResultSet rs = metaData.getTables(connection.getCatalog(), null, name, null)) {
+                String comment = rs.next() ? rs.getString("REMARKS") : null;
+                return comment == null || comment.isEmpty() ? null : comment;
+            }
+        });
+    }
+
+    private void comment(String tableName, String comment) {
+        // 标记由程序生成（前缀 + id），不含引号
+        jdbcTemplate.execute(databaseType == DatabaseType.MYSQL
+                ? "ALTER TABLE " + tableName + " COMMENT = '" + comment + "'"
+                : "COMMENT ON TABLE " + tableName + " IS '" + comment + "'");
+    }
+
+    /**
+     * @return 索引名 → 定义，不含主键
+     */
+    private Map<String, Index> secondaryIndexes(String tableName) {
+        return jdbcTemplate.execute((ConnectionCallback<Map<String, Index>>) connection -> {
+            DatabaseMetaData metaData = connection.getMetaData();
+            String name = metaData.storesUpperCaseIdentifiers() ? tableName.toUpperCase() : tableName;
+
+            Set<String> primaryKey = new TreeSet<>(String.CASE_INSENSITIVE_ORDER);
+            try (ResultSet rs = metaData.getPrimaryKeys(connection.getCatalog(), null, name)) {
+                while (rs.next()) {
+                    primaryKey.add(rs.getString("COLUMN_NAME"));
+                }
+            }
+
+            Map<String, Index> indexes = new LinkedHashMap<>();
+            try (ResultSet rs = metaData.getIndexInfo(connection.getCatalog(), null, name, false, true)) {
+                while (rs.next()) {
+                    String indexName = rs.getString("INDEX_NAME");
+                    if (indexName == null || rs.getShort("TYPE") == DatabaseMetaData.tableIndexStatistic) {
+                        continue;
+                    }
+                    // 按ORDINAL_POSITION排序返回
+                    indexes.computeIfAbsent(indexName, key -> new Index()).add(rs.getString("COLUMN_NAME"), !rs.getBoolean("NON_UNIQUE"));
+                }
+            }
+            indexes.values().removeIf(index -> index.unique && index.columns.size() == primaryKey.size() && primaryKey.containsAll(index.columns));
+            return indexes;
+        });
+    }
+
+    private static class Index {
+
+        final List<String> columns = new ArrayList<>();
+        boolean unique;
+
+        Index add(String column, boolean unique) {
+            columns.add(column);
+            this.unique = unique;
+            return this;
+        }
+    }
+}
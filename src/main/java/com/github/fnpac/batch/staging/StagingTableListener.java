@@ -0,0 +1,46 @@
+package com.github.fnpac.batch.staging;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.batch.core.JobExecution;
+import org.springframework.batch.core.JobExecutionListener;
+import org.springframework.batch.core.repository.JobRepository;
+import org.springframework.batch.item.ExecutionContext;
+
+/**
+ * 暂存表导入的job listener：job instance第一次执行前清空暂存表并删除其二级索引（{@link StagingTable#prepare()}）。
+ * <p>
+ * 清空后立即将 {@link #PREPARED_KEY} 保存到job的ExecutionContext（否则要到job结束时才保存，第一次执行中途被kill后重启会再次清空暂存表），
+ * 重启时job的ExecutionContext中已有该键，暂存表中保留已提交的chunk，导入step从最后一次提交处继续。
+ * 建索引、换入目标表由job最后的 {@link StagingSwapTasklet} 完成。
+ */
+public class StagingTableListener implements JobExecutionListener {
+
+    private static final Logger logger = LoggerFactory.getLogger(StagingTableListener.class);
+
+    static final String PREPARED_KEY = "staging.prepared";
+
+    private final StagingTable stagingTable;
+    private final JobRepository jobRepository;
+
+    public StagingTableListener(StagingTable stagingTable, JobRepository jobRepository) {
+        this.stagingTable = stagingTable;
+        this.jobRepository = jobRepository;
+    }
+
+    @Override
+    public void beforeJob(JobExecution jobExecution) {
+        ExecutionContext context = jobExecution.getExecutionContext();
+        if (context.containsKey(PREPARED_KEY)) {
+            logger.info("Restarting, keeping {} rows in {}", stagingTable.count(), stagingTable.getStagingTable());
+            return;
+        }
+        stagingTable.prepare();
+        context.putString(PREPARED_KEY, stagingTable.getStagingTable());
+        jobRepository.updateExecutionContext(jobExecution);
+    }
+
+    @Override
+    public void afterJob(JobExecution jobExecution) {
+    }
+}
@@ -0,0 +1,365 @@
+package com.github.fnpac.batch.writer;
+
+import com.github.fnpac.domain.Person;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.batch.core.BatchStatus;
+import org.springframework.batch.core.ExitStatus;
+import org.springframework.batch.core.StepExecution;
+import org.springframework.batch.core.StepExecutionListener;
+import org.springframework.batch.item.ExecutionContext;
+import org.springframework.batch.item.ItemStreamException;
+import org.springframework.batch.item.support.AbstractItemStreamItemWriter;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.core.io.Resource;
+import org.springframework.util.Assert;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * 将Person写为CSV（UTF-8，无表头，列为 name,age,nation,address），通过 {@link FileChannel} 批量写入，内存占用固定。
+ * <p>
+ * 行直接编码到一个大的 {@link ByteBuffer}（默认4MB，direct）中，缓冲区满或chunk提交前才写入文件，
+ * 不经过 Writer → StreamEncoder → BufferedOutputStream 的多层复制。字段中有逗号、双引号或换行时加双引号，内部的双引号写两次。
+ * <p>
+ * 文件名以 .gz 结尾时输出gzip：每个chunk压缩为一个gzip member（多个member连接起来仍是合法的gzip文件，gunzip、GZIPInputStream都可以读取），
+ * 这样每次提交后文件都在member边界上，可以截断后继续写入。压缩时缓冲区为堆内存（Java 8的 {@link Deflater} 只接受byte[]）。
+ * <p>
+ * 先写入 {@code <文件名>.part}，每个chunk提交前 force 到磁盘并把文件长度保存到ExecutionContext；
+ * 重启时将.part文件截断到上次提交的长度后继续写入，step完成（COMPLETED）后原子地重命名为目标文件。
+ * 失败时.part文件保留，用于重启。
+ */
+public class CsvChannelItemWriter extends AbstractItemStreamItemWriter<Person>
+        implements StepExecutionListener, InitializingBean {
+
+    private static final Logger logger = LoggerFactory.getLogger(CsvChannelItemWriter.class);
+
+    private static final String POSITION = "position";
+    private static final String PART_SUFFIX = ".part";
+
+    private static final int MIN_BUFFER_SIZE = 64 * 1024;
+
+    /**
+     * gzip member头：ID1 ID2 CM(deflate) FLG MTIME(4) XFL OS(unknown)
+     */
+    private static final byte[] GZIP_HEADER = {0x1f, (byte) 0x8b, Deflater.DEFLATED, 0, 0, 0, 0, 0, 0, (byte) 0xff};
+
+    private Resource resource;
+    private int bufferSize = 4 * 1024 * 1024;
+    private int compressionLevel = Deflater.DEFAULT_COMPRESSION;
+
+    private Path target;
+    private Path part;
+    private boolean gzip;
+
+    private FileChannel channel;
+    private ByteBuffer buffer;
+    private long writeCount;
+    private boolean completed;
+
+    // gzip
+    private Deflater deflater;
+    private CRC32 crc;
+    private byte[] deflated;
+    private boolean memberOpen;
+
+    public CsvChannelItemWriter() {
+        setName(CsvChannelItemWriter.class.getSimpleName());
+    }
+
+    /**
+     * @param resource 输出文件，以 .gz 结尾时输出gzip
+     */
+    public void setResource(Resource resource) {
+        this.resource = resource;
+    }
+
+    /**
+     * @param bufferSize 缓冲区大小（字节），不小于64KB
+     */
+    public void setBufferSize(int bufferSize) {
+        this.bufferSize = bufferSize;
+    }
+
+    /**
+     * @param compressionLevel gzip压缩级别，0-9，默认为 {@link Deflater#DEFAULT_COMPRESSION}
+     */
+    public void setCompressionLevel(int compressionLevel) {
+        this.compressionLevel = compressionLevel;
+    }
+
+    @Override
+    public void afterPropertiesSet() throws Exception {
+        Assert.notNull(resource, "Resource must be set");
+        Assert.isTrue(bufferSize >= MIN_BUFFER_SIZE, "bufferSize must be at least " + MIN_BUFFER_SIZE);
+    }
+
+    @Override
+    public void open(ExecutionContext executionContext) throws ItemStreamException {
+        String positionKey = getExecutionContextKey(POSITION);
+        try {
+            target = resource.getFile().toPath().toAbsolutePath();
+            part = target.resolveSibling(target.getFileName() + PART_SUFFIX);
+            gzip = target.getFileName().toString().endsWith(".gz");
+            if (target.getParent() != null) {
+                Files.createDirectories(target.getParent());
+            }
+            if (executionContext.containsKey(positionKey)) {
+                long position = executionContext.getLong(positionKey);
+                if (!Files.exists(part) || Files.size(part) < position) {
+                    throw new ItemStreamException("Cannot restart export, " + part + " is missing or shorter than " + position + " bytes");
+                }
+                channel = FileChannel.open(part, StandardOpenOption.WRITE);
+                // 丢弃上次提交之后写入的内容
+                channel.truncate(position);
+                channel.position(position);
+                logger.info("Resuming export to {} at {} bytes", part, position);
+            } else {
+                channel = FileChannel.open(part, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                        StandardOpenOption.TRUNCATE_EXISTING);
+            }
+        } catch (IOException e) {
+            close();
+            throw new ItemStreamException("Failed to open export file " + resource, e);
+        }
+        if (gzip) {
+            buffer = ByteBuffer.allocate(bufferSize);
+            deflater = new Deflater(compressionLevel, true);
+            crc = new CRC32();
+            deflated = new byte[MIN_BUFFER_SIZE];
+        } else {
+            buffer = ByteBuffer.allocateDirect(bufferSize);
+        }
+        memberOpen = false;
+        writeCount = 0;
+        completed = false;
+    }
+
+    @Override
+    public void write(List<? extends Person> items) throws IOException {
+        for (Person person : items) {
+            field(person.getName());
+            put((byte) ',');
+            field(Integer.toString(person.getAge()));
+            put((byte) ',');
+            field(person.getNation());
+            put((byte) ',');
+            field(person.getAddress());
+            put((byte) '\n');
+        }
+        writeCount += items.size();
+    }
+
+    /**
+     * 在chunk提交前调用：写出缓冲区，结束当前gzip member，force到磁盘后保存文件长度
+     */
+    @Override
+    public void update(ExecutionContext executionContext) throws ItemStreamException {
+        if (channel == null) {
+            return;
+        }
+        try {
+            flush();
+            executionContext.putLong(getExecutionContextKey(POSITION), channel.position());
+        } catch (IOException e) {
+            throw new ItemStreamException("Failed to flush export file " + part, e);
+        }
+    }
+
+    @Override
+    public void beforeStep(StepExecution stepExecution) {
+    }
+
+    /**
+     * 在close之前调用，只有step完成时才在close中将.part文件重命名为目标文件
+     *
+     * @param stepExecution
+     * @return
+     */
+    @Override
+    public ExitStatus afterStep(StepExecution stepExecution) {
+        completed = stepExecution.getStatus() == BatchStatus.COMPLETED;
+        return null;
+    }
+
+    @Override
+    public void close() throws ItemStreamException {
+        if (deflater != null) {
+            deflater.end();
+            deflater = null;
+        }
+        if (channel == null) {
+            return;
+        }
+        try {
+            if (completed) {
+                channel.close();
+                Files.move(part, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                logger.info("Exported {} rows to {}", writeCount, target);
+            } else {
+                // 未提交的内容在重启时截断
+                channel.close();
+            }
+        } catch (IOException e) {
+            throw new ItemStreamException("Failed to close export file " + part, e);
+        } finally {
+            channel = null;
+            buffer = null;
+        }
+    }
+
+    //===============================================
+    // 编码
+    //===============================================
+
+    /**
+     * 按UTF-8编码一个字段，需要时加双引号
+     *
+     * @param value
+     * @throws IOException
+     */
+    private void field(String value) throws IOException {
+        if (value == null || value.isEmpty()) {
+            return;
+        }
+        int length = value.length();
+        boolean quote = false;
+        for (int i = 0; i < length; i++) {
+            char c = value.charAt(i);
+            if (c == ',' || c == '"' || c == '\n' || c == '\r') {
+                quote = true;
+                break;
+            }
+        }
+        // 每个char最多3个字节（代理对为2个char、4个字节），双引号转义后为2个字节，再加首尾的双引号
+        long worst = 3L * length + 2;
+        if (worst > buffer.capacity()) {
+            // 超长字段，先写出缓冲区再单独写入
+            byte[] bytes = (quote ? '"' + value.replace("\"", "\"\"") + '"' : value).getBytes(StandardCharsets.UTF_8);
+            drain();
+            output(ByteBuffer.wrap(bytes));
+            return;
+        }
+        if (buffer.remaining() < worst) {
+            drain();
+        }
+        if (quote) {
+            buffer.put((byte) '"');
+        }
+        for (int i = 0; i < length; i++) {
+            char c = value.charAt(i);
+            if (c < 0x80) {
+                if (c == '"') {
+                    buffer.put((byte) '"');
+                }
+                buffer.put((byte) c);
+            } else if (c < 0x800) {
+                buffer.put((byte) (0xc0 | (c >> 6)));
+                buffer.put((byte) (0x80 | (c & 0x3f)));
+            } else if (Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(value.charAt(i + 1))) {
+                int cp = Character.toCodePoint(c, value.charAt(++i));
+                buffer.put((byte) (0xf0 | (cp >> 18)));
+                buffer.put((byte) (0x80 | ((cp >> 12) & 0x3f)));
+                buffer.put((byte) (0x80 | ((cp >> 6) & 0x3f)));
+                buffer.put((byte) (0x80 | (cp & 0x3f)));
+            } else if (Character.isSurrogate(c)) {
+                // 不成对的代理项，与String.getBytes一致替换为'?'
+                buffer.put((byte) '?');
+            } else {
+                buffer.put((byte) (0xe0 | (c >> 12)));
+                buffer.put((byte) (0x80 | ((c >> 6) & 0x3f)));
+                buffer.put((byte) (0x80 | (c & 0x3f)));
+            }
+        }
+        if (quote) {
+            buffer.put((byte) '"');
+        }
+    }
+
+    private void put(byte b) throws IOException {
+        if (!buffer.hasRemaining()) {
+            drain();
+        }
+        buffer.put(b);
+    }
+
+    //===============================================
+    // 输出
+    //===============================================
+
+    /**
+     * 写出缓冲区中的内容（gzip时压缩后写出）
+     *
+     * @throws IOException
+     */
+    private void drain() throws IOException {
+        buffer.flip();
+        if (!buffer.hasRemaining()) {
+            buffer.clear();
+            return;
+        }
+        if (gzip) {
+            if (!memberOpen) {
+                output(ByteBuffer.wrap(GZIP_HEADER));
+                memberOpen = true;
+            }
+            crc.update(buffer.array(), buffer.arrayOffset(), buffer.limit());
+            deflater.setInput(buffer.array(), buffer.arrayOffset(), buffer.limit());
+            while (!deflater.needsInput()) {
+                deflate();
+            }
+        } else {
+            output(buffer);
+        }
+        buffer.clear();
+    }
+
+    /**
+     * 写出缓冲区，结束当前gzip member，并force到磁盘
+     *
+     * @throws IOException
+     */
+    private void flush() throws IOException {
+        drain();
+        if (gzip && memberOpen) {
+            deflater.finish();
+            while (!deflater.finished()) {
+                deflate();
+            }
+            // member尾：CRC32、未压缩长度（模2^32），均为小端序
+            ByteBuffer trailer = ByteBuffer.allocate(8).order(ByteOrder.LITTLE_ENDIAN);
+            trailer.putInt((int) crc.getValue());
+            trailer.putInt((int) deflater.getBytesRead());
+            trailer.flip();
+            output(trailer);
+            deflater.reset();
+            crc.reset();
+            memberOpen = false;
+        }
+        channel.force(false);
+    }
+
+    private void deflate() throws IOException {
+        int n = deflater.deflate(deflated);
+        if (n > 0) {
+            output(ByteBuffer.wrap(deflated, 0, n));
+        }
+    }
+
+    private void output(ByteBuffer bytes) throws IOException {
+        while (bytes.hasRemaining()) {
+            channel.write(bytes);
+        }
+    }
+}
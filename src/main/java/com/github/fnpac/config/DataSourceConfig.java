@@ -1,8 +1,9 @@
 package com.github.fnpac.config;
 
 import com.alibaba.druid.filter.Filter;
-import com.alibaba.druid.filter.logging.Slf4jLogFilter;
 import com.alibaba.druid.pool.DruidDataSource;
+import com.github.fnpac.config.druid.SqlMetricsFilter;
+import com.github.fnpac.config.druid.TrustedWallFilter;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.EnvironmentAware;
 import org.springframework.context.annotation.Bean;
@@ -18,6 +19,7 @@ import org.springframework.transaction.annotation.EnableTransactionManagement;
 import javax.sql.DataSource;
 import java.sql.SQLException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 /**
@@ -71,18 +73,45 @@ public class DataSourceConfig implements EnvironmentAware {
     String connectionProperties;
     @Value("${spring.datasource.filters}")
     String filters;
+    @Value("${druid.wall.enabled}")
+    boolean wallEnabled;
+    @Value("${druid.wall.trustedSql}")
+    String trustedSql;
+    @Value("${druid.sql.sampleRate}")
+    double sqlSampleRate;
+    @Value("${druid.sql.slowSqlMillis}")
+    long slowSqlMillis;
+    @Value("${druid.sql.maxTemplates}")
+    int maxSqlTemplates;
 
     //===============================================
     // 阿里数据库连接池druid
     //===============================================
+
+    /**
+     * SQL模板的耗时统计，抽样、慢SQL日志，替代逐条输出SQL的Slf4jLogFilter
+     *
+     * @return
+     */
+    @Bean
+    public SqlMetricsFilter sqlMetricsFilter() {
+        SqlMetricsFilter sqlMetricsFilter = new SqlMetricsFilter();
+        sqlMetricsFilter.setSampleRate(sqlSampleRate);
+        sqlMetricsFilter.setSlowSqlMillis(slowSqlMillis);
+        sqlMetricsFilter.setMaxTemplates(maxSqlTemplates);
+        return sqlMetricsFilter;
+    }
+
+    /**
+     * SQL防火墙，druid.wall.trustedSql中的批处理语句不解析
+     *
+     * @return
+     */
     @Bean
-    public Slf4jLogFilter slf4jLogFilter() {
-        Slf4jLogFilter slf4jLogFilter = new Slf4jLogFilter();
-        slf4jLogFilter.setConnectionLogEnabled(false);
-        slf4jLogFilter.setStatementLogEnabled(false);
-        slf4jLogFilter.setResultSetLogEnabled(true);
-        slf4jLogFilter.setStatementExecutableSqlLogEnable(true);
-        return slf4jLogFilter;
+    public TrustedWallFilter wallFilter() {
+        TrustedWallFilter wallFilter = new TrustedWallFilter();
+        wallFilter.setTrustedSql(Arrays.asList(trustedSql.split(";")));
+        return wallFilter;
     }
 
     @Bean(destroyMethod = "close")
@@ -110,7 +139,10 @@ public class DataSourceConfig implements EnvironmentAware {
         try {
             druidDataSource.setFilters(filters);
             List<Filter> filters = new ArrayList<>();
-            filters.add(slf4jLogFilter());
+            filters.add(sqlMetricsFilter());
+            if (wallEnabled) {
+                filters.add(wallFilter());
+            }
             druidDataSource.setProxyFilters(filters);
         } catch (SQLException e) {
             e.printStackTrace();
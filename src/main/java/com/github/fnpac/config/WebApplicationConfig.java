@@ -5,6 +5,7 @@ import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.ComponentScan;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.context.support.PropertySourcesPlaceholderConfigurer;
+import org.springframework.http.converter.HttpMessageConverter;
 import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
 import org.springframework.scheduling.annotation.EnableScheduling;
 import org.springframework.web.servlet.ViewResolver;
@@ -14,6 +15,8 @@ import org.springframework.web.servlet.config.annotation.ViewControllerRegistry;
 import org.springframework.web.servlet.config.annotation.WebMvcConfigurerAdapter;
 import org.springframework.web.servlet.view.InternalResourceViewResolver;
 
+import java.util.List;
+
 /**
  * Created by liuchunlong on 2018/2/12.
  */
@@ -33,6 +36,16 @@ public class WebApplicationConfig extends WebMvcConfigurerAdapter {
         return new MappingJackson2HttpMessageConverter(new JacksonObjectMapper());
     }
 
+    /**
+     * 将基于 JacksonObjectMapper 的转换器放在默认转换器之前，@ResponseBody 的JSON均由它输出
+     *
+     * @param converters
+     */
+    @Override
+    public void extendMessageConverters(List<HttpMessageConverter<?>> converters) {
+        converters.add(0, mappingJackson2HttpMessageConverter());
+    }
+
     @Bean
     public ViewResolver internalResourceViewResolver() {
         InternalResourceViewResolver resolver = new InternalResourceViewResolver();
@@ -0,0 +1,255 @@
+package com.github.fnpac.config.druid;
+
+import com.alibaba.druid.filter.FilterEventAdapter;
+import com.alibaba.druid.proxy.jdbc.JdbcParameter;
+import com.alibaba.druid.proxy.jdbc.PreparedStatementProxy;
+import com.alibaba.druid.proxy.jdbc.ResultSetProxy;
+import com.alibaba.druid.proxy.jdbc.StatementProxy;
+import com.github.fnpac.batch.metrics.LatencyHistogram;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 低开销的SQL统计与日志，替代逐条格式化、输出SQL的 Slf4jLogFilter：
+ * <ul>
+ * <li>每条语句只计时并累加到所属SQL模板的无锁计数器（执行次数、错误数、影响行数、{@link LatencyHistogram}），不格式化SQL</li>
+ * <li>按 sampleRate 的比例抽样输出可执行SQL（含参数，INFO）；超过 slowSqlMillis 的语句和执行失败的语句总是输出（WARN）</li>
+ * </ul>
+ * SQL模板：PreparedStatement的SQL本身即为模板；Statement的SQL中的字符串、数字常量替换为 ?。
+ * 多行INSERT的重复占位符行合并为一行，不同行数的语句归入同一模板。
+ * 模板数超过 maxTemplates 后，新的模板合并到 {@value #OTHER} 中。
+ * <p>
+ * 通过 {@link #snapshot()} 输出，见 {@link com.github.fnpac.web.BatchMetricsController}。
+ */
+public class SqlMetricsFilter extends FilterEventAdapter {
+
+    private static final Logger logger = LoggerFactory.getLogger(SqlMetricsFilter.class);
+
+    static final String OTHER = "(other)";
+
+    /**
+     * 超过该长度的SQL（如多行INSERT，可达max_allowed_packet）不缓存，每次重新计算模板，
+     * 否则 statements 中的少量长语句就会占用大量内存
+     */
+    static final int MAX_CACHED_SQL_LENGTH = 1024;
+
+    private double sampleRate = 0.001;
+    private long slowSqlMillis = 1000;
+    private int maxTemplates = 500;
+
+    /**
+     * 原始SQL（不超过 {@link #MAX_CACHED_SQL_LENGTH}）→ 统计，避免重复计算模板；与 templates 共享统计对象
+     */
+    private final ConcurrentMap<String, SqlStat> statements = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, SqlStat> templates = new ConcurrentHashMap<>();
+    private final SqlStat other = new SqlStat(OTHER);
+    private final LongAdder sampledCount = new LongAdder();
+    private final LongAdder slowCount = new LongAdder();
+
+    /**
+     * @param sampleRate 输出可执行SQL的比例，0~1，0表示只输出慢SQL
+     */
+    public void setSampleRate(double sampleRate) {
+        this.sampleRate = sampleRate;
+    }
+
+    public void setSlowSqlMillis(long slowSqlMillis) {
+        this.slowSqlMillis = slowSqlMillis;
+    }
+
+    /**
+     * @param maxTemplates 分别统计的SQL模板数上限
+     */
+    public void setMaxTemplates(int maxTemplates) {
+        this.maxTemplates = maxTemplates;
+    }
+
+    //===============================================
+    // 计时
+    //===============================================
+    @Override
+    protected void statementExecuteBefore(StatementProxy statement, String sql) {
+        statement.setLastExecuteStartNano();
+    }
+
+    @Override
+    protected void statementExecuteAfter(StatementProxy statement, String sql, boolean result) {
+        executed(statement, sql, 0, null);
+    }
+
+    @Override
+    protected void statementExecuteQueryBefore(StatementProxy statement, String sql) {
+        statement.setLastExecuteStartNano();
+    }
+
+    @Override
+    protected void statementExecuteQueryAfter(StatementProxy statement, String sql, ResultSetProxy resultSet) {
+        executed(statement, sql, 0, null);
+    }
+
+    @Override
+    protected void statementExecuteUpdateBefore(StatementProxy statement, String sql) {
+        statement.setLastExecuteStartNano();
+    }
+
+    @Override
+    protected void statementExecuteUpdateAfter(StatementProxy statement, String sql, int updateCount) {
+        executed(statement, sql, Math.max(updateCount, 0), null);
+    }
+
+    @Override
+    protected void statementExecuteBatchBefore(StatementProxy statement) {
+        statement.setLastExecuteStartNano();
+    }
+
+    @Override
+    protected void statementExecuteBatchAfter(StatementProxy statement, int[] result) {
+        long rows = 0;
+        for (int count : result) {
+            // Statement.SUCCESS_NO_INFO（-2）等按0计
+            rows += Math.max(count, 0);
+        }
+        executed(statement, batchSql(statement), rows, null);
+    }
+
+    @Override
+    protected void statement_executeErrorAfter(StatementProxy statement, String sql, Throwable error) {
+        executed(statement, sql != null ? sql : batchSql(statement), 0, error);
+    }
+
+    private static String batchSql(StatementProxy statement) {
+        return statement instanceof PreparedStatementProxy ? ((PreparedStatementProxy) statement).getSql() : statement.getBatchSql();
+    }
+
+    private void executed(StatementProxy statement, String sql, long rows, Throwable error) {
+        long nanos = System.nanoTime() - statement.getLastExecuteStartNano();
+        if (sql == null) {
+            return;
+        }
+        SqlStat stat = stat(sql);
+        stat.record(nanos, rows, error != null);
+
+        long millis = nanos / 1000000;
+        if (error != null || millis >= slowSqlMillis) {
+            slowCount.increment();
+            logger.warn("{} SQL {} ms: {}{}", error != null ? "Failed" : "Slow", millis, sql, parameters(statement));
+        } else if (sampleRate > 0 && ThreadLocalRandom.current().nextDouble() < sampleRate) {
+            sampledCount.increment();
+            logger.info("SQL {} ms, {} rows: {}{}", millis, rows, sql, parameters(statement));
+        }
+    }
+
+    private SqlStat stat(String sql) {
+        SqlStat stat = statements.get(sql);
+        if (stat != null) {
+            return stat;
+        }
+        String template = SqlTemplates.normalize(sql);
+        stat = templates.get(template);
+        if (stat == null) {
+            if (templates.size() >= maxTemplates) {
+                return other;
+            }
+            SqlStat created = new SqlStat(template);
+            stat = templates.putIfAbsent(template, created);
+            if (stat == null) {
+                stat = created;
+            }
+        }
+        if (sql.length() <= MAX_CACHED_SQL_LENGTH && statements.size() < maxTemplates * 4) {
+            statements.putIfAbsent(sql, stat);
+        }
+        return stat;
+    }
+
+    /**
+     * @return 最后一次设置的参数（批量执行时为最后一行），没有参数时为空串
+     */
+    private static String parameters(StatementProxy statement) {
+        if (!(statement instanceof PreparedStatementProxy)) {
+            return "";
+        }
+        Map<Integer, JdbcParameter> parameters = ((PreparedStatementProxy) statement).getParameters();
+        List<Object> values = new ArrayList<>(parameters.size());
+        for (JdbcParameter parameter : parameters.values()) {
+            values.add(parameter.getValue());
+        }
+        return values.isEmpty() ? "" : " " + values;
+    }
+
+    //===============================================
+    // 输出
+    //===============================================
+
+    /**
+     * @return 按总耗时降序的各模板统计
+     */
+    public Map<String, Object> snapshot() {
+        List<SqlStat> stats = new ArrayList<>(templates.values());
+        if (other.count.sum() > 0) {
+            stats.add(other);
+        }
+        stats.sort(Comparator.comparingLong((SqlStat stat) -> stat.totalNanos.sum()).reversed());
+
+        List<Map<String, Object>> sql = new ArrayList<>(stats.size());
+        long count = 0;
+        for (SqlStat stat : stats) {
+            Map<String, Object> entry = stat.snapshot();
+            count += (Long) entry.get("count");
+            sql.add(entry);
+        }
+        Map<String, Object> snapshot = new LinkedHashMap<>();
+        snapshot.put("sampleRate", sampleRate);
+        snapshot.put("slowSqlMillis", slowSqlMillis);
+        snapshot.put("count", count);
+        snapshot.put("slowCount", slowCount.sum());
+        snapshot.put("sampledCount", sampledCount.sum());
+        snapshot.put("templates", sql);
+        return snapshot;
+    }
+
+    private static class SqlStat {
+
+        final String template;
+        final LongAdder count = new LongAdder();
+        final LongAdder errorCount = new LongAdder();
+        final LongAdder rows = new LongAdder();
+        final LongAdder totalNanos = new LongAdder();
+        final LatencyHistogram latency = new LatencyHistogram();
+
+        SqlStat(String template) {
+            this.template = template;
+        }
+
+        void record(long nanos, long rows, boolean error) {
+            count.increment();
+            if (error) {
+                errorCount.increment();
+            }
+            this.rows.add(rows);
+            totalNanos.add(nanos);
+            latency.record(nanos);
+        }
+
+        Map<String, Object> snapshot() {
+            Map<String, Object> snapshot = new LinkedHashMap<>();
+            snapshot.put("sql", template);
+            snapshot.put("count", count.sum());
+            snapshot.put("errorCount", errorCount.sum());
+            snapshot.put("rows", rows.sum());
+            snapshot.put("totalMillis", totalNanos.sum() / 1000000d);
+            snapshot.put("latency", latency.snapshot());
+            return snapshot;
+        }
+    }
+}
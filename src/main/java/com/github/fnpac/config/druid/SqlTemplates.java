@@ -0,0 +1,145 @@
+package com.github.fnpac.config.druid;
+
+/**
+ * 不解析语法的SQL模板化：按字符扫描，字符串、数字常量替换为 ?，空白合并为一个空格，
+ * 连续相同的占位符行（多行INSERT的 {@code (?, ?), (?, ?)}）合并为一行。
+ */
+final class SqlTemplates {
+
+    private SqlTemplates() {
+    }
+
+    static String normalize(String sql) {
+        return collapseRows(replaceLiterals(sql));
+    }
+
+    private static String replaceLiterals(String sql) {
+        StringBuilder out = new StringBuilder(sql.length());
+        int length = sql.length();
+        for (int i = 0; i < length; i++) {
+            char c = sql.charAt(i);
+            if (c == '\'') {
+                // 字符串常量，'' 和 \' 为转义
+                i++;
+                while (i < length) {
+                    char s = sql.charAt(i);
+                    if (s == '\\') {
+                        i++;
+                    } else if (s == '\'') {
+                        if (i + 1 < length && sql.charAt(i + 1) == '\'') {
+                            i++;
+                        } else {
+                            break;
+                        }
+                    }
+                    i++;
+                }
+                out.append('?');
+            } else if (c == '`' || c == '"') {
+                // 标识符，原样保留
+                int end = sql.indexOf(c, i + 1);
+                end = end < 0 ? length - 1 : end;
+                out.append(sql, i, end + 1);
+                i = end;
+            } else if (Character.isWhitespace(c)) {
+                while (i + 1 < length && Character.isWhitespace(sql.charAt(i + 1))) {
+                    i++;
+                }
+                if (out.length() > 0) {
+                    out.append(' ');
+                }
+            } else if (isDigit(c) && !isIdentifierPart(out)) {
+                while (i + 1 < length && (isDigit(sql.charAt(i + 1)) || sql.charAt(i + 1) == '.')) {
+                    i++;
+                }
+                out.append('?');
+            } else {
+                out.append(c);
+            }
+        }
+        int end = out.length();
+        while (end > 0 && out.charAt(end - 1) == ' ') {
+            end--;
+        }
+        out.setLength(end);
+        return out.toString();
+    }
+
+    private static String collapseRows(String sql) {
+        StringBuilder out = null;
+        String lastRow = null;
+        int lastRowEnd = -1;
+        int copied = 0;
+        int i = sql.indexOf('(');
+        while (i >= 0) {
+            int end = sql.indexOf(')', i);
+            if (end < 0) {
+                break;
+            }
+            String row = sql.substring(i, end + 1);
+            if (!isPlaceholderRow(row)) {
+                i = sql.indexOf('(', i + 1);
+                continue;
+            }
+            if (row.equals(lastRow) && isSeparator(sql, lastRowEnd, i)) {
+                if (out == null) {
+                    out = new StringBuilder(sql.length());
+                }
+                out.append(sql, copied, lastRowEnd);
+                copied = end + 1;
+            } else {
+                lastRow = row;
+            }
+            lastRowEnd = end + 1;
+            i = sql.indexOf('(', end);
+        }
+        if (out == null) {
+            return sql;
+        }
+        return out.append(sql, copied, sql.length()).toString();
+    }
+
+    private static boolean isPlaceholderRow(String row) {
+        for (int i = 1; i < row.length() - 1; i++) {
+            char c = row.charAt(i);
+            if (c != '?' && c != ',' && c != ' ') {
+                return false;
+            }
+        }
+        return row.length() > 2;
+    }
+
+    /**
+     * @return [from, to) 之间只有逗号和空格
+     */
+    private static boolean isSeparator(String sql, int from, int to) {
+        if (from < 0) {
+            return false;
+        }
+        boolean comma = false;
+        for (int i = from; i < to; i++) {
+            char c = sql.charAt(i);
+            if (c == ',') {
+                comma = true;
+            } else if (c != ' ') {
+                return false;
+            }
+        }
+        return comma;
+    }
+
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+
+    /**
+     * 数字前是字母、数字或下划线时属于标识符（如 t1、col_2）
+     */
+    private static boolean isIdentifierPart(StringBuilder out) {
+        if (out.length() == 0) {
+            return false;
+        }
+        char previous = out.charAt(out.length() - 1);
+        return Character.isLetterOrDigit(previous) || previous == '_' || previous == '?';
+    }
+}
@@ -0,0 +1,84 @@
+package com.github.fnpac.config.druid;
+
+import com.alibaba.druid.wall.WallFilter;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 跳过预先登记的批处理语句的 {@link WallFilter}：其余语句照常由wall解析、检查。
+ * <p>
+ * 语句与登记的某条相同，或以登记的语句开头、其余部分只有占位符行（如多行INSERT的 {@code (?, ?), (?, ?)}）时跳过。
+ * 只应登记由程序生成、不拼接外部输入的语句。
+ * <p>
+ * 登记的语句中的 {@value #TABLE} 替换为导入写入的表（{@link #setTable(String)}，默认为person），
+ * 开启暂存表导入时为暂存表。
+ */
+public class TrustedWallFilter extends WallFilter {
+
+    public static final String TABLE = "{table}";
+
+    private final List<String> templates = new ArrayList<>();
+    private String table = "person";
+
+    private volatile List<String> trustedSql = Collections.emptyList();
+
+    /**
+     * @param trustedSql 跳过检查的语句，可以包含 {@value #TABLE}
+     */
+    public void setTrustedSql(Collection<String> trustedSql) {
+        this.templates.clear();
+        for (String sql : trustedSql) {
+            if (!sql.trim().isEmpty()) {
+                this.templates.add(sql.trim());
+            }
+        }
+        expand();
+    }
+
+    /**
+     * @param table 导入写入的表，替换登记的语句中的 {@value #TABLE}
+     */
+    public void setTable(String table) {
+        this.table = table;
+        expand();
+    }
+
+    private void expand() {
+        List<String> expanded = new ArrayList<>(templates.size());
+        for (String template : templates) {
+            expanded.add(template.replace(TABLE, table));
+        }
+        trustedSql = expanded;
+    }
+
+    @Override
+    public String check(String sql) throws SQLException {
+        if (isTrusted(sql)) {
+            return sql;
+        }
+        return super.check(sql);
+    }
+
+    boolean isTrusted(String sql) {
+        for (String trusted : trustedSql) {
+            if (sql.startsWith(trusted) && isPlaceholderRows(sql, trusted.length())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean isPlaceholderRows(String sql, int from) {
+        for (int i = from; i < sql.length(); i++) {
+            char c = sql.charAt(i);
+            if (c != '?' && c != ',' && c != '(' && c != ')' && !Character.isWhitespace(c)) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
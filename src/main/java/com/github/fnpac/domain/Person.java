@@ -1,11 +1,13 @@
 package com.github.fnpac.domain;
 
+import org.springframework.batch.item.ItemCountAware;
+
 import javax.validation.constraints.Size;
 
 /**
  * Created by 刘春龙 on 2018/3/29.
  */
-public class Person {
+public class Person implements ItemCountAware {
 
     @Size(max = 4, min = 2)
     private String name;
@@ -13,6 +15,11 @@ public class Person {
     private String nation;
     private String address;
 
+    /**
+     * 在输入文件中的行号，由reader设置（{@link ItemCountAware}），不写入数据库
+     */
+    private int lineNumber;
+
     public String getName() {
         return name;
     }
@@ -44,4 +51,13 @@ public class Person {
     public void setAddress(String address) {
         this.address = address;
     }
+
+    public int getLineNumber() {
+        return lineNumber;
+    }
+
+    @Override
+    public void setItemCount(int count) {
+        this.lineNumber = count;
+    }
 }
@@ -0,0 +1,44 @@
+package com.github.fnpac.web;
+
+import com.github.fnpac.batch.dictionary.CodeDictionaryService;
+import com.github.fnpac.batch.metrics.BatchMetrics;
+import com.github.fnpac.config.druid.SqlMetricsFilter;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.Map;
+
+/**
+ * 批处理运行指标，JSON由 WebApplicationConfig 中基于 JacksonObjectMapper 的转换器输出
+ */
+@RestController
+public class BatchMetricsController {
+
+    private final BatchMetrics batchMetrics;
+    private final CodeDictionaryService codeDictionaryService;
+    private final SqlMetricsFilter sqlMetricsFilter;
+
+    @Autowired
+    public BatchMetricsController(BatchMetrics batchMetrics, CodeDictionaryService codeDictionaryService,
+                                  SqlMetricsFilter sqlMetricsFilter) {
+        this.batchMetrics = batchMetrics;
+        this.codeDictionaryService = codeDictionaryService;
+        this.sqlMetricsFilter = sqlMetricsFilter;
+    }
+
+    @GetMapping(value = "/metrics/batch", produces = "application/json")
+    public Map<String, Object> metrics() {
+        Map<String, Object> metrics = batchMetrics.snapshot();
+        metrics.put("dictionary", codeDictionaryService.getStatistics());
+        return metrics;
+    }
+
+    /**
+     * 各SQL模板的执行次数、影响行数和耗时分布，按总耗时降序
+     */
+    @GetMapping(value = "/metrics/sql", produces = "application/json")
+    public Map<String, Object> sql() {
+        return sqlMetricsFilter.snapshot();
+    }
+}
@@ -0,0 +1,175 @@
+package com.github.fnpac.web;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 查询已导入的person，按主键做keyset（seek）分页：
+ * <pre>
+ * GET /persons?after=0&amp;limit=100&amp;nation=01&amp;minAge=18&amp;maxAge=60
+ * {"items":[{"id":1,"name":"...","age":30,"nation":"01","address":"..."}, ...],"next":100}
+ * </pre>
+ * 下一页以上一页的 next 作为 after，没有下一页时不输出 next。nation、address为导入后的代码。
+ * <p>
+ * 每页执行一条 {@code where id > ? ... order by id limit ?}，从上一页最后的主键处定位，
+ * 不像 LIMIT/OFFSET 那样先扫描并丢弃前面的所有行，延迟与页数无关。多取一行用于判断是否还有下一页。
+ * <p>
+ * 行在结果集回调中直接写入响应的 {@link JsonGenerator}，不创建Person和List，单个请求的内存由 limit 的上限（batch.query.maxLimit）决定。
+ * <p>
+ * 查询中途失败时已写出的部分不会被补全：响应尚未提交时返回500，已提交时客户端收到不完整的JSON。
+ * <p>
+ * 按nation过滤时使用 schema-query-mysql.sql 中的索引（nation, id），同样按主键定位；
+ * 只按年龄过滤时沿主键扫描并过滤，范围很窄时每页扫描的行数较多。
+ */
+@RestController
+public class PersonQueryController {
+
+    private static final String SELECT = "select id, name, age, nation, address from person where id > ?";
+    private static final String NATION = " and nation = ?";
+    private static final String MIN_AGE = " and age >= ?";
+    private static final String MAX_AGE = " and age <= ?";
+    private static final String ORDER = " order by id limit ?";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final JsonFactory jsonFactory;
+
+    @Value("${batch.query.defaultLimit}")
+    private int defaultLimit;
+    @Value("${batch.query.maxLimit}")
+    private int maxLimit;
+
+    @Autowired
+    public PersonQueryController(JdbcTemplate jdbcTemplate, MappingJackson2HttpMessageConverter converter) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.jsonFactory = converter.getObjectMapper().getFactory();
+    }
+
+    /**
+     * @param after  上一页的next（最后一行的id），第一页为0
+     * @param limit  每页行数，默认 batch.query.defaultLimit，超过 batch.query.maxLimit 时按上限
+     * @param nation 民族代码
+     * @param minAge 最小年龄（含）
+     * @param maxAge 最大年龄（含）
+     * @param response
+     * @throws IOException
+     */
+    @GetMapping("/persons")
+    public void persons(@RequestParam(defaultValue = "0") long after,
+                        @RequestParam(required = false) Integer limit,
+                        @RequestParam(required = false) String nation,
+                        @RequestParam(required = false) Integer minAge,
+                        @RequestParam(required = false) Integer maxAge,
+                        HttpServletResponse response) throws IOException {
+        int pageSize = limit == null ? defaultLimit : Math.min(limit, maxLimit);
+        if (pageSize < 1 || after < 0) {
+            response.sendError(HttpServletResponse.SC_BAD_REQUEST, "limit must be positive and after must not be negative");
+            return;
+        }
+
+        // 语句只由固定的片段组成，参数全部通过占位符传入
+        StringBuilder sql = new StringBuilder(SELECT);
+        List<Object> args = new ArrayList<>();
+        args.add(after);
+        if (nation != null && !nation.isEmpty()) {
+            sql.append(NATION);
+            args.add(nation);
+        }
+        if (minAge != null) {
+            sql.append(MIN_AGE);
+            args.add(minAge);
+        }
+        if (maxAge != null) {
+            sql.append(MAX_AGE);
+            args.add(maxAge);
+        }
+        sql.append(ORDER);
+        args.add(pageSize + 1);
+
+        response.setContentType("application/json;charset=UTF-8");
+        JsonGenerator generator = jsonFactory.createGenerator(response.getOutputStream(), JsonEncoding.UTF8);
+        // 查询中途失败时不补全JSON，也不关闭响应流：客户端不能把已写出的部分当作最后一页
+        generator.disable(JsonGenerator.Feature.AUTO_CLOSE_JSON_CONTENT);
+        generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+        generator.writeStartObject();
+        generator.writeArrayFieldStart("items");
+        PageWriter page = new PageWriter(generator, pageSize);
+        try {
+            jdbcTemplate.query(sql.toString(), args.toArray(), page);
+        } catch (UncheckedIOException e) {
+            // 客户端断开等写入失败
+            throw e.getCause();
+        }
+        generator.writeEndArray();
+        if (page.more) {
+            generator.writeNumberField("next", page.lastId);
+        }
+        generator.writeEndObject();
+        // 只在完整写出后flush
+        generator.close();
+    }
+
+    /**
+     * 逐行写入JSON，第 pageSize+1 行只用于判断是否还有下一页
+     */
+    private static class PageWriter implements RowCallbackHandler {
+
+        private final JsonGenerator generator;
+        private final int pageSize;
+
+        private int count;
+        private long lastId;
+        private boolean more;
+
+        PageWriter(JsonGenerator generator, int pageSize) {
+            this.generator = generator;
+            this.pageSize = pageSize;
+        }
+
+        @Override
+        public void processRow(ResultSet rs) throws SQLException {
+            if (count == pageSize) {
+                more = true;
+                return;
+            }
+            count++;
+            lastId = rs.getLong(1);
+            try {
+                generator.writeStartObject();
+                generator.writeNumberField("id", lastId);
+                writeString("name", rs.getString(2));
+                generator.writeNumberField("age", rs.getInt(3));
+                writeString("nation", rs.getString(4));
+                writeString("address", rs.getString(5));
+                generator.writeEndObject();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        /**
+         * 与 JacksonObjectMapper（NON_EMPTY）一致，不输出null和空字符串
+         */
+        private void writeString(String name, String value) throws IOException {
+            if (value != null && !value.isEmpty()) {
+                generator.writeStringField(name, value);
+            }
+        }
+    }
+}
@@ -0,0 +1,4 @@
+-- 去重（batch.dedupe.enabled=true）：布隆过滤器命中时按自然键（batch.dedupe.keyProperties）查询person表
+-- 索引列需与batch.dedupe.keyProperties一致
+
+CREATE INDEX IDX_PERSON_NAME_ADDRESS ON person (name, address);
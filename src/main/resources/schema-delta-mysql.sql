@@ -0,0 +1,6 @@
+-- 增量导入（batch.delta.enabled=true）：person表按行键hash（PersonRowHasher）upsert、删除
+-- 启用前已导入的行没有KEY_HASH，不会被更新或删除，启用增量导入前请清空person表
+
+ALTER TABLE person
+	ADD COLUMN KEY_HASH BIGINT NULL ,
+	ADD UNIQUE KEY UK_PERSON_KEY_HASH (KEY_HASH);
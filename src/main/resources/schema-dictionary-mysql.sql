@@ -0,0 +1,12 @@
+-- 码表，CsvItemProcessor 通过 CodeDictionaryService 批量加载后在内存中翻译
+-- 修改码表后请递增 VERSION，运行中的服务会按版本重新加载
+
+CREATE TABLE IF NOT EXISTS CODE_DICTIONARY  (
+	DICT_TYPE VARCHAR(50) NOT NULL ,
+	DICT_LABEL VARCHAR(100) NOT NULL ,
+	DICT_CODE VARCHAR(50) NOT NULL ,
+	VERSION BIGINT NOT NULL DEFAULT 0 ,
+	constraint CODE_DICT_PK primary key (DICT_TYPE, DICT_LABEL)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8;
+
+INSERT INTO CODE_DICTIONARY (DICT_TYPE, DICT_LABEL, DICT_CODE, VERSION) select * from (select 'nation' as DICT_TYPE, '汉族' as DICT_LABEL, '01' as DICT_CODE, 0 as VERSION) as tmp where not exists(select * from CODE_DICTIONARY where DICT_TYPE = 'nation' and DICT_LABEL = '汉族');
@@ -0,0 +1,4 @@
+-- 查询（GET /persons）：按nation过滤时的keyset分页
+-- InnoDB二级索引按 (nation, id) 排序，where nation = ? and id > ? order by id 直接从索引定位，不需要排序
+
+CREATE INDEX IDX_PERSON_NATION ON person (nation, id);
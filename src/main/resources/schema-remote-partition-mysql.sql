@@ -0,0 +1,22 @@
+-- 远程分区（batch.import.step=remotePartitionedStep）：manager写入分区描述，worker按租约领取
+-- STATUS：READY（待领取）、CLAIMED（已领取，LEASE_EXPIRES前有效）、DONE（已结束）；LEASE_EXPIRES为毫秒时间戳
+-- manager step结束（包括超时、中断）时删除该step execution的行
+
+CREATE TABLE BATCH_PARTITION_WORK (
+	STEP_EXECUTION_ID BIGINT NOT NULL PRIMARY KEY ,
+	JOB_EXECUTION_ID BIGINT NOT NULL ,
+	MANAGER_STEP_EXECUTION_ID BIGINT NOT NULL ,
+	WORKER_STEP VARCHAR(100) NOT NULL ,
+	FILE_NAME VARCHAR(2500) NULL ,
+	RANGE_START BIGINT NULL ,
+	RANGE_END BIGINT NULL ,
+	STATUS VARCHAR(10) NOT NULL ,
+	WORKER_ID VARCHAR(100) NULL ,
+	LEASE_EXPIRES BIGINT NULL ,
+	ATTEMPTS INT NOT NULL DEFAULT 0 ,
+	constraint PARTITION_WORK_STEP_EXEC_FK foreign key (STEP_EXECUTION_ID)
+	references BATCH_STEP_EXECUTION(STEP_EXECUTION_ID)
+) ENGINE=InnoDB;
+
+CREATE INDEX IDX_PARTITION_WORK_STATUS ON BATCH_PARTITION_WORK (STATUS, LEASE_EXPIRES);
+CREATE INDEX IDX_PARTITION_WORK_MANAGER ON BATCH_PARTITION_WORK (MANAGER_STEP_EXECUTION_ID);
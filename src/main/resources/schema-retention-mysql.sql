@@ -0,0 +1,17 @@
+-- Spring Batch元数据表的查询索引（schema-mysql.sql为自动生成，其中只有外键索引）
+-- JobExplorer.getJobInstances、FileFingerprints：WHERE JOB_NAME = ? ORDER BY JOB_INSTANCE_ID DESC，避免按JOB_NAME全部排序
+CREATE INDEX IDX_JOB_INST_NAME ON BATCH_JOB_INSTANCE (JOB_NAME, JOB_INSTANCE_ID);
+-- getLastJobExecution：WHERE JOB_INSTANCE_ID = ? AND CREATE_TIME = (SELECT MAX(CREATE_TIME) ...)；可替代外键JOB_INST_EXEC_FK的索引
+CREATE INDEX IDX_JOB_EXEC_INST ON BATCH_JOB_EXECUTION (JOB_INSTANCE_ID, CREATE_TIME);
+-- findRunningJobExecutions：END_TIME IS NULL；JobMetadataRetention按END_TIME筛选
+CREATE INDEX IDX_JOB_EXEC_END ON BATCH_JOB_EXECUTION (END_TIME);
+-- getLastStepExecution、getStepExecutionCount：JOB_EXECUTION_ID IN (...) AND STEP_NAME = ?；可替代外键JOB_EXEC_STEP_FK的索引
+CREATE INDEX IDX_STEP_EXEC_JOB ON BATCH_STEP_EXECUTION (JOB_EXECUTION_ID, STEP_NAME);
+
+-- 元数据归档（batch.retention.archive=true）：结构与原表相同，不含外键，JobMetadataRetention删除前复制到这些表
+CREATE TABLE IF NOT EXISTS BATCH_JOB_INSTANCE_ARCHIVE LIKE BATCH_JOB_INSTANCE;
+CREATE TABLE IF NOT EXISTS BATCH_JOB_EXECUTION_ARCHIVE LIKE BATCH_JOB_EXECUTION;
+CREATE TABLE IF NOT EXISTS BATCH_JOB_EXECUTION_PARAMS_ARCHIVE LIKE BATCH_JOB_EXECUTION_PARAMS;
+CREATE TABLE IF NOT EXISTS BATCH_JOB_EXECUTION_CONTEXT_ARCHIVE LIKE BATCH_JOB_EXECUTION_CONTEXT;
+CREATE TABLE IF NOT EXISTS BATCH_STEP_EXECUTION_ARCHIVE LIKE BATCH_STEP_EXECUTION;
+CREATE TABLE IF NOT EXISTS BATCH_STEP_EXECUTION_CONTEXT_ARCHIVE LIKE BATCH_STEP_EXECUTION_CONTEXT;
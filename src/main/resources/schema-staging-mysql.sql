@@ -0,0 +1,4 @@
+-- 暂存表导入（batch.staging.enabled=true）：结构与person相同
+-- 每次导入前由StagingTableListener清空并删除二级索引，swap模式下与person交换表名
+
+CREATE TABLE IF NOT EXISTS person_staging LIKE person;
@@ -0,0 +1,74 @@
+package com.github.fnpac.batch.chunk;
+
+import org.junit.Test;
+import org.springframework.batch.core.JobExecution;
+import org.springframework.batch.core.StepExecution;
+import org.springframework.batch.item.ExecutionContext;
+import org.springframework.batch.repeat.RepeatContext;
+
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * {@link AdaptiveCompletionPolicy}：固定大小时不写入adaptive.chunk.*统计信息
+ */
+public class AdaptiveCompletionPolicyTest {
+
+    private static final List<Object> CHUNK = Collections.nCopies(10, new Object());
+
+    @Test
+    public void fixedSizeLeavesExecutionContextUntouched() {
+        AdaptiveCompletionPolicy policy = policy(false);
+        StepExecution stepExecution = new JobExecution(1L).createStepExecution("step");
+        // 之前以自适应方式运行留下的chunk大小不再沿用
+        stepExecution.getExecutionContext().putInt(AdaptiveCompletionPolicy.CHUNK_SIZE_KEY, 20);
+        policy.beforeStep(stepExecution);
+
+        for (int i = 0; i < 5; i++) {
+            writeChunk(policy);
+        }
+        policy.onWriteError(new RuntimeException(), CHUNK);
+
+        assertEquals(10, policy.getChunkSize());
+        ExecutionContext executionContext = stepExecution.getExecutionContext();
+        assertEquals(1, executionContext.size());
+        assertFalse(executionContext.containsKey(AdaptiveCompletionPolicy.CHUNK_SIZE_HISTORY_KEY));
+    }
+
+    @Test
+    public void adaptiveSizeRecordsStatistics() {
+        AdaptiveCompletionPolicy policy = policy(true);
+        StepExecution stepExecution = new JobExecution(1L).createStepExecution("step");
+        policy.beforeStep(stepExecution);
+
+        writeChunk(policy);
+        writeChunk(policy);
+
+        ExecutionContext executionContext = stepExecution.getExecutionContext();
+        assertTrue(executionContext.containsKey(AdaptiveCompletionPolicy.CHUNK_SIZE_KEY));
+        assertTrue(executionContext.containsKey(AdaptiveCompletionPolicy.WRITE_MILLIS_PER_ITEM_KEY));
+        assertEquals("10,10", executionContext.getString(AdaptiveCompletionPolicy.CHUNK_SIZE_HISTORY_KEY));
+    }
+
+    private static AdaptiveCompletionPolicy policy(boolean adaptive) {
+        AdaptiveCompletionPolicy policy = new AdaptiveCompletionPolicy();
+        policy.setAdaptive(adaptive);
+        policy.setMinChunkSize(10);
+        policy.setMaxChunkSize(adaptive ? 1000 : 10);
+        policy.setInitialChunkSize(10);
+        return policy;
+    }
+
+    private static void writeChunk(AdaptiveCompletionPolicy policy) {
+        RepeatContext context = policy.start(null);
+        while (!policy.isComplete(context)) {
+            policy.update(context);
+        }
+        policy.beforeWrite(CHUNK);
+        policy.afterWrite(CHUNK);
+    }
+}
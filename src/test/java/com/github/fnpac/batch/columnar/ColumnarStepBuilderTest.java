@@ -0,0 +1,144 @@
+package com.github.fnpac.batch.columnar;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.springframework.batch.core.BatchStatus;
+import org.springframework.batch.core.JobExecution;
+import org.springframework.batch.core.JobParametersBuilder;
+import org.springframework.batch.core.StepExecution;
+import org.springframework.batch.core.repository.JobRepository;
+import org.springframework.batch.core.repository.support.JobRepositoryFactoryBean;
+import org.springframework.batch.core.step.builder.StepBuilder;
+import org.springframework.batch.core.step.tasklet.TaskletStep;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabase;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseBuilder;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseType;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * {@link ColumnarStepBuilder} 构建的按列step，H2内存数据库：readCount、writeCount按行计数，
+ * {@link PersonChunkWriter} 从列中绑定的值（name为字节区中的字节，nation、address为字典中的值）原样写入
+ */
+public class ColumnarStepBuilderTest {
+
+    private static final int CHUNK_ROWS = 4;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private EmbeddedDatabase database;
+    private JdbcTemplate jdbcTemplate;
+    private DataSourceTransactionManager transactionManager;
+    private JobRepository jobRepository;
+
+    @Before
+    public void setUp() throws Exception {
+        database = new EmbeddedDatabaseBuilder()
+                .setType(EmbeddedDatabaseType.H2)
+                .generateUniqueName(true)
+                .addScript("classpath:org/springframework/batch/core/schema-h2.sql")
+                .build();
+        jdbcTemplate = new JdbcTemplate(database);
+        // name以UTF-8字节绑定：MySQL写入utf8列时不转换，H2会将字节转换为十六进制字符串，这里用VARBINARY保存原样的字节
+        jdbcTemplate.execute("CREATE TABLE person (id BIGINT AUTO_INCREMENT PRIMARY KEY, " +
+                "name VARBINARY(8), age INT, nation VARCHAR(20), address VARCHAR(20))");
+        transactionManager = new DataSourceTransactionManager(database);
+        JobRepositoryFactoryBean factory = new JobRepositoryFactoryBean();
+        factory.setDataSource(database);
+        factory.setTransactionManager(transactionManager);
+        factory.setDatabaseType("H2");
+        factory.afterPropertiesSet();
+        jobRepository = factory.getObject();
+    }
+
+    @After
+    public void tearDown() {
+        database.shutdown();
+    }
+
+    @Test
+    public void countsRowsAndWritesColumnValues() throws Exception {
+        List<String> lines = lines(10);
+        StepExecution stepExecution = execute(lines);
+
+        assertEquals(BatchStatus.COMPLETED, stepExecution.getStatus());
+        assertEquals(10, stepExecution.getReadCount());
+        assertEquals(10, stepExecution.getWriteCount());
+        assertEquals(0, stepExecution.getFilterCount());
+        // 3个PersonChunk，加上读取结束的一次
+        assertEquals(4, stepExecution.getCommitCount());
+
+        List<Map<String, Object>> rows = jdbcTemplate.queryForList("SELECT name, age, nation, address FROM person ORDER BY id");
+        assertEquals(10, rows.size());
+        for (int i = 0; i < rows.size(); i++) {
+            Map<String, Object> row = rows.get(i);
+            assertEquals("姓名" + (i + 1), new String((byte[]) row.get("NAME"), StandardCharsets.UTF_8));
+            assertEquals(i + 1, row.get("AGE"));
+            assertEquals(i % 2 == 0 ? "汉族" : "回族", row.get("NATION"));
+            assertEquals(i < 5 ? "北京" : "上海", row.get("ADDRESS"));
+        }
+    }
+
+    @Test
+    public void failedWriteIsNotCounted() throws Exception {
+        List<String> lines = lines(10);
+        // 第二个PersonChunk（第5~8行）中的姓名超过列宽
+        lines.set(5, "过长的姓名,6,汉族,北京");
+
+        StepExecution stepExecution = execute(lines);
+
+        assertEquals(BatchStatus.FAILED, stepExecution.getStatus());
+        assertEquals(8, stepExecution.getReadCount());
+        assertEquals(CHUNK_ROWS, stepExecution.getWriteCount());
+        assertEquals(1, stepExecution.getRollbackCount());
+        assertEquals(CHUNK_ROWS, jdbcTemplate.queryForObject("SELECT COUNT(*) FROM person", Integer.class).intValue());
+    }
+
+    private StepExecution execute(List<String> lines) throws Exception {
+        File file = folder.newFile();
+        Files.write(file.toPath(), lines, StandardCharsets.UTF_8);
+        PersonChunkReader reader = new PersonChunkReader();
+        reader.setResource(new FileSystemResource(file));
+        reader.setChunkRows(CHUNK_ROWS);
+        reader.afterPropertiesSet();
+        PersonChunkWriter writer = new PersonChunkWriter();
+        writer.setDataSource(database);
+        writer.afterPropertiesSet();
+
+        TaskletStep step = new ColumnarStepBuilder(new StepBuilder("columnarStep")
+                .repository(jobRepository)
+                .transactionManager(transactionManager))
+                .reader(reader)
+                .writer(writer)
+                .build();
+
+        JobExecution jobExecution = jobRepository.createJobExecution("job",
+                new JobParametersBuilder().addLong("run.id", System.nanoTime()).toJobParameters());
+        StepExecution stepExecution = jobExecution.createStepExecution(step.getName());
+        jobRepository.add(stepExecution);
+        step.execute(stepExecution);
+        return stepExecution;
+    }
+
+    private static List<String> lines(int count) {
+        List<String> lines = new ArrayList<>(count);
+        for (int i = 1; i <= count; i++) {
+            lines.add("姓名" + i + "," + i + "," + (i % 2 == 1 ? "汉族" : "回族") + "," + (i <= 5 ? "北京" : "上海"));
+        }
+        return lines;
+    }
+}
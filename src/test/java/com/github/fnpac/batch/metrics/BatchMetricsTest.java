@@ -0,0 +1,63 @@
+package com.github.fnpac.batch.metrics;
+
+import org.junit.Test;
+import org.springframework.batch.core.BatchStatus;
+import org.springframework.batch.core.JobExecution;
+import org.springframework.batch.core.StepExecution;
+
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * {@link BatchMetrics} 中完成的step：按step execution id区分，数量有上限
+ */
+public class BatchMetricsTest {
+
+    private long ids;
+
+    @Test
+    public void keepsSameNamedStepsOfDifferentExecutions() {
+        BatchMetrics metrics = new BatchMetrics();
+        StepExecution first = finish(metrics, 1L, "importStep", 10);
+        StepExecution rerun = finish(metrics, 2L, "importStep", 20);
+
+        Map<Long, Map<String, Object>> completed = completed(metrics);
+        assertEquals(2, completed.size());
+        assertEquals(10, completed.get(first.getId()).get("writeCount"));
+        assertEquals(20, completed.get(rerun.getId()).get("writeCount"));
+        assertEquals(2L, completed.get(rerun.getId()).get("jobExecutionId"));
+        assertEquals("importStep", completed.get(rerun.getId()).get("stepName"));
+    }
+
+    @Test
+    public void keepsOnlyMostRecentSteps() {
+        BatchMetrics metrics = new BatchMetrics();
+        StepExecution last = null;
+        for (int i = 0; i < BatchMetrics.MAX_COMPLETED_STEPS + 50; i++) {
+            last = finish(metrics, 1L, "partitionWorkerStep:partition" + i, i);
+        }
+
+        Map<Long, Map<String, Object>> completed = completed(metrics);
+        assertEquals(BatchMetrics.MAX_COMPLETED_STEPS, completed.size());
+        assertTrue(completed.containsKey(last.getId()));
+        assertFalse(completed.containsKey(1L));
+    }
+
+    private StepExecution finish(BatchMetrics metrics, Long jobExecutionId, String stepName, int writeCount) {
+        StepExecution stepExecution = new JobExecution(jobExecutionId).createStepExecution(stepName);
+        stepExecution.setId(++ids);
+        metrics.stepStarted(stepExecution);
+        stepExecution.setWriteCount(writeCount);
+        stepExecution.setStatus(BatchStatus.COMPLETED);
+        metrics.stepFinished(stepExecution);
+        return stepExecution;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<Long, Map<String, Object>> completed(BatchMetrics metrics) {
+        return (Map<Long, Map<String, Object>>) metrics.snapshot().get("completedSteps");
+    }
+}
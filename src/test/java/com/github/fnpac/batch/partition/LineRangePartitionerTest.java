@@ -0,0 +1,73 @@
+package com.github.fnpac.batch.partition;
+
+import com.github.fnpac.batch.reader.MappedDelimitedItemReader;
+import com.github.fnpac.batch.reader.PersonBytesMapper;
+import com.github.fnpac.domain.Person;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.springframework.batch.item.ExecutionContext;
+import org.springframework.core.io.FileSystemResource;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * {@link LineRangePartitioner} 的区间与起始行号：各分区的reader给出的是文件中的行号
+ */
+public class LineRangePartitionerTest {
+
+    private static final int LINES = 1000;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void partitionsReportFileLineNumbers() throws Exception {
+        File file = folder.newFile("people.csv");
+        ByteArrayOutputStream content = new ByteArrayOutputStream();
+        content.write(new byte[]{(byte) 0xEF, (byte) 0xBB, (byte) 0xBF});
+        for (int line = 1; line <= LINES; line++) {
+            // 空行同样计入行号；姓名记录所在的行号
+            String text = line % 97 == 0 ? "" : line + "," + (line % 100) + ",汉族,北京市海淀区";
+            content.write((text + (line % 3 == 0 ? "\r\n" : "\n")).getBytes(StandardCharsets.UTF_8));
+        }
+        Files.write(file.toPath(), content.toByteArray());
+
+        Map<String, ExecutionContext> partitions = new LineRangePartitioner(new FileSystemResource(file)).partition(7);
+        assertEquals(7, partitions.size());
+
+        int read = 0;
+        long expectedFirstLine = 1;
+        for (ExecutionContext context : partitions.values()) {
+            long firstLine = context.getLong(LineRangePartitioner.FIRST_LINE_KEY);
+            assertEquals(expectedFirstLine, firstLine);
+
+            MappedDelimitedItemReader<Person> reader = new MappedDelimitedItemReader<>();
+            reader.setResource(new FileSystemResource(file));
+            reader.setMapper(new PersonBytesMapper());
+            reader.setRange(context.getLong(LineRangePartitioner.START_KEY), context.getLong(LineRangePartitioner.END_KEY));
+            reader.setFirstLine(firstLine);
+            reader.afterPropertiesSet();
+            reader.open(new ExecutionContext());
+            for (Person person; (person = reader.read()) != null; ) {
+                assertEquals(Integer.parseInt(person.getName()), person.getLineNumber());
+                assertTrue(person.getLineNumber() >= firstLine);
+                read++;
+            }
+            ExecutionContext state = new ExecutionContext();
+            reader.update(state);
+            int lines = state.getInt(reader.getClass().getSimpleName() + "." + MappedDelimitedItemReader.LINE_COUNT_KEY);
+            reader.close();
+            expectedFirstLine = firstLine + lines;
+        }
+        assertEquals(LINES - LINES / 97, read);
+        assertEquals(LINES + 1, expectedFirstLine);
+    }
+}
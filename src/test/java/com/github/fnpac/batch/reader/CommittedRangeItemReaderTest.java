@@ -0,0 +1,226 @@
+package com.github.fnpac.batch.reader;
+
+import com.github.fnpac.domain.Person;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.springframework.batch.item.ExecutionContext;
+import org.springframework.batch.item.file.FlatFileParseException;
+import org.springframework.batch.item.file.mapping.DefaultLineMapper;
+import org.springframework.batch.item.file.transform.DelimitedLineTokenizer;
+import org.springframework.batch.support.transaction.ResourcelessTransactionManager;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.DefaultTransactionDefinition;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+import java.util.function.Predicate;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * {@link CommittedRangeItemReader}：多线程chunk、回滚与重启。
+ * <p>
+ * 按TaskletStep的方式模拟多线程step：每个线程在自己的事务中读取一个chunk，回滚，或在step的锁内
+ * update ExecutionContext、保存、提交。每行的name为其行号，用于检查行号和是否重复、遗漏。
+ */
+public class CommittedRangeItemReaderTest {
+
+    private static final int LINES = 5000;
+    private static final int THREADS = 4;
+    private static final int CHUNK_SIZE = 7;
+    private static final String COMMITTED_KEY =
+            CommittedRangeItemReader.class.getSimpleName() + "." + CommittedRangeItemReader.COMMITTED_KEY;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private final PlatformTransactionManager transactionManager = new ResourcelessTransactionManager();
+    private final Object stepLock = new Object();
+    private final ExecutionContext stepContext = new ExecutionContext();
+    private volatile ExecutionContext saved = new ExecutionContext();
+    private final Set<Integer> committed = ConcurrentHashMap.newKeySet();
+    private final AtomicInteger duplicates = new AtomicInteger();
+
+    @Test
+    public void restartsAfterRollbacksWithoutDuplicatesOrGaps() throws Exception {
+        File file = file();
+        // 每行的第一次读取中，行号为13的倍数的chunk回滚
+        Set<Integer> failed = ConcurrentHashMap.newKeySet();
+        AtomicInteger commits = new AtomicInteger();
+        CommittedRangeItemReader<Person> first = reader(file);
+        first.open(new ExecutionContext());
+        run(first, person -> person.getLineNumber() % 13 == 0 && failed.add(person.getLineNumber()),
+                () -> commits.incrementAndGet() >= 200);
+        first.close();
+
+        int beforeRestart = committed.size();
+        assertTrue(beforeRestart >= 200 * CHUNK_SIZE / 2);
+        assertTrue(beforeRestart < expectedLines().size());
+        assertTrue(failed.size() > 0);
+
+        // 重启：从最后一次保存的ExecutionContext继续，不再回滚
+        CommittedRangeItemReader<Person> restarted = reader(file);
+        restarted.open(saved);
+        run(restarted, person -> false, () -> false);
+        restarted.close();
+
+        assertEquals(0, duplicates.get());
+        assertEquals(expectedLines(), new TreeSet<>(committed));
+        // 完整读取后，已提交区间合并为一个
+        long[] ranges = (long[]) saved.get(COMMITTED_KEY);
+        assertEquals(2, ranges.length);
+        assertEquals(3, ranges[0]);
+        assertEquals(file.length(), ranges[1]);
+    }
+
+    @Test
+    public void reportsFileLineNumberOfParseError() throws Exception {
+        List<String> lines = new ArrayList<>();
+        for (int i = 1; i <= 100; i++) {
+            lines.add(i == 77 ? "77,not a number,01,110000" : i + "," + i + ",01,110000");
+        }
+        File file = folder.newFile();
+        Files.write(file.toPath(), lines, StandardCharsets.UTF_8);
+        CommittedRangeItemReader<Person> reader = reader(file);
+        reader.open(new ExecutionContext());
+        try {
+            for (Person person; (person = reader.read()) != null; ) {
+                assertEquals(Integer.parseInt(person.getName()), person.getLineNumber());
+            }
+            fail("line 77 must fail");
+        } catch (FlatFileParseException e) {
+            assertEquals(77, e.getLineNumber());
+        } finally {
+            reader.close();
+        }
+    }
+
+    /**
+     * 各线程反复读取chunk，直到reader读完或 stop 返回true
+     *
+     * @param rollback chunk中任一记录满足时回滚该chunk
+     * @param stop     每次提交后调用，返回true时该线程停止
+     */
+    private void run(CommittedRangeItemReader<Person> reader, Predicate<Person> rollback,
+                     BooleanSupplier stop) throws Exception {
+        AtomicInteger stopped = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < THREADS; t++) {
+                futures.add(executor.submit(() -> {
+                    while (stopped.get() == 0) {
+                        TransactionStatus status = transactionManager.getTransaction(new DefaultTransactionDefinition());
+                        List<Person> chunk = new ArrayList<>();
+                        boolean rollbackOnly = false;
+                        Person person = null;
+                        while (chunk.size() < CHUNK_SIZE && (person = reader.read()) != null) {
+                            assertEquals(Integer.parseInt(person.getName()), person.getLineNumber());
+                            rollbackOnly |= rollback.test(person);
+                            chunk.add(person);
+                        }
+                        if (rollbackOnly) {
+                            transactionManager.rollback(status);
+                            continue;
+                        }
+                        synchronized (stepLock) {
+                            reader.update(stepContext);
+                            // 与chunk在同一事务中保存
+                            ExecutionContext copy = new ExecutionContext();
+                            copy.put(COMMITTED_KEY, ((long[]) stepContext.get(COMMITTED_KEY)).clone());
+                            saved = copy;
+                            transactionManager.commit(status);
+                            for (Person item : chunk) {
+                                if (!committed.add(item.getLineNumber())) {
+                                    duplicates.incrementAndGet();
+                                }
+                            }
+                            if (stop.getAsBoolean()) {
+                                stopped.incrementAndGet();
+                            }
+                        }
+                        if (person == null) {
+                            return null;
+                        }
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private CommittedRangeItemReader<Person> reader(File file) throws Exception {
+        DelimitedLineTokenizer tokenizer = new DelimitedLineTokenizer();
+        tokenizer.setNames(new String[]{"name", "age", "nation", "address"});
+        DefaultLineMapper<Person> lineMapper = new DefaultLineMapper<>();
+        lineMapper.setLineTokenizer(tokenizer);
+        lineMapper.setFieldSetMapper(fieldSet -> {
+            Person person = new Person();
+            person.setName(fieldSet.readString("name"));
+            person.setAge(fieldSet.readInt("age"));
+            person.setNation(fieldSet.readString("nation"));
+            person.setAddress(fieldSet.readString("address"));
+            return person;
+        });
+        CommittedRangeItemReader<Person> reader = new CommittedRangeItemReader<>();
+        reader.setResource(new FileSystemResource(file));
+        reader.setLineMapper(lineMapper);
+        // 小块、小缓冲区：每个chunk跨越多个块，行号索引有多个步长，长行需扩大缓冲区
+        reader.setBlockSize(2000);
+        reader.setBufferSize(64);
+        reader.afterPropertiesSet();
+        return reader;
+    }
+
+    /**
+     * BOM、CRLF与LF混用，空行计入行号，少数长行超过缓冲区
+     */
+    private File file() throws Exception {
+        File file = folder.newFile("people.csv");
+        ByteArrayOutputStream content = new ByteArrayOutputStream();
+        content.write(new byte[]{(byte) 0xEF, (byte) 0xBB, (byte) 0xBF});
+        for (int line = 1; line <= LINES; line++) {
+            String address = line % 500 == 0 ? new String(new char[200]).replace('\0', '区') : "北京市海淀区";
+            String text = isBlank(line) ? "" : line + "," + (line % 100) + ",汉族," + address;
+            content.write((text + (line % 3 == 0 ? "\r\n" : "\n")).getBytes(StandardCharsets.UTF_8));
+        }
+        Files.write(file.toPath(), content.toByteArray());
+        return file;
+    }
+
+    private static boolean isBlank(int line) {
+        return line % 97 == 0;
+    }
+
+    private static TreeSet<Integer> expectedLines() {
+        TreeSet<Integer> lines = new TreeSet<>();
+        for (int line = 1; line <= LINES; line++) {
+            if (!isBlank(line)) {
+                lines.add(line);
+            }
+        }
+        return lines;
+    }
+}
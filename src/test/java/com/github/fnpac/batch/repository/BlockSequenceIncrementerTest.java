@@ -0,0 +1,152 @@
+package com.github.fnpac.batch.repository;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.SimpleDriverDataSource;
+import org.springframework.jdbc.datasource.SingleConnectionDataSource;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.DefaultTransactionDefinition;
+
+import java.sql.Connection;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * {@link BlockSequenceIncrementer}，H2内存数据库（MODE=MySQL）：块边界、多个JVM（实例）并发分配，以及与调用方事务的隔离
+ */
+public class BlockSequenceIncrementerTest {
+
+    private static final int BLOCK_SIZE = 7;
+
+    private String url;
+    private SimpleDriverDataSource dataSource;
+    private JdbcTemplate jdbcTemplate;
+
+    @Before
+    public void setUp() {
+        // 并发分配时等待序列表的行锁
+        url = "jdbc:h2:mem:block-sequence-" + System.nanoTime() + ";MODE=MySQL;DB_CLOSE_DELAY=-1;LOCK_TIMEOUT=10000";
+        dataSource = new SimpleDriverDataSource(new org.h2.Driver(), url, "sa", "");
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        jdbcTemplate.execute("CREATE TABLE BATCH_JOB_SEQ (ID BIGINT NOT NULL, UNIQUE_KEY CHAR(1) NOT NULL)");
+        jdbcTemplate.update("INSERT INTO BATCH_JOB_SEQ (ID, UNIQUE_KEY) VALUES (0, '0')");
+    }
+
+    @After
+    public void tearDown() {
+        jdbcTemplate.execute("SHUTDOWN");
+    }
+
+    @Test
+    public void allocatesConsecutiveIdsAcrossBlockBoundaries() {
+        BlockSequenceIncrementer incrementer = incrementer();
+
+        for (long expected = 1; expected <= 2 * BLOCK_SIZE + 1; expected++) {
+            assertEquals(expected, incrementer.nextLongValue());
+            // 每个块的第一个ID之前分配一次
+            assertEquals(((expected - 1) / BLOCK_SIZE + 1) * BLOCK_SIZE, sequence());
+        }
+    }
+
+    /**
+     * 两个实例（相当于两个JVM）各有多个线程，分配的ID互不重复，序列表只按块增加
+     */
+    @Test
+    public void concurrentInstancesNeverShareIds() throws Exception {
+        int threads = 4;
+        int idsPerThread = 500;
+        List<BlockSequenceIncrementer> incrementers = new ArrayList<>();
+        incrementers.add(incrementer());
+        incrementers.add(incrementer());
+        Set<Long> ids = ConcurrentHashMap.newKeySet();
+        ExecutorService executor = Executors.newFixedThreadPool(threads * incrementers.size());
+        try {
+            List<Future<Integer>> futures = new ArrayList<>();
+            for (BlockSequenceIncrementer incrementer : incrementers) {
+                for (int t = 0; t < threads; t++) {
+                    futures.add(executor.submit(() -> {
+                        int duplicates = 0;
+                        for (int i = 0; i < idsPerThread; i++) {
+                            if (!ids.add(incrementer.nextLongValue())) {
+                                duplicates++;
+                            }
+                        }
+                        return duplicates;
+                    }));
+                }
+            }
+            for (Future<Integer> future : futures) {
+                assertEquals(0, future.get().intValue());
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        int total = threads * incrementers.size() * idsPerThread;
+        assertEquals(total, ids.size());
+        long sequence = sequence();
+        assertEquals(0, sequence % BLOCK_SIZE);
+        assertTrue(ids.stream().allMatch(id -> id > 0 && id <= sequence));
+        // 每个实例至多有一个未用完的块
+        assertTrue(sequence < total + incrementers.size() * BLOCK_SIZE);
+    }
+
+    /**
+     * 调用方事务回滚不退回已分配的块，分配时也不会提交调用方事务中的修改
+     */
+    @Test
+    public void allocatesOutsideCallerTransaction() {
+        jdbcTemplate.execute("CREATE TABLE job (id BIGINT)");
+        DataSourceTransactionManager transactionManager = new DataSourceTransactionManager(dataSource);
+        BlockSequenceIncrementer incrementer = incrementer();
+
+        TransactionStatus status = transactionManager.getTransaction(new DefaultTransactionDefinition());
+        long id = incrementer.nextLongValue();
+        jdbcTemplate.update("INSERT INTO job (id) VALUES (?)", id);
+        transactionManager.rollback(status);
+
+        assertEquals(BLOCK_SIZE, sequence());
+        assertEquals(0, jdbcTemplate.queryForObject("SELECT COUNT(*) FROM job", Integer.class).intValue());
+        assertEquals(id + 1, incrementer.nextLongValue());
+    }
+
+    /**
+     * 连接池中的连接归还后保持原有的自动提交设置
+     */
+    @Test
+    public void restoresAutoCommitOfPooledConnection() throws Exception {
+        SingleConnectionDataSource pool = new SingleConnectionDataSource(url, "sa", "", true);
+        pool.setAutoCommit(false);
+        try {
+            BlockSequenceIncrementer incrementer = new BlockSequenceIncrementer(pool, "BATCH_JOB_SEQ", "ID", BLOCK_SIZE);
+            incrementer.nextLongValue();
+
+            assertEquals(BLOCK_SIZE, sequence());
+            try (Connection connection = pool.getConnection()) {
+                assertFalse(connection.getAutoCommit());
+            }
+        } finally {
+            pool.destroy();
+        }
+    }
+
+    private BlockSequenceIncrementer incrementer() {
+        return new BlockSequenceIncrementer(dataSource, "BATCH_JOB_SEQ", "ID", BLOCK_SIZE);
+    }
+
+    private long sequence() {
+        return jdbcTemplate.queryForObject("SELECT ID FROM BATCH_JOB_SEQ", Long.class);
+    }
+}
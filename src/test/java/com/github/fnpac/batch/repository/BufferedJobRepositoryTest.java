@@ -0,0 +1,197 @@
+package com.github.fnpac.batch.repository;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.batch.core.BatchStatus;
+import org.springframework.batch.core.JobExecution;
+import org.springframework.batch.core.JobParameters;
+import org.springframework.batch.core.JobParametersBuilder;
+import org.springframework.batch.core.StepExecution;
+import org.springframework.batch.core.explore.JobExplorer;
+import org.springframework.batch.core.explore.support.JobExplorerFactoryBean;
+import org.springframework.batch.core.repository.JobRepository;
+import org.springframework.batch.core.repository.support.JobRepositoryFactoryBean;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabase;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseBuilder;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseType;
+
+import java.util.Date;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * {@link BufferedJobRepository} 的崩溃一致性：丢弃repository（不flush、不destroy）模拟进程崩溃，
+ * 再用新的JobExplorer读取数据库中留下的元数据。
+ */
+public class BufferedJobRepositoryTest {
+
+    private static final long HOUR = 3600 * 1000;
+
+    /**
+     * 与batch.repository.compactContext=true时相同
+     */
+    private final CompactExecutionContextSerializer serializer = new CompactExecutionContextSerializer();
+
+    private EmbeddedDatabase database;
+    private DataSourceTransactionManager transactionManager;
+    private JobRepository simpleRepository;
+
+    @Before
+    public void setUp() throws Exception {
+        database = new EmbeddedDatabaseBuilder()
+                .setType(EmbeddedDatabaseType.H2)
+                .generateUniqueName(true)
+                .addScript("classpath:org/springframework/batch/core/schema-h2.sql")
+                .build();
+        transactionManager = new DataSourceTransactionManager(database);
+        JobRepositoryFactoryBean factory = new JobRepositoryFactoryBean();
+        factory.setDataSource(database);
+        factory.setTransactionManager(transactionManager);
+        factory.setDatabaseType("H2");
+        factory.setSerializer(serializer);
+        factory.afterPropertiesSet();
+        simpleRepository = factory.getObject();
+    }
+
+    @After
+    public void tearDown() {
+        database.shutdown();
+    }
+
+    /**
+     * 默认配置：计数按间隔合并，崩溃后数据库中的计数落后；ExecutionContext每次都写入，重启位置精确
+     */
+    @Test
+    public void crashKeepsEveryContextUpdateButMayLoseBufferedCounts() throws Exception {
+        BufferedJobRepository repository = new BufferedJobRepository(simpleRepository);
+        repository.setUpdateIntervalMillis(HOUR);
+        StepExecution stepExecution = startStep(repository);
+
+        for (int chunk = 1; chunk <= 5; chunk++) {
+            commitChunk(repository, stepExecution, chunk);
+        }
+        // 崩溃：不flush
+
+        StepExecution persisted = explorer().getStepExecution(
+                stepExecution.getJobExecutionId(), stepExecution.getId());
+        // 只有第一次update到期写入
+        assertEquals(1, persisted.getCommitCount());
+        assertEquals(10, persisted.getReadCount());
+        // 重启使用的读取位置是最后一次提交的
+        assertEquals(5, persisted.getExecutionContext().getInt("position"));
+    }
+
+    /**
+     * contextUpdateIntervalMillis大于0时，崩溃重启从最近一次写入的位置继续（至少一次）
+     */
+    @Test
+    public void crashWithBufferedContextRestartsFromLastWrittenPosition() throws Exception {
+        BufferedJobRepository repository = new BufferedJobRepository(simpleRepository);
+        repository.setUpdateIntervalMillis(HOUR);
+        repository.setContextUpdateIntervalMillis(HOUR);
+        StepExecution stepExecution = startStep(repository);
+
+        for (int chunk = 1; chunk <= 5; chunk++) {
+            commitChunk(repository, stepExecution, chunk);
+        }
+
+        StepExecution persisted = explorer().getStepExecution(
+                stepExecution.getJobExecutionId(), stepExecution.getId());
+        assertEquals(1, persisted.getExecutionContext().getInt("position"));
+    }
+
+    /**
+     * 状态变化时立即写入最新的计数和ExecutionContext，缓存的更新不会丢失
+     */
+    @Test
+    public void statusChangeWritesLatestState() throws Exception {
+        BufferedJobRepository repository = new BufferedJobRepository(simpleRepository);
+        repository.setUpdateIntervalMillis(HOUR);
+        repository.setContextUpdateIntervalMillis(HOUR);
+        StepExecution stepExecution = startStep(repository);
+
+        for (int chunk = 1; chunk <= 5; chunk++) {
+            commitChunk(repository, stepExecution, chunk);
+        }
+        stepExecution.setStatus(BatchStatus.COMPLETED);
+        stepExecution.setEndTime(new Date());
+        repository.update(stepExecution);
+
+        StepExecution persisted = explorer().getStepExecution(
+                stepExecution.getJobExecutionId(), stepExecution.getId());
+        assertEquals(BatchStatus.COMPLETED, persisted.getStatus());
+        assertEquals(5, persisted.getCommitCount());
+        assertEquals(50, persisted.getReadCount());
+        assertEquals(5, persisted.getExecutionContext().getInt("position"));
+    }
+
+    /**
+     * 异步写入：后台线程写入快照后，step线程的chunk回滚把版本号恢复为chunk开始时的值，
+     * 之后写入状态变化不能因版本号过期而失败
+     */
+    @Test
+    public void writeBehindSurvivesRollbackOfStepExecutionVersion() throws Exception {
+        BufferedJobRepository repository = new BufferedJobRepository(simpleRepository);
+        repository.setUpdateIntervalMillis(HOUR);
+        // 间隔为一小时，后台线程不会运行，由测试线程调用flush代替
+        repository.setAsyncWriteBehind(true);
+        try {
+            StepExecution stepExecution = startStep(repository);
+            commitChunk(repository, stepExecution, 1);
+            repository.flush();
+
+            // TaskletStep在chunk开始时保存版本号，回滚时恢复
+            Integer versionAtChunkStart = stepExecution.getVersion();
+            commitChunk(repository, stepExecution, 2);
+            repository.flush();
+            stepExecution.setVersion(versionAtChunkStart);
+
+            stepExecution.setStatus(BatchStatus.FAILED);
+            stepExecution.setEndTime(new Date());
+            repository.update(stepExecution);
+
+            StepExecution persisted = explorer().getStepExecution(
+                    stepExecution.getJobExecutionId(), stepExecution.getId());
+            assertEquals(BatchStatus.FAILED, persisted.getStatus());
+            assertEquals(2, persisted.getCommitCount());
+            assertTrue(persisted.getVersion() > versionAtChunkStart);
+        } finally {
+            repository.destroy();
+        }
+    }
+
+    private StepExecution startStep(JobRepository repository) throws Exception {
+        JobParameters parameters = new JobParametersBuilder().addLong("run.id", System.nanoTime()).toJobParameters();
+        JobExecution jobExecution = repository.createJobExecution("job", parameters);
+        jobExecution.setStatus(BatchStatus.STARTED);
+        jobExecution.setStartTime(new Date());
+        repository.update(jobExecution);
+        StepExecution stepExecution = jobExecution.createStepExecution("step");
+        stepExecution.setStatus(BatchStatus.STARTED);
+        repository.add(stepExecution);
+        return stepExecution;
+    }
+
+    /**
+     * 与TaskletStep提交chunk时相同：先写ExecutionContext，再写计数
+     */
+    private static void commitChunk(JobRepository repository, StepExecution stepExecution, int chunk) {
+        stepExecution.setReadCount(stepExecution.getReadCount() + 10);
+        stepExecution.setWriteCount(stepExecution.getWriteCount() + 10);
+        stepExecution.getExecutionContext().putInt("position", chunk);
+        repository.updateExecutionContext(stepExecution);
+        stepExecution.incrementCommitCount();
+        repository.update(stepExecution);
+    }
+
+    private JobExplorer explorer() throws Exception {
+        JobExplorerFactoryBean factory = new JobExplorerFactoryBean();
+        factory.setDataSource(database);
+        factory.setSerializer(serializer);
+        factory.afterPropertiesSet();
+        return factory.getObject();
+    }
+}
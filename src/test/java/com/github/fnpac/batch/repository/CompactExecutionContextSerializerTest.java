@@ -0,0 +1,161 @@
+package com.github.fnpac.batch.repository;
+
+import org.junit.Test;
+import org.springframework.batch.core.repository.dao.XStreamExecutionContextStringSerializer;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * {@link CompactExecutionContextSerializer} 的往返：每种值类型、键的增量编码、压缩，以及读取原XStream格式
+ */
+public class CompactExecutionContextSerializerTest {
+
+    @Test
+    public void roundTripsEverySupportedType() throws Exception {
+        CompactExecutionContextSerializer serializer = new CompactExecutionContextSerializer();
+        assertRoundTrip(serializer, values());
+    }
+
+    @Test
+    public void roundTripsWithoutPrefixCompression() throws Exception {
+        CompactExecutionContextSerializer serializer = new CompactExecutionContextSerializer();
+        serializer.setPrefixCompression(false);
+        assertRoundTrip(serializer, values());
+    }
+
+    @Test
+    public void roundTripsNonFiniteDoubles() throws Exception {
+        CompactExecutionContextSerializer serializer = new CompactExecutionContextSerializer();
+        Map<String, Object> context = new HashMap<>();
+        context.put("nan", Double.NaN);
+        context.put("positive", Double.POSITIVE_INFINITY);
+        context.put("negative", Double.NEGATIVE_INFINITY);
+        context.put("finite", 0.25d);
+
+        Map<String, Object> read = assertRoundTrip(serializer, context);
+        assertTrue(((Double) read.get("nan")).isNaN());
+    }
+
+    @Test
+    public void prefixCodesKeysWithinEachGroup() throws Exception {
+        CompactExecutionContextSerializer serializer = new CompactExecutionContextSerializer();
+        Map<String, Object> context = new HashMap<>();
+        for (int shard = 0; shard < 20; shard++) {
+            context.put("ShardedItemReader.shard." + shard + ".line", (long) shard * 1000);
+        }
+        // 一个键是另一个键的前缀、键中含分隔符、空键
+        context.put("ShardedItemReader.shard", 20L);
+        context.put("a~b", "x");
+        context.put("a~", "y");
+        context.put("", "empty");
+
+        String json = new String(serialize(serializer, context), StandardCharsets.UTF_8);
+        assertTrue(json, json.contains("\"p\":1"));
+        assertFalse(json, json.contains("ShardedItemReader.shard.1"));
+        assertRoundTrip(serializer, context);
+    }
+
+    @Test
+    public void compressesAboveThreshold() throws Exception {
+        CompactExecutionContextSerializer serializer = new CompactExecutionContextSerializer();
+        serializer.setCompressionThreshold(64);
+        Map<String, Object> context = values();
+
+        byte[] bytes = serialize(serializer, context);
+        assertEquals('Z', bytes[0]);
+        assertRoundTrip(serializer, context);
+
+        Map<String, Object> small = new HashMap<>();
+        small.put("k", 1);
+        assertEquals('{', serialize(serializer, small)[0]);
+        assertRoundTrip(serializer, small);
+    }
+
+    @Test
+    public void readsLegacyXStreamContext() throws Exception {
+        XStreamExecutionContextStringSerializer xStream = new XStreamExecutionContextStringSerializer();
+        xStream.afterPropertiesSet();
+        Map<String, Object> context = new HashMap<>();
+        context.put("FlatFileItemReader.read.count", 42);
+        context.put("ShardedItemReader.shard.3.line", 123456789012L);
+        // XStream格式按ISO-8859-1写入，本身不能保存非Latin-1字符
+        context.put("name", "person.csv");
+        context.put("ratio", 0.5d);
+        context.put("done", true);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        xStream.serialize(context, out);
+        assertFalse(new String(out.toByteArray(), StandardCharsets.UTF_8).startsWith("{\"v\":"));
+
+        Map<String, Object> read = new CompactExecutionContextSerializer().deserialize(
+                new ByteArrayInputStream(out.toByteArray()));
+        assertEquals(context, read);
+    }
+
+    /**
+     * 与其它类型的值放在一起，确认按类型分组后互不影响
+     */
+    private static Map<String, Object> values() {
+        Map<String, Object> context = new HashMap<>();
+        context.put("string", "value");
+        context.put("string.empty", "");
+        context.put("string.unicode", "汉族 \"quoted\" \\ \n");
+        context.put("int.min", Integer.MIN_VALUE);
+        context.put("int.max", Integer.MAX_VALUE);
+        context.put("long.min", Long.MIN_VALUE);
+        context.put("long.max", Long.MAX_VALUE);
+        context.put("double", 3.141592653589793d);
+        context.put("double.negativeZero", -0.0d);
+        context.put("double.min", Double.MIN_VALUE);
+        context.put("double.nan", Double.NaN);
+        context.put("boolean.true", true);
+        context.put("boolean.false", false);
+        context.put("date", new Date(1525000000123L));
+        context.put("longs", new long[]{0, -1, Long.MAX_VALUE, Long.MIN_VALUE});
+        context.put("longs.empty", new long[0]);
+        context.put("object.decimal", new BigDecimal("12345.6789"));
+        context.put("object.list", new ArrayList<>(Arrays.asList("a", "b")));
+        return context;
+    }
+
+    private static Map<String, Object> assertRoundTrip(CompactExecutionContextSerializer serializer,
+                                                       Map<String, Object> context) throws IOException {
+        // JdbcExecutionContextDao按ISO-8859-1在字节与字符串之间转换
+        String stored = new String(serialize(serializer, context), StandardCharsets.ISO_8859_1);
+        Map<String, Object> read = serializer.deserialize(
+                new ByteArrayInputStream(stored.getBytes(StandardCharsets.ISO_8859_1)));
+
+        assertEquals(context.keySet(), read.keySet());
+        for (Map.Entry<String, Object> entry : context.entrySet()) {
+            Object expected = entry.getValue();
+            Object actual = read.get(entry.getKey());
+            if (expected instanceof long[]) {
+                assertArrayEquals(entry.getKey(), (long[]) expected, (long[]) actual);
+            } else {
+                assertEquals(entry.getKey(), expected, actual);
+                assertEquals(entry.getKey(), expected.getClass(), actual.getClass());
+            }
+        }
+        return read;
+    }
+
+    private static byte[] serialize(CompactExecutionContextSerializer serializer, Map<String, Object> context)
+            throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        serializer.serialize(context, out);
+        return out.toByteArray();
+    }
+}
@@ -0,0 +1,199 @@
+package com.github.fnpac.batch.skip;
+
+import com.github.fnpac.domain.Person;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.springframework.batch.core.BatchStatus;
+import org.springframework.batch.core.JobExecution;
+import org.springframework.batch.core.JobParametersBuilder;
+import org.springframework.batch.core.StepExecution;
+import org.springframework.batch.core.repository.JobRepository;
+import org.springframework.batch.core.repository.support.JobRepositoryFactoryBean;
+import org.springframework.batch.core.step.builder.StepBuilder;
+import org.springframework.batch.core.step.tasklet.TaskletStep;
+import org.springframework.batch.item.ItemProcessor;
+import org.springframework.batch.item.ItemWriter;
+import org.springframework.batch.item.support.ListItemReader;
+import org.springframework.batch.item.validator.ValidationException;
+import org.springframework.dao.DeadlockLoserDataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DataSourceUtils;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabase;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseBuilder;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseType;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * {@link BisectingStepBuilder} 构建的step，H2内存数据库：写入失败的记录二分定位并跳过；
+ * 死锁时writer像InnoDB一样回滚整个事务，chunk在新的事务中整体重新处理
+ */
+public class BisectingStepBuilderTest {
+
+    private static final String INSERT = "INSERT INTO person (name, age, nation, address) VALUES (?, ?, ?, ?)";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private EmbeddedDatabase database;
+    private JdbcTemplate jdbcTemplate;
+    private DataSourceTransactionManager transactionManager;
+    private JobRepository jobRepository;
+    private Path rejectFile;
+    private RejectFileWriter<Person> rejectWriter;
+
+    @Before
+    public void setUp() throws Exception {
+        database = new EmbeddedDatabaseBuilder()
+                .setType(EmbeddedDatabaseType.H2)
+                .generateUniqueName(true)
+                .addScript("classpath:org/springframework/batch/core/schema-h2.sql")
+                .build();
+        jdbcTemplate = new JdbcTemplate(database);
+        jdbcTemplate.execute("CREATE TABLE person (id BIGINT AUTO_INCREMENT PRIMARY KEY, " +
+                "name VARCHAR(4), age INT, nation VARCHAR(20), address VARCHAR(20))");
+        transactionManager = new DataSourceTransactionManager(database);
+        JobRepositoryFactoryBean factory = new JobRepositoryFactoryBean();
+        factory.setDataSource(database);
+        factory.setTransactionManager(transactionManager);
+        factory.setDatabaseType("H2");
+        factory.afterPropertiesSet();
+        jobRepository = factory.getObject();
+
+        rejectFile = folder.getRoot().toPath().resolve("rejects.tsv");
+        rejectWriter = new RejectFileWriter<>(rejectFile);
+        rejectWriter.setLineNumber(Person::getLineNumber);
+        rejectWriter.setLineAggregator(Person::getName);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        rejectWriter.close();
+        database.shutdown();
+    }
+
+    @Test
+    public void deadlockedChunkIsRetriedInNewTransaction() throws Exception {
+        // 第二个chunk（第6~10行）：第7行写入失败、第8行校验失败、第9行被过滤，第一次写入时死锁
+        List<Person> people = people(20);
+        people.get(6).setName("过长的姓名");
+        people.get(7).setName("校验失败");
+        people.get(8).setName("过滤");
+        DeadlockingWriter writer = new DeadlockingWriter(people.get(5), 1);
+
+        StepExecution stepExecution = execute(people, writer, 3);
+
+        assertEquals(BatchStatus.COMPLETED, stepExecution.getStatus());
+        assertEquals(1, stepExecution.getRollbackCount());
+        assertEquals(20, stepExecution.getReadCount());
+        assertEquals(1, stepExecution.getProcessSkipCount());
+        assertEquals(1, stepExecution.getFilterCount());
+        assertEquals(1, stepExecution.getWriteSkipCount());
+        assertEquals(17, stepExecution.getWriteCount());
+        assertEquals(17, jdbcTemplate.queryForObject("SELECT COUNT(*) FROM person", Integer.class).intValue());
+        assertEquals(17, jdbcTemplate.queryForObject("SELECT COUNT(DISTINCT name) FROM person", Integer.class).intValue());
+
+        // 回滚的那次处理中跳过的记录不写入拒绝文件
+        List<String> rejects = Files.readAllLines(rejectFile, StandardCharsets.UTF_8);
+        assertEquals(2, rejects.size());
+        assertTrue(rejects.get(0), rejects.get(0).contains("\t8\tPROCESS\t"));
+        assertTrue(rejects.get(1), rejects.get(1).contains("\t7\tWRITE\t"));
+    }
+
+    @Test
+    public void stepFailsWhenChunkRetryLimitIsExceeded() throws Exception {
+        List<Person> people = people(20);
+        DeadlockingWriter writer = new DeadlockingWriter(people.get(5), Integer.MAX_VALUE);
+
+        StepExecution stepExecution = execute(people, writer, 3);
+
+        assertEquals(BatchStatus.FAILED, stepExecution.getStatus());
+        assertEquals(4, stepExecution.getRollbackCount());
+        assertEquals(5, stepExecution.getWriteCount());
+        assertEquals(5, jdbcTemplate.queryForObject("SELECT COUNT(*) FROM person", Integer.class).intValue());
+    }
+
+    private StepExecution execute(List<Person> people, ItemWriter<Person> writer, int chunkRetryLimit) throws Exception {
+        TaskletStep step = new BisectingStepBuilder<Person>(new StepBuilder("step")
+                .repository(jobRepository)
+                .transactionManager(transactionManager))
+                .dataSource(database)
+                .rejectWriter(rejectWriter)
+                .skipLimit(10)
+                .chunkRetryLimit(chunkRetryLimit)
+                .chunk(5)
+                .reader(new ListItemReader<>(people))
+                .processor(processor())
+                .writer(writer)
+                .build();
+
+        JobExecution jobExecution = jobRepository.createJobExecution("job",
+                new JobParametersBuilder().addLong("run.id", System.nanoTime()).toJobParameters());
+        StepExecution stepExecution = jobExecution.createStepExecution(step.getName());
+        jobRepository.add(stepExecution);
+        step.execute(stepExecution);
+        return stepExecution;
+    }
+
+    private static ItemProcessor<Person, Person> processor() {
+        return person -> {
+            if ("校验失败".equals(person.getName())) {
+                throw new ValidationException("invalid name");
+            }
+            return "过滤".equals(person.getName()) ? null : person;
+        };
+    }
+
+    private static List<Person> people(int count) {
+        List<Person> people = new ArrayList<>(count);
+        for (int i = 1; i <= count; i++) {
+            Person person = new Person();
+            person.setName("姓名" + i);
+            person.setAge(i);
+            person.setNation("01");
+            person.setAddress("110000");
+            person.setItemCount(i);
+            people.add(person);
+        }
+        return people;
+    }
+
+    /**
+     * 写入包含victim的chunk时死锁：与InnoDB相同，回滚整个事务后抛出异常，之前建立的savepoint随之失效
+     */
+    private class DeadlockingWriter implements ItemWriter<Person> {
+
+        private final Person victim;
+        private final AtomicInteger deadlocks;
+
+        DeadlockingWriter(Person victim, int deadlocks) {
+            this.victim = victim;
+            this.deadlocks = new AtomicInteger(deadlocks);
+        }
+
+        @Override
+        public void write(List<? extends Person> items) throws Exception {
+            for (Person person : items) {
+                jdbcTemplate.update(INSERT, person.getName(), person.getAge(), person.getNation(), person.getAddress());
+            }
+            if (items.contains(victim) && deadlocks.getAndDecrement() > 0) {
+                DataSourceUtils.getConnection(database).rollback();
+                throw new DeadlockLoserDataAccessException("Deadlock found when trying to get lock",
+                        new SQLException("Deadlock found when trying to get lock", "40001", 1213));
+            }
+        }
+    }
+}
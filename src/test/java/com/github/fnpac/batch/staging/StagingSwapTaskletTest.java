@@ -0,0 +1,135 @@
+package com.github.fnpac.batch.staging;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.batch.core.JobExecution;
+import org.springframework.batch.core.JobInstance;
+import org.springframework.batch.core.StepContribution;
+import org.springframework.batch.core.StepExecution;
+import org.springframework.batch.core.scope.context.ChunkContext;
+import org.springframework.batch.core.scope.context.StepContext;
+import org.springframework.batch.item.ExecutionContext;
+import org.springframework.batch.repeat.RepeatStatus;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabase;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseBuilder;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseType;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * {@link StagingSwapTasklet} 的swap模式，H2内存数据库：step的ExecutionContext只在“提交”后保留，
+ * 用交换前的ExecutionContext重新执行来模拟交换后、提交前进程退出
+ */
+public class StagingSwapTaskletTest {
+
+    private EmbeddedDatabase database;
+    private JdbcTemplate jdbcTemplate;
+    private StagingSwapTasklet tasklet;
+
+    @Before
+    public void setUp() throws Exception {
+        database = new EmbeddedDatabaseBuilder()
+                .setType(EmbeddedDatabaseType.H2)
+                .generateUniqueName(true)
+                .build();
+        jdbcTemplate = new JdbcTemplate(database);
+        jdbcTemplate.execute("CREATE TABLE person (id BIGINT AUTO_INCREMENT PRIMARY KEY, " +
+                "name VARCHAR(20), age INT, nation VARCHAR(20), address VARCHAR(20))");
+        jdbcTemplate.execute("CREATE TABLE person_staging (id BIGINT AUTO_INCREMENT PRIMARY KEY, " +
+                "name VARCHAR(20), age INT, nation VARCHAR(20), address VARCHAR(20))");
+
+        tasklet = new StagingSwapTasklet();
+        tasklet.setStagingTable(new StagingTable(database, "person", "person_staging"));
+        tasklet.afterPropertiesSet();
+    }
+
+    @After
+    public void tearDown() {
+        database.shutdown();
+    }
+
+    @Test
+    public void swapsStagingIntoTarget() throws Exception {
+        insert("person", "旧", 3);
+        insert("person_staging", "新", 5);
+
+        StepExecution stepExecution = stepExecution(1L, new ExecutionContext());
+        runToEnd(stepExecution);
+
+        assertEquals(5, count("person", "新"));
+        assertEquals(0, count("person", "旧"));
+        assertEquals(0, count("person_staging", null));
+        assertEquals(5, stepExecution.getWriteCount());
+    }
+
+    @Test
+    public void restartAfterSwapBeforeCommitDoesNotSwapBack() throws Exception {
+        insert("person", "旧", 3);
+        insert("person_staging", "新", 5);
+
+        StepExecution first = stepExecution(1L, new ExecutionContext());
+        // 建索引
+        assertEquals(RepeatStatus.CONTINUABLE, execute(first));
+        // 最后一次提交的ExecutionContext：阶段为交换
+        ExecutionContext committed = new ExecutionContext(first.getExecutionContext());
+        // 交换完成，但记录阶段的事务没有提交，进程退出
+        assertEquals(RepeatStatus.CONTINUABLE, execute(first));
+        assertEquals(5, count("person", "新"));
+
+        // 同一job instance重启，从提交的阶段（交换）继续
+        StepExecution restart = stepExecution(1L, committed);
+        runToEnd(restart);
+
+        assertEquals(5, count("person", "新"));
+        assertEquals(0, count("person", "旧"));
+        assertEquals(0, count("person_staging", null));
+        assertEquals(0, restart.getWriteCount());
+    }
+
+    @Test
+    public void nextImportSwapsAgain() throws Exception {
+        insert("person_staging", "第一次", 2);
+        runToEnd(stepExecution(1L, new ExecutionContext()));
+
+        insert("person_staging", "第二次", 4);
+        runToEnd(stepExecution(2L, new ExecutionContext()));
+
+        assertEquals(4, count("person", "第二次"));
+        assertEquals(0, count("person", "第一次"));
+    }
+
+    private void runToEnd(StepExecution stepExecution) throws Exception {
+        while (execute(stepExecution) == RepeatStatus.CONTINUABLE) {
+            // 每个阶段一次execute
+        }
+    }
+
+    private RepeatStatus execute(StepExecution stepExecution) throws Exception {
+        StepContribution contribution = stepExecution.createStepContribution();
+        RepeatStatus status = tasklet.execute(contribution, new ChunkContext(new StepContext(stepExecution)));
+        stepExecution.apply(contribution);
+        return status;
+    }
+
+    private static StepExecution stepExecution(Long jobInstanceId, ExecutionContext executionContext) {
+        JobExecution jobExecution = new JobExecution(new JobInstance(jobInstanceId, "importJob"), null);
+        StepExecution stepExecution = jobExecution.createStepExecution("stagingSwapStep");
+        stepExecution.setExecutionContext(executionContext);
+        return stepExecution;
+    }
+
+    private void insert(String table, String name, int rows) {
+        for (int i = 0; i < rows; i++) {
+            jdbcTemplate.update("INSERT INTO " + table + " (name, age, nation, address) VALUES (?, ?, ?, ?)",
+                    name, i, "汉族", "北京");
+        }
+    }
+
+    private int count(String table, String name) {
+        return name == null
+                ? jdbcTemplate.queryForObject("SELECT COUNT(*) FROM " + table, Integer.class)
+                : jdbcTemplate.queryForObject("SELECT COUNT(*) FROM " + table + " WHERE name = ?", Integer.class, name);
+    }
+}
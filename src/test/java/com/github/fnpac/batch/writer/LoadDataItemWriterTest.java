@@ -0,0 +1,221 @@
+package com.github.fnpac.batch.writer;
+
+import com.github.fnpac.domain.Person;
+import org.h2.tools.SimpleResultSet;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.JdbcUpdateAffectedIncorrectNumberOfRowsException;
+import org.springframework.jdbc.datasource.SingleConnectionDataSource;
+
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * {@link LoadDataItemWriter}：发送的TSV编码，以及LOCAL方式下降为警告的错误使chunk失败。
+ * <p>
+ * H2不支持 LOAD DATA，这里用实现 {@link com.mysql.jdbc.Statement} 的代理模拟服务端：记录发送的数据，
+ * 按设定返回加载的行数和 SHOW WARNINGS 的结果。
+ */
+public class LoadDataItemWriterTest {
+
+    private FakeServer server;
+    private LoadDataItemWriter writer;
+
+    @Before
+    public void setUp() throws Exception {
+        server = new FakeServer();
+        writer = new LoadDataItemWriter();
+        writer.setDataSource(new SingleConnectionDataSource(server.connection(), true));
+        writer.afterPropertiesSet();
+    }
+
+    @Test
+    public void sendsChunkAsEscapedTsv() throws Exception {
+        writer.write(Arrays.asList(
+                person("张三", 30, "01", "110000"),
+                person("a\tb\\c", 1, null, "line\nbreak\r")));
+
+        assertEquals("张三\t30\t01\t110000\n" +
+                "a\\tb\\\\c\t1\t\\N\tline\\nbreak\\r\n", server.data);
+        assertTrue(server.sql, server.sql.startsWith("LOAD DATA LOCAL INFILE 'chunk.tsv' INTO TABLE person "));
+        assertEquals(1, server.showWarnings);
+    }
+
+    @Test
+    public void writesToConfiguredTable() throws Exception {
+        writer.setTable("person_staging");
+        writer.write(Arrays.asList(person("张三", 30, "01", "110000")));
+
+        assertTrue(server.sql, server.sql.startsWith("LOAD DATA LOCAL INFILE 'chunk.tsv' INTO TABLE person_staging "));
+    }
+
+    /**
+     * 截断、类型转换失败的行仍被加载，行数一致，只能从警告中发现
+     */
+    @Test
+    public void failsOnWarningsEvenIfAllRowsLoaded() throws Exception {
+        server.warning("Warning", 1265, "Data truncated for column 'name' at row 2");
+        server.warning("Warning", 1366, "Incorrect integer value: 'x' for column 'age' at row 3");
+
+        try {
+            writer.write(people(3));
+            fail("warnings must fail the chunk");
+        } catch (DataIntegrityViolationException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains("1265: Data truncated for column 'name' at row 2"));
+            assertTrue(e.getMessage(), e.getMessage().contains("1366: Incorrect integer value"));
+        }
+    }
+
+    /**
+     * 重复键的行被跳过：既有警告，加载的行数也少于chunk的行数
+     */
+    @Test
+    public void failsOnSkippedDuplicateRows() throws Exception {
+        server.loaded = 2;
+        server.warning("Warning", 1062, "Duplicate entry '3' for key 'PRIMARY'");
+
+        try {
+            writer.write(people(3));
+            fail("skipped rows must fail the chunk");
+        } catch (DataIntegrityViolationException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains("1062: Duplicate entry"));
+        }
+    }
+
+    @Test
+    public void failsOnRowCountMismatchWithoutWarnings() throws Exception {
+        server.loaded = 2;
+
+        try {
+            writer.write(people(3));
+            fail("row count mismatch must fail the chunk");
+        } catch (JdbcUpdateAffectedIncorrectNumberOfRowsException e) {
+            assertEquals(3, e.getExpectedRowsAffected());
+            assertEquals(2, e.getActualRowsAffected());
+        }
+    }
+
+    @Test
+    public void ignoresNotes() throws Exception {
+        server.warning("Note", 1592, "Unsafe statement written to the binary log");
+
+        writer.write(people(3));
+    }
+
+    private static List<Person> people(int count) {
+        List<Person> people = new ArrayList<>(count);
+        for (int i = 1; i <= count; i++) {
+            people.add(person("姓名" + i, i, "01", "110000"));
+        }
+        return people;
+    }
+
+    private static Person person(String name, int age, String nation, String address) {
+        Person person = new Person();
+        person.setName(name);
+        person.setAge(age);
+        person.setNation(nation);
+        person.setAddress(address);
+        return person;
+    }
+
+    /**
+     * 模拟MySQL：LOAD DATA 读取 setLocalInfileInputStream 设置的流，返回 loaded（未设置时为发送的行数）
+     */
+    private static class FakeServer {
+
+        private final List<Object[]> warnings = new ArrayList<>();
+        private Integer loaded;
+        private String sql;
+        private String data;
+        private int showWarnings;
+
+        void warning(String level, int code, String message) {
+            warnings.add(new Object[]{level, code, message});
+        }
+
+        Connection connection() {
+            return proxy(Connection.class, (proxy, method, args) -> {
+                switch (method.getName()) {
+                    case "createStatement":
+                        return statement();
+                    case "getAutoCommit":
+                        return true;
+                    default:
+                        return defaultValue(method);
+                }
+            });
+        }
+
+        private com.mysql.jdbc.Statement statement() {
+            InputStream[] stream = new InputStream[1];
+            return proxy(com.mysql.jdbc.Statement.class, (proxy, method, args) -> {
+                switch (method.getName()) {
+                    case "unwrap":
+                        return proxy;
+                    case "setLocalInfileInputStream":
+                        stream[0] = (InputStream) args[0];
+                        return null;
+                    case "executeUpdate":
+                        sql = (String) args[0];
+                        data = read(stream[0]);
+                        return loaded != null ? loaded : data.split("\n").length;
+                    case "executeQuery":
+                        assertEquals("SHOW WARNINGS", args[0]);
+                        showWarnings++;
+                        return showWarnings();
+                    default:
+                        return defaultValue(method);
+                }
+            });
+        }
+
+        private ResultSet showWarnings() {
+            SimpleResultSet rs = new SimpleResultSet();
+            rs.addColumn("Level", Types.VARCHAR, 7, 0);
+            rs.addColumn("Code", Types.INTEGER, 4, 0);
+            rs.addColumn("Message", Types.VARCHAR, 512, 0);
+            for (Object[] warning : warnings) {
+                rs.addRow(warning);
+            }
+            return rs;
+        }
+
+        private static String read(InputStream in) throws Exception {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[4096];
+            for (int n; (n = in.read(buffer)) > 0; ) {
+                out.write(buffer, 0, n);
+            }
+            return new String(out.toByteArray(), StandardCharsets.UTF_8);
+        }
+
+        private static Object defaultValue(Method method) {
+            Class<?> type = method.getReturnType();
+            if (type == boolean.class) {
+                return false;
+            }
+            return type == int.class ? 0 : null;
+        }
+
+        @SuppressWarnings("unchecked")
+        private static <T> T proxy(Class<T> type, InvocationHandler handler) {
+            return (T) Proxy.newProxyInstance(LoadDataItemWriterTest.class.getClassLoader(), new Class<?>[]{type}, handler);
+        }
+    }
+}
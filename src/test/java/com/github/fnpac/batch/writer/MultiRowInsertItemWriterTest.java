@@ -0,0 +1,118 @@
+package com.github.fnpac.batch.writer;
+
+import com.github.fnpac.domain.Person;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.SimpleDriverDataSource;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * {@link MultiRowInsertItemWriter}，H2内存数据库（MODE=MySQL）代替MySQL
+ */
+public class MultiRowInsertItemWriterTest {
+
+    private static final String URL = "jdbc:h2:mem:multi-row-insert;MODE=MySQL;DB_CLOSE_DELAY=-1";
+
+    private JdbcTemplate jdbcTemplate;
+    private MultiRowInsertItemWriter writer;
+
+    @Before
+    public void setUp() throws Exception {
+        SimpleDriverDataSource dataSource = new SimpleDriverDataSource(new org.h2.Driver(), URL, "sa", "");
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        jdbcTemplate.execute("CREATE TABLE person (id BIGINT AUTO_INCREMENT PRIMARY KEY, " +
+                "name VARCHAR(20), age INT, nation VARCHAR(20), address VARCHAR(20))");
+        writer = new MultiRowInsertItemWriter();
+        writer.setDataSource(dataSource);
+        // H2不支持 @@max_allowed_packet
+        writer.setMaxPacketBytes(16 * 1024);
+        writer.afterPropertiesSet();
+    }
+
+    @After
+    public void tearDown() {
+        jdbcTemplate.execute("DROP TABLE person");
+    }
+
+    @Test
+    public void splitsChunkIntoStatementsWithinPacketSize() throws Exception {
+        // 每行估算约150字节，1000行分为多条语句
+        writer.write(people(0, 1000));
+
+        assertEquals(1000, count());
+        assertEquals("姓名999", jdbcTemplate.queryForObject("SELECT name FROM person WHERE age = 999", String.class));
+        assertEquals("汉族", jdbcTemplate.queryForObject("SELECT nation FROM person WHERE age = 0", String.class));
+    }
+
+    @Test
+    public void writesToConfiguredTable() throws Exception {
+        jdbcTemplate.execute("CREATE TABLE person_staging AS SELECT * FROM person WHERE 1 = 0");
+        try {
+            writer.setTable("person_staging");
+            writer.write(people(0, 10));
+
+            assertEquals(0, count());
+            assertEquals(10, jdbcTemplate.queryForObject("SELECT COUNT(*) FROM person_staging", Integer.class).intValue());
+        } finally {
+            jdbcTemplate.execute("DROP TABLE person_staging");
+        }
+    }
+
+    /**
+     * 多线程step中各线程共享一个writer，chunk大小各不相同，缓存的SQL与其行数不能错配
+     */
+    @Test
+    public void sharedByThreadsWritingChunksOfDifferentSizes() throws Exception {
+        int threads = 8;
+        int chunksPerThread = 50;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<Integer>> futures = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                final int seed = t;
+                futures.add(executor.submit(() -> {
+                    int written = 0;
+                    for (int i = 0; i < chunksPerThread; i++) {
+                        int size = 1 + (seed * 31 + i * 17) % 150;
+                        writer.write(people(written, size));
+                        written += size;
+                    }
+                    return written;
+                }));
+            }
+            int expected = 0;
+            for (Future<Integer> future : futures) {
+                expected += future.get();
+            }
+            assertEquals(expected, count());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private int count() {
+        return jdbcTemplate.queryForObject("SELECT COUNT(*) FROM person", Integer.class);
+    }
+
+    private static List<Person> people(int from, int count) {
+        List<Person> people = new ArrayList<>(count);
+        for (int i = from; i < from + count; i++) {
+            Person person = new Person();
+            person.setName("姓名" + i);
+            person.setAge(i);
+            person.setNation("汉族");
+            person.setAddress("北京市海淀区");
+            people.add(person);
+        }
+        return people;
+    }
+}
@@ -0,0 +1,245 @@
+package com.github.fnpac.web;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.fnpac.config.converter.JacksonObjectMapper;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabase;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseBuilder;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseType;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.validation.Errors;
+import org.springframework.validation.Validator;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * {@link PersonQueryController}，H2内存数据库：keyset分页、过滤，以及查询中途失败时不输出完整的一页
+ */
+public class PersonQueryControllerTest {
+
+    private static final int ROWS = 25;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    private EmbeddedDatabase database;
+    private MockMvc mockMvc;
+
+    @Before
+    public void setUp() {
+        database = new EmbeddedDatabaseBuilder()
+                .setType(EmbeddedDatabaseType.H2)
+                .generateUniqueName(true)
+                .build();
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(database);
+        jdbcTemplate.execute("CREATE TABLE person (id BIGINT AUTO_INCREMENT PRIMARY KEY, " +
+                "name VARCHAR(20), age INT, nation VARCHAR(20), address VARCHAR(20))");
+        for (int i = 1; i <= ROWS; i++) {
+            // nation交替为01、02，age等于id
+            jdbcTemplate.update("INSERT INTO person (name, age, nation, address) VALUES (?, ?, ?, ?)",
+                    "姓名" + i, i, i % 2 == 1 ? "01" : "02", i == 1 ? "" : "110000");
+        }
+        mockMvc = MockMvcBuilders.standaloneSetup(controller(jdbcTemplate))
+                // 接口不校验参数；默认的Hibernate Validator在JDK 9以上缺少JAXB
+                .setValidator(new NoOpValidator())
+                .build();
+    }
+
+    @After
+    public void tearDown() {
+        database.shutdown();
+    }
+
+    @Test
+    public void pagesByIdUntilLastPage() throws Exception {
+        List<Long> ids = new ArrayList<>();
+        long after = 0;
+        int pages = 0;
+        while (true) {
+            JsonNode page = query("/persons?limit=10&after=" + after);
+            pages++;
+            for (JsonNode item : page.get("items")) {
+                ids.add(item.get("id").asLong());
+            }
+            if (!page.has("next")) {
+                break;
+            }
+            after = page.get("next").asLong();
+            assertEquals(ids.get(ids.size() - 1).longValue(), after);
+        }
+
+        assertEquals(3, pages);
+        assertEquals(ROWS, ids.size());
+        for (int i = 0; i < ROWS; i++) {
+            assertEquals(i + 1, ids.get(i).longValue());
+        }
+    }
+
+    @Test
+    public void lastPageExactlyFullHasNoNext() throws Exception {
+        JsonNode page = query("/persons?limit=5&after=20");
+        assertEquals(5, page.get("items").size());
+        assertFalse(page.has("next"));
+    }
+
+    @Test
+    public void writesRowFields() throws Exception {
+        JsonNode items = query("/persons?limit=2").get("items");
+        assertEquals("姓名2", items.get(1).get("name").asText());
+        assertEquals(2, items.get(1).get("age").asInt());
+        assertEquals("02", items.get(1).get("nation").asText());
+        assertEquals("110000", items.get(1).get("address").asText());
+        // 与JacksonObjectMapper一致，不输出空字符串
+        assertFalse(items.get(0).has("address"));
+    }
+
+    @Test
+    public void filtersByNationAndAge() throws Exception {
+        JsonNode page = query("/persons?nation=01&minAge=5&maxAge=15&limit=3");
+        assertEquals(3, page.get("items").size());
+        assertEquals(5, page.get("items").get(0).get("age").asInt());
+        assertEquals(9, page.get("next").asLong());
+
+        page = query("/persons?nation=01&minAge=5&maxAge=15&limit=3&after=9");
+        List<Integer> ages = new ArrayList<>();
+        for (JsonNode item : page.get("items")) {
+            assertEquals("01", item.get("nation").asText());
+            ages.add(item.get("age").asInt());
+        }
+        assertEquals(3, ages.size());
+        assertEquals(Integer.valueOf(11), ages.get(0));
+        assertEquals(Integer.valueOf(15), ages.get(2));
+        assertFalse(page.has("next"));
+    }
+
+    @Test
+    public void capsLimitAtMaxLimit() throws Exception {
+        JsonNode page = query("/persons?limit=1000");
+        assertEquals(20, page.get("items").size());
+        assertEquals(20, page.get("next").asLong());
+    }
+
+    @Test
+    public void rejectsInvalidPaging() throws Exception {
+        mockMvc.perform(get("/persons?limit=0")).andExpect(status().isBadRequest());
+        mockMvc.perform(get("/persons?after=-1")).andExpect(status().isBadRequest());
+    }
+
+    /**
+     * 已写出部分行（超过生成器的缓冲区、响应已提交）后查询失败，客户端收到的不能是一个合法的、没有next的最后一页
+     */
+    @Test
+    public void failureAfterRowsWrittenDoesNotProduceValidPage() throws Exception {
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(database);
+        jdbcTemplate.update("INSERT INTO person (name, age, nation, address) " +
+                "SELECT name, age, nation, address FROM person, SYSTEM_RANGE(1, 200)");
+        PersonQueryController controller = controller(new FailingJdbcTemplate(database, 4000));
+        ReflectionTestUtils.setField(controller, "maxLimit", 10000);
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        try {
+            controller.persons(0, 5000, null, null, null, response);
+            fail("query failure must propagate");
+        } catch (DataAccessResourceFailureException expected) {
+            // 由DispatcherServlet处理：未提交时返回500，已提交时中断响应
+        }
+
+        String body = response.getContentAsString();
+        assertTrue("rows before the failure are streamed", body.startsWith("{\"items\":[{"));
+        assertFalse(isJson(body));
+    }
+
+    @Test
+    public void failureBeforeFlushWritesNothing() throws Exception {
+        PersonQueryController controller = controller(new FailingJdbcTemplate(database, 3));
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        try {
+            controller.persons(0, 10, null, null, null, response);
+            fail("query failure must propagate");
+        } catch (DataAccessException expected) {
+            // 响应未提交，由DispatcherServlet返回500
+        }
+
+        assertEquals("", response.getContentAsString());
+    }
+
+    private JsonNode query(String uri) throws Exception {
+        String body = mockMvc.perform(get(uri))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString();
+        return objectMapper.readTree(body);
+    }
+
+    private boolean isJson(String body) throws Exception {
+        try {
+            objectMapper.readTree(body);
+            return true;
+        } catch (JsonProcessingException e) {
+            return false;
+        }
+    }
+
+    private static PersonQueryController controller(JdbcTemplate jdbcTemplate) {
+        PersonQueryController controller = new PersonQueryController(jdbcTemplate,
+                new MappingJackson2HttpMessageConverter(new JacksonObjectMapper()));
+        ReflectionTestUtils.setField(controller, "defaultLimit", 10);
+        ReflectionTestUtils.setField(controller, "maxLimit", 20);
+        return controller;
+    }
+
+    private static class NoOpValidator implements Validator {
+
+        @Override
+        public boolean supports(Class<?> clazz) {
+            return false;
+        }
+
+        @Override
+        public void validate(Object target, Errors errors) {
+        }
+    }
+
+    /**
+     * 处理指定行数后失败，模拟查询中途连接断开
+     */
+    private static class FailingJdbcTemplate extends JdbcTemplate {
+
+        private final int failAfterRows;
+
+        FailingJdbcTemplate(EmbeddedDatabase database, int failAfterRows) {
+            super(database);
+            this.failAfterRows = failAfterRows;
+        }
+
+        @Override
+        public void query(String sql, Object[] args, RowCallbackHandler rch) throws DataAccessException {
+            int[] rows = {0};
+            super.query(sql, args, rs -> {
+                if (rows[0]++ == failAfterRows) {
+                    throw new DataAccessResourceFailureException("connection lost");
+                }
+                rch.processRow(rs);
+            });
+        }
+    }
+}